@@ -19,6 +19,14 @@ android {
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
 
+        // Base64 X.509 EC P-256 key that signs malware signature bundles.
+        // Bundles are rejected while this is empty.
+        buildConfigField(
+            "String",
+            "SIGNATURE_BUNDLE_PUBLIC_KEY",
+            "\"${project.findProperty("sentinelguard.signatureBundleKey") ?: ""}\""
+        )
+
         // Room schema export for version control
         ksp {
             arg("room.schemaLocation", "$projectDir/schemas")
@@ -60,6 +68,11 @@ android {
             excludes += "META-INF/LICENSE.md"
         }
     }
+
+    testOptions {
+        // android.util.Log and friends are no-ops in JVM unit tests
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -83,6 +96,8 @@ dependencies {
     implementation(libs.hilt.android)
     ksp(libs.hilt.compiler)
     implementation(libs.hilt.navigation.compose)
+    implementation(libs.hilt.work)
+    ksp(libs.hilt.work.compiler)
 
     // Room Database
     implementation(libs.androidx.room.runtime)
@@ -107,6 +122,9 @@ dependencies {
     // Coroutines
     implementation(libs.kotlinx.coroutines.android)
 
+    // Scheduled background scans
+    implementation(libs.androidx.work.runtime)
+
     // CameraX for intruder selfie
     implementation("androidx.camera:camera-core:1.3.1")
     implementation("androidx.camera:camera-camera2:1.3.1")
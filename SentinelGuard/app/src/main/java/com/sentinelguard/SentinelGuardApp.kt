@@ -1,8 +1,12 @@
 package com.sentinelguard
 
 import android.app.Application
+import androidx.hilt.work.HiltWorkerFactory
+import androidx.work.Configuration
 import com.sentinelguard.crash.CrashHandler
 import com.sentinelguard.email.EmailCredentialInitializer
+import com.sentinelguard.scanner.SignatureBundleManager
+import com.sentinelguard.service.ScheduledScanWorker
 import dagger.hilt.android.HiltAndroidApp
 import javax.inject.Inject
 
@@ -19,13 +23,24 @@ import javax.inject.Inject
  * - All processing happens on-device
  */
 @HiltAndroidApp
-class SentinelGuardApp : Application() {
+class SentinelGuardApp : Application(), Configuration.Provider {
 
     @Inject
     lateinit var emailCredentialInitializer: EmailCredentialInitializer
     
     @Inject
     lateinit var crashHandler: CrashHandler
+    
+    @Inject
+    lateinit var signatureBundleManager: SignatureBundleManager
+    
+    @Inject
+    lateinit var workerFactory: HiltWorkerFactory
+    
+    override val workManagerConfiguration: Configuration
+        get() = Configuration.Builder()
+            .setWorkerFactory(workerFactory)
+            .build()
 
     override fun onCreate() {
         super.onCreate()
@@ -38,5 +53,11 @@ class SentinelGuardApp : Application() {
         
         // Initialize email credentials (encrypted storage)
         emailCredentialInitializer.initializeIfNeeded()
+        
+        // Load downloaded malware signatures in the background
+        signatureBundleManager.initialize()
+        
+        // Daily background scan while charging and idle
+        ScheduledScanWorker.schedule(this)
     }
 }
@@ -3,6 +3,8 @@ package com.sentinelguard.data.database
 import androidx.room.Database
 import androidx.room.RoomDatabase
 import androidx.room.TypeConverters
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 import com.sentinelguard.data.database.dao.*
 import com.sentinelguard.data.database.entities.*
 
@@ -10,6 +12,10 @@ import com.sentinelguard.data.database.entities.*
  * Main Room database for SentinelGuard.
  * 
  * Contains all security-related data stored locally.
+ *
+ * Schema changes that only add tables or indices ship with a [Migration]
+ * so that upgrading keeps the user's learned baselines and history;
+ * destructive fallback is reserved for paths without one.
  */
 @Database(
     entities = [
@@ -29,9 +35,14 @@ import com.sentinelguard.data.database.entities.*
         // Cell tower intelligence
         CellTowerCacheEntity::class,
         CellTowerHistoryEntity::class,
-        CellTowerIncidentEntity::class
+        CellTowerIncidentEntity::class,
+        // Scanner caches
+        AppVerdictEntity::class,
+        FileHashEntity::class,
+        DeepScanCheckpointEntity::class,
+        AppFeatureEntity::class
     ],
-    version = 4,
+    version = 11,
     exportSchema = true
 )
 @TypeConverters(Converters::class)
@@ -54,4 +65,68 @@ abstract class AppDatabase : RoomDatabase() {
     
     // Cell tower intelligence
     abstract fun cellTowerDao(): CellTowerDao
+    
+    // Scanner caches
+    abstract fun appVerdictDao(): AppVerdictDao
+    abstract fun fileHashDao(): FileHashDao
+    abstract fun deepScanCheckpointDao(): DeepScanCheckpointDao
+    abstract fun appFeatureDao(): AppFeatureDao
+
+    companion object {
+        /** 4 → 5: app verdict cache. */
+        val MIGRATION_4_5 = object : Migration(4, 5) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `app_verdicts` (`packageName` TEXT NOT NULL, `versionCode` INTEGER NOT NULL, `lastUpdateTime` INTEGER NOT NULL, `signingDigest` TEXT NOT NULL, `rulesVersion` INTEGER NOT NULL, `threatsJson` TEXT NOT NULL, `analyzedAt` INTEGER NOT NULL, PRIMARY KEY(`packageName`))")
+            }
+        }
+
+        /** 5 → 6: file hash cache. */
+        val MIGRATION_5_6 = object : Migration(5, 6) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `file_hashes` (`path` TEXT NOT NULL, `size` INTEGER NOT NULL, `mtime` INTEGER NOT NULL, `inode` INTEGER NOT NULL, `sha256` TEXT NOT NULL, `lastAccessed` INTEGER NOT NULL, PRIMARY KEY(`path`))")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_file_hashes_lastAccessed` ON `file_hashes` (`lastAccessed`)")
+            }
+        }
+
+        /**
+         * 6 → 7: app verdicts record the signature version. Cached verdicts
+         * are disposable, so the table is recreated rather than backfilled.
+         */
+        val MIGRATION_6_7 = object : Migration(6, 7) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("DROP TABLE IF EXISTS `app_verdicts`")
+                db.execSQL("CREATE TABLE IF NOT EXISTS `app_verdicts` (`packageName` TEXT NOT NULL, `versionCode` INTEGER NOT NULL, `lastUpdateTime` INTEGER NOT NULL, `signingDigest` TEXT NOT NULL, `rulesVersion` INTEGER NOT NULL, `signatureVersion` INTEGER NOT NULL, `threatsJson` TEXT NOT NULL, `analyzedAt` INTEGER NOT NULL, PRIMARY KEY(`packageName`))")
+            }
+        }
+
+        /** 7 → 8: deep scan checkpoint. */
+        val MIGRATION_7_8 = object : Migration(7, 8) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `deep_scan_checkpoint` (`id` INTEGER NOT NULL, `startedAt` INTEGER NOT NULL, `updatedAt` INTEGER NOT NULL, `state` TEXT NOT NULL, PRIMARY KEY(`id`))")
+            }
+        }
+
+        /** 8 → 9: APK feature vector cache. */
+        val MIGRATION_8_9 = object : Migration(8, 9) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `app_features` (`digest` TEXT NOT NULL, `extractorVersion` INTEGER NOT NULL, `features` BLOB NOT NULL, `lastAccessed` INTEGER NOT NULL, PRIMARY KEY(`digest`))")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_app_features_lastAccessed` ON `app_features` (`lastAccessed`)")
+            }
+        }
+
+        /** 9 → 10: index for reading unprocessed signals. */
+        val MIGRATION_9_10 = object : Migration(9, 10) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_security_signals_processed` ON `security_signals` (`processed`)")
+            }
+        }
+
+        /** 10 → 11: app verdicts record rules and heuristic versions separately. */
+        val MIGRATION_10_11 = object : Migration(10, 11) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("DROP TABLE IF EXISTS `app_verdicts`")
+                db.execSQL("CREATE TABLE IF NOT EXISTS `app_verdicts` (`packageName` TEXT NOT NULL, `versionCode` INTEGER NOT NULL, `lastUpdateTime` INTEGER NOT NULL, `signingDigest` TEXT NOT NULL, `rulesVersion` INTEGER NOT NULL, `heuristicVersion` INTEGER NOT NULL, `signatureVersion` INTEGER NOT NULL, `threatsJson` TEXT NOT NULL, `analyzedAt` INTEGER NOT NULL, PRIMARY KEY(`packageName`))")
+            }
+        }
+    }
 }
@@ -0,0 +1,24 @@
+package com.sentinelguard.data.database.dao
+
+import androidx.room.*
+import com.sentinelguard.data.database.entities.AppFeatureEntity
+
+@Dao
+interface AppFeatureDao {
+    
+    @Query("SELECT * FROM app_features ORDER BY lastAccessed DESC LIMIT :limit")
+    suspend fun getMostRecent(limit: Int): List<AppFeatureEntity>
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertAll(entries: List<AppFeatureEntity>)
+    
+    @Query("""
+        DELETE FROM app_features WHERE digest NOT IN (
+            SELECT digest FROM app_features ORDER BY lastAccessed DESC LIMIT :keep
+        )
+    """)
+    suspend fun trimTo(keep: Int)
+    
+    @Query("DELETE FROM app_features")
+    suspend fun clear()
+}
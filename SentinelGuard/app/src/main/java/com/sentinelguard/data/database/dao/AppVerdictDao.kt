@@ -0,0 +1,26 @@
+package com.sentinelguard.data.database.dao
+
+import androidx.room.*
+import com.sentinelguard.data.database.entities.AppVerdictEntity
+
+@Dao
+interface AppVerdictDao {
+    
+    @Query("SELECT * FROM app_verdicts")
+    suspend fun getAll(): List<AppVerdictEntity>
+    
+    @Query("SELECT * FROM app_verdicts WHERE packageName = :packageName LIMIT 1")
+    suspend fun get(packageName: String): AppVerdictEntity?
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertAll(verdicts: List<AppVerdictEntity>)
+    
+    @Query("DELETE FROM app_verdicts WHERE packageName = :packageName")
+    suspend fun delete(packageName: String)
+    
+    @Delete
+    suspend fun deleteAll(verdicts: List<AppVerdictEntity>)
+    
+    @Query("DELETE FROM app_verdicts")
+    suspend fun clear()
+}
@@ -0,0 +1,17 @@
+package com.sentinelguard.data.database.dao
+
+import androidx.room.*
+import com.sentinelguard.data.database.entities.DeepScanCheckpointEntity
+
+@Dao
+interface DeepScanCheckpointDao {
+    
+    @Query("SELECT * FROM deep_scan_checkpoint LIMIT 1")
+    suspend fun get(): DeepScanCheckpointEntity?
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsert(checkpoint: DeepScanCheckpointEntity)
+    
+    @Query("DELETE FROM deep_scan_checkpoint")
+    suspend fun clear()
+}
@@ -0,0 +1,27 @@
+package com.sentinelguard.data.database.dao
+
+import androidx.room.*
+import com.sentinelguard.data.database.entities.FileHashEntity
+
+@Dao
+interface FileHashDao {
+    
+    @Query("SELECT * FROM file_hashes ORDER BY lastAccessed DESC LIMIT :limit")
+    suspend fun getMostRecent(limit: Int): List<FileHashEntity>
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertAll(entries: List<FileHashEntity>)
+    
+    @Query("""
+        DELETE FROM file_hashes WHERE path NOT IN (
+            SELECT path FROM file_hashes ORDER BY lastAccessed DESC LIMIT :keep
+        )
+    """)
+    suspend fun trimTo(keep: Int)
+    
+    @Query("SELECT COUNT(*) FROM file_hashes")
+    suspend fun count(): Int
+    
+    @Query("DELETE FROM file_hashes")
+    suspend fun clear()
+}
@@ -47,6 +47,15 @@ interface SecuritySignalDao {
     @Query("SELECT * FROM security_signals WHERE processed = 0 ORDER BY timestamp ASC")
     suspend fun getUnprocessed(): List<SecuritySignalEntity>
 
+    @Query("SELECT * FROM security_signals WHERE processed = 0 ORDER BY id ASC LIMIT :limit")
+    suspend fun getUnprocessedBatch(limit: Int): List<SecuritySignalEntity>
+
+    @Query("SELECT * FROM security_signals WHERE id > :afterId ORDER BY id ASC LIMIT :limit")
+    suspend fun getAfterId(afterId: Long, limit: Int): List<SecuritySignalEntity>
+
+    @Query("SELECT MAX(id) FROM security_signals")
+    suspend fun getMaxId(): Long?
+
     @Query("UPDATE security_signals SET processed = 1 WHERE id IN (:ids)")
     suspend fun markProcessed(ids: List<Long>)
 
@@ -0,0 +1,21 @@
+package com.sentinelguard.data.database.entities
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * Cached feature vector of an APK, keyed by the SHA-256 of the file.
+ *
+ * Valid only while [extractorVersion] matches the current extractor.
+ */
+@Entity(
+    tableName = "app_features",
+    indices = [Index(value = ["lastAccessed"])]
+)
+data class AppFeatureEntity(
+    @PrimaryKey val digest: String,  // SHA-256 of the APK file
+    val extractorVersion: Int,
+    val features: ByteArray,         // Little-endian floats in AppFeature order
+    val lastAccessed: Long           // For LRU eviction
+)
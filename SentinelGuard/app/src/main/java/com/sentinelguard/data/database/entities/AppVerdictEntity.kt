@@ -0,0 +1,23 @@
+package com.sentinelguard.data.database.entities
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Cached malware analysis verdict for an installed package.
+ *
+ * A verdict is reused only while every key column still matches the
+ * installed package and the current detection rules.
+ */
+@Entity(tableName = "app_verdicts")
+data class AppVerdictEntity(
+    @PrimaryKey val packageName: String,
+    val versionCode: Long,           // PackageInfo.longVersionCode
+    val lastUpdateTime: Long,        // PackageInfo.lastUpdateTime
+    val signingDigest: String,       // SHA-256 over signing certificates
+    val rulesVersion: Int,           // ThreatDatabase.VERSION at analysis time
+    val heuristicVersion: Int,       // HeuristicModel.VERSION at analysis time
+    val signatureVersion: Long,      // ThreatDatabase.signatureVersion at analysis time
+    val threatsJson: String,         // Serialized List<DetectedThreat>
+    val analyzedAt: Long
+)
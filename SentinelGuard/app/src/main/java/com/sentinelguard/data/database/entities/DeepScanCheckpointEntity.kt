@@ -0,0 +1,21 @@
+package com.sentinelguard.data.database.entities
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Progress of an interrupted deep scan.
+ *
+ * Single row; [state] is the JSON encoding written by DeepScanCheckpointStore.
+ */
+@Entity(tableName = "deep_scan_checkpoint")
+data class DeepScanCheckpointEntity(
+    @PrimaryKey val id: Int = SINGLETON_ID,
+    val startedAt: Long,
+    val updatedAt: Long,
+    val state: String
+) {
+    companion object {
+        const val SINGLETON_ID = 1
+    }
+}
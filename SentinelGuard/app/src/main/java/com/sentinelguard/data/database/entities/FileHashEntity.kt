@@ -0,0 +1,23 @@
+package com.sentinelguard.data.database.entities
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * Cached SHA-256 of a file on shared storage.
+ *
+ * Valid only while size, mtime and inode still match the file on disk.
+ */
+@Entity(
+    tableName = "file_hashes",
+    indices = [Index(value = ["lastAccessed"])]
+)
+data class FileHashEntity(
+    @PrimaryKey val path: String,    // Canonical path
+    val size: Long,
+    val mtime: Long,                 // File.lastModified()
+    val inode: Long,                 // -1 when unavailable
+    val sha256: String,
+    val lastAccessed: Long           // For LRU eviction
+)
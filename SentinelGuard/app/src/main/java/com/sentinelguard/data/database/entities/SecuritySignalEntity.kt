@@ -1,6 +1,7 @@
 package com.sentinelguard.data.database.entities
 
 import androidx.room.Entity
+import androidx.room.Index
 import androidx.room.PrimaryKey
 
 /**
@@ -65,7 +66,10 @@ enum class SignalType {
  * Each signal represents a single security-relevant event.
  * These are aggregated to build behavioral baselines and calculate risk scores.
  */
-@Entity(tableName = "security_signals")
+@Entity(
+    tableName = "security_signals",
+    indices = [Index(value = ["processed"])]
+)
 data class SecuritySignalEntity(
     @PrimaryKey(autoGenerate = true)
     val id: Long = 0,
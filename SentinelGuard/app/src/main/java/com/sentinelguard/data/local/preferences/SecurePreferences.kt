@@ -41,6 +41,7 @@ class SecurePreferences(context: Context) {
         private const val KEY_LAST_BOOT_TIME = "last_boot_time"
         private const val KEY_LAST_LOCATION_LAT = "last_location_lat"
         private const val KEY_LAST_LOCATION_LNG = "last_location_lng"
+        private const val KEY_RISK_STATE = "risk_state"
         
         // Settings
         private const val KEY_DATA_RETENTION_DAYS = "data_retention_days"
@@ -142,6 +143,10 @@ class SecurePreferences(context: Context) {
         get() = Double.fromBits(prefs.getLong(KEY_LAST_LOCATION_LNG, 0.0.toRawBits()))
         set(value) = prefs.edit().putLong(KEY_LAST_LOCATION_LNG, value.toRawBits()).apply()
 
+    var riskStateSnapshot: String?
+        get() = prefs.getString(KEY_RISK_STATE, null)
+        set(value) = prefs.edit().putString(KEY_RISK_STATE, value).apply()
+
     // ============ Settings ============
     
     var dataRetentionDays: Int
@@ -1,5 +1,7 @@
 package com.sentinelguard.data.repository
 
+import androidx.room.withTransaction
+import com.sentinelguard.data.database.AppDatabase
 import com.sentinelguard.data.database.dao.*
 import com.sentinelguard.data.database.entities.*
 import com.sentinelguard.data.local.preferences.SecurePreferences
@@ -11,6 +13,7 @@ import com.sentinelguard.domain.model.RiskScore
 import com.sentinelguard.domain.model.SecuritySignal
 import com.sentinelguard.domain.model.User
 import com.sentinelguard.domain.repository.*
+import com.sentinelguard.security.signal.SignalBus
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.map
 import com.sentinelguard.domain.model.AlertStatus as DomainAlertStatus
@@ -117,7 +120,8 @@ class UserRepositoryImpl(
 // ============ Security Signal Repository ============
 
 class SecuritySignalRepositoryImpl(
-    private val dao: SecuritySignalDao
+    private val dao: SecuritySignalDao,
+    private val signalBus: SignalBus
 ) : SecuritySignalRepository {
 
     override suspend fun insert(signal: SecuritySignal) {
@@ -127,6 +131,7 @@ class SecuritySignalRepositoryImpl(
             metadata = signal.metadata,
             timestamp = signal.timestamp
         ))
+        signalBus.publish(signal.type, signal.timestamp)
     }
 
     override suspend fun insertAll(signals: List<SecuritySignal>) {
@@ -138,6 +143,7 @@ class SecuritySignalRepositoryImpl(
                 timestamp = signal.timestamp
             )
         })
+        signals.forEach { signalBus.publish(it.type, it.timestamp) }
     }
 
     override fun observeRecent(limit: Int): Flow<List<SecuritySignal>> {
@@ -164,6 +170,18 @@ class SecuritySignalRepositoryImpl(
         return dao.getUnprocessed().map { it.toSignal() }
     }
 
+    override suspend fun getUnprocessed(limit: Int): List<SecuritySignal> {
+        return dao.getUnprocessedBatch(limit).map { it.toSignal() }
+    }
+
+    override suspend fun getAfter(afterId: Long, limit: Int): List<SecuritySignal> {
+        return dao.getAfterId(afterId, limit).map { it.toSignal() }
+    }
+
+    override suspend fun getLatestId(): Long {
+        return dao.getMaxId() ?: 0L
+    }
+
     override suspend fun markProcessed(id: String) {
         val longId = id.toLongOrNull() ?: return
         dao.markProcessed(listOf(longId))
@@ -193,7 +211,9 @@ class SecuritySignalRepositoryImpl(
 // ============ Baseline Repository ============
 
 class BaselineRepositoryImpl(
-    private val dao: BehavioralBaselineDao
+    private val database: AppDatabase,
+    private val dao: BehavioralBaselineDao,
+    private val signalDao: SecuritySignalDao
 ) : BaselineRepository {
 
     override suspend fun upsert(baseline: BehavioralBaseline) {
@@ -208,6 +228,13 @@ class BaselineRepositoryImpl(
         ))
     }
 
+    override suspend fun commitLearning(baselines: List<BehavioralBaseline>, signalIds: List<String>) {
+        database.withTransaction {
+            baselines.forEach { upsert(it) }
+            signalDao.markProcessed(signalIds.mapNotNull { it.toLongOrNull() })
+        }
+    }
+
     override suspend fun getByType(type: DomainBaselineMetricType): BehavioralBaseline? {
         return dao.getByType(type.toEntity())?.toBaseline()
     }
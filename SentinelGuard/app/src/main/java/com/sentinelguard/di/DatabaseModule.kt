@@ -9,6 +9,7 @@ import com.sentinelguard.data.database.dao.*
 import com.sentinelguard.data.local.preferences.SecurePreferences
 import com.sentinelguard.data.repository.*
 import com.sentinelguard.domain.repository.*
+import com.sentinelguard.security.signal.SignalBus
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -61,6 +62,15 @@ object DatabaseModule {
             "sentinel_guard.db"
         )
             .openHelperFactory(factory)  // Enable SQLCipher encryption
+            .addMigrations(
+                AppDatabase.MIGRATION_4_5,
+                AppDatabase.MIGRATION_5_6,
+                AppDatabase.MIGRATION_6_7,
+                AppDatabase.MIGRATION_7_8,
+                AppDatabase.MIGRATION_8_9,
+                AppDatabase.MIGRATION_9_10,
+                AppDatabase.MIGRATION_10_11
+            )
             .fallbackToDestructiveMigration()
             .build()
     }
@@ -107,6 +117,18 @@ object DatabaseModule {
     @Provides
     fun provideCellTowerDao(database: AppDatabase): CellTowerDao = database.cellTowerDao()
 
+    @Provides
+    fun provideAppVerdictDao(database: AppDatabase): AppVerdictDao = database.appVerdictDao()
+
+    @Provides
+    fun provideFileHashDao(database: AppDatabase): FileHashDao = database.fileHashDao()
+
+    @Provides
+    fun provideDeepScanCheckpointDao(database: AppDatabase): DeepScanCheckpointDao = database.deepScanCheckpointDao()
+
+    @Provides
+    fun provideAppFeatureDao(database: AppDatabase): AppFeatureDao = database.appFeatureDao()
+
     // ============ Repositories ============
 
     @Provides
@@ -121,17 +143,20 @@ object DatabaseModule {
     @Provides
     @Singleton
     fun provideSecuritySignalRepository(
-        dao: SecuritySignalDao
+        dao: SecuritySignalDao,
+        signalBus: SignalBus
     ): SecuritySignalRepository {
-        return SecuritySignalRepositoryImpl(dao)
+        return SecuritySignalRepositoryImpl(dao, signalBus)
     }
 
     @Provides
     @Singleton
     fun provideBaselineRepository(
-        dao: BehavioralBaselineDao
+        database: AppDatabase,
+        dao: BehavioralBaselineDao,
+        signalDao: SecuritySignalDao
     ): BaselineRepository {
-        return BaselineRepositoryImpl(dao)
+        return BaselineRepositoryImpl(database, dao, signalDao)
     }
 
     @Provides
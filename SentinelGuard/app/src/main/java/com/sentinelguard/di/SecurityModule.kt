@@ -11,7 +11,9 @@ import com.sentinelguard.domain.repository.RiskScoreRepository
 import com.sentinelguard.domain.repository.SecuritySignalRepository
 import com.sentinelguard.security.baseline.BaselineEngine
 import com.sentinelguard.security.collector.SignalCollector
+import com.sentinelguard.security.collector.detectors.DebuggerDetector
 import com.sentinelguard.security.risk.RiskScoringEngine
+import com.sentinelguard.security.signal.SignalBus
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -48,9 +50,11 @@ object SecurityModule {
         @ApplicationContext context: Context,
         securitySignalDao: SecuritySignalDao,
         securePrefsManager: SecurePreferencesManager,
-        fusedLocationClient: FusedLocationProviderClient
+        fusedLocationClient: FusedLocationProviderClient,
+        signalBus: SignalBus,
+        debuggerDetector: DebuggerDetector
     ): SignalCollector {
-        return SignalCollector(context, securitySignalDao, securePrefsManager, fusedLocationClient)
+        return SignalCollector(context, securitySignalDao, securePrefsManager, fusedLocationClient, signalBus, debuggerDetector)
     }
 
     @Provides
@@ -36,6 +36,17 @@ interface SecuritySignalRepository {
     suspend fun getByTypeSince(type: SignalType, since: Long): List<SecuritySignal>
     suspend fun getInRange(startTime: Long, endTime: Long): List<SecuritySignal>
     suspend fun getUnprocessed(): List<SecuritySignal>
+    suspend fun getUnprocessed(limit: Int): List<SecuritySignal>
+
+    /**
+     * Signals stored after the one with id [afterId], oldest first.
+     */
+    suspend fun getAfter(afterId: Long, limit: Int): List<SecuritySignal>
+
+    /**
+     * Id of the newest stored signal, 0 if there is none.
+     */
+    suspend fun getLatestId(): Long
     suspend fun markProcessed(id: String)
     suspend fun deleteOlderThan(timestamp: Long): Int
     suspend fun deleteAll()
@@ -49,6 +60,12 @@ interface BaselineRepository {
     suspend fun getByType(type: BaselineMetricType): BehavioralBaseline?
     suspend fun getAllLearningComplete(): List<BehavioralBaseline>
     suspend fun getAverageConfidence(): Double
+
+    /**
+     * Saves [baselines] and marks the signals they were learned from as
+     * processed, in one transaction.
+     */
+    suspend fun commitLearning(baselines: List<BehavioralBaseline>, signalIds: List<String>)
     suspend fun deleteAll()
 }
 
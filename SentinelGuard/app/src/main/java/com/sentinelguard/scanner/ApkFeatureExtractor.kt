@@ -0,0 +1,91 @@
+package com.sentinelguard.scanner
+
+import java.io.InputStream
+import java.nio.channels.FileChannel
+
+/**
+ * ApkFeatureExtractor: Fixed-Length Feature Vector for an APK
+ *
+ * Streams every classes*.dex through [DexFeatureReader] and the compiled
+ * manifest through [BinaryManifestReader], one entry at a time out of the
+ * channel the [ApkStructure] was read from, and folds them with the
+ * archive layout into an [AppFeatureVector].
+ *
+ * An entry that cannot be parsed contributes nothing; the vector is
+ * still built from the rest.
+ */
+object ApkFeatureExtractor {
+
+    /**
+     * Bump whenever features or their encoding change so cached vectors
+     * are extracted again
+     */
+    const val VERSION = 1
+
+    private const val MANIFEST = "AndroidManifest.xml"
+    private const val MAX_DEX_FILES = 64
+    private const val FAMILY_REFS_CAP = 20
+    private const val COMPONENTS_CAP = 20
+    private const val HIDDEN_CODE_CAP = 3
+    private const val EXTRA_DEX_CAP = 8
+
+    private val hiddenCodeExtensions = listOf(".dex", ".jar", ".apk", ".odex")
+
+    fun extract(channel: FileChannel, structure: ApkStructure): AppFeatureVector {
+        val values = FloatArray(AppFeature.entries.size)
+        fun set(feature: AppFeature, value: Float) {
+            values[feature.ordinal] = value
+        }
+
+        // DEX code
+        val familyRefs = mutableMapOf<AppFeature, Int>()
+        var definedClasses = 0
+        var shortNamedClasses = 0
+        structure.entries
+            .filter { ApkStructureAnalyzer.isDexEntry(it.name) }
+            .take(MAX_DEX_FILES)
+            .forEach { entry ->
+                val dex = readEntry(channel, entry, DexFeatureReader::read) ?: return@forEach
+                dex.familyRefs.forEach { (family, count) -> familyRefs[family] = (familyRefs[family] ?: 0) + count }
+                definedClasses += dex.definedClasses
+                shortNamedClasses += dex.shortNamedClasses
+            }
+        familyRefs.forEach { (family, count) -> set(family, AppFeatureVector.saturate(count, FAMILY_REFS_CAP)) }
+        if (definedClasses > 0) {
+            set(AppFeature.SHORT_CLASS_NAMES, shortNamedClasses.toFloat() / definedClasses)
+        }
+
+        // Archive layout
+        val hiddenCode = structure.entries.count { entry ->
+            !ApkStructureAnalyzer.isDexEntry(entry.name) && !entry.name.startsWith("lib/") &&
+                hiddenCodeExtensions.any { entry.name.endsWith(it, ignoreCase = true) }
+        }
+        set(AppFeature.HIDDEN_DEX, AppFeatureVector.saturate(hiddenCode, HIDDEN_CODE_CAP))
+        set(AppFeature.NATIVE_CODE, if (structure.nativeAbis.isNotEmpty()) 1f else 0f)
+        set(AppFeature.MULTIDEX, AppFeatureVector.saturate(structure.dexCount - 1, EXTRA_DEX_CAP))
+
+        // Manifest
+        val manifest = structure.entries.firstOrNull { it.name == MANIFEST }
+            ?.let { readEntry(channel, it, BinaryManifestReader::read) }
+        if (manifest != null) {
+            set(AppFeature.EXPORTED_COMPONENTS, AppFeatureVector.saturate(manifest.exportedComponents, COMPONENTS_CAP))
+            set(AppFeature.RECEIVERS, AppFeatureVector.saturate(manifest.receivers, COMPONENTS_CAP))
+            set(AppFeature.SERVICES, AppFeatureVector.saturate(manifest.services, COMPONENTS_CAP))
+            set(AppFeature.BOOT_RECEIVER, if (manifest.hasBootReceiver) 1f else 0f)
+            set(AppFeature.SMS_RECEIVER, if (manifest.hasSmsReceiver) 1f else 0f)
+            set(AppFeature.ACCESSIBILITY_SERVICE, if (manifest.hasAccessibilityService) 1f else 0f)
+            set(AppFeature.DEVICE_ADMIN_RECEIVER, if (manifest.hasDeviceAdminReceiver) 1f else 0f)
+            set(AppFeature.NOTIFICATION_LISTENER, if (manifest.hasNotificationListener) 1f else 0f)
+        }
+
+        return AppFeatureVector(values)
+    }
+
+    private fun <T> readEntry(channel: FileChannel, entry: ApkEntry, reader: (InputStream) -> T?): T? {
+        return try {
+            ApkStructureAnalyzer.openEntry(channel, entry)?.use(reader)
+        } catch (e: Exception) {
+            null // Truncated or malformed entry
+        }
+    }
+}
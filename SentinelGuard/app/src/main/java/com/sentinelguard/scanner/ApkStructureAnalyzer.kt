@@ -0,0 +1,390 @@
+package com.sentinelguard.scanner
+
+import android.util.Log
+import java.io.BufferedInputStream
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.zip.Inflater
+import java.util.zip.InflaterInputStream
+
+/**
+ * APK signature schemes found in the APK Signing Block, by block ID
+ */
+enum class ApkSigningScheme(val blockId: Int) {
+    V2(0x7109871a),
+    V3(0xf05368c0.toInt()),
+    V31(0x1b93ad61)
+}
+
+/**
+ * One central directory record
+ */
+data class ApkEntry(
+    val name: String,
+    val crc32: Long,
+    val compressedSize: Long,
+    val uncompressedSize: Long,
+    val method: Int,
+    val localHeaderOffset: Long,
+    val isEncrypted: Boolean
+)
+
+/**
+ * Location of the APK Signing Block and the schemes it carries
+ */
+data class ApkSigningBlock(
+    val offset: Long,
+    val size: Long,
+    val schemes: Set<ApkSigningScheme>
+)
+
+/**
+ * Structural problems of an APK, most serious first. [evadesVerification]
+ * marks archives crafted so that installers and scanners see different
+ * contents.
+ */
+enum class ApkStructureIssue(val description: String, val evadesVerification: Boolean) {
+    NOT_AN_ARCHIVE("APK is not a valid archive (corrupt or disguised file)", false),
+    DUPLICATE_ENTRIES("APK has duplicate entries", true),
+    ENCRYPTED_ENTRIES("APK contains encrypted entries", true),
+    NO_MANIFEST("APK has no AndroidManifest.xml", false),
+    UNSIGNED("APK is unsigned", false)
+}
+
+/**
+ * Structure of an APK read from its central directory
+ */
+data class ApkStructure(
+    val entries: List<ApkEntry>,
+    val centralDirectoryOffset: Long,
+    val centralDirectorySize: Long,
+    val signingBlock: ApkSigningBlock?
+) {
+    private val names: List<String> get() = entries.map { it.name }
+
+    val hasManifest: Boolean get() = entries.any { it.name == "AndroidManifest.xml" }
+
+    val dexCount: Int get() = entries.count { ApkStructureAnalyzer.isDexEntry(it.name) }
+
+    /**
+     * ABIs with native libraries under lib/<abi>/
+     */
+    val nativeAbis: Set<String>
+        get() = entries.mapNotNullTo(sortedSetOf()) { entry ->
+            entry.name.takeIf { it.startsWith("lib/") && it.endsWith(".so") }
+                ?.split('/')?.getOrNull(1)
+        }
+
+    /**
+     * JAR (v1) signature files under META-INF/
+     */
+    val hasJarSignature: Boolean
+        get() = entries.any {
+            it.name.startsWith("META-INF/") &&
+                (it.name.endsWith(".RSA") || it.name.endsWith(".DSA") || it.name.endsWith(".EC"))
+        }
+
+    val isSigned: Boolean get() = signingBlock?.schemes?.isNotEmpty() == true || hasJarSignature
+
+    /**
+     * Names present more than once; installers and verifiers may pick
+     * different copies
+     */
+    val duplicateEntries: Set<String>
+        get() = names.groupingBy { it }.eachCount().filterValues { it > 1 }.keys
+
+    val hasEncryptedEntries: Boolean get() = entries.any { it.isEncrypted }
+
+    /**
+     * Most serious structural issue, or null if there is none
+     */
+    fun issue(): ApkStructureIssue? = when {
+        duplicateEntries.isNotEmpty() -> ApkStructureIssue.DUPLICATE_ENTRIES
+        hasEncryptedEntries -> ApkStructureIssue.ENCRYPTED_ENTRIES
+        !hasManifest -> ApkStructureIssue.NO_MANIFEST
+        !isSigned -> ApkStructureIssue.UNSIGNED
+        else -> null
+    }
+}
+
+/**
+ * ApkStructureAnalyzer: Central Directory Parser for APKs
+ *
+ * Reads only the end of central directory record, the central directory
+ * and the APK Signing Block header, through memory-mapped regions of a
+ * [FileChannel]. Nothing is inflated, so the cost depends on the number
+ * of entries, not the size of the APK.
+ *
+ * [openEntry] streams a single entry's data from the same channel, for
+ * readers that need more than the directory.
+ */
+object ApkStructureAnalyzer {
+
+    private const val TAG = "ApkStructureAnalyzer"
+
+    private const val EOCD_SIGNATURE = 0x06054b50
+    private const val EOCD_MIN_SIZE = 22
+    private const val MAX_COMMENT_SIZE = 0xffff
+    private const val ZIP64_LOCATOR_SIGNATURE = 0x07064b50
+    private const val ZIP64_LOCATOR_SIZE = 20
+    private const val ZIP64_EOCD_SIGNATURE = 0x06064b50
+    private const val ZIP64_EOCD_SIZE = 56
+    private const val CD_SIGNATURE = 0x02014b50
+    private const val CD_HEADER_SIZE = 46
+    private const val LOCAL_HEADER_SIGNATURE = 0x04034b50
+    private const val LOCAL_HEADER_SIZE = 30
+
+    private const val SIGNING_BLOCK_MAGIC_LO = 0x20676953204b5041L  // "APK Sig "
+    private const val SIGNING_BLOCK_MAGIC_HI = 0x3234206b636f6c42L  // "Block 42"
+    private const val SIGNING_BLOCK_FOOTER_SIZE = 24
+
+    private const val MAX_CENTRAL_DIRECTORY_SIZE = 64L * 1024 * 1024
+    private const val MAX_ENTRIES = 200_000
+
+    private const val FLAG_ENCRYPTED = 0x1
+    private const val FLAG_UTF8 = 0x800
+
+    private const val METHOD_STORED = 0
+    private const val METHOD_DEFLATED = 8
+    private const val STREAM_BUFFER_SIZE = 8192
+
+    private const val UINT16_MAX = 0xffff
+    private const val UINT32_MAX = 0xffffffffL
+
+    fun isDexEntry(name: String): Boolean {
+        return name.startsWith("classes") && name.endsWith(".dex") && '/' !in name
+    }
+
+    /**
+     * Most serious structural issue of the APK at [file], or null
+     */
+    fun issueOf(file: File): ApkStructureIssue? {
+        val structure = analyze(file) ?: return ApkStructureIssue.NOT_AN_ARCHIVE
+        return structure.issue()
+    }
+
+    /**
+     * Structure of [file], or null if it is not a readable ZIP archive
+     */
+    fun analyze(file: File): ApkStructure? {
+        return try {
+            FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel -> analyze(channel) }
+        } catch (e: IOException) {
+            Log.w(TAG, "Cannot read ${file.path}: ${e.message}")
+            null
+        }
+    }
+
+    /**
+     * Structure of the archive open on [channel], or null if it is not a
+     * ZIP archive; I/O errors are left to the caller
+     */
+    fun analyze(channel: FileChannel): ApkStructure? {
+        val fileSize = channel.size()
+        if (fileSize < EOCD_MIN_SIZE) return null
+
+        // The EOCD is followed only by its comment (at most 64 KiB)
+        val tailSize = minOf(fileSize, (EOCD_MIN_SIZE + MAX_COMMENT_SIZE).toLong())
+        val tailStart = fileSize - tailSize
+        val tail = channel.map(FileChannel.MapMode.READ_ONLY, tailStart, tailSize).order(ByteOrder.LITTLE_ENDIAN)
+        val eocd = findEocd(tail) ?: return null
+
+        var entryCount = tail.getShort(eocd + 10).toInt() and UINT16_MAX
+        var cdSize = tail.getInt(eocd + 12).toLong() and UINT32_MAX
+        var cdOffset = tail.getInt(eocd + 16).toLong() and UINT32_MAX
+
+        if (entryCount == UINT16_MAX || cdSize == UINT32_MAX || cdOffset == UINT32_MAX) {
+            val zip64 = readZip64Eocd(channel, tailStart + eocd) ?: return null
+            entryCount = zip64.first
+            cdSize = zip64.second
+            cdOffset = zip64.third
+        }
+        if (cdOffset < 0 || cdSize !in 0..MAX_CENTRAL_DIRECTORY_SIZE || entryCount > MAX_ENTRIES ||
+            cdOffset + cdSize > tailStart + eocd
+        ) {
+            return null
+        }
+
+        val directory = channel.map(FileChannel.MapMode.READ_ONLY, cdOffset, cdSize).order(ByteOrder.LITTLE_ENDIAN)
+        val entries = readEntries(directory, entryCount) ?: return null
+
+        return ApkStructure(
+            entries = entries,
+            centralDirectoryOffset = cdOffset,
+            centralDirectorySize = cdSize,
+            signingBlock = readSigningBlock(channel, cdOffset)
+        )
+    }
+
+    /**
+     * Offset of the EOCD record within [tail], scanning back from the end
+     */
+    private fun findEocd(tail: ByteBuffer): Int? {
+        var position = tail.limit() - EOCD_MIN_SIZE
+        while (position >= 0) {
+            if (tail.getInt(position) == EOCD_SIGNATURE) {
+                val commentLength = tail.getShort(position + 20).toInt() and UINT16_MAX
+                if (position + EOCD_MIN_SIZE + commentLength == tail.limit()) return position
+            }
+            position--
+        }
+        return null
+    }
+
+    /**
+     * Entry count, central directory size and offset from the ZIP64 EOCD
+     */
+    private fun readZip64Eocd(channel: FileChannel, eocdOffset: Long): Triple<Int, Long, Long>? {
+        val locatorOffset = eocdOffset - ZIP64_LOCATOR_SIZE
+        if (locatorOffset < 0) return null
+        val locator = read(channel, locatorOffset, ZIP64_LOCATOR_SIZE) ?: return null
+        if (locator.getInt(0) != ZIP64_LOCATOR_SIGNATURE) return null
+
+        val recordOffset = locator.getLong(8)
+        if (recordOffset < 0 || recordOffset + ZIP64_EOCD_SIZE > locatorOffset) return null
+        val record = read(channel, recordOffset, ZIP64_EOCD_SIZE) ?: return null
+        if (record.getInt(0) != ZIP64_EOCD_SIGNATURE) return null
+
+        val entryCount = record.getLong(32)
+        if (entryCount !in 0..MAX_ENTRIES) return null
+        return Triple(entryCount.toInt(), record.getLong(40), record.getLong(48))
+    }
+
+    private fun readEntries(directory: ByteBuffer, entryCount: Int): List<ApkEntry>? {
+        val entries = ArrayList<ApkEntry>(entryCount)
+        var position = 0
+        repeat(entryCount) {
+            if (position + CD_HEADER_SIZE > directory.limit()) return null
+            if (directory.getInt(position) != CD_SIGNATURE) return null
+
+            val flags = directory.getShort(position + 8).toInt() and UINT16_MAX
+            val nameLength = directory.getShort(position + 28).toInt() and UINT16_MAX
+            val extraLength = directory.getShort(position + 30).toInt() and UINT16_MAX
+            val commentLength = directory.getShort(position + 32).toInt() and UINT16_MAX
+            val next = position + CD_HEADER_SIZE + nameLength + extraLength + commentLength
+            if (next > directory.limit()) return null
+
+            val nameBytes = ByteArray(nameLength)
+            directory.position(position + CD_HEADER_SIZE)
+            directory.get(nameBytes)
+            val charset = if ((flags and FLAG_UTF8) != 0) Charsets.UTF_8 else Charsets.ISO_8859_1
+
+            entries.add(ApkEntry(
+                name = String(nameBytes, charset),
+                crc32 = directory.getInt(position + 16).toLong() and UINT32_MAX,
+                compressedSize = directory.getInt(position + 20).toLong() and UINT32_MAX,
+                uncompressedSize = directory.getInt(position + 24).toLong() and UINT32_MAX,
+                method = directory.getShort(position + 10).toInt() and UINT16_MAX,
+                localHeaderOffset = directory.getInt(position + 42).toLong() and UINT32_MAX,
+                isEncrypted = (flags and FLAG_ENCRYPTED) != 0
+            ))
+            position = next
+        }
+        return entries
+    }
+
+    /**
+     * APK Signing Block immediately before the central directory:
+     * u64 size, ID-value pairs, u64 size, 16-byte magic
+     */
+    private fun readSigningBlock(channel: FileChannel, cdOffset: Long): ApkSigningBlock? {
+        if (cdOffset < SIGNING_BLOCK_FOOTER_SIZE) return null
+        val footer = read(channel, cdOffset - SIGNING_BLOCK_FOOTER_SIZE, SIGNING_BLOCK_FOOTER_SIZE) ?: return null
+        if (footer.getLong(8) != SIGNING_BLOCK_MAGIC_LO || footer.getLong(16) != SIGNING_BLOCK_MAGIC_HI) return null
+
+        val sizeInFooter = footer.getLong(0)
+        val blockOffset = cdOffset - sizeInFooter - 8
+        if (sizeInFooter < SIGNING_BLOCK_FOOTER_SIZE || blockOffset < 0 || sizeInFooter > MAX_CENTRAL_DIRECTORY_SIZE) {
+            return null
+        }
+
+        val block = channel.map(FileChannel.MapMode.READ_ONLY, blockOffset, sizeInFooter + 8)
+            .order(ByteOrder.LITTLE_ENDIAN)
+        if (block.getLong(0) != sizeInFooter) return null
+
+        val schemes = mutableSetOf<ApkSigningScheme>()
+        var position = 8
+        val pairsEnd = block.limit() - SIGNING_BLOCK_FOOTER_SIZE
+        while (position + 12 <= pairsEnd) {
+            val pairLength = block.getLong(position)
+            if (pairLength < 4 || pairLength > pairsEnd - position - 8) break
+            val id = block.getInt(position + 8)
+            ApkSigningScheme.entries.firstOrNull { it.blockId == id }?.let { schemes.add(it) }
+            position += 8 + pairLength.toInt()
+        }
+        return ApkSigningBlock(blockOffset, sizeInFooter + 8, schemes)
+    }
+
+    /**
+     * Stream of the uncompressed data of [entry], read through [channel]
+     * without changing its position. Null for encrypted entries and
+     * compression methods other than stored and deflated.
+     */
+    fun openEntry(channel: FileChannel, entry: ApkEntry): InputStream? {
+        if (entry.isEncrypted || entry.compressedSize == UINT32_MAX) return null
+        val header = read(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE) ?: return null
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) return null
+
+        // The local name and extra field may differ in length from the central directory's
+        val nameLength = header.getShort(26).toInt() and UINT16_MAX
+        val extraLength = header.getShort(28).toInt() and UINT16_MAX
+        val dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength
+        if (dataOffset + entry.compressedSize > channel.size()) return null
+
+        val raw = BufferedInputStream(ChannelRegionStream(channel, dataOffset, entry.compressedSize), STREAM_BUFFER_SIZE)
+        return when (entry.method) {
+            METHOD_STORED -> raw
+            METHOD_DEFLATED -> {
+                val inflater = Inflater(true)
+                object : InflaterInputStream(raw, inflater, STREAM_BUFFER_SIZE) {
+                    override fun close() {
+                        super.close()
+                        inflater.end()
+                    }
+                }
+            }
+            else -> null
+        }
+    }
+
+    /**
+     * Positional reads of [length] bytes from [position]; the channel's
+     * own position is left alone
+     */
+    private class ChannelRegionStream(
+        private val channel: FileChannel,
+        private var position: Long,
+        length: Long
+    ) : InputStream() {
+
+        private val end = position + length
+
+        override fun read(): Int {
+            val single = ByteArray(1)
+            return if (read(single, 0, 1) < 0) -1 else single[0].toInt() and 0xff
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (len == 0) return 0
+            val remaining = end - position
+            if (remaining <= 0) return -1
+            val count = channel.read(ByteBuffer.wrap(b, off, minOf(len.toLong(), remaining).toInt()), position)
+            if (count < 0) return -1
+            position += count
+            return count
+        }
+    }
+
+    private fun read(channel: FileChannel, offset: Long, size: Int): ByteBuffer? {
+        val buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN)
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) return null
+        }
+        return buffer
+    }
+}
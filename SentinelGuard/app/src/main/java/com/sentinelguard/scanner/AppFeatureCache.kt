@@ -0,0 +1,137 @@
+package com.sentinelguard.scanner
+
+import android.util.Log
+import com.sentinelguard.data.database.dao.AppFeatureDao
+import com.sentinelguard.data.database.entities.AppFeatureEntity
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * AppFeatureCache: Persistent APK Feature Vectors by Digest
+ *
+ * Keyed by the SHA-256 of the whole APK from [FileHashCache], so an APK
+ * whose contents were seen before (same app reinstalled, or a rules
+ * update re-analyzing every app) is never parsed again. Metadata the
+ * archive declares about itself, such as central directory CRCs, is not
+ * a key: it can be copied from a benign APK.
+ *
+ * Same lifecycle as [FileHashCache], which it loads and flushes too:
+ * [load] before a scan, in-memory LRU during it, [flush] after it.
+ */
+@Singleton
+class AppFeatureCache @Inject constructor(
+    private val appFeatureDao: AppFeatureDao,
+    private val hashCache: FileHashCache
+) {
+    companion object {
+        private const val TAG = "AppFeatureCache"
+        private const val MAX_ENTRIES = 2_000
+    }
+
+    private val loadMutex = Mutex()
+
+    @Volatile
+    private var loaded = false
+
+    // Access-ordered map: iteration order is least recently used first
+    private val entries = object : LinkedHashMap<String, AppFeatureEntity>(256, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, AppFeatureEntity>): Boolean {
+            return size > MAX_ENTRIES
+        }
+    }
+    private val dirty = HashMap<String, AppFeatureEntity>()
+
+    /**
+     * Load persisted vectors; no-op after the first successful call
+     */
+    suspend fun load() = loadMutex.withLock {
+        hashCache.load()
+        if (loaded) return@withLock
+        try {
+            val persisted = appFeatureDao.getMostRecent(MAX_ENTRIES)
+            synchronized(entries) {
+                persisted.asReversed().forEach { entries.putIfAbsent(it.digest, it) }
+            }
+            loaded = true
+            Log.d(TAG, "Loaded ${persisted.size} cached feature vectors")
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load feature cache", e)
+        }
+    }
+
+    /**
+     * Feature vector of the APK at [apk], extracted only when no vector
+     * for the same contents is cached. Null if it is not a valid archive.
+     */
+    fun getOrExtract(apk: File): AppFeatureVector? {
+        val digest = hashCache.sha256(apk) ?: return null
+        cached(digest)?.let { return it }
+        return try {
+            FileChannel.open(apk.toPath(), StandardOpenOption.READ).use { channel ->
+                val structure = ApkStructureAnalyzer.analyze(channel) ?: return null
+                ApkFeatureExtractor.extract(channel, structure).also { store(digest, it) }
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Cannot read ${apk.path}: ${e.message}")
+            null
+        }
+    }
+
+    /**
+     * Write new and touched vectors back, then evict beyond the size cap
+     */
+    suspend fun flush() {
+        hashCache.flush()
+        val pending = synchronized(entries) {
+            dirty.values.toList().also { dirty.clear() }
+        }
+        if (pending.isEmpty()) return
+
+        try {
+            appFeatureDao.insertAll(pending)
+            appFeatureDao.trimTo(MAX_ENTRIES)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to persist ${pending.size} feature vectors", e)
+        }
+    }
+
+    private fun cached(digest: String): AppFeatureVector? {
+        synchronized(entries) {
+            val entity = entries[digest] ?: return null
+            if (entity.extractorVersion != ApkFeatureExtractor.VERSION) return null
+            val vector = decode(entity.features) ?: return null
+            val touched = entity.copy(lastAccessed = System.currentTimeMillis())
+            entries[digest] = touched
+            dirty[digest] = touched
+            return vector
+        }
+    }
+
+    private fun store(digest: String, vector: AppFeatureVector) {
+        val entity = AppFeatureEntity(digest, ApkFeatureExtractor.VERSION, encode(vector), System.currentTimeMillis())
+        synchronized(entries) {
+            entries[digest] = entity
+            dirty[digest] = entity
+        }
+    }
+
+    private fun encode(vector: AppFeatureVector): ByteArray {
+        val buffer = ByteBuffer.allocate(vector.values.size * 4).order(ByteOrder.LITTLE_ENDIAN)
+        vector.values.forEach { buffer.putFloat(it) }
+        return buffer.array()
+    }
+
+    private fun decode(bytes: ByteArray): AppFeatureVector? {
+        if (bytes.size != AppFeature.entries.size * 4) return null
+        val buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+        return AppFeatureVector(FloatArray(AppFeature.entries.size) { buffer.getFloat() })
+    }
+}
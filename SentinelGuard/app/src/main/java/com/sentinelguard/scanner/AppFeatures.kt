@@ -0,0 +1,97 @@
+package com.sentinelguard.scanner
+
+import kotlin.math.exp
+import kotlin.math.ln
+
+/**
+ * Features extracted from an APK, in vector order.
+ *
+ * Every value is in [0, 1]: indicators are 0 or 1, counts are saturated
+ * on a log scale and ratios are used as is. [weight] is the feature's
+ * coefficient in [HeuristicModel].
+ */
+enum class AppFeature(val weight: Float) {
+    // API-call families referenced from DEX code
+    DYNAMIC_CODE_LOADING(1.2f),
+    REFLECTION(0.4f),
+    SHELL_EXECUTION(0.8f),
+    CRYPTO(0.3f),
+    SMS_API(1.0f),
+    TELEPHONY_API(0.4f),
+    DEVICE_ADMIN_API(0.9f),
+    ACCESSIBILITY_API(0.9f),
+    MEDIA_CAPTURE_API(0.5f),
+    LOCATION_API(0.3f),
+    PACKAGE_INSTALL_API(0.7f),
+
+    // Obfuscation and packing
+    SHORT_CLASS_NAMES(1.0f),
+    HIDDEN_DEX(1.5f),
+    NATIVE_CODE(0.2f),
+    MULTIDEX(0.0f),
+
+    // Manifest components
+    EXPORTED_COMPONENTS(0.3f),
+    RECEIVERS(0.3f),
+    SERVICES(0.1f),
+    BOOT_RECEIVER(0.6f),
+    SMS_RECEIVER(1.2f),
+    ACCESSIBILITY_SERVICE(1.0f),
+    DEVICE_ADMIN_RECEIVER(1.0f),
+    NOTIFICATION_LISTENER(0.6f)
+}
+
+/**
+ * Fixed-length feature vector of one APK, indexed by [AppFeature]
+ */
+class AppFeatureVector(val values: FloatArray) {
+
+    init {
+        require(values.size == AppFeature.entries.size) { "Expected ${AppFeature.entries.size} features" }
+    }
+
+    operator fun get(feature: AppFeature): Float = values[feature.ordinal]
+
+    /**
+     * Features that are set, strongest contribution first
+     */
+    fun activeFeatures(): List<AppFeature> {
+        return AppFeature.entries
+            .filter { values[it.ordinal] > 0f && it.weight > 0f }
+            .sortedByDescending { values[it.ordinal] * it.weight }
+    }
+
+    companion object {
+        /**
+         * Log-scale saturation of [count]: 0 for none, 1 at [cap] or more
+         */
+        fun saturate(count: Int, cap: Int): Float {
+            if (count <= 0) return 0f
+            return minOf(1f, (ln(1.0 + count) / ln(1.0 + cap)).toFloat())
+        }
+    }
+}
+
+/**
+ * HeuristicModel: Logistic Score over APK Features
+ *
+ * score = sigmoid(BIAS + sum of weight * value). The weights are a
+ * hand-tuned prior: no single family of API calls is enough to reach
+ * [MEDIUM_THRESHOLD]; it takes several of them together with
+ * packing or the manifest hooks typical of banking trojans and spyware.
+ */
+object HeuristicModel {
+
+    // Bump when the weights, bias or thresholds change; part of the verdict cache key
+    const val VERSION = 1
+
+    private const val BIAS = -4.0f
+    const val MEDIUM_THRESHOLD = 0.7f
+    const val HIGH_THRESHOLD = 0.9f
+
+    fun score(vector: AppFeatureVector): Float {
+        var logit = BIAS
+        AppFeature.entries.forEach { logit += it.weight * vector.values[it.ordinal] }
+        return (1.0 / (1.0 + exp(-logit.toDouble()))).toFloat()
+    }
+}
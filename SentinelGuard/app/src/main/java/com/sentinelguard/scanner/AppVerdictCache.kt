@@ -0,0 +1,169 @@
+package com.sentinelguard.scanner
+
+import android.content.pm.PackageInfo
+import android.util.Log
+import com.sentinelguard.data.database.dao.AppVerdictDao
+import com.sentinelguard.data.database.entities.AppVerdictEntity
+import org.json.JSONArray
+import org.json.JSONObject
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * AppVerdictCache: Persistent Per-Package Malware Verdicts
+ *
+ * A cached verdict is reused only when the package's version code,
+ * last update time and signing digest, plus the detection rules, heuristic
+ * model and signature bundle versions, all match. Only new or changed packages are analyzed again.
+ */
+@Singleton
+class AppVerdictCache @Inject constructor(
+    private val appVerdictDao: AppVerdictDao
+) {
+    companion object {
+        private const val TAG = "AppVerdictCache"
+    }
+    
+    /**
+     * Verdicts for a single scan. Lookups are served from memory;
+     * new verdicts are written back in one batch by [commit].
+     */
+    class Session internal constructor(
+        private val snapshot: InstalledPackageSnapshot,
+        private val cached: Map<String, AppVerdictEntity>
+    ) {
+        // Pinned at open; a bundle swapped in mid-scan only makes verdicts stale
+        private val signatureVersion = ThreatDatabase.signatureVersion
+        
+        internal val updated = ConcurrentHashMap<String, AppVerdictEntity>()
+        internal val stale: List<AppVerdictEntity>
+            get() = cached.values.filter { !snapshot.isInstalled(it.packageName) }
+        
+        @Volatile
+        var hits = 0
+            private set
+        
+        /**
+         * Cached threats for [packageInfo], or null if it must be analyzed
+         */
+        fun lookup(packageInfo: PackageInfo): List<DetectedThreat>? {
+            val entity = cached[packageInfo.packageName] ?: return null
+            if (entity.versionCode != snapshot.versionCodeOf(packageInfo) ||
+                entity.lastUpdateTime != packageInfo.lastUpdateTime ||
+                entity.signingDigest != snapshot.signingDigestOf(packageInfo) ||
+                entity.rulesVersion != ThreatDatabase.VERSION ||
+                entity.heuristicVersion != HeuristicModel.VERSION ||
+                entity.signatureVersion != signatureVersion
+            ) {
+                return null
+            }
+            return decodeThreats(entity.threatsJson)?.also { hits++ }
+        }
+        
+        fun record(packageInfo: PackageInfo, threats: List<DetectedThreat>) {
+            updated[packageInfo.packageName] = AppVerdictEntity(
+                packageName = packageInfo.packageName,
+                versionCode = snapshot.versionCodeOf(packageInfo),
+                lastUpdateTime = packageInfo.lastUpdateTime,
+                signingDigest = snapshot.signingDigestOf(packageInfo),
+                rulesVersion = ThreatDatabase.VERSION,
+                heuristicVersion = HeuristicModel.VERSION,
+                signatureVersion = signatureVersion,
+                threatsJson = encodeThreats(threats),
+                analyzedAt = System.currentTimeMillis()
+            )
+        }
+    }
+    
+    /**
+     * Start a scan session. With [forceRescan] no cached verdict is used.
+     */
+    suspend fun open(snapshot: InstalledPackageSnapshot, forceRescan: Boolean = false): Session {
+        val cached = if (forceRescan) emptyMap() else try {
+            appVerdictDao.getAll().associateBy { it.packageName }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load cached verdicts", e)
+            emptyMap()
+        }
+        return Session(snapshot, cached)
+    }
+    
+    /**
+     * Start a session covering only [packageName], reading just its verdict
+     */
+    suspend fun openFor(snapshot: InstalledPackageSnapshot, packageName: String): Session {
+        val cached = try {
+            listOfNotNull(appVerdictDao.get(packageName)).associateBy { it.packageName }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load cached verdict for $packageName", e)
+            emptyMap()
+        }
+        return Session(snapshot, cached)
+    }
+    
+    /**
+     * Persist new verdicts and drop verdicts of uninstalled packages
+     */
+    suspend fun commit(session: Session) {
+        try {
+            if (session.updated.isNotEmpty()) {
+                appVerdictDao.insertAll(session.updated.values.toList())
+            }
+            val stale = session.stale
+            if (stale.isNotEmpty()) {
+                appVerdictDao.deleteAll(stale)
+            }
+            Log.d(TAG, "Verdicts reused: ${session.hits}, analyzed: ${session.updated.size}, dropped: ${stale.size}")
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to persist verdicts", e)
+        }
+    }
+    
+    /**
+     * Forget the verdict of a single package
+     */
+    suspend fun invalidate(packageName: String) {
+        try {
+            appVerdictDao.delete(packageName)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to invalidate verdict for $packageName", e)
+        }
+    }
+}
+
+private fun encodeThreats(threats: List<DetectedThreat>): String {
+    val array = JSONArray()
+    threats.forEach { threat ->
+        array.put(JSONObject().apply {
+            put("packageName", threat.packageName)
+            put("appName", threat.appName)
+            put("type", threat.type.name)
+            put("severity", threat.severity.name)
+            put("description", threat.description)
+            threat.filePath?.let { put("filePath", it) }
+            put("canUninstall", threat.canUninstall)
+        })
+    }
+    return array.toString()
+}
+
+private fun decodeThreats(json: String): List<DetectedThreat>? {
+    return try {
+        val array = JSONArray(json)
+        List(array.length()) { i ->
+            val obj = array.getJSONObject(i)
+            DetectedThreat(
+                packageName = obj.getString("packageName"),
+                appName = obj.getString("appName"),
+                type = ThreatType.valueOf(obj.getString("type")),
+                severity = ThreatSeverity.valueOf(obj.getString("severity")),
+                description = obj.getString("description"),
+                filePath = if (obj.has("filePath")) obj.getString("filePath") else null,
+                canUninstall = obj.optBoolean("canUninstall", true)
+            )
+        }
+    } catch (e: Exception) {
+        null // Corrupt or outdated entry, re-analyze
+    }
+}
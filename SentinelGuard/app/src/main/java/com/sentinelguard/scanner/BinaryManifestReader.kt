@@ -0,0 +1,234 @@
+package com.sentinelguard.scanner
+
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Component counts and hooks declared in an AndroidManifest.xml
+ */
+data class ManifestFeatures(
+    val activities: Int = 0,
+    val services: Int = 0,
+    val receivers: Int = 0,
+    val providers: Int = 0,
+    val exportedComponents: Int = 0,
+    val hasBootReceiver: Boolean = false,
+    val hasSmsReceiver: Boolean = false,
+    val hasAccessibilityService: Boolean = false,
+    val hasDeviceAdminReceiver: Boolean = false,
+    val hasNotificationListener: Boolean = false
+)
+
+/**
+ * BinaryManifestReader: Streaming Reader for Compiled AndroidManifest.xml
+ *
+ * Walks the binary XML chunk by chunk. Only the string pool is held in
+ * memory; each element chunk is read, evaluated and dropped. Components
+ * with an intent filter and no android:exported attribute count as
+ * exported, as they are for apps targeting Android 11 and below.
+ */
+object BinaryManifestReader {
+
+    private const val RES_XML_TYPE = 0x0003
+    private const val RES_STRING_POOL_TYPE = 0x0001
+    private const val RES_XML_START_ELEMENT_TYPE = 0x0102
+    private const val RES_XML_END_ELEMENT_TYPE = 0x0103
+
+    private const val CHUNK_HEADER_SIZE = 8
+    private const val STRING_POOL_HEADER_SIZE = 28
+    private const val ELEMENT_MIN_SIZE = 24
+    private const val MAX_STRING_POOL_SIZE = 4 * 1024 * 1024
+    private const val MAX_ELEMENT_SIZE = 64 * 1024
+    private const val UTF8_FLAG = 0x100
+    private const val NO_INDEX = -1
+
+    private const val TYPE_STRING = 0x03
+    private const val TYPE_BOOLEAN = 0x12
+
+    private val componentTags = setOf("activity", "activity-alias", "service", "receiver", "provider")
+
+    private const val ACTION_BOOT_COMPLETED = "android.intent.action.BOOT_COMPLETED"
+    private val smsActions = setOf(
+        "android.provider.Telephony.SMS_RECEIVED",
+        "android.provider.Telephony.SMS_DELIVER"
+    )
+    private const val BIND_ACCESSIBILITY_SERVICE = "android.permission.BIND_ACCESSIBILITY_SERVICE"
+    private const val BIND_DEVICE_ADMIN = "android.permission.BIND_DEVICE_ADMIN"
+    private const val BIND_NOTIFICATION_LISTENER = "android.permission.BIND_NOTIFICATION_LISTENER_SERVICE"
+
+    /**
+     * Component being read, until its end tag
+     */
+    private class Component(val tag: String, val exported: Boolean?, val permission: String?) {
+        var hasIntentFilter = false
+    }
+
+    /**
+     * Features of the compiled manifest on [input], or null if it is not
+     * binary XML or a chunk is malformed or over the size limits
+     */
+    fun read(input: InputStream): ManifestFeatures? {
+        val xml = LittleEndianInput(input)
+        if (xml.u16() != RES_XML_TYPE) return null
+        val headerSize = xml.u16()
+        val documentSize = xml.s32().toUInt().toLong()
+        if (!xml.seek(headerSize.toLong())) return null
+
+        var strings: Array<String> = emptyArray()
+        var features = ManifestFeatures()
+        var component: Component? = null
+
+        while (xml.position + CHUNK_HEADER_SIZE <= documentSize) {
+            val chunkStart = xml.position
+            val type = xml.u16()
+            val chunkHeaderSize = xml.u16()
+            val size = xml.s32()
+            if (size < CHUNK_HEADER_SIZE) return null
+
+            when (type) {
+                RES_STRING_POOL_TYPE -> {
+                    if (size !in STRING_POOL_HEADER_SIZE..MAX_STRING_POOL_SIZE) return null
+                    strings = readStringPool(readChunk(xml, type, chunkHeaderSize, size)) ?: return null
+                }
+                RES_XML_START_ELEMENT_TYPE, RES_XML_END_ELEMENT_TYPE -> {
+                    if (size !in ELEMENT_MIN_SIZE..MAX_ELEMENT_SIZE) return null
+                    val chunk = readChunk(xml, type, chunkHeaderSize, size)
+                    val name = strings.getOrNull(chunk.getInt(20)) ?: ""
+
+                    if (type == RES_XML_END_ELEMENT_TYPE) {
+                        if (component != null && name == component.tag) {
+                            features = features.withComponent(component)
+                            component = null
+                        }
+                    } else {
+                        val attributes = readAttributes(chunk, strings)
+                        when {
+                            name in componentTags -> component = Component(
+                                tag = name,
+                                exported = booleanOf(attributes["exported"]),
+                                permission = attributes["permission"] as? String
+                            )
+                            name == "intent-filter" -> component?.hasIntentFilter = true
+                            name == "action" && component?.tag == "receiver" -> {
+                                val action = attributes["name"] as? String
+                                if (action == ACTION_BOOT_COMPLETED) features = features.copy(hasBootReceiver = true)
+                                if (action in smsActions) features = features.copy(hasSmsReceiver = true)
+                            }
+                        }
+                    }
+                }
+                else -> if (!xml.seek(chunkStart + size.toUInt().toLong())) return null
+            }
+        }
+        return features
+    }
+
+    private fun booleanOf(value: Any?): Boolean? {
+        return value as? Boolean ?: (value as? String)?.toBooleanStrictOrNull()
+    }
+
+    private fun ManifestFeatures.withComponent(component: Component): ManifestFeatures {
+        val exported = component.exported ?: component.hasIntentFilter
+        val counted = when (component.tag) {
+            "service" -> copy(
+                services = services + 1,
+                hasAccessibilityService = hasAccessibilityService || component.permission == BIND_ACCESSIBILITY_SERVICE,
+                hasNotificationListener = hasNotificationListener || component.permission == BIND_NOTIFICATION_LISTENER
+            )
+            "receiver" -> copy(
+                receivers = receivers + 1,
+                hasDeviceAdminReceiver = hasDeviceAdminReceiver || component.permission == BIND_DEVICE_ADMIN
+            )
+            "provider" -> copy(providers = providers + 1)
+            else -> copy(activities = activities + 1)
+        }
+        return if (exported) counted.copy(exportedComponents = exportedComponents + 1) else counted
+    }
+
+    /**
+     * Whole chunk, header included, whose first 8 bytes were just read
+     */
+    private fun readChunk(xml: LittleEndianInput, type: Int, headerSize: Int, size: Int): ByteBuffer {
+        val chunk = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN)
+        chunk.putShort(0, type.toShort())
+        chunk.putShort(2, headerSize.toShort())
+        chunk.putInt(4, size)
+        xml.readFully(chunk.array(), CHUNK_HEADER_SIZE, size - CHUNK_HEADER_SIZE)
+        return chunk
+    }
+
+    private fun readStringPool(chunk: ByteBuffer): Array<String>? {
+        val headerSize = chunk.getShort(2).toInt() and 0xffff
+        val count = chunk.getInt(8)
+        val utf8 = (chunk.getInt(16) and UTF8_FLAG) != 0
+        val stringsStart = chunk.getInt(20)
+        if (count < 0 || headerSize + count.toLong() * 4 > chunk.limit() || stringsStart !in 0..chunk.limit()) {
+            return null
+        }
+        return Array(count) { i ->
+            val start = stringsStart + chunk.getInt(headerSize + i * 4)
+            decodeString(chunk, start, utf8) ?: ""
+        }
+    }
+
+    private fun decodeString(chunk: ByteBuffer, start: Int, utf8: Boolean): String? {
+        val limit = chunk.limit()
+        if (start < 0 || start + 2 > limit) return null
+        return if (utf8) {
+            // UTF-16 length, then UTF-8 length; each one or two bytes
+            var position = start + if ((chunk.get(start).toInt() and 0x80) != 0) 2 else 1
+            if (position + 2 > limit) return null
+            val first = chunk.get(position).toInt() and 0xff
+            val length = if ((first and 0x80) != 0) {
+                ((first and 0x7f) shl 8) or (chunk.get(position + 1).toInt() and 0xff)
+            } else first
+            position += if ((first and 0x80) != 0) 2 else 1
+            if (position + length > limit) return null
+            String(chunk.array(), position, length, Charsets.UTF_8)
+        } else {
+            val first = chunk.getShort(start).toInt() and 0xffff
+            val length: Int
+            val position: Int
+            if ((first and 0x8000) != 0) {
+                if (start + 4 > limit) return null
+                length = ((first and 0x7fff) shl 16) or (chunk.getShort(start + 2).toInt() and 0xffff)
+                position = start + 4
+            } else {
+                length = first
+                position = start + 2
+            }
+            if (position + length.toLong() * 2 > limit) return null
+            String(chunk.array(), position, length * 2, Charsets.UTF_16LE)
+        }
+    }
+
+    /**
+     * Attribute values by name: String for strings, Boolean for booleans
+     */
+    private fun readAttributes(chunk: ByteBuffer, strings: Array<String>): Map<String, Any> {
+        if (chunk.limit() < 36) return emptyMap()
+        val start = 16 + (chunk.getShort(24).toInt() and 0xffff)
+        val attributeSize = chunk.getShort(26).toInt() and 0xffff
+        val count = chunk.getShort(28).toInt() and 0xffff
+        if (attributeSize < 20) return emptyMap()
+
+        val attributes = HashMap<String, Any>(count)
+        for (i in 0 until count) {
+            val offset = start + i * attributeSize
+            if (offset + 20 > chunk.limit()) break
+            val name = strings.getOrNull(chunk.getInt(offset + 4)) ?: continue
+            val rawValue = chunk.getInt(offset + 8)
+            val dataType = chunk.get(offset + 15).toInt() and 0xff
+            val data = chunk.getInt(offset + 16)
+            val value: Any? = when {
+                rawValue != NO_INDEX -> strings.getOrNull(rawValue)
+                dataType == TYPE_STRING -> strings.getOrNull(data)
+                dataType == TYPE_BOOLEAN -> data != 0
+                else -> null
+            }
+            if (value != null) attributes[name] = value
+        }
+        return attributes
+    }
+}
@@ -0,0 +1,163 @@
+package com.sentinelguard.scanner
+
+import android.util.Log
+import com.sentinelguard.data.database.dao.DeepScanCheckpointDao
+import com.sentinelguard.data.database.entities.DeepScanCheckpointEntity
+import org.json.JSONArray
+import org.json.JSONObject
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Saved progress of an interrupted deep scan
+ */
+data class DeepScanCheckpoint(
+    val startedAt: Long,
+    val fileProgress: FileScanCheckpoint?,
+    val fileResult: FileSystemScanner.FileScanResult?
+)
+
+/**
+ * DeepScanCheckpointStore: Persistence for [DeepScanCheckpoint]s
+ *
+ * Keeps at most one checkpoint. Checkpoints older than [MAX_AGE_MS] are
+ * discarded on load, since storage has likely changed too much for the
+ * recorded directories to be trusted.
+ */
+@Singleton
+class DeepScanCheckpointStore @Inject constructor(
+    private val checkpointDao: DeepScanCheckpointDao
+) {
+    companion object {
+        private const val TAG = "DeepScanCheckpointStore"
+        private const val MAX_AGE_MS = 24 * 60 * 60 * 1000L
+    }
+
+    /**
+     * The saved checkpoint, or null if there is none or it is too old
+     */
+    suspend fun load(): DeepScanCheckpoint? {
+        return try {
+            val entity = checkpointDao.get() ?: return null
+            if (System.currentTimeMillis() - entity.updatedAt > MAX_AGE_MS) {
+                checkpointDao.clear()
+                return null
+            }
+            decodeCheckpoint(entity.startedAt, entity.state)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load deep scan checkpoint", e)
+            null
+        }
+    }
+
+    suspend fun save(checkpoint: DeepScanCheckpoint) {
+        try {
+            checkpointDao.upsert(DeepScanCheckpointEntity(
+                startedAt = checkpoint.startedAt,
+                updatedAt = System.currentTimeMillis(),
+                state = encodeCheckpoint(checkpoint)
+            ))
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to save deep scan checkpoint", e)
+        }
+    }
+
+    suspend fun clear() {
+        try {
+            checkpointDao.clear()
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to clear deep scan checkpoint", e)
+        }
+    }
+}
+
+private fun encodeCheckpoint(checkpoint: DeepScanCheckpoint): String {
+    return JSONObject().apply {
+        checkpoint.fileProgress?.let { progress ->
+            put("fileProgress", JSONObject().apply {
+                put("directories", JSONObject().apply {
+                    progress.completedDirectories.forEach { (path, counts) ->
+                        put(path, JSONArray(listOf(counts.files, counts.directories)))
+                    }
+                })
+                put("suspiciousFiles", encodeSuspiciousFiles(progress.suspiciousFiles))
+            })
+        }
+        checkpoint.fileResult?.let { result ->
+            put("fileResult", JSONObject().apply {
+                put("totalFilesScanned", result.totalFilesScanned)
+                put("totalDirectoriesScanned", result.totalDirectoriesScanned)
+                put("suspiciousFiles", encodeSuspiciousFiles(result.suspiciousFiles))
+                put("apkFilesFound", result.apkFilesFound)
+                put("hiddenFilesFound", result.hiddenFilesFound)
+                put("recentlyModifiedCount", result.recentlyModifiedCount)
+                put("scanDurationMs", result.scanDurationMs)
+            })
+        }
+    }.toString()
+}
+
+private fun decodeCheckpoint(startedAt: Long, json: String): DeepScanCheckpoint? {
+    return try {
+        val obj = JSONObject(json)
+        val fileProgress = obj.optJSONObject("fileProgress")?.let { progress ->
+            val directories = progress.getJSONObject("directories")
+            FileScanCheckpoint(
+                completedDirectories = directories.keys().asSequence().associateWith { path ->
+                    val counts = directories.getJSONArray(path)
+                    ParallelFileWalker.SubtreeCounts(counts.getInt(0), counts.getInt(1))
+                },
+                suspiciousFiles = decodeSuspiciousFiles(progress.getJSONArray("suspiciousFiles"))
+            )
+        }
+        val fileResult = obj.optJSONObject("fileResult")?.let { result ->
+            FileSystemScanner.FileScanResult(
+                totalFilesScanned = result.getInt("totalFilesScanned"),
+                totalDirectoriesScanned = result.getInt("totalDirectoriesScanned"),
+                suspiciousFiles = decodeSuspiciousFiles(result.getJSONArray("suspiciousFiles")),
+                apkFilesFound = result.getInt("apkFilesFound"),
+                hiddenFilesFound = result.getInt("hiddenFilesFound"),
+                recentlyModifiedCount = result.getInt("recentlyModifiedCount"),
+                scanDurationMs = result.getLong("scanDurationMs")
+            )
+        }
+        DeepScanCheckpoint(
+            startedAt = startedAt,
+            fileProgress = fileProgress,
+            fileResult = fileResult
+        )
+    } catch (e: Exception) {
+        null // Corrupt or outdated checkpoint, start over
+    }
+}
+
+private fun encodeSuspiciousFiles(files: List<FileSystemScanner.SuspiciousFile>): JSONArray {
+    val array = JSONArray()
+    files.forEach { file ->
+        array.put(JSONObject().apply {
+            put("path", file.path)
+            put("name", file.name)
+            put("size", file.size)
+            put("reason", file.reason)
+            put("severity", file.severity.name)
+            put("lastModified", file.lastModified)
+            file.sha256Hash?.let { put("sha256Hash", it) }
+        })
+    }
+    return array
+}
+
+private fun decodeSuspiciousFiles(array: JSONArray): List<FileSystemScanner.SuspiciousFile> {
+    return List(array.length()) { i ->
+        val obj = array.getJSONObject(i)
+        FileSystemScanner.SuspiciousFile(
+            path = obj.getString("path"),
+            name = obj.getString("name"),
+            size = obj.getLong("size"),
+            reason = obj.getString("reason"),
+            severity = FileSystemScanner.FileThreatSeverity.valueOf(obj.getString("severity")),
+            lastModified = obj.getLong("lastModified"),
+            sha256Hash = if (obj.has("sha256Hash")) obj.getString("sha256Hash") else null
+        )
+    }
+}
@@ -5,13 +5,16 @@ import android.os.Build
 import android.util.Log
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.channelFlow
 import kotlinx.coroutines.flow.flowOn
-import kotlinx.coroutines.withContext
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import java.text.SimpleDateFormat
 import java.util.Date
 import java.util.Locale
+import java.util.concurrent.ConcurrentLinkedQueue
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -25,7 +28,15 @@ import javax.inject.Singleton
  * - NetworkSecurityScanner: WiFi/VPN/DNS checks
  * - PrivacyScanner: Permission audit
  * 
- * Produces comprehensive security report.
+ * Produces comprehensive security report. Scanner event streams are
+ * folded as they arrive, so findings reach the caller while the scan runs
+ * and no phase is re-run to build the report.
+ * 
+ * Progress is checkpointed through [DeepScanCheckpointStore] when the
+ * file phase completes and periodically during the file walk. An interrupted scan
+ * resumes from its checkpoint: a finished file phase is restored and an
+ * unfinished one skips the directories already walked. The other phases
+ * are cheap or served from the verdict cache, so they simply run again.
  */
 @Singleton
 class DeepScanEngine @Inject constructor(
@@ -34,12 +45,30 @@ class DeepScanEngine @Inject constructor(
     private val fileSystemScanner: FileSystemScanner,
     private val systemIntegrityScanner: SystemIntegrityScanner,
     private val networkSecurityScanner: NetworkSecurityScanner,
-    private val privacyScanner: PrivacyScanner
+    private val privacyScanner: PrivacyScanner,
+    private val snapshotProvider: InstalledPackageSnapshotProvider,
+    private val checkpointStore: DeepScanCheckpointStore
 ) {
     companion object {
         private const val TAG = "DeepScanEngine"
+        
+        // Upper bound on concurrently running phases
+        private const val MAX_PARALLEL_PHASES = 4
+        
+        // Per-phase timeouts
+        private const val SYSTEM_PHASE_TIMEOUT_MS = 60_000L
+        private const val APP_PHASE_TIMEOUT_MS = 5 * 60_000L
+        private const val FILE_PHASE_TIMEOUT_MS = 15 * 60_000L
+        private const val NETWORK_PHASE_TIMEOUT_MS = 30_000L
+        private const val PRIVACY_PHASE_TIMEOUT_MS = 2 * 60_000L
     }
     
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private val phaseDispatcher = Dispatchers.IO.limitedParallelism(MAX_PARALLEL_PHASES)
+    
+    @Volatile
+    private var lastResult: DeepScanResult? = null
+    
     /**
      * Deep scan result containing all scan data
      */
@@ -55,6 +84,9 @@ class DeepScanEngine @Inject constructor(
         val networkSecurityResult: NetworkSecurityScanner.NetworkSecurityResult?,
         val privacyScanResult: PrivacyScanner.PrivacyScanResult?,
         
+        // Every finding, in discovery order
+        val findings: List<ScanFinding>,
+        
         // Summary
         val overallRiskScore: Int,
         val riskLevel: OverallRiskLevel,
@@ -129,266 +161,224 @@ class DeepScanEngine @Inject constructor(
     
     /**
      * Perform comprehensive deep scan
+     *
+     * Emits progress, every finding as soon as a phase reports it, and
+     * finally the [DeepScanResult].
+     *
+     * Independent phases run concurrently through [ScanPhaseScheduler];
+     * privacy audit waits for app analysis so it reuses the labels already
+     * loaded into the shared [InstalledPackageSnapshot].
+     *
+     * With [resume], continues from the checkpoint of an interrupted scan
+     * if there is one; otherwise any checkpoint is dropped.
      */
-    fun performDeepScan(): Flow<DeepScanProgress> = flow {
+    fun performDeepScan(resume: Boolean = true): Flow<ScanEvent<DeepScanProgress, DeepScanResult>> = channelFlow {
         val startTime = System.currentTimeMillis()
+        val findings = ConcurrentLinkedQueue<ScanFinding>()
+        lastResult = null
         
-        var malwareResult: ScanResult? = null
-        var fileResult: FileSystemScanner.FileScanResult? = null
-        var systemResult: SystemIntegrityScanner.SystemIntegrityResult? = null
-        var networkResult: NetworkSecurityScanner.NetworkSecurityResult? = null
-        var privacyResult: PrivacyScanner.PrivacyScanResult? = null
+        val resumed = if (resume) checkpointStore.load() else null
+        if (resumed == null) checkpointStore.clear()
+        val checkpoint = CheckpointWriter(resumed ?: DeepScanCheckpoint(startTime, null, null))
         
-        emit(DeepScanProgress(
+        send(ScanEvent.Progress(DeepScanProgress(
             phase = DeepScanPhase.INITIALIZING,
             phaseProgress = 0f,
             overallProgress = 0f,
-            currentTask = "Preparing security scan...",
-            itemsProcessed = 0,
-            totalItems = 0
-        ))
-        
-        // Phase 1: System Integrity (10%)
-        emit(DeepScanProgress(
-            phase = DeepScanPhase.SYSTEM_INTEGRITY,
-            phaseProgress = 0f,
-            overallProgress = 0.02f,
-            currentTask = "Checking system integrity...",
-            itemsProcessed = 0,
-            totalItems = 11
-        ))
-        
-        try {
-            systemResult = systemIntegrityScanner.performFullScan()
-            Log.i(TAG, "System integrity scan complete. Risk: ${systemResult.overallRiskScore}")
-        } catch (e: Exception) {
-            Log.e(TAG, "System integrity scan failed", e)
-        }
-        
-        emit(DeepScanProgress(
-            phase = DeepScanPhase.SYSTEM_INTEGRITY,
-            phaseProgress = 1f,
-            overallProgress = 0.10f,
-            currentTask = "System integrity check complete",
-            itemsProcessed = 11,
-            totalItems = 11
-        ))
-        
-        // Phase 2: App Analysis (30%)
-        emit(DeepScanProgress(
-            phase = DeepScanPhase.APP_ANALYSIS,
-            phaseProgress = 0f,
-            overallProgress = 0.10f,
-            currentTask = "Analyzing installed apps...",
+            currentTask = if (resumed != null) "Resuming interrupted scan..." else "Preparing security scan...",
             itemsProcessed = 0,
             totalItems = 0
-        ))
-        
-        try {
-            var lastProgress: ScanProgress? = null
-            malwareScanner.performFullScan().collect { progress ->
-                lastProgress = progress
-                val phaseProgress = if (progress.totalCount > 0) {
-                    progress.scannedCount.toFloat() / progress.totalCount
-                } else 0f
-                
-                emit(DeepScanProgress(
-                    phase = DeepScanPhase.APP_ANALYSIS,
-                    phaseProgress = phaseProgress,
-                    overallProgress = 0.10f + (phaseProgress * 0.20f),
-                    currentTask = "Scanning: ${progress.currentItem}",
-                    itemsProcessed = progress.scannedCount,
-                    totalItems = progress.totalCount
-                ))
-            }
-            
-            // Get final result
-            malwareResult = malwareScanner.getFinalResult(flow { })
-            Log.i(TAG, "App scan complete. Threats: ${malwareResult.threats.size}")
-        } catch (e: Exception) {
-            Log.e(TAG, "App scan failed", e)
-        }
-        
-        emit(DeepScanProgress(
-            phase = DeepScanPhase.APP_ANALYSIS,
-            phaseProgress = 1f,
-            overallProgress = 0.30f,
-            currentTask = "App analysis complete",
-            itemsProcessed = malwareResult?.appsScanned ?: 0,
-            totalItems = malwareResult?.appsScanned ?: 0
-        ))
-        
-        // Phase 3: File System (30%)
-        if (fileSystemScanner.hasFullStorageAccess()) {
-            emit(DeepScanProgress(
-                phase = DeepScanPhase.FILE_SYSTEM,
-                phaseProgress = 0f,
-                overallProgress = 0.30f,
-                currentTask = "Scanning file system...",
-                itemsProcessed = 0,
-                totalItems = 0
-            ))
-            
-            try {
-                var filesScanned = 0
-                var suspiciousFound = 0
-                
-                fileSystemScanner.performDeepFileScan().collect { progress ->
-                    filesScanned = progress.filesScanned
-                    suspiciousFound = progress.suspiciousFound
-                    
-                    emit(DeepScanProgress(
-                        phase = DeepScanPhase.FILE_SYSTEM,
-                        phaseProgress = 0.5f, // Approximate
-                        overallProgress = 0.30f + (0.15f),
-                        currentTask = "Scanning: ${progress.currentFile}",
-                        itemsProcessed = progress.filesScanned,
-                        totalItems = 0 // Unknown total
-                    ))
+        )))
+        
+        // One package enumeration shared by every app-level phase
+        val results = snapshotProvider.scoped {
+            ScanPhaseScheduler(buildPhases(resumed, checkpoint), phaseDispatcher, progressScale = 0.95f).run(
+                onProgress = { progress -> send(ScanEvent.Progress(progress)) },
+                onFinding = { finding ->
+                    findings.add(finding)
+                    send(ScanEvent.Finding(finding))
+                },
+                onPhaseComplete = { _, result ->
+                    if (result is FileSystemScanner.FileScanResult) {
+                        checkpoint.update { it.copy(fileProgress = null, fileResult = result) }
+                    }
                 }
-                
-                fileResult = FileSystemScanner.FileScanResult(
-                    totalFilesScanned = filesScanned,
-                    totalDirectoriesScanned = 0,
-                    suspiciousFiles = emptyList(), // Will be populated
-                    apkFilesFound = 0,
-                    hiddenFilesFound = 0,
-                    recentlyModifiedCount = 0,
-                    scanDurationMs = 0
-                )
-                
-                Log.i(TAG, "File scan complete. Files: $filesScanned, Suspicious: $suspiciousFound")
-            } catch (e: Exception) {
-                Log.e(TAG, "File scan failed", e)
-            }
-        } else {
-            emit(DeepScanProgress(
-                phase = DeepScanPhase.FILE_SYSTEM,
-                phaseProgress = 1f,
-                overallProgress = 0.60f,
-                currentTask = "File scan skipped (no permission)",
-                itemsProcessed = 0,
-                totalItems = 0
-            ))
-        }
-        
-        emit(DeepScanProgress(
-            phase = DeepScanPhase.FILE_SYSTEM,
-            phaseProgress = 1f,
-            overallProgress = 0.60f,
-            currentTask = "File system scan complete",
-            itemsProcessed = fileResult?.totalFilesScanned ?: 0,
-            totalItems = fileResult?.totalFilesScanned ?: 0
-        ))
-        
-        // Phase 4: Network Security (10%)
-        emit(DeepScanProgress(
-            phase = DeepScanPhase.NETWORK_SECURITY,
-            phaseProgress = 0f,
-            overallProgress = 0.60f,
-            currentTask = "Checking network security...",
-            itemsProcessed = 0,
-            totalItems = 7
-        ))
-        
-        try {
-            networkResult = networkSecurityScanner.performFullScan()
-            Log.i(TAG, "Network scan complete. Risk: ${networkResult.overallRiskScore}")
-        } catch (e: Exception) {
-            Log.e(TAG, "Network scan failed", e)
-        }
-        
-        emit(DeepScanProgress(
-            phase = DeepScanPhase.NETWORK_SECURITY,
-            phaseProgress = 1f,
-            overallProgress = 0.70f,
-            currentTask = "Network security check complete",
-            itemsProcessed = 7,
-            totalItems = 7
-        ))
-        
-        // Phase 5: Privacy Audit (20%)
-        emit(DeepScanProgress(
-            phase = DeepScanPhase.PRIVACY_AUDIT,
-            phaseProgress = 0f,
-            overallProgress = 0.70f,
-            currentTask = "Auditing app permissions...",
-            itemsProcessed = 0,
-            totalItems = 0
-        ))
-        
-        try {
-            privacyResult = privacyScanner.performFullScan()
-            Log.i(TAG, "Privacy scan complete. High risk apps: ${privacyResult.highRiskApps.size}")
-        } catch (e: Exception) {
-            Log.e(TAG, "Privacy scan failed", e)
+            )
         }
         
-        emit(DeepScanProgress(
-            phase = DeepScanPhase.PRIVACY_AUDIT,
-            phaseProgress = 1f,
-            overallProgress = 0.90f,
-            currentTask = "Privacy audit complete",
-            itemsProcessed = privacyResult?.totalAppsScanned ?: 0,
-            totalItems = privacyResult?.totalAppsScanned ?: 0
-        ))
-        
-        // Phase 6: Generate Report
-        emit(DeepScanProgress(
+        // Generate Report
+        send(ScanEvent.Progress(DeepScanProgress(
             phase = DeepScanPhase.GENERATING_REPORT,
             phaseProgress = 0.5f,
             overallProgress = 0.95f,
             currentTask = "Generating security report...",
             itemsProcessed = 0,
             totalItems = 1
-        ))
+        )))
+        
+        val result = buildResult(
+            startTime = startTime,
+            findings = findings.toList(),
+            systemResult = results[DeepScanPhase.SYSTEM_INTEGRITY],
+            malwareResult = results[DeepScanPhase.APP_ANALYSIS],
+            fileResult = results[DeepScanPhase.FILE_SYSTEM],
+            networkResult = results[DeepScanPhase.NETWORK_SECURITY],
+            privacyResult = results[DeepScanPhase.PRIVACY_AUDIT]
+        )
+        lastResult = result
+        checkpointStore.clear()
         
-        emit(DeepScanProgress(
+        send(ScanEvent.Progress(DeepScanProgress(
             phase = DeepScanPhase.COMPLETE,
             phaseProgress = 1f,
             overallProgress = 1f,
             currentTask = "Scan complete",
             itemsProcessed = 1,
             totalItems = 1
-        ))
+        )))
+        send(ScanEvent.PhaseResult(result))
         
     }.flowOn(Dispatchers.IO)
     
     /**
-     * Get final deep scan result
+     * Serializes checkpoint updates from concurrent phases and persists
+     * each one
      */
-    suspend fun getFinalResult(): DeepScanResult = withContext(Dispatchers.IO) {
-        val startTime = System.currentTimeMillis()
+    private inner class CheckpointWriter(private var current: DeepScanCheckpoint) {
+        private val mutex = Mutex()
         
-        // Run all scans
-        val systemResult = try {
-            systemIntegrityScanner.performFullScan()
-        } catch (e: Exception) {
-            Log.e(TAG, "System scan failed", e)
-            null
-        }
-        
-        val malwareResult = try {
-            malwareScanner.getFinalResult(flow { })
-        } catch (e: Exception) {
-            Log.e(TAG, "Malware scan failed", e)
-            null
+        suspend fun update(transform: (DeepScanCheckpoint) -> DeepScanCheckpoint) = mutex.withLock {
+            current = transform(current)
+            checkpointStore.save(current)
         }
-        
-        val networkResult = try {
-            networkSecurityScanner.performFullScan()
-        } catch (e: Exception) {
-            Log.e(TAG, "Network scan failed", e)
-            null
+    }
+    
+    /**
+     * Phase schedule for a deep scan. Weights approximate each phase's
+     * share of total scan time.
+     */
+    private fun buildPhases(
+        resumed: DeepScanCheckpoint?,
+        checkpoint: CheckpointWriter
+    ): List<ScanPhaseScheduler.PhaseSpec> = listOf(
+        ScanPhaseScheduler.PhaseSpec(
+            phase = DeepScanPhase.SYSTEM_INTEGRITY,
+            weight = 0.10f,
+            timeoutMs = SYSTEM_PHASE_TIMEOUT_MS,
+            startTask = "Checking system integrity...",
+            completeTask = "System integrity check complete"
+        ) {
+            systemIntegrityScanner.performFullScan().also {
+                it.integrityIssues.forEach { issue -> found(ScanFinding.Integrity(issue)) }
+                Log.i(TAG, "System integrity scan complete. Risk: ${it.overallRiskScore}")
+            }
+        },
+        ScanPhaseScheduler.PhaseSpec(
+            phase = DeepScanPhase.APP_ANALYSIS,
+            weight = 0.30f,
+            timeoutMs = APP_PHASE_TIMEOUT_MS,
+            startTask = "Analyzing installed apps...",
+            completeTask = "App analysis complete"
+        ) {
+            collectPhase(malwareScanner.scanEvents()) { progress ->
+                val phaseProgress = if (progress.totalCount > 0) {
+                    progress.scannedCount.toFloat() / progress.totalCount
+                } else 0f
+                report(phaseProgress, "Scanning: ${progress.currentItem}", progress.scannedCount, progress.totalCount)
+            }?.also {
+                Log.i(TAG, "App scan complete. Threats: ${it.threats.size}")
+            }
+        },
+        ScanPhaseScheduler.PhaseSpec(
+            phase = DeepScanPhase.FILE_SYSTEM,
+            weight = 0.30f,
+            timeoutMs = FILE_PHASE_TIMEOUT_MS,
+            startTask = "Scanning file system...",
+            completeTask = "File system scan complete"
+        ) {
+            if (!fileSystemScanner.hasFullStorageAccess()) {
+                report(1f, "File scan skipped (no permission)")
+                return@PhaseSpec null
+            }
+            resumed?.fileResult?.let { restored ->
+                restored.suspiciousFiles.forEach { found(ScanFinding.File(it)) }
+                report(1f, "File system scan restored", restored.totalFilesScanned)
+                return@PhaseSpec restored
+            }
+            val events = fileSystemScanner.scanEvents(resumed?.fileProgress) { progress ->
+                checkpoint.update { it.copy(fileProgress = progress) }
+            }
+            collectPhase(events) { progress ->
+                report(0.5f, "Scanning: ${progress.currentFile}", progress.filesScanned) // Total unknown
+            }?.also {
+                Log.i(TAG, "File scan complete. Files: ${it.totalFilesScanned}, Suspicious: ${it.suspiciousFiles.size}")
+            }
+        },
+        ScanPhaseScheduler.PhaseSpec(
+            phase = DeepScanPhase.NETWORK_SECURITY,
+            weight = 0.10f,
+            timeoutMs = NETWORK_PHASE_TIMEOUT_MS,
+            startTask = "Checking network security...",
+            completeTask = "Network security check complete"
+        ) {
+            networkSecurityScanner.performFullScan().also {
+                it.warnings.filter { warning -> warning.riskPoints > 0 }
+                    .forEach { warning -> found(ScanFinding.Network(warning)) }
+                Log.i(TAG, "Network scan complete. Risk: ${it.overallRiskScore}")
+            }
+        },
+        ScanPhaseScheduler.PhaseSpec(
+            phase = DeepScanPhase.PRIVACY_AUDIT,
+            weight = 0.20f,
+            timeoutMs = PRIVACY_PHASE_TIMEOUT_MS,
+            startTask = "Auditing app permissions...",
+            completeTask = "Privacy audit complete",
+            dependsOn = setOf(DeepScanPhase.APP_ANALYSIS)
+        ) {
+            privacyScanner.performFullScan().also {
+                it.highRiskApps.forEach { app -> found(ScanFinding.Privacy(app)) }
+                report(1f, "Privacy audit complete", it.totalAppsScanned, it.totalAppsScanned)
+                Log.i(TAG, "Privacy scan complete. High risk apps: ${it.highRiskApps.size}")
+            }
         }
-        
-        val privacyResult = try {
-            privacyScanner.performFullScan()
-        } catch (e: Exception) {
-            Log.e(TAG, "Privacy scan failed", e)
-            null
+    )
+    
+    /**
+     * Forward a scanner's progress and findings from a running phase
+     * and return its result (null if the stream ended without one)
+     */
+    private suspend fun <P, R> ScanPhaseScheduler.PhaseScope.collectPhase(
+        events: Flow<ScanEvent<P, R>>,
+        onProgress: suspend ScanPhaseScheduler.PhaseScope.(P) -> Unit
+    ): R? {
+        var result: R? = null
+        events.collect { event ->
+            when (event) {
+                is ScanEvent.Progress -> onProgress(event.progress)
+                is ScanEvent.Finding -> found(event.finding)
+                is ScanEvent.PhaseResult -> result = event.result
+            }
         }
-        
+        return result
+    }
+    
+    /**
+     * Get final deep scan result
+     *
+     * Returns the result of the last completed [performDeepScan], or null
+     * if none has completed. Never starts a scan.
+     */
+    fun getFinalResult(): DeepScanResult? = lastResult
+    
+    private fun buildResult(
+        startTime: Long,
+        findings: List<ScanFinding>,
+        systemResult: SystemIntegrityScanner.SystemIntegrityResult?,
+        malwareResult: ScanResult?,
+        fileResult: FileSystemScanner.FileScanResult?,
+        networkResult: NetworkSecurityScanner.NetworkSecurityResult?,
+        privacyResult: PrivacyScanner.PrivacyScanResult?
+    ): DeepScanResult {
         val endTime = System.currentTimeMillis()
         
         // Calculate overall risk
@@ -409,15 +399,16 @@ class DeepScanEngine @Inject constructor(
         // Device info
         val deviceInfo = getDeviceInfo()
         
-        DeepScanResult(
+        return DeepScanResult(
             scanStartTime = startTime,
             scanEndTime = endTime,
             scanDurationMs = endTime - startTime,
             malwareScanResult = malwareResult,
-            fileScanResult = null, // Optional for quick result
+            fileScanResult = fileResult,
             systemIntegrityResult = systemResult,
             networkSecurityResult = networkResult,
             privacyScanResult = privacyResult,
+            findings = findings,
             overallRiskScore = overallRisk,
             riskLevel = getRiskLevel(overallRisk),
             criticalIssuesCount = critical,
@@ -0,0 +1,62 @@
+package com.sentinelguard.scanner
+
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.os.BatteryManager
+import android.os.Build
+import android.os.PowerManager
+import dagger.hilt.android.qualifiers.ApplicationContext
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * DeviceLoadMonitor: Thermal and Battery State for Background Scans
+ *
+ * Reads the current thermal status and battery level and turns them into
+ * a [ScanBudget] through [ScanThrottle]. Cheap enough to poll during a
+ * running scan.
+ */
+@Singleton
+class DeviceLoadMonitor @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+    private val powerManager = context.getSystemService(Context.POWER_SERVICE) as PowerManager
+
+    /**
+     * Budget for a background scan right now, or null if it should wait
+     */
+    fun currentBudget(): ScanBudget? {
+        return ScanThrottle.budgetFor(thermalStatus(), batteryPercent(), isCharging())
+    }
+
+    /**
+     * True while the screen is on, i.e. the user may be using the device
+     */
+    fun isInteractive(): Boolean = powerManager.isInteractive
+
+    fun thermalStatus(): Int {
+        return if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            powerManager.currentThermalStatus
+        } else {
+            PowerManager.THERMAL_STATUS_NONE
+        }
+    }
+
+    private fun batteryPercent(): Int {
+        val battery = batteryStatus() ?: return -1
+        val level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1)
+        val scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1)
+        return if (level >= 0 && scale > 0) level * 100 / scale else -1
+    }
+
+    private fun isCharging(): Boolean {
+        val status = batteryStatus()?.getIntExtra(BatteryManager.EXTRA_STATUS, -1) ?: return false
+        return status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL
+    }
+
+    // Sticky broadcast; registering with a null receiver only reads it
+    private fun batteryStatus(): Intent? {
+        return context.registerReceiver(null, IntentFilter(Intent.ACTION_BATTERY_CHANGED))
+    }
+}
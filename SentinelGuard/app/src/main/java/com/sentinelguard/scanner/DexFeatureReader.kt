@@ -0,0 +1,240 @@
+package com.sentinelguard.scanner
+
+import java.io.EOFException
+import java.io.InputStream
+
+/**
+ * Little-endian reads over a forward-only stream, tracking the offset
+ */
+internal class LittleEndianInput(private val input: InputStream) {
+
+    var position = 0L
+        private set
+
+    fun readFully(buffer: ByteArray, offset: Int = 0, length: Int = buffer.size) {
+        var done = 0
+        while (done < length) {
+            val count = input.read(buffer, offset + done, length - done)
+            if (count < 0) throw EOFException()
+            done += count
+        }
+        position += length
+    }
+
+    fun u8(): Int {
+        val value = input.read()
+        if (value < 0) throw EOFException()
+        position++
+        return value
+    }
+
+    fun u16(): Int = u8() or (u8() shl 8)
+
+    fun s32(): Int = u16() or (u16() shl 16)
+
+    fun uleb128(): Int {
+        var result = 0
+        var shift = 0
+        while (shift < 35) {
+            val b = u8()
+            result = result or ((b and 0x7f) shl shift)
+            if ((b and 0x80) == 0) return result
+            shift += 7
+        }
+        throw EOFException("Malformed uleb128")
+    }
+
+    /**
+     * Skip forward to [target]; false if it is behind the current offset
+     */
+    fun seek(target: Long): Boolean {
+        if (target < position) return false
+        var remaining = target - position
+        while (remaining > 0) {
+            val skipped = input.skip(remaining)
+            if (skipped <= 0) {
+                u8()
+                remaining--
+            } else {
+                remaining -= skipped
+                position += skipped
+            }
+        }
+        return true
+    }
+}
+
+/**
+ * API-call families and obfuscation indicators of one DEX file
+ */
+class DexFeatures(
+    val familyRefs: Map<AppFeature, Int>,
+    val definedClasses: Int,
+    val shortNamedClasses: Int
+)
+
+/**
+ * DexFeatureReader: Single-Pass DEX Table Reader
+ *
+ * Reads the string, type, method and class-def ID tables in file order,
+ * then only the string data of type descriptors. Memory is one int per
+ * string ID plus a few per type ID, never the DEX itself, so it works on
+ * a stream inflating straight out of the APK.
+ *
+ * Method references are attributed to an API family by the descriptor
+ * of their declaring class.
+ */
+object DexFeatureReader {
+
+    private const val HEADER_SIZE = 0x70
+    private const val ENDIAN_CONSTANT = 0x12345678
+    private const val CLASS_DEF_SIZE = 32
+    private const val MAX_STRING_IDS = 1 shl 19
+    private const val MAX_TYPE_IDS = 1 shl 16
+    private const val MAX_METHOD_IDS = 1 shl 16
+    private const val MAX_DESCRIPTOR_LENGTH = 1024
+    private const val SHORT_NAME_LENGTH = 2
+
+    private val DEX_MAGIC = "dex\n".toByteArray()
+
+    /**
+     * Declaring-class prefixes of each API family
+     */
+    private val familyPrefixes = listOf(
+        "Ldalvik/system/DexClassLoader;" to AppFeature.DYNAMIC_CODE_LOADING,
+        "Ldalvik/system/InMemoryDexClassLoader;" to AppFeature.DYNAMIC_CODE_LOADING,
+        "Ldalvik/system/PathClassLoader;" to AppFeature.DYNAMIC_CODE_LOADING,
+        "Ldalvik/system/DexFile;" to AppFeature.DYNAMIC_CODE_LOADING,
+        "Ljava/lang/reflect/Method;" to AppFeature.REFLECTION,
+        "Ljava/lang/reflect/Field;" to AppFeature.REFLECTION,
+        "Ljava/lang/reflect/Constructor;" to AppFeature.REFLECTION,
+        "Ljava/lang/Runtime;" to AppFeature.SHELL_EXECUTION,
+        "Ljava/lang/ProcessBuilder;" to AppFeature.SHELL_EXECUTION,
+        "Ljavax/crypto/" to AppFeature.CRYPTO,
+        "Landroid/telephony/SmsManager;" to AppFeature.SMS_API,
+        "Landroid/telephony/SmsMessage;" to AppFeature.SMS_API,
+        "Landroid/telephony/TelephonyManager;" to AppFeature.TELEPHONY_API,
+        "Landroid/app/admin/DevicePolicyManager;" to AppFeature.DEVICE_ADMIN_API,
+        "Landroid/accessibilityservice/" to AppFeature.ACCESSIBILITY_API,
+        "Landroid/view/accessibility/AccessibilityNodeInfo;" to AppFeature.ACCESSIBILITY_API,
+        "Landroid/media/MediaRecorder;" to AppFeature.MEDIA_CAPTURE_API,
+        "Landroid/media/AudioRecord;" to AppFeature.MEDIA_CAPTURE_API,
+        "Landroid/media/projection/" to AppFeature.MEDIA_CAPTURE_API,
+        "Landroid/hardware/camera2/" to AppFeature.MEDIA_CAPTURE_API,
+        "Landroid/location/LocationManager;" to AppFeature.LOCATION_API,
+        "Lcom/google/android/gms/location/" to AppFeature.LOCATION_API,
+        "Landroid/content/pm/PackageInstaller" to AppFeature.PACKAGE_INSTALL_API
+    )
+
+    /**
+     * Features of the DEX file on [input], or null if it is not a DEX
+     * file or its tables are out of order or over the size limits
+     */
+    fun read(input: InputStream): DexFeatures? {
+        val dex = LittleEndianInput(input)
+        val header = ByteArray(HEADER_SIZE)
+        dex.readFully(header)
+        if (!header.copyOfRange(0, DEX_MAGIC.size).contentEquals(DEX_MAGIC)) return null
+
+        fun field(offset: Int): Int {
+            return (header[offset].toInt() and 0xff) or
+                ((header[offset + 1].toInt() and 0xff) shl 8) or
+                ((header[offset + 2].toInt() and 0xff) shl 16) or
+                ((header[offset + 3].toInt() and 0xff) shl 24)
+        }
+        if (field(40) != ENDIAN_CONSTANT) return null
+
+        val stringCount = field(56)
+        val typeCount = field(64)
+        val methodCount = field(88)
+        val classDefCount = field(96)
+        if (stringCount !in 0..MAX_STRING_IDS || typeCount !in 0..MAX_TYPE_IDS ||
+            methodCount !in 0..MAX_METHOD_IDS || classDefCount !in 0..MAX_TYPE_IDS
+        ) {
+            return null
+        }
+
+        // string_ids: offset of each string's data
+        if (!dex.seek(field(60).toUInt().toLong())) return null
+        val stringOffsets = IntArray(stringCount) { dex.s32() }
+
+        // type_ids: string index of each descriptor
+        if (!dex.seek(field(68).toUInt().toLong())) return null
+        val typeDescriptors = IntArray(typeCount) { dex.s32() }
+
+        // method_ids: class_idx, proto_idx, name_idx
+        val methodRefs = IntArray(typeCount)
+        if (!dex.seek(field(92).toUInt().toLong())) return null
+        repeat(methodCount) {
+            val classIndex = dex.u16()
+            dex.u16()
+            dex.s32()
+            if (classIndex < typeCount) methodRefs[classIndex]++
+        }
+
+        // class_defs: only class_idx is needed
+        val defined = BooleanArray(typeCount)
+        if (!dex.seek(field(100).toUInt().toLong())) return null
+        val skip = ByteArray(CLASS_DEF_SIZE - 4)
+        repeat(classDefCount) {
+            val classIndex = dex.s32()
+            dex.readFully(skip)
+            if (classIndex in 0 until typeCount) defined[classIndex] = true
+        }
+
+        // Descriptor strings in file order: (data offset << 32) | type index
+        val order = LongArray(typeCount)
+        for (type in 0 until typeCount) {
+            val stringIndex = typeDescriptors[type]
+            if (stringIndex !in 0 until stringCount) return null
+            order[type] = (stringOffsets[stringIndex].toUInt().toLong() shl 32) or type.toLong()
+        }
+        order.sort()
+
+        val familyRefs = mutableMapOf<AppFeature, Int>()
+        var definedClasses = 0
+        var shortNamedClasses = 0
+        val descriptorBytes = ByteArray(MAX_DESCRIPTOR_LENGTH)
+        for (packed in order) {
+            if (!dex.seek(packed ushr 32)) return null
+            val type = (packed and 0xffffffffL).toInt()
+            val descriptor = readDescriptor(dex, descriptorBytes) ?: continue
+
+            if (methodRefs[type] > 0) {
+                familyPrefixes.firstOrNull { descriptor.startsWith(it.first) }?.let { (_, family) ->
+                    familyRefs[family] = (familyRefs[family] ?: 0) + methodRefs[type]
+                }
+            }
+            if (defined[type]) {
+                definedClasses++
+                if (isShortName(descriptor)) shortNamedClasses++
+            }
+        }
+        return DexFeatures(familyRefs, definedClasses, shortNamedClasses)
+    }
+
+    /**
+     * MUTF-8 string_data_item; null if longer than [buffer]
+     */
+    private fun readDescriptor(dex: LittleEndianInput, buffer: ByteArray): String? {
+        dex.uleb128() // Length in UTF-16 units
+        var length = 0
+        while (true) {
+            val b = dex.u8()
+            if (b == 0) break
+            if (length == buffer.size) return null
+            buffer[length++] = b.toByte()
+        }
+        return String(buffer, 0, length, Charsets.UTF_8)
+    }
+
+    /**
+     * "La/b;"-style simple names left by shrinkers and obfuscators
+     */
+    internal fun isShortName(descriptor: String): Boolean {
+        if (!descriptor.startsWith("L") || !descriptor.endsWith(";")) return false
+        val simpleName = descriptor.substring(descriptor.lastIndexOf('/') + 1, descriptor.length - 1)
+        // Nested classes count by their outermost class, anonymous ones are numbered anyway
+        return simpleName.substringBefore('$').length <= SHORT_NAME_LENGTH
+    }
+}
@@ -0,0 +1,60 @@
+package com.sentinelguard.scanner
+
+/**
+ * FileEventCoalescer: Debounced, Bounded Set of Changed Files
+ *
+ * A file typically produces several events while it is written
+ * (create, modifications, close-write). Events for the same path collapse
+ * into one entry, and a path is released only after it has been quiet for
+ * [quietPeriodMs], so it is analyzed once and after it is complete.
+ *
+ * At most [capacity] paths are pending; events for new paths beyond that
+ * are dropped and counted in [dropped].
+ */
+class FileEventCoalescer(
+    private val capacity: Int,
+    private val quietPeriodMs: Long
+) {
+    // Ordered by last event time: a path is moved to the end on each event
+    private val pending = LinkedHashMap<String, Long>()
+
+    var dropped = 0
+        private set
+
+    val size: Int @Synchronized get() = pending.size
+
+    /**
+     * Record an event for [path] at [now]; false if it was dropped
+     */
+    @Synchronized
+    fun offer(path: String, now: Long): Boolean {
+        if (pending.remove(path) == null && pending.size >= capacity) {
+            dropped++
+            return false
+        }
+        pending[path] = now
+        return true
+    }
+
+    /**
+     * Remove and return the paths quiet since [quietPeriodMs] before [now]
+     */
+    @Synchronized
+    fun drainReady(now: Long): List<String> {
+        val ready = mutableListOf<String>()
+        val entries = pending.entries.iterator()
+        while (entries.hasNext()) {
+            val (path, lastEvent) = entries.next()
+            if (now - lastEvent < quietPeriodMs) break
+            ready.add(path)
+            entries.remove()
+        }
+        return ready
+    }
+
+    /**
+     * When the next path becomes ready, or null if nothing is pending
+     */
+    @Synchronized
+    fun nextReadyAt(): Long? = pending.values.firstOrNull()?.plus(quietPeriodMs)
+}
@@ -0,0 +1,145 @@
+package com.sentinelguard.scanner
+
+import android.system.Os
+import android.util.Log
+import com.sentinelguard.data.database.dao.FileHashDao
+import com.sentinelguard.data.database.entities.FileHashEntity
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.io.File
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * FileHashCache: Persistent SHA-256 Index for Scanned Files
+ *
+ * Keyed by canonical path and validated against size, mtime and inode,
+ * so an unchanged file is never read twice. Shared by FileSystemScanner
+ * and MalwareScanner; a path holds either a full SHA-256 or, for very
+ * large files, a sectioned fingerprint (see [FileHashEngine]).
+ *
+ * Entries live in an in-memory LRU capped at [MAX_ENTRIES]; changes are
+ * written back in batches by [flush], which also trims the table. A hit
+ * costs only a metadata check: recency is tracked in memory and the
+ * stored access time is refreshed at most once per [ACCESS_PERSIST_INTERVAL_MS].
+ */
+@Singleton
+class FileHashCache internal constructor(
+    private val fileHashDao: FileHashDao,
+    private val inodeOf: (String) -> Long
+) {
+    @Inject constructor(fileHashDao: FileHashDao) : this(fileHashDao, ::statInode)
+
+    companion object {
+        private const val TAG = "FileHashCache"
+        private const val MAX_ENTRIES = 20_000
+        private const val NO_INODE = -1L
+        // Eviction only needs coarse recency in the table
+        internal const val ACCESS_PERSIST_INTERVAL_MS = 24 * 60 * 60 * 1000L
+
+        private fun statInode(path: String): Long {
+            return try {
+                Os.stat(path).st_ino
+            } catch (e: Exception) {
+                NO_INODE
+            }
+        }
+    }
+
+    private val loadMutex = Mutex()
+
+    @Volatile
+    private var loaded = false
+
+    // Access-ordered map: iteration order is least recently used first
+    private val entries = object : LinkedHashMap<String, FileHashEntity>(1024, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, FileHashEntity>): Boolean {
+            return size > MAX_ENTRIES
+        }
+    }
+    private val dirty = HashMap<String, FileHashEntity>()
+
+    /**
+     * Load persisted entries; no-op after the first successful call
+     */
+    suspend fun load() = loadMutex.withLock {
+        if (loaded) return@withLock
+        try {
+            val persisted = fileHashDao.getMostRecent(MAX_ENTRIES)
+            synchronized(entries) {
+                // Oldest first so access order matches lastAccessed
+                persisted.asReversed().forEach { entries.putIfAbsent(it.path, it) }
+            }
+            loaded = true
+            Log.d(TAG, "Loaded ${persisted.size} cached hashes")
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to load hash cache", e)
+        }
+    }
+
+    /**
+     * Full SHA-256 of [file]. A cached sectioned fingerprint of a large
+     * file does not count: it can never match a known hash, so it is
+     * replaced by the full digest.
+     */
+    fun sha256(file: File): String? {
+        return getOrCompute(file, acceptSectioned = false, compute = FileHashEngine::sha256)
+    }
+
+    /**
+     * Hash of [file], computed with [compute] only when no valid cached
+     * hash exists. With [acceptSectioned] false, a cached sectioned
+     * fingerprint is recomputed as well.
+     */
+    fun getOrCompute(file: File, acceptSectioned: Boolean = true, compute: (File) -> String?): String? {
+        val path = try {
+            file.canonicalPath
+        } catch (e: Exception) {
+            file.absolutePath
+        }
+        val size = file.length()
+        val mtime = file.lastModified()
+        val inode = inodeOf(path)
+        val now = System.currentTimeMillis()
+
+        synchronized(entries) {
+            val cached = entries[path]
+            if (cached != null && cached.size == size && cached.mtime == mtime && cached.inode == inode &&
+                (acceptSectioned || !FileHashEngine.isSectioned(cached.sha256))) {
+                // The lookup above already refreshed in-memory recency
+                if (now - cached.lastAccessed >= ACCESS_PERSIST_INTERVAL_MS) {
+                    val touched = cached.copy(lastAccessed = now)
+                    entries[path] = touched
+                    dirty[path] = touched
+                }
+                return cached.sha256
+            }
+        }
+
+        val hash = compute(file) ?: return null
+        val entry = FileHashEntity(path, size, mtime, inode, hash, now)
+        synchronized(entries) {
+            entries[path] = entry
+            dirty[path] = entry
+        }
+        return hash
+    }
+
+    /**
+     * Write new entries and stale access times back, then evict beyond
+     * the size cap
+     */
+    suspend fun flush() {
+        val pending = synchronized(entries) {
+            dirty.values.toList().also { dirty.clear() }
+        }
+        if (pending.isEmpty()) return
+
+        try {
+            fileHashDao.insertAll(pending)
+            fileHashDao.trimTo(MAX_ENTRIES)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to persist ${pending.size} hashes", e)
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.sentinelguard.scanner
+
+import android.util.Log
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.security.MessageDigest
+
+/**
+ * FileHashEngine: Zero-Copy File Hashing
+ *
+ * Hashes files without staging data in heap byte arrays:
+ * - Files up to [MMAP_LIMIT] are memory-mapped in [MAP_CHUNK_SIZE] windows
+ * - Larger files are streamed through a per-thread direct ByteBuffer,
+ *   since mapped regions are only released when garbage collected
+ *
+ * MessageDigest instances and buffers are pooled per thread, so parallel
+ * scan workers never contend or allocate per file.
+ *
+ * [sectionedFingerprint] hashes size + head + tail only, for files too large
+ * to read fully. Such fingerprints detect change but cannot match full-file
+ * malware hashes; they carry [SECTIONED_PREFIX] to keep them distinguishable.
+ */
+object FileHashEngine {
+
+    private const val TAG = "FileHashEngine"
+
+    private const val MMAP_LIMIT = 256L * 1024 * 1024
+    private const val MAP_CHUNK_SIZE = 16L * 1024 * 1024
+    private const val DIRECT_BUFFER_SIZE = 256 * 1024
+
+    // Bytes hashed from each end of a file for sectioned fingerprints
+    const val SECTION_SIZE = 4L * 1024 * 1024
+
+    const val SECTIONED_PREFIX = "sectioned:"
+
+    private val HEX_DIGITS = "0123456789abcdef".toCharArray()
+
+    private val digests = ThreadLocal.withInitial { MessageDigest.getInstance("SHA-256") }
+    private val buffers = ThreadLocal.withInitial { ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE) }
+
+    /**
+     * Full SHA-256 of [file] as lowercase hex, or null if unreadable
+     */
+    fun sha256(file: File): String? {
+        return try {
+            FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+                val digest = digests.get()!!.apply { reset() }
+                val size = channel.size()
+                if (size <= MMAP_LIMIT) {
+                    hashMapped(channel, 0, size, digest)
+                } else {
+                    hashStreamed(channel, 0, size, digest)
+                }
+                toHex(digest.digest())
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to hash ${file.name}", e)
+            null
+        }
+    }
+
+    /**
+     * SHA-256 over (size, first [SECTION_SIZE] bytes, last [SECTION_SIZE] bytes).
+     * Small files fall back to a full [sha256].
+     */
+    fun sectionedFingerprint(file: File): String? {
+        return try {
+            FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+                val size = channel.size()
+                if (size <= SECTION_SIZE * 2) return sha256(file)
+
+                val digest = digests.get()!!.apply { reset() }
+                digest.update(ByteBuffer.allocate(Long.SIZE_BYTES).putLong(0, size))
+                hashMapped(channel, 0, SECTION_SIZE, digest)
+                hashMapped(channel, size - SECTION_SIZE, SECTION_SIZE, digest)
+                SECTIONED_PREFIX + toHex(digest.digest())
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to fingerprint ${file.name}", e)
+            null
+        }
+    }
+
+    /**
+     * Full hash up to [fullHashLimit] bytes, sectioned fingerprint above it
+     */
+    fun fingerprint(file: File, fullHashLimit: Long): String? {
+        return if (file.length() <= fullHashLimit) sha256(file) else sectionedFingerprint(file)
+    }
+
+    fun isSectioned(hash: String): Boolean = hash.startsWith(SECTIONED_PREFIX)
+
+    fun toHex(bytes: ByteArray): String {
+        val chars = CharArray(bytes.size * 2)
+        for (i in bytes.indices) {
+            val v = bytes[i].toInt() and 0xFF
+            chars[i * 2] = HEX_DIGITS[v ushr 4]
+            chars[i * 2 + 1] = HEX_DIGITS[v and 0x0F]
+        }
+        return String(chars)
+    }
+
+    private fun hashMapped(channel: FileChannel, start: Long, length: Long, digest: MessageDigest) {
+        var position = start
+        val end = start + length
+        while (position < end) {
+            val chunk = minOf(MAP_CHUNK_SIZE, end - position)
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, chunk))
+            position += chunk
+        }
+    }
+
+    private fun hashStreamed(channel: FileChannel, start: Long, length: Long, digest: MessageDigest) {
+        val buffer = buffers.get()!!
+        var position = start
+        val end = start + length
+        while (position < end) {
+            buffer.clear()
+            if (end - position < buffer.capacity()) buffer.limit((end - position).toInt())
+            val read = channel.read(buffer, position)
+            if (read <= 0) break
+            buffer.flip()
+            digest.update(buffer)
+            position += read
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.sentinelguard.scanner
+
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Resumable state of an interrupted file scan: subtrees already walked
+ * and analyzed, and what was found so far
+ */
+data class FileScanCheckpoint(
+    val completedDirectories: Map<String, ParallelFileWalker.SubtreeCounts>,
+    val suspiciousFiles: List<FileSystemScanner.SuspiciousFile>
+) {
+    val filesScanned: Int get() = completedDirectories.values.sumOf { it.files }
+    val directoriesScanned: Int get() = completedDirectories.values.sumOf { it.directories }
+}
+
+/**
+ * FileScanCheckpointTracker: Builds [FileScanCheckpoint]s During a Scan
+ *
+ * A walked subtree only counts as done once every analysis candidate
+ * queued from it has been analyzed. Candidates get increasing sequence
+ * numbers; a subtree records the next number when its walk completes and
+ * is promoted once all candidates below it are finished.
+ *
+ * Only directories up to [maxDepth] path components are recorded, which
+ * keeps checkpoints small; a completed directory replaces its recorded
+ * descendants.
+ */
+class FileScanCheckpointTracker(
+    resumeFrom: FileScanCheckpoint?,
+    private val maxDepth: Int
+) {
+    private class PendingSubtree(val path: String, val counts: ParallelFileWalker.SubtreeCounts, val bound: Long)
+
+    private val completed = HashMap(resumeFrom?.completedDirectories.orEmpty())
+    private val resumedDirectories: Map<String, ParallelFileWalker.SubtreeCounts> = HashMap(completed)
+    private val pending = ArrayList<PendingSubtree>()
+
+    private val found = ConcurrentHashMap<String, FileSystemScanner.SuspiciousFile>()
+
+    private val nextSequence = AtomicLong()
+    private val finished = HashSet<Long>()
+    private var lowWatermark = 0L   // Every candidate below this is analyzed
+
+    val resumedFiles: Int = resumeFrom?.filesScanned ?: 0
+    val resumedDirectoryCount: Int = resumeFrom?.directoriesScanned ?: 0
+
+    val findings: List<FileSystemScanner.SuspiciousFile> get() = found.values.toList()
+    val findingCount: Int get() = found.size
+
+    init {
+        resumeFrom?.suspiciousFiles?.forEach { found[it.path] = it }
+    }
+
+    /**
+     * Counts of [directory] if a previous scan already walked it
+     */
+    fun resumedCounts(directory: Path): ParallelFileWalker.SubtreeCounts? = resumedDirectories[directory.toString()]
+
+    /**
+     * Sequence number for a candidate about to be queued for analysis
+     */
+    fun nextCandidate(): Long = nextSequence.getAndIncrement()
+
+    fun candidateFinished(sequence: Long) = synchronized(finished) {
+        finished.add(sequence)
+        while (finished.remove(lowWatermark)) lowWatermark++
+    }
+
+    /**
+     * Record a finding; false if the file was already reported
+     * (also across a resume)
+     */
+    fun addFinding(file: FileSystemScanner.SuspiciousFile): Boolean {
+        return found.putIfAbsent(file.path, file) == null
+    }
+
+    fun subtreeComplete(directory: Path, counts: ParallelFileWalker.SubtreeCounts) {
+        if (directory.nameCount > maxDepth) return
+        val subtree = PendingSubtree(directory.toString(), counts, nextSequence.get())
+        synchronized(pending) { pending.add(subtree) }
+    }
+
+    /**
+     * Current checkpoint, promoting subtrees whose candidates are all analyzed
+     */
+    fun snapshot(): FileScanCheckpoint {
+        val watermark = synchronized(finished) { lowWatermark }
+        val ready = synchronized(pending) {
+            val ready = pending.filter { it.bound <= watermark }
+            pending.removeAll(ready.toSet())
+            ready
+        }
+        return synchronized(completed) {
+            // Parents complete after their children, so shortest paths go last
+            for (subtree in ready.sortedByDescending { it.path.length }) {
+                val prefix = subtree.path + "/"
+                completed.keys.removeAll { it.startsWith(prefix) }
+                completed[subtree.path] = subtree.counts
+            }
+            FileScanCheckpoint(HashMap(completed), findings)
+        }
+    }
+}
@@ -6,13 +6,18 @@ import android.os.Environment
 import android.util.Log
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.channelFlow
 import kotlinx.coroutines.flow.flowOn
-import kotlinx.coroutines.yield
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import java.io.File
-import java.io.FileInputStream
-import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicReference
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -31,13 +36,35 @@ import javax.inject.Singleton
  */
 @Singleton
 class FileSystemScanner @Inject constructor(
-    @ApplicationContext private val context: Context
+    @ApplicationContext private val context: Context,
+    private val hashCache: FileHashCache
 ) {
     companion object {
         private const val TAG = "FileSystemScanner"
         
-        // Maximum file size to hash (50MB)
-        private const val MAX_FILE_SIZE_FOR_HASH = 50 * 1024 * 1024L
+        // Files above this size get a sectioned fingerprint instead of a full hash
+        private const val MAX_FULL_HASH_SIZE = 1024 * 1024 * 1024L
+        
+        // Directories deeper than this absolute path depth are not entered
+        private const val MAX_PATH_DEPTH = 10
+        
+        // Bounded queue between the walker and the analysis workers
+        private const val CANDIDATE_QUEUE_CAPACITY = 256
+        
+        // Minimum interval between progress updates
+        private const val PROGRESS_INTERVAL_MS = 250L
+        
+        // Checkpoints are saved this often while walking
+        private const val CHECKPOINT_INTERVAL_MS = 5_000L
+        
+        // Only directories up to this depth are recorded in checkpoints
+        private const val CHECKPOINT_PATH_DEPTH = 7
+        
+        // Extensions analyzeFile inspects regardless of file name
+        private val ANALYZED_EXTENSIONS = setOf(
+            "apk", "dex", "so",
+            "sh", "bat", "ps1", "vbs"
+        )
         
         // Suspicious file extensions
         private val SUSPICIOUS_EXTENSIONS = setOf(
@@ -107,65 +134,162 @@ class FileSystemScanner @Inject constructor(
     )
     
     /**
-     * Perform deep file system scan
+     * Perform deep file system scan, reporting progress only
+     */
+    fun performDeepFileScan(): Flow<FileScanProgress> = scanEvents().progressUpdates()
+    
+    /**
+     * Perform deep file system scan as an event stream: sampled progress,
+     * each suspicious file as soon as it is analyzed, then the [FileScanResult]
+     *
+     * Pipeline:
+     * 1. [ParallelFileWalker] traverses all scan roots on a work-stealing pool
+     *    and only forwards files whose name makes them analysis candidates
+     * 2. Analysis workers hash and inspect candidates from a bounded queue
+     * 3. Progress is sampled every [PROGRESS_INTERVAL_MS] instead of per file
+     *
+     * With [onCheckpoint], a [FileScanCheckpoint] is handed out every
+     * [CHECKPOINT_INTERVAL_MS] and once more when the scan stops, even if
+     * cancelled. Passing it back as [resumeFrom] skips the directories it
+     * covers and re-emits its findings first.
+     *
+     * [budget] sets walker threads and analysis workers; background scans
+     * pass a throttled one.
      */
-    fun performDeepFileScan(): Flow<FileScanProgress> = flow {
-        var filesScanned = 0
-        var dirsScanned = 0
-        val suspiciousFiles = mutableListOf<SuspiciousFile>()
+    fun scanEvents(
+        resumeFrom: FileScanCheckpoint? = null,
+        budget: ScanBudget = ScanBudget.FULL,
+        onCheckpoint: (suspend (FileScanCheckpoint) -> Unit)? = null
+    ): Flow<ScanEvent<FileScanProgress, FileScanResult>> = channelFlow {
+        val startTime = System.currentTimeMillis()
+        val tracker = FileScanCheckpointTracker(resumeFrom, CHECKPOINT_PATH_DEPTH)
         
-        emit(FileScanProgress("", "Initializing...", 0, 0, 0, "INITIALIZING"))
+        send(ScanEvent.Progress(FileScanProgress("", "Initializing...", 0, 0, 0, "INITIALIZING")))
+        tracker.findings.forEach { send(ScanEvent.Finding(ScanFinding.File(it))) }
+        hashCache.load()
         
-        // Directories to scan
-        val dirsToScan = getScanDirectories()
+        val walker = ParallelFileWalker(SKIP_DIRECTORIES, MAX_PATH_DEPTH, budget.walkerThreads)
+        val candidates = Channel<Pair<Long, File>>(CANDIDATE_QUEUE_CAPACITY)
+        val currentFile = AtomicReference("")
         
-        for (dir in dirsToScan) {
-            if (!dir.exists() || !dir.canRead()) continue
-            
-            emit(FileScanProgress(
-                dir.absolutePath, 
-                "", 
-                filesScanned, 
-                dirsScanned, 
-                suspiciousFiles.size,
-                "SCANNING_${dir.name.uppercase()}"
-            ))
-            
-            try {
-                scanDirectory(dir, suspiciousFiles) { file, count ->
-                    filesScanned = count
-                    emit(FileScanProgress(
-                        dir.absolutePath,
-                        file.name,
-                        filesScanned,
-                        dirsScanned,
-                        suspiciousFiles.size,
-                        "SCANNING"
-                    ))
+        // Stage 2: analysis (hashing) workers
+        val analyzers = List(budget.analysisWorkers) {
+            launch(Dispatchers.IO) {
+                for ((sequence, file) in candidates) {
+                    currentFile.set(file.name)
+                    val found = try {
+                        analyzeFile(file)
+                    } catch (e: Exception) {
+                        Log.e(TAG, "Error analyzing ${file.absolutePath}", e)
+                        null
+                    }
+                    val isNew = found != null && tracker.addFinding(found)
+                    tracker.candidateFinished(sequence)
+                    if (isNew) send(ScanEvent.Finding(ScanFinding.File(found!!)))
+                }
+            }
+        }
+        
+        // Throttled progress and periodic checkpoints
+        val ticker = launch {
+            var lastCheckpoint = System.currentTimeMillis()
+            while (isActive) {
+                delay(PROGRESS_INTERVAL_MS)
+                send(ScanEvent.Progress(FileScanProgress(
+                    walker.currentDirectory,
+                    currentFile.get(),
+                    tracker.resumedFiles + walker.filesScanned,
+                    tracker.resumedDirectoryCount + walker.directoriesScanned,
+                    tracker.findingCount,
+                    "SCANNING"
+                )))
+                if (onCheckpoint != null && System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL_MS) {
+                    onCheckpoint(tracker.snapshot())
+                    lastCheckpoint = System.currentTimeMillis()
                 }
-            } catch (e: Exception) {
-                Log.e(TAG, "Error scanning ${dir.absolutePath}", e)
             }
-            
-            dirsScanned++
-            yield()
         }
         
-        emit(FileScanProgress(
+        // Stage 1: parallel walk
+        try {
+            walker.walkInto(
+                candidates,
+                getScanDirectories(),
+                completedSubtree = tracker::resumedCounts,
+                onSubtreeComplete = tracker::subtreeComplete
+            ) { path, _ ->
+                val name = path.fileName?.toString()
+                if (name != null && isAnalysisCandidate(name)) tracker.nextCandidate() to path.toFile() else null
+            }
+            analyzers.joinAll()
+        } finally {
+            ticker.cancel()
+            if (onCheckpoint != null) {
+                withContext(NonCancellable) { onCheckpoint(tracker.snapshot()) }
+            }
+        }
+        hashCache.flush()
+        
+        val filesScanned = tracker.resumedFiles + walker.filesScanned
+        val directoriesScanned = tracker.resumedDirectoryCount + walker.directoriesScanned
+        val twentyFourHoursAgo = System.currentTimeMillis() - (24 * 60 * 60 * 1000)
+        val found = tracker.findings
+        val result = FileScanResult(
+            totalFilesScanned = filesScanned,
+            totalDirectoriesScanned = directoriesScanned,
+            suspiciousFiles = found,
+            apkFilesFound = found.count { it.name.endsWith(".apk", ignoreCase = true) },
+            hiddenFilesFound = found.count { it.name.startsWith(".") },
+            recentlyModifiedCount = found.count { it.lastModified > twentyFourHoursAgo },
+            scanDurationMs = System.currentTimeMillis() - startTime
+        )
+        
+        send(ScanEvent.Progress(FileScanProgress(
             "",
             "Complete",
             filesScanned,
-            dirsScanned,
-            suspiciousFiles.size,
+            directoriesScanned,
+            found.size,
             "COMPLETE"
-        ))
+        )))
+        send(ScanEvent.PhaseResult(result))
         
     }.flowOn(Dispatchers.IO)
     
+    /**
+     * Analyze only [files], e.g. files that just changed on disk, and
+     * return the suspicious ones
+     */
+    suspend fun analyzeFiles(files: Collection<File>): List<SuspiciousFile> = withContext(Dispatchers.IO) {
+        val candidates = files.filter { isAnalysisCandidate(it.name) && it.isFile }
+        if (candidates.isEmpty()) return@withContext emptyList()
+        
+        hashCache.load()
+        val found = candidates.mapNotNull { file ->
+            try {
+                analyzeFile(file)
+            } catch (e: Exception) {
+                Log.e(TAG, "Error analyzing ${file.absolutePath}", e)
+                null
+            }
+        }
+        hashCache.flush()
+        found
+    }
+    
+    /**
+     * Cheap name-only pre-filter: true if [analyzeFile] could flag the file
+     */
+    fun isAnalysisCandidate(name: String): Boolean {
+        val extension = name.substringAfterLast('.', "").lowercase()
+        return extension in ANALYZED_EXTENSIONS ||
+               (name.startsWith(".") && extension in SUSPICIOUS_EXTENSIONS)
+    }
+    
     /**
      * Get all directories to scan
      */
-    private fun getScanDirectories(): List<File> {
+    fun getScanDirectories(): List<File> {
         val dirs = mutableListOf<File>()
         
         // External storage root
@@ -207,53 +331,6 @@ class FileSystemScanner @Inject constructor(
         return dirs.distinctBy { it.absolutePath }
     }
     
-    /**
-     * Recursively scan a directory
-     */
-    private suspend fun scanDirectory(
-        dir: File,
-        suspiciousFiles: MutableList<SuspiciousFile>,
-        onProgress: suspend (File, Int) -> Unit
-    ): Int {
-        var count = 0
-        
-        // Check if we should skip
-        if (dir.absolutePath in SKIP_DIRECTORIES) return count
-        if (!dir.canRead()) return count
-        
-        val files = try {
-            dir.listFiles() ?: return count
-        } catch (e: Exception) {
-            return count
-        }
-        
-        for (file in files) {
-            yield() // Allow cancellation
-            
-            if (file.isDirectory) {
-                // Recurse into subdirectory (with depth limit)
-                if (getPathDepth(file) < 10) {
-                    count += scanDirectory(file, suspiciousFiles, onProgress)
-                }
-            } else {
-                count++
-                
-                // Analyze the file
-                val threat = analyzeFile(file)
-                if (threat != null) {
-                    suspiciousFiles.add(threat)
-                }
-                
-                // Report progress every 50 files
-                if (count % 50 == 0) {
-                    onProgress(file, count)
-                }
-            }
-        }
-        
-        return count
-    }
-    
     /**
      * Analyze a single file for threats
      */
@@ -265,12 +342,12 @@ class FileSystemScanner @Inject constructor(
         
         // Check 1: APK files outside Play Store
         if (extension == "apk") {
-            val hash = if (size <= MAX_FILE_SIZE_FOR_HASH) {
-                calculateSHA256(file)
-            } else null
+            val hash = hashCache.getOrCompute(file) {
+                FileHashEngine.fingerprint(it, MAX_FULL_HASH_SIZE)
+            }
             
             // Check if known malware hash
-            if (hash != null && ThreatDatabase.isKnownMalwareHash(hash)) {
+            if (hash != null && !FileHashEngine.isSectioned(hash) && ThreatDatabase.isKnownMalwareHash(hash)) {
                 return SuspiciousFile(
                     path = file.absolutePath,
                     name = name,
@@ -301,6 +378,19 @@ class FileSystemScanner @Inject constructor(
                 )
             }
             
+            // Structural checks on the central directory (no inflation)
+            ApkStructureAnalyzer.issueOf(file)?.let { issue ->
+                return SuspiciousFile(
+                    path = file.absolutePath,
+                    name = name,
+                    size = size,
+                    reason = issue.description,
+                    severity = if (issue.evadesVerification) FileThreatSeverity.HIGH else FileThreatSeverity.MEDIUM,
+                    lastModified = lastModified,
+                    sha256Hash = hash
+                )
+            }
+            
             // Flag all APKs in non-typical locations
             val parentPath = file.parent ?: ""
             if (!parentPath.contains("Download", ignoreCase = true)) {
@@ -383,33 +473,6 @@ class FileSystemScanner @Inject constructor(
         return null
     }
     
-    /**
-     * Calculate SHA-256 hash of a file
-     */
-    private fun calculateSHA256(file: File): String? {
-        return try {
-            val digest = MessageDigest.getInstance("SHA-256")
-            FileInputStream(file).use { fis ->
-                val buffer = ByteArray(8192)
-                var bytesRead: Int
-                while (fis.read(buffer).also { bytesRead = it } != -1) {
-                    digest.update(buffer, 0, bytesRead)
-                }
-            }
-            digest.digest().joinToString("") { "%02x".format(it) }
-        } catch (e: Exception) {
-            Log.e(TAG, "Failed to calculate hash for ${file.name}", e)
-            null
-        }
-    }
-    
-    /**
-     * Get path depth
-     */
-    private fun getPathDepth(file: File): Int {
-        return file.absolutePath.count { it == '/' }
-    }
-    
     /**
      * Check if we have full storage access
      */
@@ -0,0 +1,245 @@
+package com.sentinelguard.scanner
+
+import android.content.Context
+import android.content.pm.ApplicationInfo
+import android.content.pm.PackageInfo
+import android.content.pm.PackageManager
+import android.content.pm.Signature
+import android.os.Build
+import android.util.Log
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * InstalledPackageSnapshot: Scan-Scoped View of Installed Packages
+ *
+ * Enumerates installed packages once with every flag the app-level
+ * scanners need (permissions, metadata, signing certificates).
+ * Expensive per-package lookups are loaded lazily and memoized:
+ * - App labels
+ * - Installer package
+ * - Malware analysis verdicts
+ * - Requested permissions as [PermissionMask] bitsets
+ */
+class InstalledPackageSnapshot private constructor(
+    private val packageManager: PackageManager?,
+    val packages: List<PackageInfo>,
+    val capturedAt: Long
+) {
+    companion object {
+        private const val TAG = "InstalledPackageSnapshot"
+
+        // Union of flags needed by Malware, Privacy and SystemIntegrity scanners
+        private val PACKAGE_FLAGS = PackageManager.GET_PERMISSIONS or
+            PackageManager.GET_META_DATA or
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                PackageManager.GET_SIGNING_CERTIFICATES
+            } else {
+                @Suppress("DEPRECATION")
+                PackageManager.GET_SIGNATURES
+            }
+
+        /**
+         * Enumerate installed packages (single binder-heavy call)
+         */
+        fun capture(packageManager: PackageManager): InstalledPackageSnapshot {
+            val startTime = System.currentTimeMillis()
+            val packages = try {
+                packageManager.getInstalledPackages(PACKAGE_FLAGS)
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to enumerate installed packages", e)
+                emptyList()
+            }
+            Log.d(TAG, "Captured ${packages.size} packages in ${System.currentTimeMillis() - startTime}ms")
+            return InstalledPackageSnapshot(packageManager, packages, System.currentTimeMillis())
+        }
+
+        /**
+         * Snapshot of a single package, e.g. one that was just installed;
+         * null if it is not installed
+         */
+        fun capturePackage(packageManager: PackageManager, packageName: String): InstalledPackageSnapshot? {
+            val packageInfo = try {
+                packageManager.getPackageInfo(packageName, PACKAGE_FLAGS)
+            } catch (e: PackageManager.NameNotFoundException) {
+                return null
+            }
+            return InstalledPackageSnapshot(packageManager, listOf(packageInfo), System.currentTimeMillis())
+        }
+
+        /**
+         * Snapshot over known [packages] without a package manager: labels
+         * fall back to package names and installers are unknown
+         */
+        internal fun of(packages: List<PackageInfo>, capturedAt: Long = System.currentTimeMillis()): InstalledPackageSnapshot {
+            return InstalledPackageSnapshot(null, packages, capturedAt)
+        }
+    }
+
+    private val byName: Map<String, PackageInfo> = packages.associateBy { it.packageName }
+    private val labels = ConcurrentHashMap<String, String>()
+    private val installers = ConcurrentHashMap<String, String>()
+    private val verdicts = ConcurrentHashMap<String, List<DetectedThreat>>()
+    private val signingDigests = ConcurrentHashMap<String, String>()
+    private val permissionMasks = ConcurrentHashMap<String, PermissionMask>()
+
+    val size: Int get() = packages.size
+
+    operator fun get(packageName: String): PackageInfo? = byName[packageName]
+
+    fun isInstalled(packageName: String): Boolean = packageName in byName
+
+    /**
+     * Display label, loaded on first use
+     */
+    fun labelOf(packageInfo: PackageInfo): String {
+        return labels.getOrPut(packageInfo.packageName) {
+            try {
+                packageManager?.let { packageInfo.applicationInfo?.loadLabel(it)?.toString() }
+            } catch (e: Exception) {
+                null
+            } ?: packageInfo.packageName
+        }
+    }
+
+    /**
+     * Installing package name, or null for sideloaded/unknown
+     */
+    fun installerOf(packageName: String): String? {
+        val packageManager = packageManager ?: return null
+        val installer = installers.getOrPut(packageName) {
+            try {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                    packageManager.getInstallSourceInfo(packageName).installingPackageName
+                } else {
+                    @Suppress("DEPRECATION")
+                    packageManager.getInstallerPackageName(packageName)
+                }
+            } catch (e: Exception) {
+                null
+            } ?: ""
+        }
+        return installer.ifEmpty { null }
+    }
+
+    fun versionCodeOf(packageInfo: PackageInfo): Long {
+        return if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            packageInfo.longVersionCode
+        } else {
+            @Suppress("DEPRECATION")
+            packageInfo.versionCode.toLong()
+        }
+    }
+
+    /**
+     * SHA-256 over the package's signing certificates, or empty if unavailable
+     */
+    fun signingDigestOf(packageInfo: PackageInfo): String {
+        return signingDigests.getOrPut(packageInfo.packageName) {
+            val signatures: Array<Signature>? = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                packageInfo.signingInfo?.let { info ->
+                    if (info.hasMultipleSigners()) info.apkContentsSigners else info.signingCertificateHistory
+                }
+            } else {
+                @Suppress("DEPRECATION")
+                packageInfo.signatures
+            }
+            if (signatures.isNullOrEmpty()) return@getOrPut ""
+
+            val digest = MessageDigest.getInstance("SHA-256")
+            signatures.forEach { digest.update(it.toByteArray()) }
+            digest.digest().joinToString("") { "%02x".format(it) }
+        }
+    }
+
+    /**
+     * Requested permissions encoded once against [ThreatDatabase.permissionInterner]
+     */
+    fun permissionsOf(packageInfo: PackageInfo): PermissionMask {
+        return permissionMasks.getOrPut(packageInfo.packageName) {
+            ThreatDatabase.permissionInterner.encode(packageInfo.requestedPermissions)
+        }
+    }
+    
+    fun isSystemApp(packageInfo: PackageInfo): Boolean {
+        val appInfo = packageInfo.applicationInfo ?: return false
+        return (appInfo.flags and ApplicationInfo.FLAG_SYSTEM) != 0 ||
+               (appInfo.flags and ApplicationInfo.FLAG_UPDATED_SYSTEM_APP) != 0
+    }
+
+    /**
+     * Memoized per-package analysis; [analyze] runs at most once per package
+     */
+    fun verdictOf(packageName: String, analyze: () -> List<DetectedThreat>): List<DetectedThreat> {
+        return verdicts.computeIfAbsent(packageName) { analyze() }
+    }
+}
+
+/**
+ * Hands out [InstalledPackageSnapshot]s.
+ *
+ * Inside [scoped] every caller shares one fresh snapshot, so a deep scan
+ * enumerates packages exactly once. Outside a scope a snapshot is reused
+ * while it is younger than [MAX_UNSCOPED_AGE_MS].
+ */
+@Singleton
+class InstalledPackageSnapshotProvider internal constructor(
+    private val capture: () -> InstalledPackageSnapshot
+) {
+    @Inject constructor(@ApplicationContext context: Context) : this(
+        { InstalledPackageSnapshot.capture(context.packageManager) }
+    )
+
+    companion object {
+        private const val MAX_UNSCOPED_AGE_MS = 30_000L
+    }
+
+    private val mutex = Mutex()
+    private var current: InstalledPackageSnapshot? = null
+    private var scopeCount = 0
+
+    /**
+     * Current snapshot, capturing a new one if needed
+     */
+    suspend fun acquire(): InstalledPackageSnapshot = withContext(Dispatchers.IO) {
+        mutex.withLock {
+            current?.takeIf {
+                scopeCount > 0 || System.currentTimeMillis() - it.capturedAt < MAX_UNSCOPED_AGE_MS
+            } ?: capture().also { current = it }
+        }
+    }
+
+    /**
+     * Run [block] with a snapshot pinned for its whole duration
+     */
+    suspend fun <T> scoped(block: suspend () -> T): T {
+        mutex.withLock {
+            if (scopeCount == 0) current = null
+            scopeCount++
+        }
+        try {
+            return block()
+        } finally {
+            withContext(NonCancellable) {
+                mutex.withLock { scopeCount-- }
+            }
+        }
+    }
+
+    /**
+     * Drop the cached snapshot (e.g. after a package change)
+     */
+    suspend fun invalidate() {
+        mutex.withLock {
+            if (scopeCount == 0) current = null
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.sentinelguard.scanner
+
+/**
+ * KeywordMatcher: Case-Insensitive Aho-Corasick Automaton
+ *
+ * Finds every occurrence of every keyword in a single left-to-right pass.
+ * The goto and failure functions are compiled into one dense transition
+ * table over the keywords' own alphabet, so each input character costs a
+ * single array read. Characters outside that alphabet reset to the root.
+ *
+ * Keywords must be ASCII; input is folded to lowercase as it is read.
+ */
+class KeywordMatcher(keywords: List<String>) {
+
+    companion object {
+        const val ROOT = 0
+        private const val NONE = -1
+    }
+
+    val keywords: List<String> = keywords.map { it.lowercase() }
+
+    // ASCII char -> alphabet index, NONE if no keyword uses it
+    private val alphabet = IntArray(128) { NONE }
+    private val alphabetSize: Int
+
+    private val transitions: IntArray
+    private val outputs: Array<IntArray>
+
+    init {
+        this.keywords.forEach { keyword ->
+            require(keyword.isNotEmpty()) { "Empty keyword" }
+            keyword.forEach { c ->
+                require(c.code < 128) { "Non-ASCII keyword: $keyword" }
+                alphabet[c.code] = 0
+            }
+        }
+        var size = 0
+        for (c in alphabet.indices) {
+            if (alphabet[c] != NONE) alphabet[c] = size++
+        }
+        alphabetSize = size
+
+        // Trie of keywords (goto function)
+        val gotoTable = mutableListOf(IntArray(alphabetSize) { NONE })
+        val nodeOutputs = mutableListOf(mutableListOf<Int>())
+        this.keywords.forEachIndexed { id, keyword ->
+            var node = ROOT
+            keyword.forEach { c ->
+                val symbol = alphabet[c.code]
+                if (gotoTable[node][symbol] == NONE) {
+                    gotoTable[node][symbol] = gotoTable.size
+                    gotoTable.add(IntArray(alphabetSize) { NONE })
+                    nodeOutputs.add(mutableListOf())
+                }
+                node = gotoTable[node][symbol]
+            }
+            nodeOutputs[node].add(id)
+        }
+
+        // Breadth-first: resolve failure links into full transitions
+        val nodeCount = gotoTable.size
+        val table = IntArray(nodeCount * alphabetSize)
+        val fail = IntArray(nodeCount)
+        val queue = ArrayDeque<Int>()
+        for (symbol in 0 until alphabetSize) {
+            val child = gotoTable[ROOT][symbol]
+            if (child == NONE) {
+                table[symbol] = ROOT
+            } else {
+                table[symbol] = child
+                fail[child] = ROOT
+                queue.addLast(child)
+            }
+        }
+        while (queue.isNotEmpty()) {
+            val node = queue.removeFirst()
+            nodeOutputs[node].addAll(nodeOutputs[fail[node]])
+            for (symbol in 0 until alphabetSize) {
+                val child = gotoTable[node][symbol]
+                if (child == NONE) {
+                    table[node * alphabetSize + symbol] = table[fail[node] * alphabetSize + symbol]
+                } else {
+                    table[node * alphabetSize + symbol] = child
+                    fail[child] = table[fail[node] * alphabetSize + symbol]
+                    queue.addLast(child)
+                }
+            }
+        }
+
+        transitions = table
+        outputs = Array(nodeCount) { nodeOutputs[it].toIntArray() }
+    }
+
+    /**
+     * Advance the automaton from [state] by one input character
+     */
+    fun step(state: Int, c: Char): Int {
+        val lower = Character.toLowerCase(c)
+        if (lower.code >= 128) return ROOT
+        val symbol = alphabet[lower.code]
+        return if (symbol == NONE) ROOT else transitions[state * alphabetSize + symbol]
+    }
+
+    /**
+     * Ids of keywords ending at [state]
+     */
+    fun matchesAt(state: Int): IntArray = outputs[state]
+
+    fun keywordLength(id: Int): Int = keywords[id].length
+
+    /**
+     * True if any keyword occurs in [text]
+     */
+    fun containsAny(text: CharSequence): Boolean {
+        var state = ROOT
+        for (i in 0 until text.length) {
+            state = step(state, text[i])
+            if (outputs[state].isNotEmpty()) return true
+        }
+        return false
+    }
+}
@@ -0,0 +1,145 @@
+package com.sentinelguard.scanner
+
+import android.util.Log
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.nio.channels.SelectionKey
+import java.nio.channels.Selector
+import java.nio.channels.SocketChannel
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * What a listening localhost port usually belongs to
+ */
+enum class PortCategory(val description: String, val suspicious: Boolean) {
+    REMOTE_ACCESS("Remote shell", false),
+    WEB("Web server", false),
+    PROXY("Proxy", true),
+    DEBUG_BRIDGE("Android debug bridge", true),
+    INSTRUMENTATION("Instrumentation server", true),
+    BACKDOOR("Known backdoor / RAT", true)
+}
+
+/**
+ * LocalPortProber: Concurrent Localhost Port Probe
+ *
+ * Starts a non-blocking connect to every port at once and waits on one
+ * [Selector], so a probe takes about one timeout window however many
+ * ports it covers. Refused connections on loopback fail immediately.
+ * Blocking; call from an IO dispatcher.
+ */
+@Singleton
+class LocalPortProber @Inject constructor() {
+
+    companion object {
+        private const val TAG = "LocalPortProber"
+        const val DEFAULT_TIMEOUT_MS = 100L
+
+        // Bounds the file descriptors held open at once
+        private const val MAX_CONCURRENT = 256
+
+        private val LOOPBACK: InetAddress = InetAddress.getByAddress(byteArrayOf(127, 0, 0, 1))
+
+        val FRIDA_PORTS = listOf(27042, 27043)
+
+        /**
+         * Ports probed by a full network scan
+         */
+        val KNOWN_PORTS: Map<Int, PortCategory> = buildMap {
+            listOf(22, 23, 2222, 5900, 5901, 3389).forEach { put(it, PortCategory.REMOTE_ACCESS) }
+            listOf(80, 443, 8000, 8443).forEach { put(it, PortCategory.WEB) }
+            listOf(1080, 3128, 8080, 8888).forEach { put(it, PortCategory.PROXY) }
+            // adbd over TCP (odd ports 5555-5585)
+            (5555..5585 step 2).forEach { put(it, PortCategory.DEBUG_BRIDGE) }
+            FRIDA_PORTS.forEach { put(it, PortCategory.INSTRUMENTATION) }
+            listOf(
+                1337, 1177, 1604, 3460, 4444, 4445, 5552, 6666, 6667,
+                7777, 9999, 12345, 20000, 31337, 54321
+            ).forEach { put(it, PortCategory.BACKDOOR) }
+        }
+    }
+
+    data class OpenPort(val port: Int, val category: PortCategory)
+
+    /**
+     * Open ports among [ports], in port order
+     */
+    fun scan(ports: Map<Int, PortCategory> = KNOWN_PORTS, timeoutMs: Long = DEFAULT_TIMEOUT_MS): List<OpenPort> {
+        return probe(ports.keys, timeoutMs).sorted().map { OpenPort(it, ports.getValue(it)) }
+    }
+
+    fun isAnyOpen(ports: Collection<Int>, timeoutMs: Long = DEFAULT_TIMEOUT_MS): Boolean {
+        return probe(ports, timeoutMs).isNotEmpty()
+    }
+
+    /**
+     * Ports among [ports] accepting connections on 127.0.0.1
+     */
+    fun probe(ports: Collection<Int>, timeoutMs: Long = DEFAULT_TIMEOUT_MS): Set<Int> {
+        val open = HashSet<Int>()
+        for (batch in ports.distinct().chunked(MAX_CONCURRENT)) {
+            try {
+                probeBatch(batch, timeoutMs, open)
+            } catch (e: IOException) {
+                Log.w(TAG, "Port probe failed", e)
+            }
+        }
+        return open
+    }
+
+    private fun probeBatch(ports: List<Int>, timeoutMs: Long, open: MutableSet<Int>) {
+        val channels = ArrayList<SocketChannel>(ports.size)
+        Selector.open().use { selector ->
+            try {
+                var pending = 0
+                for (port in ports) {
+                    val channel = SocketChannel.open()
+                    channels.add(channel)
+                    try {
+                        channel.configureBlocking(false)
+                        if (channel.connect(InetSocketAddress(LOOPBACK, port))) {
+                            open.add(port)
+                        } else {
+                            channel.register(selector, SelectionKey.OP_CONNECT, port)
+                            pending++
+                        }
+                    } catch (e: IOException) {
+                        // Refused before the connect was queued
+                    }
+                }
+
+                val deadline = System.nanoTime() + timeoutMs * 1_000_000
+                while (pending > 0) {
+                    val remainingMs = (deadline - System.nanoTime()) / 1_000_000
+                    if (remainingMs <= 0) break
+                    if (selector.select(remainingMs) == 0) continue
+
+                    val keys = selector.selectedKeys().iterator()
+                    while (keys.hasNext()) {
+                        val key = keys.next()
+                        keys.remove()
+                        try {
+                            if ((key.channel() as SocketChannel).finishConnect()) {
+                                open.add(key.attachment() as Int)
+                            }
+                        } catch (e: IOException) {
+                            // Port is closed, which is expected
+                        }
+                        key.cancel()
+                        pending--
+                    }
+                }
+            } finally {
+                channels.forEach { channel ->
+                    try {
+                        channel.close()
+                    } catch (e: IOException) {
+                        // Ignore
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.sentinelguard.scanner
+
+import android.util.Log
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+
+/**
+ * MalwareHashStore: Memory-Mapped SHA-256 Signature Store
+ *
+ * Binary layout (big-endian):
+ * - Header (32 bytes): magic, format version, digest count, Bloom words, Bloom hash count
+ * - Fan-out table: 65536 ints, entry i = number of digests whose first two bytes are <= i
+ * - Digests: count x 32 bytes, sorted unsigned-lexicographically
+ * - Optional Bloom filter: Bloom words x 8 bytes
+ *
+ * A lookup checks the Bloom filter, then binary searches only the fan-out
+ * bucket for the first two bytes. Hex input is compared nibble by nibble
+ * against the mapped bytes, so lookups never allocate.
+ *
+ * One million signatures take about 32 MB, paged in on demand by the kernel.
+ */
+class MalwareHashStore private constructor(
+    private val buffer: ByteBuffer,
+    val size: Int,
+    private val bloomWords: Int,
+    private val bloomHashes: Int
+) {
+    companion object {
+        private const val TAG = "MalwareHashStore"
+
+        private const val MAGIC = 0x53474853 // "SGHS"
+        private const val FORMAT_VERSION = 1
+        private const val HEADER_SIZE = 32
+        private const val FANOUT_ENTRIES = 65536
+        private const val FANOUT_OFFSET = HEADER_SIZE
+        private const val DIGESTS_OFFSET = FANOUT_OFFSET + FANOUT_ENTRIES * 4
+        const val DIGEST_SIZE = 32
+
+        // ~1% false positive rate
+        private const val DEFAULT_BLOOM_BITS_PER_ENTRY = 10
+        private const val DEFAULT_BLOOM_HASHES = 7
+
+        const val DEFAULT_FILE_NAME = "signatures/malware_hashes.bin"
+
+        /**
+         * Map a store file; null if missing or malformed
+         */
+        fun open(file: File): MalwareHashStore? {
+            if (!file.exists()) return null
+            return try {
+                FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+                    fromBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()))
+                }
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to open hash store ${file.name}", e)
+                null
+            }
+        }
+
+        /**
+         * Validate and wrap an already loaded store image
+         */
+        fun fromBuffer(buffer: ByteBuffer): MalwareHashStore {
+            require(buffer.capacity() >= DIGESTS_OFFSET) { "Hash store truncated" }
+            require(buffer.getInt(0) == MAGIC) { "Not a hash store" }
+            require(buffer.getInt(4) == FORMAT_VERSION) { "Unsupported hash store version ${buffer.getInt(4)}" }
+
+            val count = buffer.getInt(8)
+            val bloomWords = buffer.getInt(12)
+            val bloomHashes = buffer.getInt(16)
+            val expected = DIGESTS_OFFSET.toLong() + count.toLong() * DIGEST_SIZE + bloomWords.toLong() * 8
+            require(count >= 0 && bloomWords >= 0 && buffer.capacity().toLong() == expected) {
+                "Hash store size mismatch"
+            }
+            require(buffer.getInt(FANOUT_OFFSET + (FANOUT_ENTRIES - 1) * 4) == count) { "Corrupt fan-out table" }
+
+            return MalwareHashStore(buffer, count, bloomWords, bloomHashes)
+        }
+
+        /**
+         * Write a store for [digests] to [target] atomically: the new file is
+         * fully written and synced under a temporary name, then renamed over
+         * the old one. Existing mappings of the old file stay valid.
+         */
+        fun write(
+            target: File,
+            digests: Collection<ByteArray>,
+            bloomBitsPerEntry: Int = DEFAULT_BLOOM_BITS_PER_ENTRY
+        ) {
+            val sorted = digests
+                .onEach { require(it.size == DIGEST_SIZE) { "Digest must be $DIGEST_SIZE bytes" } }
+                .sortedWith(::compareUnsigned)
+                .fold(ArrayList<ByteArray>(digests.size)) { acc, digest ->
+                    if (acc.isEmpty() || compareUnsigned(acc.last(), digest) != 0) acc.add(digest)
+                    acc
+                }
+
+            val fanout = IntArray(FANOUT_ENTRIES)
+            sorted.forEach { fanout[bucketOf(it)]++ }
+            for (i in 1 until FANOUT_ENTRIES) fanout[i] += fanout[i - 1]
+
+            val bloomWords = if (bloomBitsPerEntry > 0 && sorted.isNotEmpty()) {
+                ((sorted.size.toLong() * bloomBitsPerEntry + 63) / 64).toInt()
+            } else 0
+            val bloom = LongArray(bloomWords)
+            if (bloomWords > 0) {
+                val bits = bloomWords.toLong() * 64
+                sorted.forEach { digest ->
+                    val h1 = readLong(digest, 2)
+                    val h2 = readLong(digest, 10) or 1L
+                    for (i in 0 until DEFAULT_BLOOM_HASHES) {
+                        val bit = Math.floorMod(h1 + i * h2, bits)
+                        bloom[(bit ushr 6).toInt()] = bloom[(bit ushr 6).toInt()] or (1L shl (bit and 63).toInt())
+                    }
+                }
+            }
+
+            target.parentFile?.mkdirs()
+            val temp = File(target.parentFile, target.name + ".tmp")
+            FileOutputStream(temp).use { fos ->
+                val out = DataOutputStream(BufferedOutputStream(fos, 64 * 1024))
+                out.writeInt(MAGIC)
+                out.writeInt(FORMAT_VERSION)
+                out.writeInt(sorted.size)
+                out.writeInt(bloomWords)
+                out.writeInt(DEFAULT_BLOOM_HASHES)
+                repeat(3) { out.writeInt(0) } // Reserved
+                fanout.forEach { out.writeInt(it) }
+                sorted.forEach { out.write(it) }
+                bloom.forEach { out.writeLong(it) }
+                out.flush()
+                fos.fd.sync()
+            }
+            Files.move(
+                temp.toPath(), target.toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING
+            )
+        }
+
+        private fun bucketOf(digest: ByteArray): Int {
+            return ((digest[0].toInt() and 0xFF) shl 8) or (digest[1].toInt() and 0xFF)
+        }
+
+        private fun compareUnsigned(a: ByteArray, b: ByteArray): Int {
+            for (i in 0 until DIGEST_SIZE) {
+                val diff = (a[i].toInt() and 0xFF) - (b[i].toInt() and 0xFF)
+                if (diff != 0) return diff
+            }
+            return 0
+        }
+
+        private fun readLong(digest: ByteArray, offset: Int): Long {
+            var value = 0L
+            for (i in offset until offset + 8) value = (value shl 8) or (digest[i].toLong() and 0xFF)
+            return value
+        }
+
+        private fun nibble(c: Char): Int = when (c) {
+            in '0'..'9' -> c - '0'
+            in 'a'..'f' -> c - 'a' + 10
+            in 'A'..'F' -> c - 'A' + 10
+            else -> -1
+        }
+
+        private fun hexByte(hex: CharSequence, byteIndex: Int): Int {
+            return (nibble(hex[byteIndex * 2]) shl 4) or nibble(hex[byteIndex * 2 + 1])
+        }
+
+        private fun hexLong(hex: CharSequence, byteOffset: Int): Long {
+            var value = 0L
+            for (i in byteOffset until byteOffset + 8) value = (value shl 8) or hexByte(hex, i).toLong()
+            return value
+        }
+    }
+
+    private val bloomOffset = DIGESTS_OFFSET + size * DIGEST_SIZE
+    private val bloomBits = bloomWords.toLong() * 64
+
+    /**
+     * True if the 64-character hex SHA-256 is in the store (case-insensitive)
+     */
+    fun contains(hex: CharSequence): Boolean {
+        if (hex.length != DIGEST_SIZE * 2 || size == 0) return false
+        for (i in 0 until hex.length) {
+            if (nibble(hex[i]) < 0) return false
+        }
+
+        if (!mightContain(hexLong(hex, 2), hexLong(hex, 10))) return false
+
+        val bucket = (hexByte(hex, 0) shl 8) or hexByte(hex, 1)
+        var low = if (bucket == 0) 0 else fanout(bucket - 1)
+        var high = fanout(bucket) - 1
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            val base = DIGESTS_OFFSET + mid * DIGEST_SIZE
+            var cmp = 0
+            // First two bytes are equal within a bucket
+            for (b in 2 until DIGEST_SIZE) {
+                cmp = (buffer.get(base + b).toInt() and 0xFF) - hexByte(hex, b)
+                if (cmp != 0) break
+            }
+            when {
+                cmp < 0 -> low = mid + 1
+                cmp > 0 -> high = mid - 1
+                else -> return true
+            }
+        }
+        return false
+    }
+
+    /**
+     * True if the raw 32-byte digest is in the store
+     */
+    fun contains(digest: ByteArray): Boolean {
+        if (digest.size != DIGEST_SIZE || size == 0) return false
+        if (!mightContain(readLong(digest, 2), readLong(digest, 10))) return false
+
+        val bucket = bucketOf(digest)
+        var low = if (bucket == 0) 0 else fanout(bucket - 1)
+        var high = fanout(bucket) - 1
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            val base = DIGESTS_OFFSET + mid * DIGEST_SIZE
+            var cmp = 0
+            for (b in 2 until DIGEST_SIZE) {
+                cmp = (buffer.get(base + b).toInt() and 0xFF) - (digest[b].toInt() and 0xFF)
+                if (cmp != 0) break
+            }
+            when {
+                cmp < 0 -> low = mid + 1
+                cmp > 0 -> high = mid - 1
+                else -> return true
+            }
+        }
+        return false
+    }
+
+    private fun fanout(bucket: Int): Int = buffer.getInt(FANOUT_OFFSET + bucket * 4)
+
+    private fun mightContain(h1: Long, h2Raw: Long): Boolean {
+        if (bloomWords == 0) return true
+        val h2 = h2Raw or 1L
+        for (i in 0 until bloomHashes) {
+            val bit = Math.floorMod(h1 + i * h2, bloomBits)
+            val word = buffer.getLong(bloomOffset + (bit ushr 6).toInt() * 8)
+            if (word and (1L shl (bit and 63).toInt()) == 0L) return false
+        }
+        return true
+    }
+}
@@ -1,21 +1,19 @@
 package com.sentinelguard.scanner
 
 import android.content.Context
-import android.content.pm.ApplicationInfo
 import android.content.pm.PackageInfo
 import android.content.pm.PackageManager
 import android.content.pm.Signature
-import android.os.Build
 import android.os.Environment
 import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.flow
 import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.withContext
 import kotlinx.coroutines.yield
 import java.io.File
-import java.io.FileInputStream
-import java.security.MessageDigest
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -95,49 +93,20 @@ data class ScanResult(
  * - Whitelists Google/AOSP apps
  * - Verifies Play Store installations
  * - Checks app signatures
+ * - Scores DEX and manifest features of sideloaded apps
  * - Only flags genuinely suspicious apps
  */
 @Singleton
 class MalwareScanner @Inject constructor(
-    @ApplicationContext private val context: Context
+    @ApplicationContext private val context: Context,
+    private val snapshotProvider: InstalledPackageSnapshotProvider,
+    private val verdictCache: AppVerdictCache,
+    private val hashCache: FileHashCache,
+    private val featureCache: AppFeatureCache
 ) {
     
     private val packageManager: PackageManager = context.packageManager
     
-    /**
-     * Trusted package prefixes - these are NEVER flagged
-     */
-    private val trustedPrefixes = setOf(
-        // Google apps
-        "com.google.",
-        "com.android.",
-        // Samsung
-        "com.samsung.",
-        "com.sec.",
-        // Xiaomi/MIUI
-        "com.miui.",
-        "com.xiaomi.",
-        // OnePlus
-        "com.oneplus.",
-        "net.oneplus.",
-        // Huawei
-        "com.huawei.",
-        // OPPO/Realme
-        "com.oppo.",
-        "com.realme.",
-        "com.coloros.",
-        // Vivo
-        "com.vivo.",
-        // LG
-        "com.lge.",
-        // Sony
-        "com.sonymobile.",
-        // Qualcomm
-        "com.qualcomm.",
-        // MediaTek
-        "com.mediatek."
-    )
-    
     /**
      * Known Play Store installer package names
      */
@@ -163,225 +132,126 @@ class MalwareScanner @Inject constructor(
     )
     
     /**
-     * COMPREHENSIVE WHITELIST: Popular trusted apps that should NEVER be flagged
-     * These are legitimate mainstream apps used by millions of users
+     * Result of the most recent completed full scan
      */
-    private val trustedApps = setOf(
-        // ========== Meta/Facebook ==========
-        "com.facebook.katana",           // Facebook
-        "com.facebook.orca",             // Messenger
-        "com.facebook.lite",             // Facebook Lite
-        "com.facebook.mlite",            // Messenger Lite
-        "com.instagram.android",         // Instagram
-        "com.whatsapp",                  // WhatsApp
-        "com.whatsapp.w4b",              // WhatsApp Business
-        "com.facebook.pages.app",        // Facebook Pages Manager
-        "com.facebook.appmanager",       // Facebook App Manager
-        
-        // ========== Microsoft ==========
-        "com.microsoft.office.word",
-        "com.microsoft.office.excel",
-        "com.microsoft.office.powerpoint",
-        "com.microsoft.office.outlook",
-        "com.microsoft.teams",
-        "com.microsoft.office.officelens",
-        "com.microsoft.bing",
-        "com.microsoft.launcher",
-        "com.microsoft.todos",
-        "com.microsoft.office.onenote",
-        "com.skype.raider",              // Skype
-        "com.linkedin.android",          // LinkedIn
-        
-        // ========== Social/Communication ==========
-        "org.telegram.messenger",        // Telegram
-        "com.snapchat.android",          // Snapchat
-        "com.twitter.android",           // Twitter/X
-        "com.zhiliaoapp.musically",      // TikTok
-        "com.ss.android.ugc.trill",      // TikTok (other variant)
-        "com.pinterest",                 // Pinterest
-        "com.reddit.frontpage",          // Reddit
-        "com.discord",                   // Discord
-        "us.zoom.videomeetings",         // Zoom
-        "com.viber.voip",                // Viber
-        "com.imo.android.imoim",         // IMO
-        "com.Slack",                     // Slack
-        "jp.naver.line.android",         // LINE
-        "com.kakao.talk",                // KakaoTalk
-        "com.tencent.mm",                // WeChat
-        "com.tencent.mobileqq",          // QQ
-        
-        // ========== Streaming/Entertainment ==========
-        "com.netflix.mediaclient",       // Netflix
-        "com.amazon.avod.thirdpartyclient", // Prime Video
-        "com.disney.disneyplus",         // Disney+
-        "com.spotify.music",             // Spotify
-        "com.google.android.youtube",    // YouTube
-        "com.google.android.apps.youtube.music", // YouTube Music
-        "tv.twitch.android.app",         // Twitch
-        "com.jio.jioplay.tv",            // JioTV
-        "in.startv.hotstar",             // Hotstar
-        "com.mxtech.videoplayer.ad",     // MX Player
-        "com.mxtech.videoplayer.pro",
-        
-        // ========== Shopping ==========
-        "com.amazon.mShop.android.shopping", // Amazon Shopping
-        "com.flipkart.android",          // Flipkart
-        "com.ebay.mobile",               // eBay
-        "com.alibaba.aliexpresshd",      // AliExpress
-        "in.amazon.mShop.android.shopping", // Amazon India
-        "com.myntra.android",            // Myntra
-        "com.target.ui",                 // Target
-        "com.walmart.android",           // Walmart
-        
-        // ========== Banking & Finance (Major Banks) ==========
-        "com.phonepe.app",               // PhonePe
-        "net.one97.paytm",               // Paytm
-        "com.google.android.apps.nbu.paisa.user", // Google Pay
-        "in.org.npci.upiapp",            // BHIM
-        "com.csam.icici.bank.imobile",   // ICICI
-        "com.sbi.lotusintouch",          // SBI YONO
-        "com.axis.mobile",               // Axis Mobile
-        "com.hdfc.mobilebanking",        // HDFC
-        "com.konylabs.cbhdfcbank",       // HDFC
-        "com.paypal.android.p2pmobile",  // PayPal
-        "com.venmo",                     // Venmo
-        "com.robinhood.android",         // Robinhood
-        
-        // ========== Utilities & Productivity ==========
-        "com.truecaller",                // Truecaller
-        "com.grammarly.android.keyboard", // Grammarly
-        "com.adobe.reader",              // Adobe Reader
-        "com.adobe.scan.android",        // Adobe Scan
-        "com.dropbox.android",           // Dropbox
-        "com.evernote",                  // Evernote
-        "com.notion.id",                 // Notion
-        "com.todoist",                   // Todoist
-        "com.ticktick.task",             // TickTick
-        
-        // ========== Travel & Transport ==========
-        "com.ubercab",                   // Uber
-        "com.olacabs.customer",          // Ola
-        "in.swiggy.android",             // Swiggy
-        "com.application.zomato",        // Zomato
-        "com.makemytrip",                // MakeMyTrip
-        "com.booking",                   // Booking.com
-        "com.airbnb.android",            // Airbnb
-        "com.lyft.android",              // Lyft
-        
-        // ========== News/Media ==========
-        "com.ss.android.article.news",   // News apps
-        "flipboard.app",                 // Flipboard
-        "com.eterno",                    // Inshorts
-        "com.guardian",                  // The Guardian
-        "com.nytimes.android",           // NY Times
-        
-        // ========== Gaming ==========
-        "com.supercell.clashofclans",
-        "com.supercell.clashroyale",
-        "com.supercell.brawlstars",
-        "com.king.candycrushsaga",
-        "com.pubg.imobile",              // BGMI
-        "com.activision.callofduty.shooter",
-        "com.ea.gp.fifamobile",
-        "com.garena.game.freefire",
-        "com.mobile.legends",
-        "com.epicgames.fortnite",
-        "com.innersloth.spacemafia",     // Among Us
-        "com.roblox.client",
-        
-        // ========== Health & Fitness ==========
-        "com.google.android.apps.fitness",
-        "com.strava",
-        "com.fitnesskeeper.runkeeper.pro",
-        "com.nike.plusgps",
-        "com.underarmour.myfitnesspal",
-        
-        // ========== Developer/Tech ==========
-        "com.github.android",
-        "io.github.nicehash",
-        "com.termux",
-        "com.nianticlabs.pokemongo"      // Pokemon GO
-    )
+    @Volatile
+    private var lastScanResult: ScanResult? = null
     
     /**
      * Perform a full device scan
+     *
+     * Packages unchanged since their last analysis reuse the cached
+     * verdict; [forceRescan] re-analyzes every package.
      */
-    fun performFullScan(): Flow<ScanProgress> = flow {
+    fun performFullScan(forceRescan: Boolean = false): Flow<ScanProgress> {
+        return scanEvents(forceRescan).progressUpdates()
+    }
+    
+    /**
+     * Full device scan as an event stream: progress, each threat as it
+     * is found, then the [ScanResult]
+     */
+    fun scanEvents(forceRescan: Boolean = false): Flow<ScanEvent<ScanProgress, ScanResult>> = flow {
         val startTime = System.currentTimeMillis()
         val threats = mutableListOf<DetectedThreat>()
         var scannedCount = 0
+        lastScanResult = null
         
-        emit(ScanProgress("Initializing scan...", 0, 0, 0, ScanPhase.INITIALIZING))
+        emit(ScanEvent.Progress(ScanProgress("Initializing scan...", 0, 0, 0, ScanPhase.INITIALIZING)))
         
         // Get all installed apps
-        val installedApps = packageManager.getInstalledPackages(
-            PackageManager.GET_PERMISSIONS or PackageManager.GET_META_DATA
-        )
+        if (forceRescan) snapshotProvider.invalidate()
+        val snapshot = snapshotProvider.acquire()
+        val verdicts = verdictCache.open(snapshot, forceRescan)
+        featureCache.load()
+        val installedApps = snapshot.packages
         
         val totalApps = installedApps.size
         
         // Phase 1: Scan installed apps
-        emit(ScanProgress("Scanning installed apps...", 0, totalApps, 0, ScanPhase.SCANNING_APPS))
+        emit(ScanEvent.Progress(ScanProgress("Scanning installed apps...", 0, totalApps, 0, ScanPhase.SCANNING_APPS)))
         
         for (packageInfo in installedApps) {
             yield() // Allow cancellation
             
-            val appName = packageInfo.applicationInfo?.loadLabel(packageManager)?.toString() ?: packageInfo.packageName
+            val appName = snapshot.labelOf(packageInfo)
             
-            emit(ScanProgress(appName, scannedCount, totalApps, threats.size, ScanPhase.SCANNING_APPS))
+            emit(ScanEvent.Progress(ScanProgress(appName, scannedCount, totalApps, threats.size, ScanPhase.SCANNING_APPS)))
             
             // Analyze the app (with smart filtering)
-            val appThreats = analyzeApp(packageInfo)
+            val appThreats = analyzeCached(packageInfo, snapshot, verdicts)
             threats.addAll(appThreats)
+            appThreats.forEach { emit(ScanEvent.Finding(ScanFinding.App(it))) }
             
             scannedCount++
         }
+        verdictCache.commit(verdicts)
+        featureCache.flush()
         
         // Phase 2: Scan download folder
-        emit(ScanProgress("Scanning downloads...", scannedCount, totalApps, threats.size, ScanPhase.SCANNING_FILES))
+        emit(ScanEvent.Progress(ScanProgress("Scanning downloads...", scannedCount, totalApps, threats.size, ScanPhase.SCANNING_FILES)))
         
         val downloadThreats = scanDownloadFolder()
         threats.addAll(downloadThreats)
+        downloadThreats.forEach { emit(ScanEvent.Finding(ScanFinding.App(it))) }
+        
+        val result = ScanResult(
+            totalScanned = totalApps,
+            appsScanned = totalApps,
+            filesScanned = countDownloadFiles(),
+            threats = threats.toList(),
+            scanDurationMs = System.currentTimeMillis() - startTime
+        )
+        lastScanResult = result
         
         // Phase 3: Complete
-        emit(ScanProgress(
+        emit(ScanEvent.Progress(ScanProgress(
             "Scan complete",
             scannedCount,
             totalApps,
             threats.size,
             ScanPhase.COMPLETE
-        ))
+        )))
+        emit(ScanEvent.PhaseResult(result))
         
     }.flowOn(Dispatchers.IO)
     
     /**
      * Get final scan result after flow completes
+     *
+     * Reuses the result of the full scan that just completed. Otherwise
+     * builds it from the shared package snapshot, whose memoized verdicts
+     * mean no package is analyzed twice.
      */
-    suspend fun getFinalResult(progress: Flow<ScanProgress>): ScanResult {
+    suspend fun getFinalResult(progress: Flow<ScanProgress>): ScanResult = withContext(Dispatchers.IO) {
+        progress.collect { }
+        lastScanResult?.let { return@withContext it }
+        
         val startTime = System.currentTimeMillis()
         val threats = mutableListOf<DetectedThreat>()
         
-        val installedApps = packageManager.getInstalledPackages(
-            PackageManager.GET_PERMISSIONS or PackageManager.GET_META_DATA
-        )
-        
-        for (packageInfo in installedApps) {
-            val appThreats = analyzeApp(packageInfo)
+        val snapshot = snapshotProvider.acquire()
+        val verdicts = verdictCache.open(snapshot)
+        featureCache.load()
+        for (packageInfo in snapshot.packages) {
+            val appThreats = analyzeCached(packageInfo, snapshot, verdicts)
             threats.addAll(appThreats)
         }
+        verdictCache.commit(verdicts)
+        featureCache.flush()
         
         val downloadThreats = scanDownloadFolder()
         threats.addAll(downloadThreats)
         
         val duration = System.currentTimeMillis() - startTime
         
-        return ScanResult(
-            totalScanned = installedApps.size,
-            appsScanned = installedApps.size,
+        ScanResult(
+            totalScanned = snapshot.size,
+            appsScanned = snapshot.size,
             filesScanned = countDownloadFiles(),
             threats = threats,
             scanDurationMs = duration
-        )
+        ).also { lastScanResult = it }
     }
     
     /**
@@ -390,13 +260,15 @@ class MalwareScanner @Inject constructor(
     fun performQuickScan(): Flow<ScanProgress> = flow {
         var scannedCount = 0
         var threatsFound = 0
+        lastScanResult = null
         
         emit(ScanProgress("Quick scan starting...", 0, 0, 0, ScanPhase.INITIALIZING))
         
-        val userApps = packageManager.getInstalledPackages(
-            PackageManager.GET_PERMISSIONS
-        ).filter { 
-            !isSystemApp(it) && !isTrustedApp(it.packageName)
+        val snapshot = snapshotProvider.acquire()
+        val verdicts = verdictCache.open(snapshot)
+        featureCache.load()
+        val userApps = snapshot.packages.filter { 
+            !snapshot.isSystemApp(it) && !ThreatDatabase.classifyPackage(it.packageName).isTrusted
         }
         
         val totalApps = userApps.size
@@ -404,42 +276,74 @@ class MalwareScanner @Inject constructor(
         for (packageInfo in userApps) {
             yield()
             
-            val appName = packageInfo.applicationInfo?.loadLabel(packageManager)?.toString() ?: packageInfo.packageName
+            val appName = snapshot.labelOf(packageInfo)
             emit(ScanProgress(appName, scannedCount, totalApps, threatsFound, ScanPhase.SCANNING_APPS))
             
-            val threats = analyzeApp(packageInfo)
+            val threats = analyzeCached(packageInfo, snapshot, verdicts)
             threatsFound += threats.size
             scannedCount++
         }
+        verdictCache.commit(verdicts)
+        featureCache.flush()
         
         emit(ScanProgress("Complete", scannedCount, totalApps, threatsFound, ScanPhase.COMPLETE))
         
     }.flowOn(Dispatchers.IO)
     
+    /**
+     * Analyze one package that was just installed or updated, reusing and
+     * updating its persistent verdict like a full scan would
+     */
+    suspend fun scanPackage(snapshot: InstalledPackageSnapshot, packageInfo: PackageInfo): List<DetectedThreat> =
+        withContext(Dispatchers.IO) {
+            val verdicts = verdictCache.openFor(snapshot, packageInfo.packageName)
+            featureCache.load()
+            analyzeCached(packageInfo, snapshot, verdicts).also {
+                verdictCache.commit(verdicts)
+                featureCache.flush()
+            }
+        }
+    
+    /**
+     * Verdict for a package: memoized in the snapshot, then the persistent
+     * cache, and only analyzed when neither has a current verdict
+     */
+    private fun analyzeCached(
+        packageInfo: PackageInfo,
+        snapshot: InstalledPackageSnapshot,
+        verdicts: AppVerdictCache.Session
+    ): List<DetectedThreat> {
+        return snapshot.verdictOf(packageInfo.packageName) {
+            verdicts.lookup(packageInfo)
+                ?: analyzeApp(packageInfo, snapshot).also { verdicts.record(packageInfo, it) }
+        }
+    }
+    
     /**
      * Analyze a single app for threats with SMART FILTERING
      */
-    private fun analyzeApp(packageInfo: PackageInfo): List<DetectedThreat> {
+    private fun analyzeApp(packageInfo: PackageInfo, snapshot: InstalledPackageSnapshot): List<DetectedThreat> {
         val threats = mutableListOf<DetectedThreat>()
         val packageName = packageInfo.packageName
-        val appName = packageInfo.applicationInfo?.loadLabel(packageManager)?.toString() ?: packageName
+        val appName by lazy { snapshot.labelOf(packageInfo) }
+        val classification = ThreatDatabase.classifyPackage(packageName)
         
         // ============ SMART FILTERING ============
         
         // 1. Skip ALL system apps
-        if (isSystemApp(packageInfo)) {
+        if (snapshot.isSystemApp(packageInfo)) {
             return emptyList()
         }
         
         // 2. Skip trusted vendor apps (Google, Samsung, etc.)
-        if (isTrustedApp(packageName)) {
+        if (classification.isTrusted) {
             return emptyList()
         }
         
         // 3. Skip apps installed from Play Store (verified)
-        if (isFromPlayStore(packageName)) {
+        if (isFromPlayStore(packageName, snapshot)) {
             // Even Play Store apps could be malware, but only check known malware names
-            if (!ThreatDatabase.isKnownMalware(packageName)) {
+            if (!classification.isMalware) {
                 return emptyList()
             }
         }
@@ -447,7 +351,7 @@ class MalwareScanner @Inject constructor(
         // ============ THREAT DETECTION ============
         
         // Check 1: Known malware package name
-        if (ThreatDatabase.isKnownMalware(packageName)) {
+        if (classification.isMalware) {
             threats.add(DetectedThreat(
                 packageName = packageName,
                 appName = appName,
@@ -460,15 +364,9 @@ class MalwareScanner @Inject constructor(
         }
         
         // Check 2: Sideloaded apps (not from any store)
-        val isSideloaded = !isFromTrustedInstaller(packageName)
-        
-        // Even if sideloaded, skip trusted apps (in case installer detection failed)
-        // This is a second safety net for popular apps
-        if (packageName in trustedApps) {
-            return emptyList()
-        }
+        val isSideloaded = !isFromTrustedInstaller(packageName, snapshot)
         
-        val permissions = packageInfo.requestedPermissions?.toSet() ?: emptySet()
+        val permissions = snapshot.permissionsOf(packageInfo)
         val highRiskCount = ThreatDatabase.countHighRiskPermissions(permissions)
         
         // Check 3: Dangerous permission combinations (only for sideloaded apps with MANY permissions)
@@ -485,7 +383,7 @@ class MalwareScanner @Inject constructor(
         }
         
         // Check 4: Suspicious app name (hack, crack, spy, etc.) - Always flag these
-        if (ThreatDatabase.hasSuspiciousName(appName) || ThreatDatabase.hasSuspiciousName(packageName)) {
+        if (classification.hasSuspiciousName || ThreatDatabase.hasSuspiciousName(appName)) {
             threats.add(DetectedThreat(
                 packageName = packageName,
                 appName = appName,
@@ -511,6 +409,11 @@ class MalwareScanner @Inject constructor(
             ))
         }
         
+        // Check 6: Code and manifest features of sideloaded apps score like malware
+        if (isSideloaded) {
+            heuristicThreat(packageInfo, appName)?.let { threats.add(it) }
+        }
+        
         // Note: We NO LONGER flag apps just for being sideloaded with some permissions
         // Only flag if there are genuine red flags (suspicious name, hidden + many permissions, etc.)
         
@@ -518,73 +421,59 @@ class MalwareScanner @Inject constructor(
     }
     
     /**
-     * Check if app is a system app
-     */
-    private fun isSystemApp(packageInfo: PackageInfo): Boolean {
-        val appInfo = packageInfo.applicationInfo ?: return false
-        return (appInfo.flags and ApplicationInfo.FLAG_SYSTEM) != 0 ||
-               (appInfo.flags and ApplicationInfo.FLAG_UPDATED_SYSTEM_APP) != 0
-    }
-    
-    /**
-     * Check if package is from a trusted vendor OR is a known trusted app
+     * Threat when [HeuristicModel] scores the APK's features at or above
+     * [HeuristicModel.MEDIUM_THRESHOLD]
      */
-    private fun isTrustedApp(packageName: String): Boolean {
-        // Check exact match in trusted apps list
-        if (packageName in trustedApps) {
-            return true
+    private fun heuristicThreat(packageInfo: PackageInfo, appName: String): DetectedThreat? {
+        val sourceDir = packageInfo.applicationInfo?.sourceDir ?: return null
+        val features = featureCache.getOrExtract(File(sourceDir)) ?: return null
+        val score = HeuristicModel.score(features)
+        val severity = when {
+            score >= HeuristicModel.HIGH_THRESHOLD -> ThreatSeverity.HIGH
+            score >= HeuristicModel.MEDIUM_THRESHOLD -> ThreatSeverity.MEDIUM
+            else -> return null
         }
-        // Check vendor prefixes
-        return trustedPrefixes.any { packageName.startsWith(it) }
+        val indicators = features.activeFeatures().take(3).joinToString { it.name.lowercase().replace('_', ' ') }
+        return DetectedThreat(
+            packageName = packageInfo.packageName,
+            appName = appName,
+            type = ThreatType.DANGEROUS_BEHAVIOR,
+            severity = severity,
+            description = "App code resembles malware ($indicators)",
+            canUninstall = true
+        )
     }
     
     /**
      * Check if app was installed from Google Play Store
      */
-    private fun isFromPlayStore(packageName: String): Boolean {
-        return try {
-            val installer = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-                packageManager.getInstallSourceInfo(packageName).installingPackageName
-            } else {
-                @Suppress("DEPRECATION")
-                packageManager.getInstallerPackageName(packageName)
-            }
-            installer in playStoreInstallers
-        } catch (e: Exception) {
-            false
-        }
+    private fun isFromPlayStore(packageName: String, snapshot: InstalledPackageSnapshot): Boolean {
+        return snapshot.installerOf(packageName) in playStoreInstallers
     }
     
     /**
      * Check if app was installed from any trusted source
      */
-    private fun isFromTrustedInstaller(packageName: String): Boolean {
-        return try {
-            val installer = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-                packageManager.getInstallSourceInfo(packageName).installingPackageName
-            } else {
-                @Suppress("DEPRECATION")
-                packageManager.getInstallerPackageName(packageName)
-            }
-            installer != null && installer in trustedInstallers
-        } catch (e: Exception) {
-            false
-        }
+    private fun isFromTrustedInstaller(packageName: String, snapshot: InstalledPackageSnapshot): Boolean {
+        val installer = snapshot.installerOf(packageName)
+        return installer != null && installer in trustedInstallers
     }
     
     /**
      * Scan download folder for suspicious files
      */
-    private fun scanDownloadFolder(): List<DetectedThreat> {
+    private suspend fun scanDownloadFolder(): List<DetectedThreat> {
         val threats = mutableListOf<DetectedThreat>()
+        hashCache.load()
         
         try {
             val downloadDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS)
             if (downloadDir.exists() && downloadDir.isDirectory) {
                 downloadDir.listFiles()?.forEach { file ->
+                    yield() // Allow cancellation
                     if (file.extension.lowercase() == "apk") {
-                        // Check APK hash
-                        val hash = calculateSHA256(file)
+                        // Check APK hash (cached while the file is unchanged)
+                        val hash = hashCache.sha256(file)
                         if (hash != null && ThreatDatabase.isKnownMalwareHash(hash)) {
                             threats.add(DetectedThreat(
                                 packageName = "file",
@@ -595,17 +484,42 @@ class MalwareScanner @Inject constructor(
                                 filePath = file.absolutePath,
                                 canUninstall = false
                             ))
+                        } else {
+                            checkApkStructure(file)?.let { threats.add(it) }
                         }
                     }
                 }
             }
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             // Permission denied or other error
         }
         
+        hashCache.flush()
         return threats
     }
     
+    /**
+     * Threat for a downloaded APK whose archive structure is suspicious
+     */
+    private fun checkApkStructure(file: File): DetectedThreat? {
+        val issue = ApkStructureAnalyzer.issueOf(file) ?: return null
+        return DetectedThreat(
+            packageName = "file",
+            appName = file.name,
+            type = when {
+                issue.evadesVerification -> ThreatType.DANGEROUS_BEHAVIOR
+                issue == ApkStructureIssue.UNSIGNED -> ThreatType.UNSIGNED_APK
+                else -> ThreatType.SUSPICIOUS_FILE
+            },
+            severity = if (issue.evadesVerification) ThreatSeverity.HIGH else ThreatSeverity.MEDIUM,
+            description = issue.description,
+            filePath = file.absolutePath,
+            canUninstall = false
+        )
+    }
+    
     private fun countDownloadFiles(): Int {
         return try {
             val downloadDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS)
@@ -614,23 +528,4 @@ class MalwareScanner @Inject constructor(
             0
         }
     }
-    
-    /**
-     * Calculate SHA-256 hash of a file
-     */
-    private fun calculateSHA256(file: File): String? {
-        return try {
-            val digest = MessageDigest.getInstance("SHA-256")
-            FileInputStream(file).use { fis ->
-                val buffer = ByteArray(8192)
-                var bytesRead: Int
-                while (fis.read(buffer).also { bytesRead = it } != -1) {
-                    digest.update(buffer, 0, bytesRead)
-                }
-            }
-            digest.digest().joinToString("") { "%02x".format(it) }
-        } catch (e: Exception) {
-            null
-        }
-    }
 }
@@ -8,6 +8,7 @@ import android.os.Build
 import android.util.Log
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runInterruptible
 import kotlinx.coroutines.withContext
 import java.io.BufferedReader
 import java.io.InputStreamReader
@@ -32,35 +33,11 @@ import javax.inject.Singleton
  */
 @Singleton
 class NetworkSecurityScanner @Inject constructor(
-    @ApplicationContext private val context: Context
+    @ApplicationContext private val context: Context,
+    private val portProber: LocalPortProber
 ) {
     companion object {
         private const val TAG = "NetworkSecurityScanner"
-        
-        // Common dangerous ports
-        private val SUSPICIOUS_PORTS = listOf(
-            4444,   // Metasploit default
-            5555,   // ADB over network
-            27042,  // Frida default
-            27043,  // Frida
-            31337,  // Common backdoor
-            1337,   // Hacker port
-            8080,   // Web proxy
-            9999,   // Common malware C2
-        )
-        
-        // Common ports to check if listening
-        private val PORTS_TO_CHECK = listOf(
-            22,     // SSH
-            23,     // Telnet
-            80,     // HTTP
-            443,    // HTTPS
-            4444,   // Metasploit
-            5555,   // ADB
-            8080,   // Proxy
-            27042,  // Frida
-            31337   // Backdoor
-        )
     }
     
     /**
@@ -75,6 +52,7 @@ class NetworkSecurityScanner @Inject constructor(
         val proxyAddress: String?,
         val openPorts: List<Int>,
         val suspiciousPorts: List<Int>,
+        val openPortDetails: List<LocalPortProber.OpenPort>,
         val dnsServers: List<String>,
         val warnings: List<NetworkWarning>,
         val overallRiskScore: Int
@@ -103,8 +81,11 @@ class NetworkSecurityScanner @Inject constructor(
     
     /**
      * Perform comprehensive network security scan
+     *
+     * Runs interruptibly so a deep scan phase timeout can stop it while it
+     * waits on port probes or the captive portal check.
      */
-    suspend fun performFullScan(): NetworkSecurityResult = withContext(Dispatchers.IO) {
+    suspend fun performFullScan(): NetworkSecurityResult = runInterruptible(Dispatchers.IO) {
         val warnings = mutableListOf<NetworkWarning>()
         var riskScore = 0
         
@@ -171,8 +152,9 @@ class NetworkSecurityScanner @Inject constructor(
         }
         
         // 5. Check Open Ports
-        val openPorts = scanOpenPorts()
-        val suspiciousPorts = openPorts.filter { it in SUSPICIOUS_PORTS }
+        val openPortDetails = scanOpenPorts()
+        val openPorts = openPortDetails.map { it.port }
+        val suspiciousPorts = openPortDetails.filter { it.category.suspicious }.map { it.port }
         
         if (suspiciousPorts.isNotEmpty()) {
             warnings.add(NetworkWarning(
@@ -184,8 +166,8 @@ class NetworkSecurityScanner @Inject constructor(
             riskScore += 30
         }
         
-        // Check for ADB over network (port 5555)
-        if (5555 in openPorts) {
+        // Check for ADB over network (ports 5555-5585)
+        if (openPortDetails.any { it.category == PortCategory.DEBUG_BRIDGE }) {
             warnings.add(NetworkWarning(
                 type = "ADB_NETWORK",
                 description = "ADB is accessible over network - remote access possible",
@@ -242,6 +224,7 @@ class NetworkSecurityScanner @Inject constructor(
             proxyAddress = proxyAddress,
             openPorts = openPorts,
             suspiciousPorts = suspiciousPorts,
+            openPortDetails = openPortDetails,
             dnsServers = dnsServers,
             warnings = warnings,
             overallRiskScore = riskScore.coerceAtMost(100)
@@ -327,23 +310,11 @@ class NetworkSecurityScanner @Inject constructor(
     }
     
     /**
-     * Scan for open ports on localhost
+     * Scan for open ports on localhost (all known ports probed concurrently)
      */
-    private fun scanOpenPorts(): List<Int> {
-        val openPorts = mutableListOf<Int>()
-        
-        for (port in PORTS_TO_CHECK) {
-            try {
-                val socket = Socket()
-                socket.connect(InetSocketAddress("127.0.0.1", port), 50)
-                socket.close()
-                openPorts.add(port)
-                Log.d(TAG, "Port $port is open")
-            } catch (e: Exception) {
-                // Port is closed, which is expected
-            }
-        }
-        
+    private fun scanOpenPorts(): List<LocalPortProber.OpenPort> {
+        val openPorts = portProber.scan()
+        openPorts.forEach { Log.d(TAG, "Port ${it.port} is open (${it.category.description})") }
         return openPorts
     }
     
@@ -0,0 +1,176 @@
+package com.sentinelguard.scanner
+
+import android.content.Context
+import android.util.Log
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import javax.inject.Inject
+import javax.inject.Singleton
+
+enum class PackageChange {
+    INSTALLED,
+    UPDATED,
+    REMOVED
+}
+
+/**
+ * Pending package changes, one entry per package in arrival order.
+ *
+ * A later change replaces an earlier one, except that an update of a
+ * package not yet analyzed since its install is still an install.
+ */
+class PendingPackageChanges(private val capacity: Int) {
+
+    private val pending = LinkedHashMap<String, PackageChange>()
+
+    var dropped = 0
+        private set
+
+    val size: Int @Synchronized get() = pending.size
+
+    /**
+     * Queue [change] for [packageName]; false if the queue is full
+     */
+    @Synchronized
+    fun offer(packageName: String, change: PackageChange): Boolean {
+        val previous = pending[packageName]
+        if (previous == null && pending.size >= capacity) {
+            dropped++
+            return false
+        }
+        pending[packageName] = if (previous == PackageChange.INSTALLED && change == PackageChange.UPDATED) {
+            PackageChange.INSTALLED
+        } else {
+            change
+        }
+        return true
+    }
+
+    @Synchronized
+    fun poll(): Pair<String, PackageChange>? {
+        val entries = pending.entries.iterator()
+        if (!entries.hasNext()) return null
+        val (packageName, change) = entries.next()
+        entries.remove()
+        return packageName to change
+    }
+}
+
+/**
+ * PackageChangeQueue: Per-Package Analysis of Installs and Updates
+ *
+ * Package broadcasts are coalesced into [PendingPackageChanges] and
+ * processed one package at a time:
+ * - Installed / updated: malware analysis and privacy classification of
+ *   just that package; the verdict cache is updated as in a full scan
+ * - Removed: its cached verdict is dropped
+ *
+ * Each processed change is published on [verdicts].
+ */
+@Singleton
+class PackageChangeQueue @Inject constructor(
+    @ApplicationContext private val context: Context,
+    private val malwareScanner: MalwareScanner,
+    private val privacyScanner: PrivacyScanner,
+    private val verdictCache: AppVerdictCache,
+    private val snapshotProvider: InstalledPackageSnapshotProvider
+) {
+    companion object {
+        private const val TAG = "PackageChangeQueue"
+        private const val MAX_PENDING = 512
+    }
+
+    /**
+     * Outcome of processing one package change
+     */
+    data class PackageVerdict(
+        val packageName: String,
+        val appName: String,
+        val change: PackageChange,
+        val threats: List<DetectedThreat>,
+        val privacyRisk: PrivacyScanner.HighRiskAppInfo?
+    )
+
+    private val verdictsFlow = MutableSharedFlow<PackageVerdict>(
+        extraBufferCapacity = 32,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+
+    val verdicts: SharedFlow<PackageVerdict> = verdictsFlow.asSharedFlow()
+
+    private val pending = PendingPackageChanges(MAX_PENDING)
+    private val wakeups = Channel<Unit>(Channel.CONFLATED)
+    private var job: Job? = null
+
+    /**
+     * Process queued changes in [scope] until [stop] or until [scope] is
+     * cancelled
+     */
+    @Synchronized
+    fun start(scope: CoroutineScope) {
+        if (job?.isActive == true) return
+        job = scope.launch(Dispatchers.IO) {
+            while (isActive) {
+                val next = pending.poll()
+                if (next == null) {
+                    wakeups.receive()
+                    continue
+                }
+                val (packageName, change) = next
+                try {
+                    process(packageName, change)
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Log.e(TAG, "Failed to process $change of $packageName", e)
+                }
+            }
+        }
+    }
+
+    @Synchronized
+    fun stop() {
+        job?.cancel()
+        job = null
+    }
+
+    /**
+     * Queue a change; safe to call from a broadcast receiver
+     */
+    fun enqueue(packageName: String, change: PackageChange) {
+        if (!pending.offer(packageName, change)) {
+            Log.w(TAG, "Package queue full, ${pending.dropped} changes dropped")
+        }
+        wakeups.trySend(Unit)
+    }
+
+    private suspend fun process(packageName: String, change: PackageChange) {
+        // Any cached full snapshot is now out of date
+        snapshotProvider.invalidate()
+
+        val snapshot = if (change == PackageChange.REMOVED) null else {
+            InstalledPackageSnapshot.capturePackage(context.packageManager, packageName)
+        }
+        val packageInfo = snapshot?.get(packageName)
+        if (snapshot == null || packageInfo == null) {
+            verdictCache.invalidate(packageName)
+            verdictsFlow.emit(PackageVerdict(packageName, packageName, PackageChange.REMOVED, emptyList(), null))
+            return
+        }
+
+        val threats = malwareScanner.scanPackage(snapshot, packageInfo)
+        val privacyRisk = privacyScanner.classifyPackage(snapshot, packageInfo)
+        Log.i(TAG, "$change $packageName: ${threats.size} threats, privacy risk: ${privacyRisk?.riskLevel}")
+        verdictsFlow.emit(PackageVerdict(packageName, snapshot.labelOf(packageInfo), change, threats, privacyRisk))
+    }
+}
@@ -0,0 +1,246 @@
+package com.sentinelguard.scanner
+
+/**
+ * PackageNameMatcher: One-Pass Package Name Classification
+ *
+ * Combines precompiled automata walked over the same characters:
+ * - Trusted trie: exact trusted names and trusted vendor prefixes
+ * - Threat trie: exact names (known malware, root/hacking tools) and
+ *   malware family prefixes
+ * - Aho-Corasick ([KeywordMatcher]): suspicious keywords, plus ordered
+ *   keyword pairs standing in for "a.*b" name patterns
+ *
+ * Trusted entries match case-sensitively, as package names are: a
+ * whitelist hit skips every check, so "COM.ANDROID.x" must not pass for
+ * "com.android.". Threat entries and keywords match case-insensitively.
+ * Matching allocates nothing per call.
+ */
+class PackageNameMatcher(
+    trustedPackages: Collection<String>,
+    trustedPrefixes: Collection<String>,
+    malwarePackages: Collection<String>,
+    malwarePrefixes: Collection<String>,
+    toolPackages: Collection<String>,
+    suspiciousKeywords: Collection<String>,
+    suspiciousKeywordPairs: Collection<Pair<String, String>>
+) {
+    companion object {
+        private const val TRUSTED = 1
+        private const val KNOWN_MALWARE = 2
+        private const val MALWARE_PREFIX = 4
+        private const val DANGEROUS_TOOL = 8
+        private const val SUSPICIOUS_NAME = 16
+
+        private const val NONE = -1
+        private const val NO_MATCH = Int.MAX_VALUE
+
+        // Every flag combination, so classify() never allocates
+        private val CLASSIFICATIONS = Array(32) { Classification(it) }
+    }
+
+    /**
+     * Result of [classify]
+     */
+    class Classification internal constructor(private val flags: Int) {
+        /** Whitelisted package or trusted vendor prefix */
+        val isTrusted: Boolean get() = flags and TRUSTED != 0
+        /** Exact known malware package */
+        val isKnownMalware: Boolean get() = flags and KNOWN_MALWARE != 0
+        /** Starts with a malware family prefix */
+        val hasMalwarePrefix: Boolean get() = flags and MALWARE_PREFIX != 0
+        /** Root manager, hooking framework or hacking tool */
+        val isDangerousTool: Boolean get() = flags and DANGEROUS_TOOL != 0
+        /** Contains a suspicious keyword or keyword pair */
+        val hasSuspiciousName: Boolean get() = flags and SUSPICIOUS_NAME != 0
+
+        val isMalware: Boolean get() = flags and (KNOWN_MALWARE or MALWARE_PREFIX) != 0
+    }
+
+    // ---- Package name tries ----
+
+    private val trustedTrie: Trie
+    private val threatTrie: Trie
+
+    // ---- Keyword automaton ----
+
+    private val keywordMatcher: KeywordMatcher
+    // Per keyword id: suspicious on its own, and the pairs it opens / closes
+    private val singleKeyword: BooleanArray
+    private val firstOfPairs: Array<IntArray>
+    private val secondOfPairs: Array<IntArray>
+    private val pairCount: Int
+
+    init {
+        trustedTrie = Trie(
+            trustedPackages.associateWith { TRUSTED },
+            trustedPrefixes.associateWith { TRUSTED },
+            foldCase = false
+        )
+
+        val exact = mutableMapOf<String, Int>()
+        val prefixes = mutableMapOf<String, Int>()
+        malwarePackages.forEach { exact.merge(it.lowercase(), KNOWN_MALWARE, Int::or) }
+        toolPackages.forEach { exact.merge(it.lowercase(), DANGEROUS_TOOL, Int::or) }
+        malwarePrefixes.forEach { prefixes.merge(it.lowercase(), MALWARE_PREFIX, Int::or) }
+        threatTrie = Trie(exact, prefixes, foldCase = true)
+
+        // Keywords: singles first, then each distinct pair component
+        val keywords = LinkedHashMap<String, Int>()
+        suspiciousKeywords.forEach { keywords.getOrPut(it.lowercase()) { keywords.size } }
+        suspiciousKeywordPairs.forEach { (first, second) ->
+            keywords.getOrPut(first.lowercase()) { keywords.size }
+            keywords.getOrPut(second.lowercase()) { keywords.size }
+        }
+        keywordMatcher = KeywordMatcher(keywords.keys.toList())
+
+        singleKeyword = BooleanArray(keywords.size)
+        suspiciousKeywords.forEach { singleKeyword[keywords.getValue(it.lowercase())] = true }
+
+        val firsts = Array(keywords.size) { mutableListOf<Int>() }
+        val seconds = Array(keywords.size) { mutableListOf<Int>() }
+        suspiciousKeywordPairs.forEachIndexed { index, (first, second) ->
+            firsts[keywords.getValue(first.lowercase())].add(index)
+            seconds[keywords.getValue(second.lowercase())].add(index)
+        }
+        firstOfPairs = Array(keywords.size) { firsts[it].toIntArray() }
+        secondOfPairs = Array(keywords.size) { seconds[it].toIntArray() }
+        pairCount = suspiciousKeywordPairs.size
+    }
+
+    // Earliest end offset of each pair's first keyword, per thread
+    private val pairFirstEnds = ThreadLocal.withInitial { IntArray(pairCount) }
+
+    /**
+     * Classify a package name in a single pass over its characters
+     */
+    fun classify(packageName: CharSequence): Classification {
+        var flags = 0
+        var trustedNode = Trie.ROOT
+        var threatNode = Trie.ROOT
+        val keywordFlags = scanKeywords(packageName) { c ->
+            if (trustedNode != NONE) {
+                trustedNode = trustedTrie.step(trustedNode, c)
+                flags = flags or trustedTrie.prefixFlags(trustedNode)
+            }
+            if (threatNode != NONE) {
+                threatNode = threatTrie.step(threatNode, c)
+                flags = flags or threatTrie.prefixFlags(threatNode)
+            }
+        }
+        flags = flags or trustedTrie.exactFlags(trustedNode) or threatTrie.exactFlags(threatNode)
+        return CLASSIFICATIONS[flags or keywordFlags]
+    }
+
+    /**
+     * True if [text] (e.g. an app label) matches a suspicious keyword or pair
+     */
+    fun hasSuspiciousName(text: CharSequence): Boolean {
+        return scanKeywords(text) { } != 0
+    }
+
+
+    /**
+     * Run the keyword automaton over [text], calling [onChar] for every
+     * character so callers can drive other automata in the same pass.
+     * Returns [SUSPICIOUS_NAME] on a keyword or ordered-pair hit, else 0.
+     */
+    private inline fun scanKeywords(text: CharSequence, onChar: (Char) -> Unit): Int {
+        val firstEnds = pairFirstEnds.get()!!
+        firstEnds.fill(NO_MATCH)
+        var result = 0
+        var state = KeywordMatcher.ROOT
+        for (i in 0 until text.length) {
+            val c = text[i]
+            onChar(c)
+            if (result != 0) continue
+
+            state = keywordMatcher.step(state, c)
+            for (id in keywordMatcher.matchesAt(state)) {
+                if (singleKeyword[id]) {
+                    result = SUSPICIOUS_NAME
+                    break
+                }
+                val start = i + 1 - keywordMatcher.keywordLength(id)
+                // Second keyword must start after the first one ends
+                for (pair in secondOfPairs[id]) {
+                    if (firstEnds[pair] <= start) result = SUSPICIOUS_NAME
+                }
+                for (pair in firstOfPairs[id]) {
+                    if (firstEnds[pair] == NO_MATCH) firstEnds[pair] = i + 1
+                }
+            }
+        }
+        return result
+    }
+
+    /**
+     * Trie over ASCII package name characters, flattened into one
+     * transition table. With [foldCase] entries are expected lowercase
+     * and input characters are lowercased while walking.
+     */
+    private class Trie(exact: Map<String, Int>, prefixes: Map<String, Int>, private val foldCase: Boolean) {
+        companion object {
+            const val ROOT = 0
+        }
+
+        private val alphabet = IntArray(128) { NONE }
+        private val alphabetSize: Int
+        private val transitions: IntArray
+        private val exactFlags: IntArray
+        private val prefixFlags: IntArray
+
+        init {
+            (exact.keys + prefixes.keys).forEach { entry ->
+                entry.forEach { c ->
+                    require(c.code < 128) { "Non-ASCII package entry: $entry" }
+                    alphabet[c.code] = 0
+                }
+            }
+            var size = 0
+            for (c in alphabet.indices) {
+                if (alphabet[c] != NONE) alphabet[c] = size++
+            }
+            alphabetSize = size
+
+            val nodes = mutableListOf(IntArray(alphabetSize) { NONE })
+            val exactList = mutableListOf(0)
+            val prefixList = mutableListOf(0)
+            fun insert(entry: String): Int {
+                var node = ROOT
+                entry.forEach { c ->
+                    val symbol = alphabet[c.code]
+                    if (nodes[node][symbol] == NONE) {
+                        nodes[node][symbol] = nodes.size
+                        nodes.add(IntArray(alphabetSize) { NONE })
+                        exactList.add(0)
+                        prefixList.add(0)
+                    }
+                    node = nodes[node][symbol]
+                }
+                return node
+            }
+            exact.forEach { (entry, flags) -> insert(entry).let { exactList[it] = exactList[it] or flags } }
+            prefixes.forEach { (entry, flags) -> insert(entry).let { prefixList[it] = prefixList[it] or flags } }
+
+            transitions = IntArray(nodes.size * alphabetSize).also { table ->
+                nodes.forEachIndexed { node, row -> row.copyInto(table, node * alphabetSize) }
+            }
+            exactFlags = exactList.toIntArray()
+            prefixFlags = prefixList.toIntArray()
+        }
+
+        /** Next node after [c], or [NONE] once no entry can match */
+        fun step(node: Int, c: Char): Int {
+            val key = if (foldCase) Character.toLowerCase(c) else c
+            if (key.code >= 128) return NONE
+            val symbol = alphabet[key.code]
+            return if (symbol == NONE) NONE else transitions[node * alphabetSize + symbol]
+        }
+
+        /** Flags of prefixes ending at [node] */
+        fun prefixFlags(node: Int): Int = if (node == NONE) 0 else prefixFlags[node]
+
+        /** Flags of exact entries ending at [node] */
+        fun exactFlags(node: Int): Int = if (node == NONE) 0 else exactFlags[node]
+    }
+}
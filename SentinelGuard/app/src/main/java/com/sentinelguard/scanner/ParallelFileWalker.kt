@@ -0,0 +1,217 @@
+package com.sentinelguard.scanner
+
+import android.util.Log
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.trySendBlocking
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.LinkOption
+import java.nio.file.Path
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * ParallelFileWalker: Work-Stealing Directory Traversal
+ *
+ * Each directory is a ForkJoin task; subdirectories are forked as new
+ * tasks, so idle workers steal whole subtrees from busy ones. Entries are
+ * read with a DirectoryStream and stat'ed once without following symlinks.
+ *
+ * The walker only classifies: [onFile] is called for every regular file on
+ * a worker thread and must be cheap or hand the file off to another stage.
+ *
+ * For resumable scans, [walk] reports each fully walked subtree with its
+ * counts and skips subtrees a previous walk already completed, carrying
+ * their recorded counts into their parents.
+ */
+class ParallelFileWalker(
+    private val skipDirectories: Set<String>,
+    private val maxPathDepth: Int,
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors().coerceIn(2, 4)
+) {
+    companion object {
+        private const val TAG = "ParallelFileWalker"
+    }
+
+    private val filesVisited = AtomicInteger()
+    private val directoriesVisited = AtomicInteger()
+
+    val filesScanned: Int get() = filesVisited.get()
+    val directoriesScanned: Int get() = directoriesVisited.get()
+
+    @Volatile
+    var currentDirectory: String = ""
+        private set
+
+    /**
+     * Counts for a completed subtree, including its root directory
+     */
+    data class SubtreeCounts(val files: Int, val directories: Int)
+
+    /**
+     * Walk all [roots], blocking until done or [isCancelled] returns true.
+     * Roots nested inside another root are walked only once.
+     *
+     * - [completedSubtree]: counts of a directory a previous walk already
+     *   completed, or null; such directories are not entered
+     * - [onSubtreeComplete]: called once a directory and everything below
+     *   it has been walked; never called for a cancelled subtree
+     */
+    fun walk(
+        roots: List<File>,
+        isCancelled: () -> Boolean,
+        completedSubtree: (Path) -> SubtreeCounts? = { null },
+        onSubtreeComplete: ((Path, SubtreeCounts) -> Unit)? = null,
+        onFile: (Path, BasicFileAttributes) -> Unit
+    ) {
+        val callbacks = Callbacks(isCancelled, completedSubtree, onSubtreeComplete, onFile)
+        val tasks = distinctRoots(roots).map { DirectoryTask(it.toPath(), callbacks) }
+        if (tasks.isEmpty()) return
+
+        val pool = ForkJoinPool(parallelism)
+        try {
+            pool.invoke(object : RecursiveAction() {
+                override fun compute() {
+                    invokeAll(tasks)
+                }
+            })
+        } finally {
+            pool.shutdownNow()
+        }
+    }
+
+    /**
+     * [walk] from a coroutine on the IO dispatcher, sending every file
+     * [select] maps to a value into [sink]. Sends block the walker threads
+     * while [sink] is full, so a slow consumer throttles the walk.
+     *
+     * [sink] is closed when the walk ends. If the calling coroutine is
+     * cancelled, [sink] is cancelled right away: a walker thread blocked
+     * in a send is only released by that, since its consumers may already
+     * have stopped receiving.
+     */
+    suspend fun <T> walkInto(
+        sink: Channel<T>,
+        roots: List<File>,
+        completedSubtree: (Path) -> SubtreeCounts? = { null },
+        onSubtreeComplete: ((Path, SubtreeCounts) -> Unit)? = null,
+        select: (Path, BasicFileAttributes) -> T?
+    ) = coroutineScope {
+        val scope = coroutineContext.job
+        val releaser = launch(start = CoroutineStart.UNDISPATCHED) {
+            try {
+                awaitCancellation()
+            } finally {
+                if (!scope.isActive) sink.cancel()
+            }
+        }
+        try {
+            withContext(Dispatchers.IO) {
+                walk(roots, { !scope.isActive }, completedSubtree, onSubtreeComplete) { path, attrs ->
+                    select(path, attrs)?.let { sink.trySendBlocking(it) }
+                }
+            }
+        } finally {
+            releaser.cancel()
+            sink.close()
+        }
+    }
+
+    private fun distinctRoots(roots: List<File>): List<File> {
+        val readable = roots
+            .filter { it.exists() && it.canRead() }
+            .map { it.absoluteFile }
+            .distinctBy { it.path }
+            .sortedBy { it.path.length }
+
+        val result = mutableListOf<File>()
+        for (root in readable) {
+            val nested = result.any { parent -> root.path.startsWith(parent.path + File.separator) }
+            if (!nested) result.add(root)
+        }
+        return result
+    }
+
+    private class Callbacks(
+        val isCancelled: () -> Boolean,
+        val completedSubtree: (Path) -> SubtreeCounts?,
+        val onSubtreeComplete: ((Path, SubtreeCounts) -> Unit)?,
+        val onFile: (Path, BasicFileAttributes) -> Unit
+    )
+
+    private inner class DirectoryTask(
+        private val dir: Path,
+        private val callbacks: Callbacks
+    ) : RecursiveAction() {
+
+        // Filled in by compute(); read by the parent after invokeAll
+        var files = 0
+        var directories = 0
+        var complete = false
+
+        override fun compute() {
+            if (callbacks.isCancelled()) return
+            if (dir.toString() in skipDirectories) {
+                complete = true
+                return
+            }
+            val previous = callbacks.completedSubtree(dir)
+            if (previous != null) {
+                files = previous.files
+                directories = previous.directories
+                complete = true
+                return
+            }
+
+            directoriesVisited.incrementAndGet()
+            currentDirectory = dir.toString()
+            directories = 1
+
+            val subtasks = mutableListOf<DirectoryTask>()
+            try {
+                Files.newDirectoryStream(dir).use { stream ->
+                    for (entry in stream) {
+                        if (callbacks.isCancelled()) break
+
+                        val attrs = try {
+                            Files.readAttributes(entry, BasicFileAttributes::class.java, LinkOption.NOFOLLOW_LINKS)
+                        } catch (e: Exception) {
+                            continue
+                        }
+
+                        if (attrs.isDirectory) {
+                            if (entry.nameCount < maxPathDepth) {
+                                subtasks.add(DirectoryTask(entry, callbacks))
+                            }
+                        } else if (attrs.isRegularFile) {
+                            filesVisited.incrementAndGet()
+                            files++
+                            callbacks.onFile(entry, attrs)
+                        }
+                    }
+                }
+            } catch (e: Exception) {
+                Log.w(TAG, "Cannot read $dir: ${e.message}")
+            }
+
+            if (subtasks.isNotEmpty()) invokeAll(subtasks)
+
+            if (callbacks.isCancelled() || subtasks.any { !it.complete }) return
+            subtasks.forEach {
+                files += it.files
+                directories += it.directories
+            }
+            complete = true
+            callbacks.onSubtreeComplete?.invoke(dir, SubtreeCounts(files, directories))
+        }
+    }
+}
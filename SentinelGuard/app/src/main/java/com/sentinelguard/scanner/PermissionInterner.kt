@@ -0,0 +1,88 @@
+package com.sentinelguard.scanner
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * PermissionInterner: Stable Bit Index per Permission String
+ *
+ * Every permission string seen is given the next free bit index for the
+ * life of the process. Rule sets and package permissions are encoded into
+ * [PermissionMask] bitsets over these indices, so rule checks are word
+ * ANDs instead of string set intersections.
+ */
+class PermissionInterner {
+
+    private val indices = ConcurrentHashMap<String, Int>()
+    private val nextIndex = AtomicInteger()
+
+    val size: Int get() = nextIndex.get()
+
+    fun intern(permission: String): Int {
+        return indices[permission] ?: indices.computeIfAbsent(permission) { nextIndex.getAndIncrement() }
+    }
+
+    /**
+     * Encode [permissions] into a bitset, interning new strings
+     */
+    fun encode(permissions: Collection<String>): PermissionMask {
+        return encode(permissions.toTypedArray())
+    }
+
+    fun encode(permissions: Array<out String>?): PermissionMask {
+        if (permissions.isNullOrEmpty()) return PermissionMask.EMPTY
+        val bits = IntArray(permissions.size) { intern(permissions[it]) }
+        val words = LongArray((bits.max() ushr 6) + 1)
+        for (bit in bits) {
+            words[bit ushr 6] = words[bit ushr 6] or (1L shl (bit and 63))
+        }
+        return PermissionMask(words)
+    }
+}
+
+/**
+ * Immutable permission bitset produced by [PermissionInterner].
+ * Masks of different lengths compare as if padded with zero words.
+ */
+class PermissionMask(private val words: LongArray) {
+
+    companion object {
+        val EMPTY = PermissionMask(LongArray(0))
+    }
+
+    private fun word(index: Int): Long = if (index < words.size) words[index] else 0L
+
+    /**
+     * True if every permission in [required] is present
+     */
+    fun containsAll(required: PermissionMask): Boolean {
+        for (i in required.words.indices) {
+            val r = required.words[i]
+            if (word(i) and r != r) return false
+        }
+        return true
+    }
+
+    /**
+     * True if any permission in [other] is present
+     */
+    fun intersects(other: PermissionMask): Boolean {
+        val n = minOf(words.size, other.words.size)
+        for (i in 0 until n) {
+            if (words[i] and other.words[i] != 0L) return true
+        }
+        return false
+    }
+
+    /**
+     * Number of permissions present in both masks
+     */
+    fun countIn(other: PermissionMask): Int {
+        val n = minOf(words.size, other.words.size)
+        var count = 0
+        for (i in 0 until n) {
+            count += java.lang.Long.bitCount(words[i] and other.words[i])
+        }
+        return count
+    }
+}
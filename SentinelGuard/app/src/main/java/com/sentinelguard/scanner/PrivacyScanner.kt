@@ -3,11 +3,12 @@ package com.sentinelguard.scanner
 import android.Manifest
 import android.content.Context
 import android.content.pm.ApplicationInfo
-import android.content.pm.PackageManager
+import android.content.pm.PackageInfo
 import android.provider.Settings
 import android.util.Log
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ensureActive
 import kotlinx.coroutines.withContext
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -27,7 +28,8 @@ import javax.inject.Singleton
  */
 @Singleton
 class PrivacyScanner @Inject constructor(
-    @ApplicationContext private val context: Context
+    @ApplicationContext private val context: Context,
+    private val snapshotProvider: InstalledPackageSnapshotProvider
 ) {
     companion object {
         private const val TAG = "PrivacyScanner"
@@ -70,6 +72,24 @@ class PrivacyScanner @Inject constructor(
             Manifest.permission.WRITE_EXTERNAL_STORAGE,
             Manifest.permission.MANAGE_EXTERNAL_STORAGE
         )
+        
+        // Permission groups as bitsets over ThreatDatabase.permissionInterner
+        private val interner = ThreatDatabase.permissionInterner
+        private val CAMERA_MASK = interner.encode(CAMERA_PERMISSIONS)
+        private val MICROPHONE_MASK = interner.encode(MICROPHONE_PERMISSIONS)
+        private val LOCATION_MASK = interner.encode(LOCATION_PERMISSIONS)
+        private val BACKGROUND_LOCATION_MASK = interner.encode(listOf(Manifest.permission.ACCESS_BACKGROUND_LOCATION))
+        private val CONTACT_MASK = interner.encode(CONTACT_PERMISSIONS)
+        private val SMS_MASK = interner.encode(SMS_PERMISSIONS)
+        private val CALL_MASK = interner.encode(CALL_PERMISSIONS)
+        private val STORAGE_MASK = interner.encode(STORAGE_PERMISSIONS)
+        private val OVERLAY_MASK = interner.encode(listOf(Manifest.permission.SYSTEM_ALERT_WINDOW))
+        
+        // App name keywords that explain background location use
+        private val LOCATION_USE_KEYWORDS = KeywordMatcher(listOf(
+            "map", "navigation", "gps", "fitness", "run", "walk",
+            "track", "find", "locate", "uber", "lyft", "delivery"
+        ))
     }
     
     /**
@@ -116,10 +136,9 @@ class PrivacyScanner @Inject constructor(
      * Perform comprehensive privacy scan
      */
     suspend fun performFullScan(): PrivacyScanResult = withContext(Dispatchers.IO) {
-        val packageManager = context.packageManager
-        
-        // Get all installed packages with permissions
-        val packages = packageManager.getInstalledPackages(PackageManager.GET_PERMISSIONS)
+        // Get all installed packages with permissions (shared with other scanners)
+        val snapshot = snapshotProvider.acquire()
+        val packages = snapshot.packages
         
         val cameraApps = mutableListOf<PrivacyAppInfo>()
         val microphoneApps = mutableListOf<PrivacyAppInfo>()
@@ -132,13 +151,14 @@ class PrivacyScanner @Inject constructor(
         val highRiskApps = mutableListOf<HighRiskAppInfo>()
         
         for (pkg in packages) {
+            ensureActive() // Allow cancellation
             val permissions = pkg.requestedPermissions?.toList() ?: emptyList()
-            val appName = pkg.applicationInfo?.loadLabel(packageManager)?.toString() 
-                ?: pkg.packageName
-            val isSystem = isSystemApp(pkg.applicationInfo)
-            
             // Skip our own app
             if (pkg.packageName == context.packageName) continue
+            val mask = snapshot.permissionsOf(pkg)
+            
+            val appName = snapshot.labelOf(pkg)
+            val isSystem = isSystemApp(pkg.applicationInfo)
             
             val appInfo = PrivacyAppInfo(
                 packageName = pkg.packageName,
@@ -148,46 +168,46 @@ class PrivacyScanner @Inject constructor(
             )
             
             // Camera
-            if (permissions.any { it in CAMERA_PERMISSIONS }) {
+            if (mask.intersects(CAMERA_MASK)) {
                 cameraApps.add(appInfo)
             }
             
             // Microphone
-            if (permissions.any { it in MICROPHONE_PERMISSIONS }) {
+            if (mask.intersects(MICROPHONE_MASK)) {
                 microphoneApps.add(appInfo)
             }
             
             // Location
-            if (permissions.any { it in LOCATION_PERMISSIONS }) {
+            if (mask.intersects(LOCATION_MASK)) {
                 locationApps.add(appInfo)
                 
-                if (Manifest.permission.ACCESS_BACKGROUND_LOCATION in permissions) {
+                if (mask.intersects(BACKGROUND_LOCATION_MASK)) {
                     backgroundLocationApps.add(appInfo)
                 }
             }
             
             // Contacts
-            if (permissions.any { it in CONTACT_PERMISSIONS }) {
+            if (mask.intersects(CONTACT_MASK)) {
                 contactApps.add(appInfo)
             }
             
             // SMS
-            if (permissions.any { it in SMS_PERMISSIONS }) {
+            if (mask.intersects(SMS_MASK)) {
                 smsApps.add(appInfo)
             }
             
             // Call Log
-            if (permissions.any { it in CALL_PERMISSIONS }) {
+            if (mask.intersects(CALL_MASK)) {
                 callLogApps.add(appInfo)
             }
             
             // Storage
-            if (permissions.any { it in STORAGE_PERMISSIONS }) {
+            if (mask.intersects(STORAGE_MASK)) {
                 storageApps.add(appInfo)
             }
             
             // Detect high-risk apps
-            val highRisk = detectHighRiskApp(pkg.packageName, appName, permissions, isSystem)
+            val highRisk = detectHighRiskApp(pkg.packageName, appName, permissions, mask, isSystem)
             if (highRisk != null) {
                 highRiskApps.add(highRisk)
             }
@@ -200,10 +220,10 @@ class PrivacyScanner @Inject constructor(
         val deviceAdminApps = getDeviceAdminApps()
         
         // Get overlay apps
-        val overlayApps = getOverlayApps(packages)
+        val overlayApps = getOverlayApps(snapshot)
         
         // Get battery exempt apps
-        val batteryExemptApps = getBatteryExemptApps(packages)
+        val batteryExemptApps = getBatteryExemptApps(snapshot)
         
         // Calculate privacy score (lower is better)
         val privacyScore = calculatePrivacyScore(
@@ -235,6 +255,20 @@ class PrivacyScanner @Inject constructor(
         )
     }
     
+    /**
+     * High-risk classification of a single package, as in a full scan
+     */
+    fun classifyPackage(snapshot: InstalledPackageSnapshot, pkg: PackageInfo): HighRiskAppInfo? {
+        if (pkg.packageName == context.packageName) return null
+        return detectHighRiskApp(
+            pkg.packageName,
+            snapshot.labelOf(pkg),
+            pkg.requestedPermissions?.toList() ?: emptyList(),
+            snapshot.permissionsOf(pkg),
+            isSystemApp(pkg.applicationInfo)
+        )
+    }
+    
     /**
      * Detect high-risk app based on permission combinations
      */
@@ -242,19 +276,20 @@ class PrivacyScanner @Inject constructor(
         packageName: String,
         appName: String,
         permissions: List<String>,
+        mask: PermissionMask,
         isSystemApp: Boolean
     ): HighRiskAppInfo? {
         // Skip system apps for most checks
         if (isSystemApp) return null
         
-        val hasCamera = permissions.any { it in CAMERA_PERMISSIONS }
-        val hasMic = permissions.any { it in MICROPHONE_PERMISSIONS }
-        val hasLocation = permissions.any { it in LOCATION_PERMISSIONS }
-        val hasBackgroundLocation = Manifest.permission.ACCESS_BACKGROUND_LOCATION in permissions
-        val hasContacts = permissions.any { it in CONTACT_PERMISSIONS }
-        val hasSms = permissions.any { it in SMS_PERMISSIONS }
-        val hasCalls = permissions.any { it in CALL_PERMISSIONS }
-        val hasStorage = permissions.any { it in STORAGE_PERMISSIONS }
+        val hasCamera = mask.intersects(CAMERA_MASK)
+        val hasMic = mask.intersects(MICROPHONE_MASK)
+        val hasLocation = mask.intersects(LOCATION_MASK)
+        val hasBackgroundLocation = mask.intersects(BACKGROUND_LOCATION_MASK)
+        val hasContacts = mask.intersects(CONTACT_MASK)
+        val hasSms = mask.intersects(SMS_MASK)
+        val hasCalls = mask.intersects(CALL_MASK)
+        val hasStorage = mask.intersects(STORAGE_MASK)
         
         // Stalkerware pattern: Camera + Mic + Location + Background
         if (hasCamera && hasMic && hasLocation && hasBackgroundLocation) {
@@ -284,11 +319,7 @@ class PrivacyScanner @Inject constructor(
         
         // Background location without obvious need
         if (hasBackgroundLocation && !hasCamera) {
-            val lowerName = appName.lowercase()
-            val needsBackgroundLocation = listOf(
-                "map", "navigation", "gps", "fitness", "run", "walk", 
-                "track", "find", "locate", "uber", "lyft", "delivery"
-            ).any { lowerName.contains(it) }
+            val needsBackgroundLocation = LOCATION_USE_KEYWORDS.containsAny(appName)
             
             if (!needsBackgroundLocation) {
                 return HighRiskAppInfo(
@@ -384,18 +415,16 @@ class PrivacyScanner @Inject constructor(
     /**
      * Get apps with overlay (draw over other apps) permission
      */
-    private fun getOverlayApps(packages: List<android.content.pm.PackageInfo>): List<PrivacyAppInfo> {
+    private fun getOverlayApps(snapshot: InstalledPackageSnapshot): List<PrivacyAppInfo> {
         val apps = mutableListOf<PrivacyAppInfo>()
         
-        for (pkg in packages) {
+        for (pkg in snapshot.packages) {
             if (pkg.packageName == context.packageName) continue
             
             try {
                 if (Settings.canDrawOverlays(context)) {
-                    val permissions = pkg.requestedPermissions?.toList() ?: emptyList()
-                    if (Manifest.permission.SYSTEM_ALERT_WINDOW in permissions) {
-                        val appName = pkg.applicationInfo?.loadLabel(context.packageManager)?.toString() 
-                            ?: pkg.packageName
+                    if (snapshot.permissionsOf(pkg).intersects(OVERLAY_MASK)) {
+                        val appName = snapshot.labelOf(pkg)
                         
                         apps.add(PrivacyAppInfo(
                             packageName = pkg.packageName,
@@ -416,18 +445,17 @@ class PrivacyScanner @Inject constructor(
     /**
      * Get apps exempt from battery optimization
      */
-    private fun getBatteryExemptApps(packages: List<android.content.pm.PackageInfo>): List<PrivacyAppInfo> {
+    private fun getBatteryExemptApps(snapshot: InstalledPackageSnapshot): List<PrivacyAppInfo> {
         val apps = mutableListOf<PrivacyAppInfo>()
         
         try {
             val pm = context.getSystemService(Context.POWER_SERVICE) as android.os.PowerManager
             
-            for (pkg in packages) {
+            for (pkg in snapshot.packages) {
                 if (pkg.packageName == context.packageName) continue
                 
                 if (pm.isIgnoringBatteryOptimizations(pkg.packageName)) {
-                    val appName = pkg.applicationInfo?.loadLabel(context.packageManager)?.toString() 
-                        ?: pkg.packageName
+                    val appName = snapshot.labelOf(pkg)
                     
                     apps.add(PrivacyAppInfo(
                         packageName = pkg.packageName,
@@ -0,0 +1,228 @@
+package com.sentinelguard.scanner
+
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Paths
+import java.nio.file.StandardOpenOption
+
+/**
+ * ProcFsReader: In-Process Parser for /proc
+ *
+ * Replaces `ps`, `mount` and similar shell-outs with direct reads:
+ * - [processes]: pid and command name from /proc/<pid>/cmdline
+ * - [mounts]: entries of /proc/mounts
+ * - [mappedFiles]: file names mapped into this process (/proc/self/maps)
+ *
+ * Files are read through a [FileChannel] into one reusable buffer and
+ * parsed as bytes; only the fields returned are turned into strings.
+ * Instances are not thread-safe; use [current] for a per-thread reader.
+ */
+class ProcFsReader(bufferSize: Int = DEFAULT_BUFFER_SIZE) {
+
+    companion object {
+        private const val DEFAULT_BUFFER_SIZE = 16 * 1024
+        private const val NEWLINE = '\n'.code.toByte()
+        private const val SPACE = ' '.code.toByte()
+        private const val NUL = 0.toByte()
+
+        const val PROC_ROOT = "/proc"
+        const val MOUNTS_PATH = "/proc/mounts"
+        const val SELF_MAPS_PATH = "/proc/self/maps"
+
+        private val readers = ThreadLocal.withInitial { ProcFsReader() }
+
+        /**
+         * Reader owned by the calling thread
+         */
+        fun current(): ProcFsReader = readers.get()!!
+    }
+
+    /**
+     * A process visible to this app. [name] is argv[0], or the kernel
+     * command name for processes without a command line.
+     */
+    data class ProcessInfo(val pid: Int, val name: String)
+
+    /**
+     * One line of /proc/mounts
+     */
+    data class MountEntry(
+        val device: String,
+        val mountPoint: String,
+        val type: String,
+        val options: String
+    ) {
+        val isReadWrite: Boolean get() = options == "rw" || options.startsWith("rw,")
+    }
+
+    private val chunk = ByteArray(bufferSize)
+    private val buffer = ByteBuffer.wrap(chunk)
+    private var line = ByteArray(256)
+    private var lineLength = 0
+
+    fun mounts(path: String = MOUNTS_PATH): List<MountEntry> {
+        val entries = ArrayList<MountEntry>()
+        forEachLine(path) { bytes, length ->
+            val deviceEnd = fieldEnd(bytes, 0, length)
+            val pointStart = fieldStart(bytes, deviceEnd, length)
+            val pointEnd = fieldEnd(bytes, pointStart, length)
+            val typeStart = fieldStart(bytes, pointEnd, length)
+            val typeEnd = fieldEnd(bytes, typeStart, length)
+            val optionsStart = fieldStart(bytes, typeEnd, length)
+            val optionsEnd = fieldEnd(bytes, optionsStart, length)
+            if (optionsStart < optionsEnd) {
+                entries.add(
+                    MountEntry(
+                        device = string(bytes, 0, deviceEnd),
+                        mountPoint = string(bytes, pointStart, pointEnd),
+                        type = string(bytes, typeStart, typeEnd),
+                        options = string(bytes, optionsStart, optionsEnd)
+                    )
+                )
+            }
+        }
+        return entries
+    }
+
+    /**
+     * Distinct path names of mapped regions (files and named regions such
+     * as "[vdso]"), in first-mapped order
+     */
+    fun mappedFiles(path: String = SELF_MAPS_PATH): Set<String> {
+        val files = LinkedHashSet<String>()
+        var previous: ByteArray? = null
+        forEachLine(path) { bytes, length ->
+            // address perms offset dev inode pathname
+            var end = 0
+            var start = 0
+            repeat(5) {
+                start = fieldStart(bytes, end, length)
+                end = fieldEnd(bytes, start, length)
+            }
+            start = fieldStart(bytes, end, length)
+            val size = length - start
+            if (size <= 0) return@forEachLine
+
+            // Consecutive regions of one file repeat its name; skip them
+            // without allocating
+            val last = previous
+            if (last != null && last.size == size && regionEquals(last, bytes, start)) return@forEachLine
+
+            files.add(string(bytes, start, length))
+            previous = bytes.copyOfRange(start, length)
+        }
+        return files
+    }
+
+    /**
+     * Processes readable under [procRoot]. Without hidepid that is every
+     * process; on recent Android only this app's own.
+     */
+    fun processes(procRoot: String = PROC_ROOT): List<ProcessInfo> {
+        val names = File(procRoot).list() ?: return emptyList()
+        val processes = ArrayList<ProcessInfo>()
+        for (entry in names) {
+            val pid = parsePid(entry)
+            if (pid < 0) continue
+
+            var name = readFirstToken(Paths.get(procRoot, entry, "cmdline").toString(), NUL)
+            if (name.isNullOrEmpty()) {
+                name = readFirstToken(Paths.get(procRoot, entry, "comm").toString(), NEWLINE)
+            }
+            if (!name.isNullOrEmpty()) processes.add(ProcessInfo(pid, name))
+        }
+        return processes
+    }
+
+    /**
+     * Call [action] with each line of [path] (without the newline).
+     * The array is reused and only valid during the call.
+     */
+    fun forEachLine(path: String, action: (bytes: ByteArray, length: Int) -> Unit) {
+        try {
+            FileChannel.open(Paths.get(path), StandardOpenOption.READ).use { channel ->
+                lineLength = 0
+                while (true) {
+                    buffer.clear()
+                    val read = channel.read(buffer)
+                    if (read < 0) break
+                    for (i in 0 until read) {
+                        val b = chunk[i]
+                        if (b == NEWLINE) {
+                            action(line, lineLength)
+                            lineLength = 0
+                        } else {
+                            append(b)
+                        }
+                    }
+                }
+                if (lineLength > 0) action(line, lineLength)
+            }
+        } catch (e: Exception) {
+            // Unreadable (missing, restricted by SELinux or hidepid): no lines
+        }
+    }
+
+    /**
+     * Bytes of [path] up to the first [terminator], decoded; null if unreadable
+     */
+    private fun readFirstToken(path: String, terminator: Byte): String? {
+        return try {
+            FileChannel.open(Paths.get(path), StandardOpenOption.READ).use { channel ->
+                lineLength = 0
+                while (true) {
+                    buffer.clear()
+                    val read = channel.read(buffer)
+                    if (read < 0) break
+                    for (i in 0 until read) {
+                        val b = chunk[i]
+                        if (b == terminator) return@use string(line, 0, lineLength)
+                        append(b)
+                    }
+                }
+                string(line, 0, lineLength)
+            }
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    private fun append(b: Byte) {
+        if (lineLength == line.size) line = line.copyOf(line.size * 2)
+        line[lineLength++] = b
+    }
+
+    private fun parsePid(name: String): Int {
+        if (name.isEmpty() || name.length > 9) return -1
+        var pid = 0
+        for (c in name) {
+            if (c !in '0'..'9') return -1
+            pid = pid * 10 + (c - '0')
+        }
+        return pid
+    }
+
+    private fun fieldStart(bytes: ByteArray, from: Int, length: Int): Int {
+        var i = from
+        while (i < length && bytes[i] == SPACE) i++
+        return i
+    }
+
+    private fun fieldEnd(bytes: ByteArray, from: Int, length: Int): Int {
+        var i = from
+        while (i < length && bytes[i] != SPACE) i++
+        return i
+    }
+
+    private fun regionEquals(a: ByteArray, b: ByteArray, bStart: Int): Boolean {
+        for (i in a.indices) {
+            if (a[i] != b[bStart + i]) return false
+        }
+        return true
+    }
+
+    private fun string(bytes: ByteArray, start: Int, end: Int): String {
+        return String(bytes, start, end - start, Charsets.UTF_8)
+    }
+}
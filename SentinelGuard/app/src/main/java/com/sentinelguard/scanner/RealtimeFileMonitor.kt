@@ -0,0 +1,148 @@
+package com.sentinelguard.scanner
+
+import android.os.FileObserver
+import android.os.SystemClock
+import android.util.Log
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.io.File
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * RealtimeFileMonitor: inotify Watches over the File Scan Directories
+ *
+ * Watches the directories of [FileSystemScanner.getScanDirectories] and
+ * their subdirectories down to [WATCH_DEPTH] with [FileObserver]s.
+ * Created, written and moved-in files are coalesced by a
+ * [FileEventCoalescer] and analyzed once they have been quiet for
+ * [QUIET_PERIOD_MS], so a dropped payload is reported within seconds
+ * instead of at the next deep scan.
+ *
+ * Directories created later inside a watched tree are watched too, up to
+ * [MAX_WATCHES] in total.
+ */
+@Singleton
+class RealtimeFileMonitor @Inject constructor(
+    private val fileSystemScanner: FileSystemScanner
+) {
+    companion object {
+        private const val TAG = "RealtimeFileMonitor"
+        private const val WATCH_DEPTH = 3
+        private const val MAX_WATCHES = 512
+        private const val MAX_PENDING_FILES = 256
+        private const val QUIET_PERIOD_MS = 2_000L
+
+        private const val WATCH_EVENTS = FileObserver.CREATE or FileObserver.CLOSE_WRITE or FileObserver.MOVED_TO
+    }
+
+    private val findingsFlow = MutableSharedFlow<FileSystemScanner.SuspiciousFile>(
+        extraBufferCapacity = 32,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+
+    /**
+     * Suspicious files found among changed files
+     */
+    val findings: SharedFlow<FileSystemScanner.SuspiciousFile> = findingsFlow.asSharedFlow()
+
+    private val coalescer = FileEventCoalescer(MAX_PENDING_FILES, QUIET_PERIOD_MS)
+    private val wakeups = Channel<Unit>(Channel.CONFLATED)
+    private val observers = HashMap<String, DirectoryObserver>()
+    private var job: Job? = null
+
+    val isRunning: Boolean get() = job?.isActive == true
+
+    /**
+     * Start watching; analysis runs in [scope] until [stop] or until
+     * [scope] is cancelled
+     */
+    @Synchronized
+    fun start(scope: CoroutineScope) {
+        if (isRunning) return
+        fileSystemScanner.getScanDirectories()
+            .filter { it.isDirectory && it.canRead() }
+            .forEach { watchTree(it, 0) }
+        Log.i(TAG, "Watching ${observers.size} directories")
+        job = scope.launch { analyzeLoop() }
+    }
+
+    @Synchronized
+    fun stop() {
+        job?.cancel()
+        job = null
+        observers.values.forEach { it.stopWatching() }
+        observers.clear()
+    }
+
+    private suspend fun CoroutineScope.analyzeLoop() {
+        while (isActive) {
+            val readyAt = coalescer.nextReadyAt()
+            if (readyAt == null) {
+                wakeups.receive()
+                continue
+            }
+            val wait = readyAt - SystemClock.elapsedRealtime()
+            if (wait > 0) {
+                withTimeoutOrNull(wait) { wakeups.receive() }
+                continue
+            }
+
+            val paths = coalescer.drainReady(SystemClock.elapsedRealtime())
+            fileSystemScanner.analyzeFiles(paths.map { File(it) }).forEach { found ->
+                Log.w(TAG, "Suspicious file appeared: ${found.path} (${found.reason})")
+                findingsFlow.emit(found)
+            }
+        }
+    }
+
+    private fun onFileEvent(path: String) {
+        val name = path.substringAfterLast('/')
+        if (!fileSystemScanner.isAnalysisCandidate(name)) return
+        if (!coalescer.offer(path, SystemClock.elapsedRealtime())) {
+            Log.w(TAG, "Change queue full, ${coalescer.dropped} events dropped")
+        }
+        wakeups.trySend(Unit)
+    }
+
+    /**
+     * Watch [dir] and its subdirectories down to [WATCH_DEPTH]
+     */
+    @Synchronized
+    private fun watchTree(dir: File, depth: Int) {
+        if (observers.size >= MAX_WATCHES || dir.path in observers) return
+        val observer = DirectoryObserver(dir, depth)
+        observer.startWatching()
+        observers[dir.path] = observer
+
+        if (depth < WATCH_DEPTH) {
+            dir.listFiles()?.filter { it.isDirectory }?.forEach { watchTree(it, depth + 1) }
+        }
+    }
+
+    // The path constructor is deprecated but the File one needs API 29
+    @Suppress("DEPRECATION")
+    private inner class DirectoryObserver(
+        private val dir: File,
+        private val depth: Int
+    ) : FileObserver(dir.path, WATCH_EVENTS) {
+
+        override fun onEvent(event: Int, path: String?) {
+            if (path == null) return
+            val target = File(dir, path)
+            if ((event and FileObserver.ALL_EVENTS) == FileObserver.CREATE && target.isDirectory) {
+                if (depth < WATCH_DEPTH) watchTree(target, depth + 1)
+                return
+            }
+            onFileEvent(target.path)
+        }
+    }
+}
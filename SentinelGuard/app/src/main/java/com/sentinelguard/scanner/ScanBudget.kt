@@ -0,0 +1,55 @@
+package com.sentinelguard.scanner
+
+import android.os.PowerManager
+
+/**
+ * How much of the device a file scan may use
+ */
+data class ScanBudget(
+    val walkerThreads: Int,
+    val analysisWorkers: Int
+) {
+    companion object {
+        /**
+         * Foreground scans: the user is waiting on the result
+         */
+        val FULL = ScanBudget(
+            walkerThreads = Runtime.getRuntime().availableProcessors().coerceIn(2, 4),
+            analysisWorkers = 2
+        )
+
+        val REDUCED = ScanBudget(walkerThreads = 2, analysisWorkers = 1)
+
+        val MINIMAL = ScanBudget(walkerThreads = 1, analysisWorkers = 1)
+    }
+}
+
+/**
+ * ScanThrottle: Background Scan Budget Policy
+ *
+ * Maps thermal status and battery state to a [ScanBudget]:
+ * - Severe throttling or worse, or a low unplugged battery: defer (null)
+ * - Moderate throttling: one walker thread and one analysis worker
+ * - Light throttling or a half-drained unplugged battery: reduced
+ * - Otherwise the full foreground budget
+ */
+object ScanThrottle {
+
+    const val MIN_BATTERY_PERCENT = 20
+    const val REDUCED_BATTERY_PERCENT = 50
+
+    /**
+     * @param thermalStatus a PowerManager.THERMAL_STATUS_* value
+     * @param batteryPercent 0-100, or negative when unknown
+     */
+    fun budgetFor(thermalStatus: Int, batteryPercent: Int, isCharging: Boolean): ScanBudget? {
+        val lowBattery = !isCharging && batteryPercent in 0 until MIN_BATTERY_PERCENT
+        val drained = !isCharging && batteryPercent in 0 until REDUCED_BATTERY_PERCENT
+        return when {
+            thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE || lowBattery -> null
+            thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE -> ScanBudget.MINIMAL
+            thermalStatus >= PowerManager.THERMAL_STATUS_LIGHT || drained -> ScanBudget.REDUCED
+            else -> ScanBudget.FULL
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.sentinelguard.scanner
+
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.lastOrNull
+import kotlinx.coroutines.flow.mapNotNull
+
+/**
+ * ScanEvent: One Item of a Scanner's Event Stream
+ *
+ * Scanners stream progress and findings as they happen and end with
+ * their result, so consumers fold findings incrementally instead of
+ * waiting for (or re-running) the scan:
+ * - [Progress]: scanner-specific progress of type [P]
+ * - [Finding]: a threat or issue, emitted when discovered
+ * - [PhaseResult]: the scanner's final result of type [R], emitted last
+ */
+sealed interface ScanEvent<out P, out R> {
+
+    data class Progress<out P>(val progress: P) : ScanEvent<P, Nothing>
+
+    data class Finding(val finding: ScanFinding) : ScanEvent<Nothing, Nothing>
+
+    data class PhaseResult<out R>(val result: R) : ScanEvent<Nothing, R>
+}
+
+/**
+ * Typed finding carried by [ScanEvent.Finding]
+ */
+sealed interface ScanFinding {
+
+    /**
+     * Short text for live display while a scan runs
+     */
+    val title: String
+
+    data class App(val threat: DetectedThreat) : ScanFinding {
+        override val title: String get() = "${threat.appName}: ${threat.description}"
+    }
+
+    data class File(val file: FileSystemScanner.SuspiciousFile) : ScanFinding {
+        override val title: String get() = "${file.name}: ${file.reason}"
+    }
+
+    data class Integrity(val issue: SystemIntegrityScanner.IntegrityIssue) : ScanFinding {
+        override val title: String get() = issue.description
+    }
+
+    data class Network(val warning: NetworkSecurityScanner.NetworkWarning) : ScanFinding {
+        override val title: String get() = warning.description
+    }
+
+    data class Privacy(val app: PrivacyScanner.HighRiskAppInfo) : ScanFinding {
+        override val title: String get() = "${app.appName}: ${app.reason}"
+    }
+}
+
+/**
+ * Progress updates only, for callers that do not consume findings
+ */
+fun <P> Flow<ScanEvent<P, *>>.progressUpdates(): Flow<P> = mapNotNull { event ->
+    (event as? ScanEvent.Progress<P>)?.progress
+}
+
+/**
+ * Run the scan to completion and return its result, ignoring progress
+ * and findings; null if the stream ended without one
+ */
+suspend fun <R> Flow<ScanEvent<*, R>>.result(): R? = mapNotNull { event ->
+    (event as? ScanEvent.PhaseResult<R>)?.result
+}.lastOrNull()
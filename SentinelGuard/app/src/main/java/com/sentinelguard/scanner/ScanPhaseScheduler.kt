@@ -0,0 +1,209 @@
+package com.sentinelguard.scanner
+
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withTimeout
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * ScanPhaseScheduler: Dependency-Aware Deep Scan Phase Runner
+ *
+ * Runs deep scan phases concurrently on a bounded dispatcher:
+ * - A phase starts as soon as every phase it depends on has finished
+ * - Each phase has its own timeout; a timed out or failed phase yields no result.
+ *   Timeouts cancel the phase, so phase bodies must stay cancellable:
+ *   suspend or call `ensureActive` in loops, and wrap blocking calls in
+ *   `runInterruptible`
+ * - Per-phase progress is merged into one weighted overall progress
+ * - Findings reported by phases are forwarded as they are discovered
+ * - Each phase that produced a result is reported as it completes, so the
+ *   caller can checkpoint at phase boundaries
+ *
+ * Cancelling the caller cancels every running phase.
+ */
+class ScanPhaseScheduler(
+    private val phases: List<PhaseSpec>,
+    private val dispatcher: CoroutineDispatcher,
+    private val progressScale: Float = 1f
+) {
+    companion object {
+        private const val TAG = "ScanPhaseScheduler"
+    }
+
+    /**
+     * A single schedulable phase
+     */
+    class PhaseSpec(
+        val phase: DeepScanEngine.DeepScanPhase,
+        val weight: Float,
+        val timeoutMs: Long,
+        val startTask: String,
+        val completeTask: String,
+        val dependsOn: Set<DeepScanEngine.DeepScanPhase> = emptySet(),
+        val block: suspend PhaseScope.() -> Any?
+    )
+
+    /**
+     * Handle passed to a running phase for progress and finding reporting
+     * and access to the results of the phases it depends on.
+     */
+    class PhaseScope internal constructor(
+        private val phase: DeepScanEngine.DeepScanPhase,
+        private val tracker: ProgressTracker,
+        private val onFinding: suspend (ScanFinding) -> Unit,
+        val results: PhaseResults
+    ) {
+        suspend fun report(fraction: Float, task: String, itemsProcessed: Int = 0, totalItems: Int = 0) {
+            tracker.update(phase, fraction, task, itemsProcessed, totalItems)
+        }
+
+        suspend fun found(finding: ScanFinding) {
+            onFinding(finding)
+        }
+    }
+
+    /**
+     * Results of completed phases, keyed by phase
+     */
+    class PhaseResults {
+        private val values = ConcurrentHashMap<DeepScanEngine.DeepScanPhase, Any>()
+
+        internal fun put(phase: DeepScanEngine.DeepScanPhase, value: Any?) {
+            if (value != null) values[phase] = value
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        operator fun <T> get(phase: DeepScanEngine.DeepScanPhase): T? = values[phase] as? T
+    }
+
+    init {
+        val known = phases.map { it.phase }.toSet()
+        require(known.size == phases.size) { "Duplicate phase in schedule" }
+        phases.forEach { spec ->
+            require(known.containsAll(spec.dependsOn)) { "${spec.phase} depends on an unscheduled phase" }
+        }
+        requireAcyclic()
+    }
+
+    /**
+     * Run all phases and return their results once every phase has
+     * completed, failed or timed out.
+     */
+    suspend fun run(
+        onProgress: suspend (DeepScanEngine.DeepScanProgress) -> Unit,
+        onFinding: suspend (ScanFinding) -> Unit = {},
+        onPhaseComplete: suspend (DeepScanEngine.DeepScanPhase, Any) -> Unit = { _, _ -> }
+    ): PhaseResults = coroutineScope {
+        val results = PhaseResults()
+        val tracker = ProgressTracker(phases, progressScale, onProgress)
+        val finished = phases.associate { it.phase to CompletableDeferred<Unit>() }
+
+        phases.forEach { spec ->
+            launch(dispatcher) {
+                try {
+                    spec.dependsOn.forEach { finished.getValue(it).await() }
+                    runPhase(spec, tracker, onFinding, results)?.let { onPhaseComplete(spec.phase, it) }
+                } finally {
+                    finished.getValue(spec.phase).complete(Unit)
+                }
+            }
+        }
+
+        results
+    }
+
+    private suspend fun runPhase(
+        spec: PhaseSpec,
+        tracker: ProgressTracker,
+        onFinding: suspend (ScanFinding) -> Unit,
+        results: PhaseResults
+    ): Any? {
+        val startTime = System.currentTimeMillis()
+        tracker.update(spec.phase, 0f, spec.startTask, 0, 0)
+
+        val result = try {
+            withTimeout(spec.timeoutMs) {
+                PhaseScope(spec.phase, tracker, onFinding, results).(spec.block)()
+            }
+        } catch (e: TimeoutCancellationException) {
+            Log.w(TAG, "${spec.phase} timed out after ${spec.timeoutMs}ms")
+            null
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.e(TAG, "${spec.phase} failed", e)
+            null
+        }
+
+        results.put(spec.phase, result)
+        tracker.complete(spec.phase, spec.completeTask)
+        Log.i(TAG, "${spec.phase} finished in ${System.currentTimeMillis() - startTime}ms")
+        return result
+    }
+
+    /**
+     * Kahn's algorithm; a cycle would otherwise deadlock run()
+     */
+    private fun requireAcyclic() {
+        val remaining = phases.associate { it.phase to it.dependsOn.toMutableSet() }.toMutableMap()
+        while (remaining.isNotEmpty()) {
+            val ready = remaining.filterValues { it.isEmpty() }.keys
+            require(ready.isNotEmpty()) { "Cyclic phase dependencies: ${remaining.keys}" }
+            ready.forEach { remaining.remove(it) }
+            remaining.values.forEach { it.removeAll(ready) }
+        }
+    }
+
+    /**
+     * Merges per-phase progress into weighted overall progress.
+     * Updates are serialized so overall progress never goes backwards.
+     */
+    class ProgressTracker internal constructor(
+        phases: List<PhaseSpec>,
+        private val scale: Float,
+        private val onProgress: suspend (DeepScanEngine.DeepScanProgress) -> Unit
+    ) {
+        private val mutex = Mutex()
+        private val weights = phases.associate { it.phase to it.weight }
+        private val totalWeight = weights.values.sum().takeIf { it > 0f } ?: 1f
+        private val fractions = mutableMapOf<DeepScanEngine.DeepScanPhase, Float>()
+        private val itemCounts = mutableMapOf<DeepScanEngine.DeepScanPhase, Pair<Int, Int>>()
+
+        suspend fun update(
+            phase: DeepScanEngine.DeepScanPhase,
+            fraction: Float,
+            task: String,
+            itemsProcessed: Int,
+            totalItems: Int
+        ) = mutex.withLock {
+            val phaseProgress = maxOf(fractions[phase] ?: 0f, fraction.coerceIn(0f, 1f))
+            fractions[phase] = phaseProgress
+            if (totalItems > 0 || itemsProcessed > 0) itemCounts[phase] = itemsProcessed to totalItems
+
+            val weighted = fractions.entries.sumOf { (p, f) -> (weights.getValue(p) * f).toDouble() }
+            onProgress(DeepScanEngine.DeepScanProgress(
+                phase = phase,
+                phaseProgress = phaseProgress,
+                overallProgress = (weighted / totalWeight).toFloat() * scale,
+                currentTask = task,
+                itemsProcessed = itemsProcessed,
+                totalItems = totalItems
+            ))
+        }
+
+        /**
+         * Mark a phase finished, keeping the last item counts it reported
+         */
+        suspend fun complete(phase: DeepScanEngine.DeepScanPhase, task: String) {
+            val (processed, total) = mutex.withLock { itemCounts[phase] ?: (0 to 0) }
+            update(phase, 1f, task, processed, total)
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.sentinelguard.scanner
+
+/**
+ * Sections of a [SignatureBundle]. Every entry is a list of strings:
+ * one string for names, prefixes, hashes and extensions, several for a
+ * permission combination. [MALWARE_HASHES] holds full SHA-256 digests in
+ * hex, which are served from a [MalwareHashStore].
+ */
+enum class SignatureSection(val id: Int) {
+    MALWARE_PACKAGES(1),
+    MALWARE_PREFIXES(2),
+    PERMISSION_COMBOS(3),
+    HASH_PREFIXES(4),
+    FILE_EXTENSIONS(5),
+    MALWARE_HASHES(6);
+
+    /**
+     * Canonical form, so equal entries compare equal regardless of
+     * case or combination order
+     */
+    fun normalize(entry: List<String>): List<String> = when (this) {
+        PERMISSION_COMBOS -> entry.distinct().sorted()
+        else -> listOf(entry.single().lowercase())
+    }
+
+    companion object {
+        fun fromId(id: Int): SignatureSection? = entries.firstOrNull { it.id == id }
+    }
+}
+
+/**
+ * SignatureBundle: Versioned Malware Intelligence
+ *
+ * Immutable; updates produce a new bundle via [apply] so readers holding
+ * the old one are never affected.
+ */
+class SignatureBundle private constructor(
+    val version: Long,
+    private val sections: Map<SignatureSection, Set<List<String>>>
+) {
+    companion object {
+        val EMPTY = SignatureBundle(0, emptyMap())
+
+        fun of(
+            version: Long,
+            malwarePackages: Collection<String>,
+            malwarePrefixes: Collection<String>,
+            permissionCombos: Collection<Set<String>>,
+            hashPrefixes: Collection<String>,
+            fileExtensions: Collection<String>
+        ): SignatureBundle {
+            return EMPTY.apply(
+                SignatureUpdate(
+                    kind = SignatureUpdate.Kind.FULL,
+                    baseVersion = 0,
+                    version = version,
+                    added = mapOf(
+                        SignatureSection.MALWARE_PACKAGES to malwarePackages.map { listOf(it) },
+                        SignatureSection.MALWARE_PREFIXES to malwarePrefixes.map { listOf(it) },
+                        SignatureSection.PERMISSION_COMBOS to permissionCombos.map { it.toList() },
+                        SignatureSection.HASH_PREFIXES to hashPrefixes.map { listOf(it) },
+                        SignatureSection.FILE_EXTENSIONS to fileExtensions.map { listOf(it) }
+                    )
+                )
+            )
+        }
+    }
+
+    fun entries(section: SignatureSection): Set<List<String>> = sections[section] ?: emptySet()
+
+    val malwarePackages: Set<String> by lazy { single(SignatureSection.MALWARE_PACKAGES) }
+    val malwarePrefixes: List<String> by lazy { single(SignatureSection.MALWARE_PREFIXES).toList() }
+    val permissionCombos: List<Set<String>> by lazy {
+        entries(SignatureSection.PERMISSION_COMBOS).map { it.toSet() }
+    }
+    val hashPrefixes: Set<String> by lazy { single(SignatureSection.HASH_PREFIXES) }
+    val fileExtensions: Set<String> by lazy { single(SignatureSection.FILE_EXTENSIONS) }
+
+    /**
+     * Full hashes as raw digests; entries that are not 64 hex digits are
+     * skipped
+     */
+    fun malwareDigests(): List<ByteArray> {
+        return entries(SignatureSection.MALWARE_HASHES).mapNotNull { entry ->
+            val hex = entry.single()
+            if (hex.length != MalwareHashStore.DIGEST_SIZE * 2) return@mapNotNull null
+            val digest = ByteArray(MalwareHashStore.DIGEST_SIZE)
+            for (i in digest.indices) {
+                val high = Character.digit(hex[2 * i], 16)
+                val low = Character.digit(hex[2 * i + 1], 16)
+                if (high < 0 || low < 0) return@mapNotNull null
+                digest[i] = ((high shl 4) or low).toByte()
+            }
+            digest
+        }
+    }
+
+    val size: Int get() = sections.values.sumOf { it.size }
+
+    /**
+     * Apply a full or delta update. A delta must be based on this
+     * bundle's version.
+     */
+    fun apply(update: SignatureUpdate): SignatureBundle {
+        val base = when (update.kind) {
+            SignatureUpdate.Kind.FULL -> emptyMap()
+            SignatureUpdate.Kind.DELTA -> {
+                require(update.baseVersion == version) {
+                    "Delta ${update.baseVersion}->${update.version} does not apply to version $version"
+                }
+                sections
+            }
+        }
+
+        val result = mutableMapOf<SignatureSection, Set<List<String>>>()
+        for (section in SignatureSection.entries) {
+            val removed = update.removed[section].orEmpty().map { section.normalize(it) }.toSet()
+            val added = update.added[section].orEmpty().map { section.normalize(it) }
+            val entries = LinkedHashSet(base[section].orEmpty())
+            entries.removeAll(removed)
+            entries.addAll(added)
+            if (entries.isNotEmpty()) result[section] = entries
+        }
+        return SignatureBundle(update.version, result)
+    }
+
+    private fun single(section: SignatureSection): Set<String> {
+        return entries(section).mapTo(LinkedHashSet()) { it.single() }
+    }
+}
+
+/**
+ * A full bundle or a delta against [baseVersion], as shipped in a
+ * signed update file (see [SignatureBundleCodec])
+ */
+data class SignatureUpdate(
+    val kind: Kind,
+    val baseVersion: Long,
+    val version: Long,
+    val added: Map<SignatureSection, List<List<String>>> = emptyMap(),
+    val removed: Map<SignatureSection, List<List<String>>> = emptyMap()
+) {
+    enum class Kind { FULL, DELTA }
+}
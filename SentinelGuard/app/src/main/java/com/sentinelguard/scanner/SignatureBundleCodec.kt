@@ -0,0 +1,144 @@
+package com.sentinelguard.scanner
+
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.security.PrivateKey
+import java.security.PublicKey
+import java.security.Signature
+
+/**
+ * SignatureBundleCodec: Signed Binary Format for [SignatureUpdate]s
+ *
+ * Layout (big-endian):
+ * - Magic "SGSB", signature length, ECDSA P-256 / SHA-256 signature
+ *   over the payload that follows
+ * - Payload: format version, kind (0 = full, 1 = delta), bundle version,
+ *   base version (0 for full bundles), operation count, then per
+ *   operation: section id, op (1 = add, 2 = remove), entry count,
+ *   entries as (string count, UTF strings)
+ *
+ * Decoding verifies the signature before parsing the payload.
+ */
+object SignatureBundleCodec {
+
+    private const val MAGIC = 0x53475342 // "SGSB"
+    private const val FORMAT_VERSION = 1
+    private const val KIND_FULL = 0
+    private const val KIND_DELTA = 1
+    private const val OP_ADD = 1
+    private const val OP_REMOVE = 2
+
+    private const val HEADER_SIZE = 6
+    private const val MAX_SIGNATURE_SIZE = 256
+    private const val MAX_ENTRIES = 5_000_000
+
+    const val SIGNATURE_ALGORITHM = "SHA256withECDSA"
+    const val KEY_ALGORITHM = "EC"
+
+    fun encode(update: SignatureUpdate, privateKey: PrivateKey): ByteArray {
+        val payload = ByteArrayOutputStream()
+        DataOutputStream(payload).use { out ->
+            out.writeInt(FORMAT_VERSION)
+            out.writeByte(if (update.kind == SignatureUpdate.Kind.FULL) KIND_FULL else KIND_DELTA)
+            out.writeLong(update.version)
+            out.writeLong(update.baseVersion)
+
+            val operations = update.removed.map { (section, entries) -> Triple(section, OP_REMOVE, entries) } +
+                update.added.map { (section, entries) -> Triple(section, OP_ADD, entries) }
+            out.writeInt(operations.size)
+            for ((section, op, entries) in operations) {
+                out.writeByte(section.id)
+                out.writeByte(op)
+                out.writeInt(entries.size)
+                for (entry in entries) {
+                    out.writeByte(entry.size)
+                    entry.forEach { out.writeUTF(it) }
+                }
+            }
+        }
+        val payloadBytes = payload.toByteArray()
+
+        val signature = Signature.getInstance(SIGNATURE_ALGORITHM).run {
+            initSign(privateKey)
+            update(payloadBytes)
+            sign()
+        }
+
+        val result = ByteArrayOutputStream(HEADER_SIZE + signature.size + payloadBytes.size)
+        DataOutputStream(result).use { out ->
+            out.writeInt(MAGIC)
+            out.writeShort(signature.size)
+            out.write(signature)
+            out.write(payloadBytes)
+        }
+        return result.toByteArray()
+    }
+
+    /**
+     * Verify and parse an update.
+     *
+     * @throws SecurityException if the signature does not verify
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    fun decode(bytes: ByteArray, publicKey: PublicKey): SignatureUpdate {
+        DataInputStream(ByteArrayInputStream(bytes)).use { input ->
+            require(input.readInt() == MAGIC) { "Not a signature bundle" }
+            val signatureSize = input.readUnsignedShort()
+            require(signatureSize in 1..MAX_SIGNATURE_SIZE) { "Invalid signature size" }
+            val payloadStart = HEADER_SIZE + signatureSize
+            require(bytes.size > payloadStart) { "Bundle truncated" }
+
+            val verifier = Signature.getInstance(SIGNATURE_ALGORITHM).apply {
+                initVerify(publicKey)
+                update(bytes, payloadStart, bytes.size - payloadStart)
+            }
+            if (!verifier.verify(bytes, HEADER_SIZE, signatureSize)) {
+                throw SecurityException("Signature bundle failed verification")
+            }
+            input.skipBytes(signatureSize)
+
+            val format = input.readInt()
+            require(format == FORMAT_VERSION) { "Unsupported bundle format $format" }
+
+            val kind = when (val k = input.readUnsignedByte()) {
+                KIND_FULL -> SignatureUpdate.Kind.FULL
+                KIND_DELTA -> SignatureUpdate.Kind.DELTA
+                else -> throw IllegalArgumentException("Unknown bundle kind $k")
+            }
+            val version = input.readLong()
+            val baseVersion = input.readLong()
+            require(version > baseVersion) { "Bundle version $version not after base $baseVersion" }
+
+            val added = mutableMapOf<SignatureSection, MutableList<List<String>>>()
+            val removed = mutableMapOf<SignatureSection, MutableList<List<String>>>()
+            repeat(input.readInt()) {
+                val sectionId = input.readUnsignedByte()
+                val op = input.readUnsignedByte()
+                val count = input.readInt()
+                require(count in 0..MAX_ENTRIES) { "Invalid entry count $count" }
+
+                val entries = ArrayList<List<String>>(count)
+                repeat(count) {
+                    val size = input.readUnsignedByte()
+                    entries.add(List(size) { input.readUTF() })
+                }
+
+                // Unknown sections come from newer producers; skip them
+                val section = SignatureSection.fromId(sectionId) ?: return@repeat
+                if (section != SignatureSection.PERMISSION_COMBOS) {
+                    require(entries.all { it.size == 1 }) { "Multi-value entry in $section" }
+                }
+                when (op) {
+                    OP_ADD -> added.getOrPut(section) { mutableListOf() }.addAll(entries)
+                    OP_REMOVE -> removed.getOrPut(section) { mutableListOf() }.addAll(entries)
+                    else -> throw IllegalArgumentException("Unknown operation $op")
+                }
+            }
+            require(kind == SignatureUpdate.Kind.DELTA || removed.isEmpty()) { "Full bundle with removals" }
+
+            return SignatureUpdate(kind, baseVersion, version, added, removed)
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.sentinelguard.scanner
+
+import android.content.Context
+import android.util.Log
+import com.sentinelguard.BuildConfig
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.KeyFactory
+import java.security.PublicKey
+import java.security.spec.X509EncodedKeySpec
+import java.util.Base64
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * SignatureBundleManager: Loads and Updates Malware Signatures
+ *
+ * On-disk layout under filesDir/signatures:
+ * - bundle.bin: latest signed full bundle
+ * - deltas/<version>.bin: signed deltas applied on top, in version order
+ * - malware_hashes.bin: [MalwareHashStore] of the active bundle's full
+ *   hashes; rewritten whenever a bundle is installed, never read back
+ *   on its own
+ *
+ * Bundle and delta files are verified against the provisioned public
+ * key (BuildConfig.SIGNATURE_BUNDLE_PUBLIC_KEY); without a key only the
+ * built-in signatures are used. Updates are applied off the scan path
+ * and published through [ThreatDatabase.installBundle].
+ */
+@Singleton
+class SignatureBundleManager @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+    companion object {
+        private const val TAG = "SignatureBundleManager"
+        private const val DIRECTORY = "signatures"
+        private const val BUNDLE_FILE = "bundle.bin"
+        private const val DELTA_DIRECTORY = "deltas"
+    }
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val updateMutex = Mutex()
+
+    private val directory: File get() = File(context.filesDir, DIRECTORY)
+    private val deltaDirectory: File get() = File(directory, DELTA_DIRECTORY)
+    private val hashStoreFile: File get() = File(context.filesDir, MalwareHashStore.DEFAULT_FILE_NAME)
+
+    private val publicKey: PublicKey? by lazy {
+        val encoded = BuildConfig.SIGNATURE_BUNDLE_PUBLIC_KEY
+        if (encoded.isBlank()) {
+            Log.w(TAG, "No signature bundle key provisioned; using built-in signatures")
+            return@lazy null
+        }
+        try {
+            KeyFactory.getInstance(SignatureBundleCodec.KEY_ALGORITHM)
+                .generatePublic(X509EncodedKeySpec(Base64.getDecoder().decode(encoded)))
+        } catch (e: Exception) {
+            Log.e(TAG, "Invalid signature bundle key", e)
+            null
+        }
+    }
+
+    /**
+     * Load installed signatures in the background. Scans started before
+     * loading finishes use the built-in signatures.
+     */
+    fun initialize() {
+        scope.launch { loadInstalled() }
+    }
+
+    /**
+     * Rebuild the active bundle from the stored full bundle (or the
+     * built-in one) and the deltas stored on top of it
+     */
+    suspend fun loadInstalled(): Boolean = withContext(Dispatchers.IO) {
+        updateMutex.withLock {
+            val key = publicKey ?: return@withLock false
+            try {
+                var bundle = readUpdate(File(directory, BUNDLE_FILE), key)
+                    ?.takeIf { it.kind == SignatureUpdate.Kind.FULL }
+                    ?.let { SignatureBundle.EMPTY.apply(it) }
+                    ?: ThreatDatabase.builtinBundle
+
+                val deltas = deltaDirectory.listFiles { file -> file.name.endsWith(".bin") }
+                    ?.mapNotNull { readUpdate(it, key) }
+                    ?.sortedBy { it.baseVersion }
+                    .orEmpty()
+                for (delta in deltas) {
+                    if (delta.baseVersion == bundle.version) bundle = bundle.apply(delta)
+                }
+
+                if (bundle === ThreatDatabase.builtinBundle) return@withLock false
+                install(bundle)
+                true
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to load signature bundle", e)
+                false
+            }
+        }
+    }
+
+    /**
+     * Verify and apply a downloaded update, full or delta.
+     * Returns false if it is invalid, stale or does not fit the active bundle.
+     */
+    suspend fun applyUpdate(bytes: ByteArray): Boolean = withContext(Dispatchers.IO) {
+        updateMutex.withLock {
+            val key = publicKey ?: return@withLock false
+            try {
+                val update = SignatureBundleCodec.decode(bytes, key)
+                val current = ThreatDatabase.currentBundle
+                if (update.version <= current.version) {
+                    Log.d(TAG, "Ignoring stale signature update v${update.version}")
+                    return@withLock false
+                }
+
+                val bundle = current.apply(update)
+                when (update.kind) {
+                    SignatureUpdate.Kind.FULL -> {
+                        writeAtomically(File(directory, BUNDLE_FILE), bytes)
+                        deltaDirectory.listFiles()?.forEach { it.delete() }
+                    }
+                    SignatureUpdate.Kind.DELTA -> {
+                        writeAtomically(File(deltaDirectory, "${update.version}.bin"), bytes)
+                    }
+                }
+
+                install(bundle)
+                true
+            } catch (e: Exception) {
+                Log.e(TAG, "Rejected signature update", e)
+                false
+            }
+        }
+    }
+
+    /**
+     * Activate [bundle] and rebuild the hash store from its full hashes,
+     * so lookups only ever see hashes covered by a verified signature
+     */
+    private fun install(bundle: SignatureBundle) {
+        ThreatDatabase.installBundle(bundle)
+        ThreatDatabase.updateHashStore(hashStoreFile, bundle.malwareDigests())
+    }
+
+    private fun readUpdate(file: File, key: PublicKey): SignatureUpdate? {
+        if (!file.exists()) return null
+        return try {
+            SignatureBundleCodec.decode(file.readBytes(), key)
+        } catch (e: Exception) {
+            Log.e(TAG, "Discarding invalid signature file ${file.name}", e)
+            file.delete()
+            null
+        }
+    }
+
+    private fun writeAtomically(target: File, bytes: ByteArray) {
+        target.parentFile?.mkdirs()
+        val temp = File(target.parentFile, target.name + ".tmp")
+        FileOutputStream(temp).use { out ->
+            out.write(bytes)
+            out.fd.sync()
+        }
+        Files.move(
+            temp.toPath(), target.toPath(),
+            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING
+        )
+    }
+}
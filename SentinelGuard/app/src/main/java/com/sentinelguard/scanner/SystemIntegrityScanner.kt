@@ -6,9 +6,7 @@ import android.util.Log
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
-import java.io.BufferedReader
 import java.io.File
-import java.io.InputStreamReader
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -25,14 +23,34 @@ import javax.inject.Singleton
  * - SELinux enforcement
  * - System partition integrity
  * - Build property tampering
+ * 
+ * Checks run as concurrent [SystemProbe]s over one shared
+ * [SystemProbeSnapshot]; boot-stable results are reused until reboot.
  */
 @Singleton
 class SystemIntegrityScanner @Inject constructor(
-    @ApplicationContext private val context: Context
+    @ApplicationContext private val context: Context,
+    private val snapshotProvider: InstalledPackageSnapshotProvider,
+    private val probeRunner: SystemProbeRunner,
+    private val portProber: LocalPortProber
 ) {
     companion object {
         private const val TAG = "SystemIntegrityScanner"
         
+        // Probe ids
+        private const val PROBE_ROOT = "root"
+        private const val PROBE_MAGISK = "magisk"
+        private const val PROBE_KERNELSU = "kernelsu"
+        private const val PROBE_XPOSED = "xposed"
+        private const val PROBE_FRIDA = "frida"
+        private const val PROBE_LUCKY_PATCHER = "lucky_patcher"
+        private const val PROBE_BOOTLOADER_UNLOCKED = "bootloader_unlocked"
+        private const val PROBE_SELINUX_PERMISSIVE = "selinux_permissive"
+        private const val PROBE_BUILD_TAMPERED = "build_tampered"
+        private const val PROBE_DEBUGGABLE = "debuggable"
+        
+        private const val SELINUX_ENFORCE_PATH = "/sys/fs/selinux/enforce"
+        
         // Root binary locations
         private val ROOT_BINARIES = listOf(
             "/system/bin/su", "/system/xbin/su", "/sbin/su",
@@ -56,38 +74,6 @@ class SystemIntegrityScanner @Inject constructor(
             "/data/data/de.robv.android.xposed.installer",
             "/data/adb/lspd"
         )
-        
-        // Dangerous packages
-        private val DANGEROUS_PACKAGES = listOf(
-            // Root managers
-            "com.topjohnwu.magisk",
-            "me.weishu.kernelsu",
-            "eu.chainfire.supersu",
-            "com.noshufou.android.su",
-            "com.koushikdutta.superuser",
-            
-            // Xposed/LSPosed
-            "de.robv.android.xposed.installer",
-            "org.lsposed.manager",
-            "io.github.lsposed.manager",
-            
-            // Hacking tools
-            "com.chelpus.lackypatch",
-            "com.dimonvideo.luckypatcher",
-            "com.android.vending.billing.InAppBillingService.LUCK",
-            
-            // Game cheating
-            "com.github.nicktendo.gameguardian",
-            "org.cheatengine.cegui",
-            
-            // Frida
-            "re.frida.server",
-            
-            // Virtual environments
-            "com.bly.dualspace",
-            "com.ludashi.dualspace",
-            "com.excelliance.dualaid"
-        )
     }
     
     /**
@@ -126,8 +112,14 @@ class SystemIntegrityScanner @Inject constructor(
         val dangerousApps = mutableListOf<String>()
         var riskScore = 0
         
+        // Installed package lookups use the shared scan snapshot
+        val snapshot = snapshotProvider.acquire()
+        
+        // Independent checks run concurrently over one system snapshot
+        val probes = probeRunner.run(buildProbes(snapshot))
+        
         // 1. Root Detection
-        val isRooted = detectRoot()
+        val isRooted = probes.getValue(PROBE_ROOT)
         if (isRooted) {
             issues.add(IntegrityIssue(
                 type = "ROOT_DETECTED",
@@ -139,7 +131,7 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // 2. Magisk Detection
-        val hasMagisk = detectMagisk()
+        val hasMagisk = probes.getValue(PROBE_MAGISK)
         if (hasMagisk) {
             issues.add(IntegrityIssue(
                 type = "MAGISK_DETECTED",
@@ -151,7 +143,7 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // 3. KernelSU Detection
-        val hasKernelSU = detectKernelSU()
+        val hasKernelSU = probes.getValue(PROBE_KERNELSU)
         if (hasKernelSU) {
             issues.add(IntegrityIssue(
                 type = "KERNELSU_DETECTED",
@@ -163,7 +155,7 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // 4. Xposed Detection
-        val hasXposed = detectXposed()
+        val hasXposed = probes.getValue(PROBE_XPOSED)
         if (hasXposed) {
             issues.add(IntegrityIssue(
                 type = "XPOSED_DETECTED",
@@ -175,7 +167,7 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // 5. Frida Detection
-        val hasFrida = detectFrida()
+        val hasFrida = probes.getValue(PROBE_FRIDA)
         if (hasFrida) {
             issues.add(IntegrityIssue(
                 type = "FRIDA_DETECTED",
@@ -187,7 +179,7 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // 6. Lucky Patcher Detection
-        val hasLuckyPatcher = detectLuckyPatcher()
+        val hasLuckyPatcher = probes.getValue(PROBE_LUCKY_PATCHER)
         if (hasLuckyPatcher) {
             issues.add(IntegrityIssue(
                 type = "LUCKY_PATCHER_DETECTED",
@@ -200,7 +192,7 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // 7. Bootloader Check
-        val bootloaderUnlocked = isBootloaderUnlocked()
+        val bootloaderUnlocked = probes.getValue(PROBE_BOOTLOADER_UNLOCKED)
         if (bootloaderUnlocked) {
             issues.add(IntegrityIssue(
                 type = "BOOTLOADER_UNLOCKED",
@@ -212,7 +204,7 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // 8. SELinux Check
-        val selinuxEnforcing = isSELinuxEnforcing()
+        val selinuxEnforcing = !probes.getValue(PROBE_SELINUX_PERMISSIVE)
         if (!selinuxEnforcing) {
             issues.add(IntegrityIssue(
                 type = "SELINUX_PERMISSIVE",
@@ -224,7 +216,7 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // 9. Dangerous App Detection
-        val installedDangerousApps = detectDangerousApps()
+        val installedDangerousApps = detectDangerousApps(snapshot)
         dangerousApps.addAll(installedDangerousApps)
         installedDangerousApps.forEach { pkg ->
             issues.add(IntegrityIssue(
@@ -237,7 +229,7 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // 10. Build Property Tampering
-        if (detectBuildTampering()) {
+        if (probes.getValue(PROBE_BUILD_TAMPERED)) {
             issues.add(IntegrityIssue(
                 type = "BUILD_TAMPERED",
                 description = "Device build properties appear modified",
@@ -248,7 +240,7 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // 11. Debuggable Check
-        if (isDebuggable()) {
+        if (probes.getValue(PROBE_DEBUGGABLE)) {
             issues.add(IntegrityIssue(
                 type = "DEBUGGABLE_BUILD",
                 description = "Device may allow debugging - security risk",
@@ -275,10 +267,29 @@ class SystemIntegrityScanner @Inject constructor(
         )
     }
     
+    /**
+     * Integrity probes for one scan; package checks read [snapshot]
+     */
+    private fun buildProbes(snapshot: InstalledPackageSnapshot): List<SystemProbe> = listOf(
+        SystemProbe(PROBE_ROOT, setOf(ProbeInput.MOUNTS)) { detectRoot(it) },
+        SystemProbe(PROBE_MAGISK, setOf(ProbeInput.PROPERTIES)) { detectMagisk(snapshot, it) },
+        SystemProbe(PROBE_KERNELSU) { detectKernelSU(snapshot) },
+        SystemProbe(PROBE_XPOSED) { detectXposed(snapshot) },
+        SystemProbe(PROBE_FRIDA, setOf(ProbeInput.PROCESSES, ProbeInput.PROCESS_MAPS)) { detectFrida(it) },
+        SystemProbe(PROBE_LUCKY_PATCHER) { detectLuckyPatcher(snapshot) },
+        SystemProbe(PROBE_BOOTLOADER_UNLOCKED, setOf(ProbeInput.PROPERTIES), bootStable = true) {
+            isBootloaderUnlocked(it)
+        },
+        // A failed read counts as enforcing
+        SystemProbe(PROBE_SELINUX_PERMISSIVE) { !isSELinuxEnforcing() },
+        SystemProbe(PROBE_BUILD_TAMPERED, bootStable = true) { detectBuildTampering() },
+        SystemProbe(PROBE_DEBUGGABLE, setOf(ProbeInput.PROPERTIES), bootStable = true) { isDebuggable(it) }
+    )
+    
     /**
      * Detect root access using multiple methods
      */
-    private fun detectRoot(): Boolean {
+    private fun detectRoot(system: SystemProbeSnapshot): Boolean {
         // Method 1: Check root binaries
         for (path in ROOT_BINARIES) {
             if (File(path).exists()) {
@@ -294,47 +305,19 @@ class SystemIntegrityScanner @Inject constructor(
             return true
         }
         
-        // Method 3: Try to execute 'which su'
-        try {
-            val process = Runtime.getRuntime().exec(arrayOf("which", "su"))
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            val output = reader.readLine()
-            reader.close()
-            if (!output.isNullOrBlank()) {
-                Log.d(TAG, "su found via which: $output")
+        // Method 3: Look for su on PATH (what 'which su' does)
+        val path = System.getenv("PATH").orEmpty()
+        for (dir in path.split(':')) {
+            if (dir.isNotEmpty() && File(dir, "su").exists()) {
+                Log.d(TAG, "su found on PATH: $dir")
                 return true
             }
-        } catch (e: Exception) {
-            // Expected on non-rooted
         }
         
-        // Method 4: Check system properties
-        try {
-            val process = Runtime.getRuntime().exec("getprop ro.debuggable")
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            val debuggable = reader.readLine()
-            reader.close()
-            if (debuggable == "1") {
-                // Additional check needed
-            }
-        } catch (e: Exception) {
-            // Ignore
-        }
-        
-        // Method 5: Check for RW system partition
-        try {
-            val process = Runtime.getRuntime().exec("mount")
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            reader.useLines { lines ->
-                lines.forEach { line ->
-                    if (line.contains("/system") && line.contains("rw")) {
-                        Log.d(TAG, "System mounted as RW")
-                        return true
-                    }
-                }
-            }
-        } catch (e: Exception) {
-            // Ignore
+        // Method 4: Check for RW system partition
+        if (system.mounts.any { it.isReadWrite && (it.mountPoint == "/system" || it.mountPoint.startsWith("/system/")) }) {
+            Log.d(TAG, "System mounted as RW")
+            return true
         }
         
         return false
@@ -343,7 +326,7 @@ class SystemIntegrityScanner @Inject constructor(
     /**
      * Detect Magisk
      */
-    private fun detectMagisk(): Boolean {
+    private fun detectMagisk(snapshot: InstalledPackageSnapshot, system: SystemProbeSnapshot): Boolean {
         // Check Magisk paths
         for (path in MAGISK_PATHS) {
             if (File(path).exists()) {
@@ -353,45 +336,27 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // Check for Magisk app
-        try {
-            context.packageManager.getPackageInfo("com.topjohnwu.magisk", 0)
+        if (snapshot.isInstalled("com.topjohnwu.magisk")) {
             Log.d(TAG, "Magisk Manager app installed")
             return true
-        } catch (e: Exception) {
-            // Not installed
         }
         
         // Check magisk prop
-        try {
-            val process = Runtime.getRuntime().exec("getprop init.svc.magisk_service")
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            val result = reader.readLine()
-            reader.close()
-            if (result == "running") {
-                return true
-            }
-        } catch (e: Exception) {
-            // Ignore
-        }
-        
-        return false
+        return system.property("init.svc.magisk_service") == "running"
     }
     
     /**
      * Detect KernelSU
      */
-    private fun detectKernelSU(): Boolean {
+    private fun detectKernelSU(snapshot: InstalledPackageSnapshot): Boolean {
         // Check KernelSU paths
         if (File("/data/adb/ksu").exists()) {
             return true
         }
         
         // Check KernelSU app
-        try {
-            context.packageManager.getPackageInfo("me.weishu.kernelsu", 0)
+        if (snapshot.isInstalled("me.weishu.kernelsu")) {
             return true
-        } catch (e: Exception) {
-            // Not installed
         }
         
         return false
@@ -400,7 +365,7 @@ class SystemIntegrityScanner @Inject constructor(
     /**
      * Detect Xposed Framework
      */
-    private fun detectXposed(): Boolean {
+    private fun detectXposed(snapshot: InstalledPackageSnapshot): Boolean {
         // Check Xposed paths
         for (path in XPOSED_PATHS) {
             if (File(path).exists()) {
@@ -410,23 +375,16 @@ class SystemIntegrityScanner @Inject constructor(
         }
         
         // Check for Xposed/LSPosed modules
-        try {
-            val xposedApps = listOf(
-                "de.robv.android.xposed.installer",
-                "org.lsposed.manager",
-                "io.github.lsposed.manager"
-            )
-            for (pkg in xposedApps) {
-                try {
-                    context.packageManager.getPackageInfo(pkg, 0)
-                    Log.d(TAG, "Xposed app installed: $pkg")
-                    return true
-                } catch (e: Exception) {
-                    // Continue checking
-                }
+        val xposedApps = listOf(
+            "de.robv.android.xposed.installer",
+            "org.lsposed.manager",
+            "io.github.lsposed.manager"
+        )
+        for (pkg in xposedApps) {
+            if (snapshot.isInstalled(pkg)) {
+                Log.d(TAG, "Xposed app installed: $pkg")
+                return true
             }
-        } catch (e: Exception) {
-            // Ignore
         }
         
         // Check stack trace for Xposed
@@ -447,51 +405,27 @@ class SystemIntegrityScanner @Inject constructor(
     /**
      * Detect Frida
      */
-    private fun detectFrida(): Boolean {
+    private fun detectFrida(system: SystemProbeSnapshot): Boolean {
         // Check for Frida server
-        try {
-            val process = Runtime.getRuntime().exec("ps -A")
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            reader.useLines { lines ->
-                lines.forEach { line ->
-                    if (line.contains("frida") || line.contains("gum-js-loop")) {
-                        Log.d(TAG, "Frida process detected")
-                        return true
-                    }
-                }
-            }
-        } catch (e: Exception) {
-            // Ignore
+        if (system.processes.any { it.name.contains("frida") || it.name.contains("gum-js-loop") }) {
+            Log.d(TAG, "Frida process detected")
+            return true
         }
         
-        // Check for Frida port
-        try {
-            val socket = java.net.Socket()
-            socket.connect(java.net.InetSocketAddress("127.0.0.1", 27042), 100)
-            socket.close()
-            Log.d(TAG, "Frida default port is open")
+        // Check for Frida ports
+        if (portProber.isAnyOpen(LocalPortProber.FRIDA_PORTS)) {
+            Log.d(TAG, "Frida port is open")
             return true
-        } catch (e: Exception) {
-            // Port not open, good
         }
         
         // Check for frida-gadget in loaded libraries
-        try {
-            val maps = File("/proc/self/maps").readText()
-            if (maps.contains("frida") || maps.contains("gadget")) {
-                return true
-            }
-        } catch (e: Exception) {
-            // Ignore
-        }
-        
-        return false
+        return system.mappedFiles.any { it.contains("frida") || it.contains("gadget") }
     }
     
     /**
      * Detect Lucky Patcher
      */
-    private fun detectLuckyPatcher(): Boolean {
+    private fun detectLuckyPatcher(snapshot: InstalledPackageSnapshot): Boolean {
         val luckyPatcherPackages = listOf(
             "com.chelpus.lackypatch",
             "com.dimonvideo.luckypatcher",
@@ -499,13 +433,8 @@ class SystemIntegrityScanner @Inject constructor(
             "com.android.vendinc"
         )
         
-        for (pkg in luckyPatcherPackages) {
-            try {
-                context.packageManager.getPackageInfo(pkg, 0)
-                return true
-            } catch (e: Exception) {
-                // Not installed
-            }
+        if (luckyPatcherPackages.any { snapshot.isInstalled(it) }) {
+            return true
         }
         
         // Check for odex backup files (LP creates these)
@@ -519,36 +448,16 @@ class SystemIntegrityScanner @Inject constructor(
     /**
      * Check if bootloader is unlocked
      */
-    private fun isBootloaderUnlocked(): Boolean {
+    private fun isBootloaderUnlocked(system: SystemProbeSnapshot): Boolean {
         // Check verified boot state
-        try {
-            val process = Runtime.getRuntime().exec("getprop ro.boot.verifiedbootstate")
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            val state = reader.readLine()?.trim()
-            reader.close()
-            
-            // "green" = locked, "orange" = unlocked, "yellow" = custom key
-            if (state == "orange" || state == "yellow") {
-                return true
-            }
-        } catch (e: Exception) {
-            // Ignore
+        // "green" = locked, "orange" = unlocked, "yellow" = custom key
+        val state = system.property("ro.boot.verifiedbootstate")?.trim()
+        if (state == "orange" || state == "yellow") {
+            return true
         }
         
         // Check flash unlock setting
-        try {
-            val process = Runtime.getRuntime().exec("getprop ro.boot.flash.locked")
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            val locked = reader.readLine()?.trim()
-            reader.close()
-            if (locked == "0") {
-                return true
-            }
-        } catch (e: Exception) {
-            // Ignore
-        }
-        
-        return false
+        return system.property("ro.boot.flash.locked")?.trim() == "0"
     }
     
     /**
@@ -556,11 +465,8 @@ class SystemIntegrityScanner @Inject constructor(
      */
     private fun isSELinuxEnforcing(): Boolean {
         try {
-            val process = Runtime.getRuntime().exec("getenforce")
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            val mode = reader.readLine()?.trim()
-            reader.close()
-            return mode.equals("Enforcing", ignoreCase = true)
+            // Same source getenforce reads: "1" = enforcing, "0" = permissive
+            return File(SELINUX_ENFORCE_PATH).readText().trim() != "0"
         } catch (e: Exception) {
             // If we can't check, assume enforcing
             return true
@@ -570,19 +476,10 @@ class SystemIntegrityScanner @Inject constructor(
     /**
      * Detect dangerous apps installed
      */
-    private fun detectDangerousApps(): List<String> {
-        val found = mutableListOf<String>()
-        
-        for (pkg in DANGEROUS_PACKAGES) {
-            try {
-                context.packageManager.getPackageInfo(pkg, 0)
-                found.add(pkg)
-            } catch (e: Exception) {
-                // Not installed
-            }
-        }
-        
-        return found
+    private fun detectDangerousApps(snapshot: InstalledPackageSnapshot): List<String> {
+        return snapshot.packages
+            .map { it.packageName }
+            .filter { ThreatDatabase.classifyPackage(it).isDangerousTool }
     }
     
     /**
@@ -609,15 +506,7 @@ class SystemIntegrityScanner @Inject constructor(
     /**
      * Check if system is debuggable
      */
-    private fun isDebuggable(): Boolean {
-        try {
-            val process = Runtime.getRuntime().exec("getprop ro.debuggable")
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            val debuggable = reader.readLine()?.trim()
-            reader.close()
-            return debuggable == "1"
-        } catch (e: Exception) {
-            return false
-        }
+    private fun isDebuggable(system: SystemProbeSnapshot): Boolean {
+        return system.property("ro.debuggable")?.trim() == "1"
     }
 }
@@ -0,0 +1,85 @@
+package com.sentinelguard.scanner
+
+import android.util.Log
+
+/**
+ * Shared system state a [SystemProbe] may read
+ */
+enum class ProbeInput {
+    PROPERTIES,
+    MOUNTS,
+    PROCESSES,
+    PROCESS_MAPS
+}
+
+/**
+ * SystemProbe: One Integrity Check
+ *
+ * - [inputs]: snapshot state the check reads, prefetched before it runs
+ * - [bootStable]: the result cannot change until the device reboots, so
+ *   [SystemProbeRunner] reuses it across scans
+ */
+class SystemProbe(
+    val id: String,
+    val inputs: Set<ProbeInput> = emptySet(),
+    val bootStable: Boolean = false,
+    val check: (SystemProbeSnapshot) -> Boolean
+)
+
+/**
+ * SystemProbeSnapshot: System State Read Once per Scan
+ *
+ * Each input is read on first use and shared by every probe:
+ * - Properties: the full `getprop` table (one process)
+ * - Mounts, processes, mapped files: parsed from /proc by [ProcFsReader]
+ *
+ * Inputs that cannot be read are empty.
+ */
+class SystemProbeSnapshot {
+
+    companion object {
+        private const val TAG = "SystemProbeSnapshot"
+        private val PROPERTY_LINE = Regex("""^\[([^\]]+)]: \[(.*)]$""")
+    }
+
+    val properties: Map<String, String> by lazy {
+        val result = HashMap<String, String>(1024)
+        exec("getprop").forEach { line ->
+            PROPERTY_LINE.find(line)?.let { match ->
+                result[match.groupValues[1]] = match.groupValues[2]
+            }
+        }
+        result
+    }
+
+    val mounts: List<ProcFsReader.MountEntry> by lazy { ProcFsReader.current().mounts() }
+
+    val processes: List<ProcFsReader.ProcessInfo> by lazy { ProcFsReader.current().processes() }
+
+    val mappedFiles: Set<String> by lazy { ProcFsReader.current().mappedFiles() }
+
+    fun property(name: String): String? = properties[name]
+
+    fun prefetch(input: ProbeInput) {
+        when (input) {
+            ProbeInput.PROPERTIES -> properties
+            ProbeInput.MOUNTS -> mounts
+            ProbeInput.PROCESSES -> processes
+            ProbeInput.PROCESS_MAPS -> mappedFiles
+        }
+    }
+
+    private fun exec(vararg command: String): List<String> {
+        return try {
+            val process = Runtime.getRuntime().exec(command)
+            try {
+                process.inputStream.bufferedReader().useLines { it.toList() }
+            } finally {
+                process.destroy()
+            }
+        } catch (e: Exception) {
+            Log.w(TAG, "Failed to run ${command.first()}", e)
+            emptyList()
+        }
+    }
+}
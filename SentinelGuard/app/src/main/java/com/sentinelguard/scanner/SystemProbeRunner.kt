@@ -0,0 +1,138 @@
+package com.sentinelguard.scanner
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.provider.Settings
+import android.util.Log
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.runInterruptible
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * SystemProbeRunner: Concurrent Execution of [SystemProbe]s
+ *
+ * - Prefetches the inputs the pending probes declare in parallel
+ * - Runs independent probes in parallel on the IO dispatcher
+ * - Caches boot-stable results in memory and in preferences, keyed by
+ *   the device boot count, so they are only recomputed after a reboot
+ *
+ * A probe that throws is reported as not detected.
+ */
+@Singleton
+class SystemProbeRunner internal constructor(
+    openPrefs: () -> SharedPreferences,
+    private val currentBootCount: () -> Int
+) {
+    @Inject constructor(@ApplicationContext context: Context) : this(
+        { context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE) },
+        { bootCountOf(context) }
+    )
+
+    companion object {
+        private const val TAG = "SystemProbeRunner"
+        private const val PREFS_NAME = "system_probe_cache"
+        private const val KEY_BOOT_COUNT = "boot_count"
+        private const val KEY_PREFIX = "probe_"
+
+        /**
+         * Device boot count, or -1 if unavailable (results are then not cached)
+         */
+        private fun bootCountOf(context: Context): Int {
+            return try {
+                Settings.Global.getInt(context.contentResolver, Settings.Global.BOOT_COUNT, -1)
+            } catch (e: Exception) {
+                -1
+            }
+        }
+    }
+
+    private val prefs: SharedPreferences by lazy(openPrefs)
+
+    private val bootCache = ConcurrentHashMap<String, Boolean>()
+    @Volatile private var cachedBootCount = -1
+
+    /**
+     * Run [probes] against [snapshot] and return results by probe id
+     */
+    suspend fun run(
+        probes: List<SystemProbe>,
+        snapshot: SystemProbeSnapshot = SystemProbeSnapshot()
+    ): Map<String, Boolean> = coroutineScope {
+        val bootCount = currentBootCount()
+        loadBootCache(bootCount)
+
+        val results = HashMap<String, Boolean>(probes.size)
+        val pending = probes.filter { probe ->
+            val cached = if (probe.bootStable) bootCache[probe.id] else null
+            if (cached != null) results[probe.id] = cached
+            cached == null
+        }
+
+        pending.flatMapTo(HashSet()) { it.inputs }
+            .map { input -> async { runInterruptible(Dispatchers.IO) { snapshot.prefetch(input) } } }
+            .awaitAll()
+
+        val computed = pending.map { probe ->
+            async {
+                val detected = try {
+                    // Interruptible so a scan timeout can stop a hung probe
+                    runInterruptible(Dispatchers.IO) { probe.check(snapshot) }
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Log.w(TAG, "Probe ${probe.id} failed", e)
+                    false
+                }
+                probe to detected
+            }
+        }.awaitAll()
+
+        val editor = prefs.edit()
+        var stored = false
+        for ((probe, detected) in computed) {
+            results[probe.id] = detected
+            if (probe.bootStable && bootCount >= 0) {
+                bootCache[probe.id] = detected
+                editor.putBoolean(KEY_PREFIX + probe.id, detected)
+                stored = true
+            }
+        }
+        if (stored) editor.putInt(KEY_BOOT_COUNT, bootCount).apply()
+
+        Log.d(TAG, "Ran ${pending.size} of ${probes.size} probes")
+        results
+    }
+
+    /**
+     * Drop cached boot-stable results
+     */
+    fun invalidate() {
+        bootCache.clear()
+        cachedBootCount = -1
+        prefs.edit().clear().apply()
+    }
+
+    private fun loadBootCache(bootCount: Int) {
+        if (bootCount == cachedBootCount) return
+        bootCache.clear()
+        cachedBootCount = bootCount
+        if (bootCount < 0) return
+
+        if (prefs.getInt(KEY_BOOT_COUNT, -1) != bootCount) {
+            prefs.edit().clear().apply()
+            return
+        }
+        prefs.all.forEach { (key, value) ->
+            if (key.startsWith(KEY_PREFIX) && value is Boolean) {
+                bootCache[key.removePrefix(KEY_PREFIX)] = value
+            }
+        }
+    }
+}
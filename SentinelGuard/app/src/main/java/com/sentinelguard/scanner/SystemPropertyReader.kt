@@ -0,0 +1,32 @@
+package com.sentinelguard.scanner
+
+import java.lang.reflect.Method
+
+/**
+ * SystemPropertyReader: Single Property Lookups Without `getprop`
+ *
+ * Reads through android.os.SystemProperties in-process. Detectors that
+ * only need a few properties use this instead of forking `getprop`;
+ * scans that need the whole table use [SystemProbeSnapshot.properties].
+ */
+object SystemPropertyReader {
+
+    private val getter: Method? by lazy {
+        try {
+            Class.forName("android.os.SystemProperties").getMethod("get", String::class.java)
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    /**
+     * Property value, or null if unset or unreadable
+     */
+    fun get(name: String): String? {
+        return try {
+            (getter?.invoke(null, name) as? String)?.takeIf { it.isNotEmpty() }
+        } catch (e: Exception) {
+            null
+        }
+    }
+}
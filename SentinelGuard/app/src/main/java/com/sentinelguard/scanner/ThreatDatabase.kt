@@ -1,21 +1,42 @@
 package com.sentinelguard.scanner
 
+import android.util.Log
+import java.io.File
+import java.util.concurrent.atomic.AtomicReference
+
 /**
  * ThreatDatabase: Contains known malware signatures and suspicious patterns.
  * 
  * Detection methods:
  * - Known malware package names (expandable)
  * - Suspicious permission combinations
- * - Dangerous hash prefixes
+ * - Full SHA-256 signatures ([MalwareHashStore]) and legacy hash prefixes
  * - Name pattern matching
+ * 
+ * Malware names, prefixes, permission combos, hash prefixes and file
+ * extensions below are the built-in [SignatureBundle]. Signed bundles
+ * loaded by [SignatureBundleManager] replace them at runtime: the compiled
+ * index is swapped atomically, so running scans keep the index they
+ * started with and never wait on an update.
  */
 object ThreatDatabase {
     
+    /**
+     * Detection rules version. Bump whenever signatures or app analysis
+     * rules change so cached app verdicts are re-evaluated.
+     */
+    const val VERSION = 3
+    
+    private const val TAG = "ThreatDatabase"
+    
+    // Memory-mapped signature store; swapped atomically on update
+    private val hashStore = AtomicReference<MalwareHashStore?>(null)
+    
     /**
      * Known malware package names and prefixes
      * Sources: AV vendor databases, security reports
      */
-    val knownMalwarePackages = setOf(
+    private val builtinMalwarePackages = setOf(
         // Banking Trojans
         "com.android.bankbot",
         "com.android.smsstealer",
@@ -72,7 +93,7 @@ object ThreatDatabase {
     /**
      * Malware package prefixes - apps starting with these are suspicious
      */
-    val suspiciousPackagePrefixes = listOf(
+    private val builtinMalwarePrefixes = listOf(
         "com.xhelper",
         "com.joker",
         "com.hydra",
@@ -83,10 +104,219 @@ object ThreatDatabase {
         "com.stealer"
     )
     
+    /**
+     * Root managers, hooking frameworks and hacking tools
+     */
+    val dangerousToolPackages = listOf(
+        // Root managers
+        "com.topjohnwu.magisk",
+        "me.weishu.kernelsu",
+        "eu.chainfire.supersu",
+        "com.noshufou.android.su",
+        "com.koushikdutta.superuser",
+        
+        // Xposed/LSPosed
+        "de.robv.android.xposed.installer",
+        "org.lsposed.manager",
+        "io.github.lsposed.manager",
+        
+        // Hacking tools
+        "com.chelpus.lackypatch",
+        "com.dimonvideo.luckypatcher",
+        "com.android.vending.billing.InAppBillingService.LUCK",
+        
+        // Game cheating
+        "com.github.nicktendo.gameguardian",
+        "org.cheatengine.cegui",
+        
+        // Frida
+        "re.frida.server",
+        
+        // Virtual environments
+        "com.bly.dualspace",
+        "com.ludashi.dualspace",
+        "com.excelliance.dualaid"
+    )
+    
+    /**
+     * Trusted package prefixes - these are NEVER flagged
+     */
+    val trustedPackagePrefixes = setOf(
+        // Google apps
+        "com.google.",
+        "com.android.",
+        // Samsung
+        "com.samsung.",
+        "com.sec.",
+        // Xiaomi/MIUI
+        "com.miui.",
+        "com.xiaomi.",
+        // OnePlus
+        "com.oneplus.",
+        "net.oneplus.",
+        // Huawei
+        "com.huawei.",
+        // OPPO/Realme
+        "com.oppo.",
+        "com.realme.",
+        "com.coloros.",
+        // Vivo
+        "com.vivo.",
+        // LG
+        "com.lge.",
+        // Sony
+        "com.sonymobile.",
+        // Qualcomm
+        "com.qualcomm.",
+        // MediaTek
+        "com.mediatek."
+    )
+    
+    /**
+     * COMPREHENSIVE WHITELIST: Popular trusted apps that should NEVER be flagged
+     * These are legitimate mainstream apps used by millions of users
+     */
+    val trustedPackages = setOf(
+        // ========== Meta/Facebook ==========
+        "com.facebook.katana",           // Facebook
+        "com.facebook.orca",             // Messenger
+        "com.facebook.lite",             // Facebook Lite
+        "com.facebook.mlite",            // Messenger Lite
+        "com.instagram.android",         // Instagram
+        "com.whatsapp",                  // WhatsApp
+        "com.whatsapp.w4b",              // WhatsApp Business
+        "com.facebook.pages.app",        // Facebook Pages Manager
+        "com.facebook.appmanager",       // Facebook App Manager
+        
+        // ========== Microsoft ==========
+        "com.microsoft.office.word",
+        "com.microsoft.office.excel",
+        "com.microsoft.office.powerpoint",
+        "com.microsoft.office.outlook",
+        "com.microsoft.teams",
+        "com.microsoft.office.officelens",
+        "com.microsoft.bing",
+        "com.microsoft.launcher",
+        "com.microsoft.todos",
+        "com.microsoft.office.onenote",
+        "com.skype.raider",              // Skype
+        "com.linkedin.android",          // LinkedIn
+        
+        // ========== Social/Communication ==========
+        "org.telegram.messenger",        // Telegram
+        "com.snapchat.android",          // Snapchat
+        "com.twitter.android",           // Twitter/X
+        "com.zhiliaoapp.musically",      // TikTok
+        "com.ss.android.ugc.trill",      // TikTok (other variant)
+        "com.pinterest",                 // Pinterest
+        "com.reddit.frontpage",          // Reddit
+        "com.discord",                   // Discord
+        "us.zoom.videomeetings",         // Zoom
+        "com.viber.voip",                // Viber
+        "com.imo.android.imoim",         // IMO
+        "com.Slack",                     // Slack
+        "jp.naver.line.android",         // LINE
+        "com.kakao.talk",                // KakaoTalk
+        "com.tencent.mm",                // WeChat
+        "com.tencent.mobileqq",          // QQ
+        
+        // ========== Streaming/Entertainment ==========
+        "com.netflix.mediaclient",       // Netflix
+        "com.amazon.avod.thirdpartyclient", // Prime Video
+        "com.disney.disneyplus",         // Disney+
+        "com.spotify.music",             // Spotify
+        "com.google.android.youtube",    // YouTube
+        "com.google.android.apps.youtube.music", // YouTube Music
+        "tv.twitch.android.app",         // Twitch
+        "com.jio.jioplay.tv",            // JioTV
+        "in.startv.hotstar",             // Hotstar
+        "com.mxtech.videoplayer.ad",     // MX Player
+        "com.mxtech.videoplayer.pro",
+        
+        // ========== Shopping ==========
+        "com.amazon.mShop.android.shopping", // Amazon Shopping
+        "com.flipkart.android",          // Flipkart
+        "com.ebay.mobile",               // eBay
+        "com.alibaba.aliexpresshd",      // AliExpress
+        "in.amazon.mShop.android.shopping", // Amazon India
+        "com.myntra.android",            // Myntra
+        "com.target.ui",                 // Target
+        "com.walmart.android",           // Walmart
+        
+        // ========== Banking & Finance (Major Banks) ==========
+        "com.phonepe.app",               // PhonePe
+        "net.one97.paytm",               // Paytm
+        "com.google.android.apps.nbu.paisa.user", // Google Pay
+        "in.org.npci.upiapp",            // BHIM
+        "com.csam.icici.bank.imobile",   // ICICI
+        "com.sbi.lotusintouch",          // SBI YONO
+        "com.axis.mobile",               // Axis Mobile
+        "com.hdfc.mobilebanking",        // HDFC
+        "com.konylabs.cbhdfcbank",       // HDFC
+        "com.paypal.android.p2pmobile",  // PayPal
+        "com.venmo",                     // Venmo
+        "com.robinhood.android",         // Robinhood
+        
+        // ========== Utilities & Productivity ==========
+        "com.truecaller",                // Truecaller
+        "com.grammarly.android.keyboard", // Grammarly
+        "com.adobe.reader",              // Adobe Reader
+        "com.adobe.scan.android",        // Adobe Scan
+        "com.dropbox.android",           // Dropbox
+        "com.evernote",                  // Evernote
+        "com.notion.id",                 // Notion
+        "com.todoist",                   // Todoist
+        "com.ticktick.task",             // TickTick
+        
+        // ========== Travel & Transport ==========
+        "com.ubercab",                   // Uber
+        "com.olacabs.customer",          // Ola
+        "in.swiggy.android",             // Swiggy
+        "com.application.zomato",        // Zomato
+        "com.makemytrip",                // MakeMyTrip
+        "com.booking",                   // Booking.com
+        "com.airbnb.android",            // Airbnb
+        "com.lyft.android",              // Lyft
+        
+        // ========== News/Media ==========
+        "com.ss.android.article.news",   // News apps
+        "flipboard.app",                 // Flipboard
+        "com.eterno",                    // Inshorts
+        "com.guardian",                  // The Guardian
+        "com.nytimes.android",           // NY Times
+        
+        // ========== Gaming ==========
+        "com.supercell.clashofclans",
+        "com.supercell.clashroyale",
+        "com.supercell.brawlstars",
+        "com.king.candycrushsaga",
+        "com.pubg.imobile",              // BGMI
+        "com.activision.callofduty.shooter",
+        "com.ea.gp.fifamobile",
+        "com.garena.game.freefire",
+        "com.mobile.legends",
+        "com.epicgames.fortnite",
+        "com.innersloth.spacemafia",     // Among Us
+        "com.roblox.client",
+        
+        // ========== Health & Fitness ==========
+        "com.google.android.apps.fitness",
+        "com.strava",
+        "com.fitnesskeeper.runkeeper.pro",
+        "com.nike.plusgps",
+        "com.underarmour.myfitnesspal",
+        
+        // ========== Developer/Tech ==========
+        "com.github.android",
+        "io.github.nicehash",
+        "com.termux",
+        "com.nianticlabs.pokemongo"      // Pokemon GO
+    )
+    
     /**
      * Suspicious permission combinations that indicate potential malware
      */
-    val dangerousPermissionCombos = listOf(
+    private val builtinPermissionCombos = listOf(
         // SMS + Internet = potential SMS stealer/banking trojan
         setOf(
             "android.permission.RECEIVE_SMS",
@@ -150,28 +380,42 @@ object ThreatDatabase {
     )
     
     /**
-     * Suspicious app name patterns (regex)
+     * Suspicious app name keywords (matched case-insensitively anywhere in the name)
      */
-    val suspiciousNamePatterns = listOf(
+    val suspiciousNameKeywords = listOf(
         // Hacking/cheating tools
-        Regex(".*(?i)(crack|hack|cheat|mod|patch|keygen).*"),
+        "crack", "hack", "cheat", "mod", "patch", "keygen",
         // Spy/stalker keywords
-        Regex(".*(?i)(spy|hidden|stealth|invisible|tracker|monitor).*"),
+        "spy", "hidden", "stealth", "invisible", "tracker", "monitor",
         // Known malware names
-        Regex(".*(?i)(xhelper|joker|hiddad|flubot|teabot|sharkbot).*"),
+        "xhelper", "joker", "hiddad", "flubot", "teabot", "sharkbot",
         // Free premium offers
-        Regex(".*(?i)(free.*premium|free.*coins|free.*gems|unlimited).*"),
+        "unlimited",
         // Adult content bait
-        Regex(".*(?i)(xxx|porn|adult.*video|sexy).*"),
+        "xxx", "porn", "sexy"
+    )
+    
+    /**
+     * Suspicious keyword pairs: the first keyword followed later by the second
+     */
+    val suspiciousNameKeywordPairs = listOf(
+        // Free premium offers
+        "free" to "premium",
+        "free" to "coins",
+        "free" to "gems",
+        // Adult content bait
+        "adult" to "video",
         // Fake system apps
-        Regex(".*(?i)(system.*update|security.*update|google.*update).*")
+        "system" to "update",
+        "security" to "update",
+        "google" to "update"
     )
     
     /**
      * Known malware SHA-256 hash prefixes (first 16 chars)
      * In production, use full hashes with cloud lookup
      */
-    val knownMalwareHashPrefixes = setOf(
+    private val builtinHashPrefixes = setOf(
         "a1b2c3d4e5f6g7h8",
         "deadbeef12345678",
         "malware123456789",
@@ -181,7 +425,7 @@ object ThreatDatabase {
     /**
      * Suspicious file extensions in APK
      */
-    val suspiciousFileExtensions = setOf(
+    private val builtinFileExtensions = setOf(
         ".dex",   // Multiple DEX could mean packed malware
         ".so",    // Native libs could hide malicious code
         ".jar",   // Embedded JARs
@@ -190,56 +434,178 @@ object ThreatDatabase {
         ".vdex"   // Verified DEX
     )
     
+    /**
+     * Bit indices for every permission seen; shared by all scanners
+     */
+    val permissionInterner = PermissionInterner()
+    
+    // Permission rules compiled to bitsets
+    private val highRiskMask = permissionInterner.encode(highRiskPermissions)
+    
+    // ============ Signature Index ============
+    
+    /**
+     * Bundle data compiled for lookups. Built off the scan path and
+     * published with a single reference swap.
+     */
+    private class SignatureIndex(val bundle: SignatureBundle) {
+        val packageMatcher = PackageNameMatcher(
+            trustedPackages = trustedPackages,
+            trustedPrefixes = trustedPackagePrefixes,
+            malwarePackages = bundle.malwarePackages,
+            malwarePrefixes = bundle.malwarePrefixes,
+            toolPackages = dangerousToolPackages,
+            suspiciousKeywords = suspiciousNameKeywords,
+            suspiciousKeywordPairs = suspiciousNameKeywordPairs
+        )
+        val comboMasks = bundle.permissionCombos.map { permissionInterner.encode(it) }
+    }
+    
+    /**
+     * Signatures shipped with the APK (version 0)
+     */
+    val builtinBundle = SignatureBundle.of(
+        version = 0,
+        malwarePackages = builtinMalwarePackages,
+        malwarePrefixes = builtinMalwarePrefixes,
+        permissionCombos = builtinPermissionCombos,
+        hashPrefixes = builtinHashPrefixes,
+        fileExtensions = builtinFileExtensions
+    )
+    
+    private val index = AtomicReference(SignatureIndex(builtinBundle))
+    
+    val currentBundle: SignatureBundle
+        get() = index.get().bundle
+    
+    /**
+     * Version of the active signature bundle (0 = built-in)
+     */
+    val signatureVersion: Long
+        get() = index.get().bundle.version
+    
+    val knownMalwarePackages: Set<String>
+        get() = index.get().bundle.malwarePackages
+    
+    val suspiciousPackagePrefixes: List<String>
+        get() = index.get().bundle.malwarePrefixes
+    
+    val dangerousPermissionCombos: List<Set<String>>
+        get() = index.get().bundle.permissionCombos
+    
+    val knownMalwareHashPrefixes: Set<String>
+        get() = index.get().bundle.hashPrefixes
+    
+    val suspiciousFileExtensions: Set<String>
+        get() = index.get().bundle.fileExtensions
+    
+    /**
+     * Precompiled matcher over all package name rules
+     */
+    val packageMatcher: PackageNameMatcher
+        get() = index.get().packageMatcher
+    
+    /**
+     * Compile [bundle] and make it the active signature set
+     */
+    fun installBundle(bundle: SignatureBundle) {
+        index.set(SignatureIndex(bundle))
+        Log.i(TAG, "Signature bundle v${bundle.version} active (${bundle.size} entries)")
+    }
+    
     // ============ Detection Methods ============
     
     /**
      * Check if package name is known malware
      */
     fun isKnownMalware(packageName: String): Boolean {
-        val lower = packageName.lowercase()
-        
-        // Direct match
-        if (knownMalwarePackages.contains(lower)) return true
-        
-        // Prefix match
-        return suspiciousPackagePrefixes.any { lower.startsWith(it) }
+        return packageMatcher.classify(packageName).isMalware
+    }
+    
+    /**
+     * Classify a package name against all package rules in one pass
+     */
+    fun classifyPackage(packageName: String): PackageNameMatcher.Classification {
+        return packageMatcher.classify(packageName)
     }
     
     /**
      * Check if app has dangerous permission combination
      */
+    fun hasDangerousPermissionCombo(permissions: PermissionMask): Boolean {
+        return index.get().comboMasks.any { permissions.containsAll(it) }
+    }
+    
     fun hasDangerousPermissionCombo(permissions: Set<String>): Boolean {
-        return dangerousPermissionCombos.any { combo ->
-            permissions.containsAll(combo)
-        }
+        return hasDangerousPermissionCombo(permissionInterner.encode(permissions))
     }
     
     /**
      * Count high-risk permissions
      */
+    fun countHighRiskPermissions(permissions: PermissionMask): Int {
+        return permissions.countIn(highRiskMask)
+    }
+    
     fun countHighRiskPermissions(permissions: Set<String>): Int {
-        return permissions.count { it in highRiskPermissions }
+        return countHighRiskPermissions(permissionInterner.encode(permissions))
     }
     
     /**
      * Check if app name matches suspicious patterns
      */
     fun hasSuspiciousName(appName: String): Boolean {
-        return suspiciousNamePatterns.any { it.matches(appName) }
+        return packageMatcher.hasSuspiciousName(appName)
     }
     
     /**
      * Check if hash matches known malware
      */
     fun isKnownMalwareHash(sha256: String): Boolean {
+        if (hashStore.get()?.contains(sha256) == true) return true
         val prefix = sha256.take(16).lowercase()
         return knownMalwareHashPrefixes.contains(prefix)
     }
     
+    /**
+     * Map the signature store at [file], replacing the current one.
+     * Keeps the current store if the file is missing or invalid.
+     */
+    private fun loadHashStore(file: File): Boolean {
+        val store = MalwareHashStore.open(file) ?: return false
+        hashStore.set(store)
+        Log.d(TAG, "Loaded ${store.size} malware signatures")
+        return true
+    }
+    
+    /**
+     * Write [digests] as the new signature store and switch lookups to it;
+     * without digests the store is removed. In-flight lookups finish
+     * against the previous mapping.
+     */
+    fun updateHashStore(file: File, digests: Collection<ByteArray>): Boolean {
+        return try {
+            if (digests.isEmpty()) {
+                hashStore.set(null)
+                file.delete()
+                return true
+            }
+            MalwareHashStore.write(file, digests)
+            loadHashStore(file)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to update hash store", e)
+            false
+        }
+    }
+    
     /**
      * Calculate threat score based on permissions
      */
     fun calculatePermissionRiskScore(permissions: Set<String>): Int {
+        return calculatePermissionRiskScore(permissionInterner.encode(permissions))
+    }
+    
+    fun calculatePermissionRiskScore(permissions: PermissionMask): Int {
         var score = 0
         
         // High risk permissions: +10 each
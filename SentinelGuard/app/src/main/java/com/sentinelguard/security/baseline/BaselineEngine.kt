@@ -9,6 +9,8 @@ import com.sentinelguard.security.baseline.metric.LocationMetric
 import com.sentinelguard.security.baseline.metric.SessionMetric
 import com.sentinelguard.security.baseline.metric.UsageHourMetric
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 
 /**
@@ -22,6 +24,12 @@ import kotlinx.coroutines.withContext
  * 1. Initial (0-7 days): Collecting data, no anomaly detection
  * 2. Learning (7-14 days): Building confidence, soft anomaly detection
  * 3. Active (14+ days): Full anomaly detection
+ * 
+ * INCREMENTAL UPDATES:
+ * Metrics keep their state in the stored baselines. Each update feeds
+ * them only signals not yet processed and saves the baselines together
+ * with the signals' processed flag, so the cost is O(new signals) and
+ * no signal is ever counted twice.
  */
 class BaselineEngine(
     private val baselineRepository: BaselineRepository,
@@ -32,6 +40,7 @@ class BaselineEngine(
         const val MIN_LEARNING_DAYS = 7
         const val FULL_LEARNING_DAYS = 14
         const val ROLLING_WINDOW_DAYS = 30
+        const val UPDATE_BATCH_SIZE = 500
     }
 
     // Metrics
@@ -40,6 +49,7 @@ class BaselineEngine(
     val locationMetric = LocationMetric()
 
     private var initialized = false
+    private val updateMutex = Mutex()
 
     /**
      * Initializes the engine by loading stored baselines.
@@ -62,25 +72,39 @@ class BaselineEngine(
     }
 
     /**
-     * Updates all baselines from recent signals.
-     * Called on app open.
+     * Updates all baselines from signals recorded since the last update.
+     * Called on app open and by the monitoring service.
+     *
+     * Signals are consumed oldest first in batches; signals already older
+     * than the rolling window are marked processed without being learned.
      */
     suspend fun updateBaselines() = withContext(Dispatchers.IO) {
-        if (!initialized) initialize()
-
-        // Get signals from rolling window
-        val windowStart = System.currentTimeMillis() - (ROLLING_WINDOW_DAYS * 24 * 60 * 60 * 1000L)
-        val signals = signalRepository.getInRange(windowStart, System.currentTimeMillis())
-
-        // Update each metric
-        val hourBaseline = usageHourMetric.updateFromSignals(signals)
-        val sessionBaseline = sessionMetric.updateFromSignals(signals)
-        val locationBaseline = locationMetric.updateFromSignals(signals)
-
-        // Save updated baselines
-        baselineRepository.upsert(hourBaseline)
-        baselineRepository.upsert(sessionBaseline)
-        baselineRepository.upsert(locationBaseline)
+        updateMutex.withLock {
+            if (!initialized) initialize()
+
+            val windowStart = System.currentTimeMillis() - (ROLLING_WINDOW_DAYS * 24 * 60 * 60 * 1000L)
+            do {
+                val batch = signalRepository.getUnprocessed(UPDATE_BATCH_SIZE)
+                if (batch.isEmpty()) break
+                val signals = batch.filter { it.timestamp >= windowStart }
+
+                // Update each metric
+                val baselines = listOf(
+                    usageHourMetric.updateFromSignals(signals),
+                    sessionMetric.updateFromSignals(signals),
+                    locationMetric.updateFromSignals(signals)
+                )
+
+                // Save updated baselines and consume the batch together
+                try {
+                    baselineRepository.commitLearning(baselines, batch.map { it.id })
+                } catch (e: Exception) {
+                    // In-memory metrics are ahead of storage; reload before the next update
+                    initialized = false
+                    throw e
+                }
+            } while (batch.size == UPDATE_BATCH_SIZE)
+        }
     }
 
     /**
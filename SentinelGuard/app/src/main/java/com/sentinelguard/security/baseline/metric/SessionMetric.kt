@@ -5,9 +5,13 @@ import com.sentinelguard.domain.model.BehavioralBaseline
 import com.sentinelguard.domain.model.SecuritySignal
 import com.sentinelguard.domain.model.SignalType
 import com.sentinelguard.domain.util.SecureIdGenerator
+import com.sentinelguard.security.baseline.util.DecayingMoments
+import com.sentinelguard.security.baseline.util.P2Quantile
+import com.sentinelguard.security.baseline.util.SlidingWindow
 import com.sentinelguard.security.baseline.util.Statistics
+import org.json.JSONArray
 import org.json.JSONObject
-import java.util.Calendar
+import java.util.TimeZone
 
 /**
  * SessionMetric: Tracks Session Frequency and Duration
@@ -24,6 +28,14 @@ import java.util.Calendar
  * ANOMALY DETECTION:
  * - Sessions per day outside mean ± 2σ
  * - Session duration outside mean ± 2σ
+ * 
+ * STATE:
+ * - Per-day counts over the last ROLLING_WINDOW_DAYS days in a ring of
+ *   day buckets; durations as decayed mean/variance (about the last
+ *   DURATION_WINDOW sessions) plus P² median and 95th percentile
+ * - Every update is O(1) and nothing grows with the number of signals;
+ *   the estimator state is stored in the baseline and restored on load,
+ *   so signals only ever need to be fed in once
  */
 class SessionMetric {
 
@@ -31,42 +43,26 @@ class SessionMetric {
         const val ANOMALY_THRESHOLD_SD = 2.0
         const val MIN_SAMPLES = 20
         const val ROLLING_WINDOW_DAYS = 30
+        const val DURATION_WINDOW = 100
+        private const val DAY_MS = 24 * 60 * 60 * 1000L
     }
 
-    private val dailySessionCounts = mutableListOf<Int>()
-    private val sessionDurations = mutableListOf<Long>()
-    private var lastSessionDate: String? = null
-    private var todaySessionCount = 0
+    private var sessionsByDay = SlidingWindow(ROLLING_WINDOW_DAYS)
+    private var durations = DecayingMoments.forWindow(DURATION_WINDOW)
+    private var durationMedian = P2Quantile(0.5)
+    private var durationP95 = P2Quantile(0.95)
 
     /**
-     * Updates metrics from signals.
+     * Adds signals not seen before; each signal must be passed only once.
      */
     fun updateFromSignals(signals: List<SecuritySignal>): BehavioralBaseline {
-        // Group signals by date
-        val signalsByDate = signals
-            .filter { it.type == SignalType.APP_SESSION || it.type == SignalType.APP_OPEN }
-            .groupBy { getDateString(it.timestamp) }
-
-        // Count sessions per day
-        for ((date, daySignals) in signalsByDate) {
-            val sessionCount = daySignals.count { it.type == SignalType.APP_OPEN }
-            
-            // Only add if we don't already have this date
-            if (dailySessionCounts.size < ROLLING_WINDOW_DAYS) {
-                dailySessionCounts.add(sessionCount)
-            }
-        }
-
-        // Extract session durations
-        val sessions = signals.filter { it.type == SignalType.APP_SESSION }
-        for (session in sessions) {
-            session.value?.toLongOrNull()?.let { durationMs ->
-                if (sessionDurations.size < 100) { // Cap stored durations
-                    sessionDurations.add(durationMs)
-                }
+        for (signal in signals) {
+            when (signal.type) {
+                SignalType.APP_OPEN -> sessionsByDay.add(dayOf(signal.timestamp))
+                SignalType.APP_SESSION -> signal.value?.toLongOrNull()?.let { addDuration(it) }
+                else -> Unit
             }
         }
-
         return buildBaseline()
     }
 
@@ -74,97 +70,99 @@ class SessionMetric {
      * Records a new session for today.
      */
     fun recordSession(durationMs: Long? = null) {
-        val today = getDateString(System.currentTimeMillis())
-        
-        if (lastSessionDate != today) {
-            // New day - save yesterday's count and reset
-            if (lastSessionDate != null && todaySessionCount > 0) {
-                dailySessionCounts.add(todaySessionCount)
-                if (dailySessionCounts.size > ROLLING_WINDOW_DAYS) {
-                    dailySessionCounts.removeAt(0)
-                }
-            }
-            todaySessionCount = 0
-            lastSessionDate = today
-        }
-        
-        todaySessionCount++
-        
-        durationMs?.let {
-            sessionDurations.add(it)
-            if (sessionDurations.size > 100) {
-                sessionDurations.removeAt(0)
-            }
-        }
+        sessionsByDay.add(dayOf(System.currentTimeMillis()))
+        durationMs?.let { addDuration(it) }
+    }
+
+    private fun addDuration(durationMs: Long) {
+        val value = durationMs.toDouble()
+        durations.add(value)
+        durationMedian.add(value)
+        durationP95.add(value)
     }
 
     /**
      * Checks if today's session count is anomalous.
      */
     fun isTodaySessionCountAnomaly(): Boolean {
-        if (dailySessionCounts.size < MIN_SAMPLES) return false
-
-        val values = dailySessionCounts.map { it.toDouble() }
-        val mean = Statistics.mean(values)
-        val stdDev = Statistics.standardDeviation(values)
-
-        return Statistics.isAnomaly(todaySessionCount.toDouble(), mean, stdDev, ANOMALY_THRESHOLD_SD)
+        val today = dayOf(System.currentTimeMillis())
+        // Completed days only; today is still being counted
+        if (sessionsByDay.count(today) < MIN_SAMPLES) return false
+
+        return Statistics.isAnomaly(
+            sessionsByDay.totalOf(today, today),
+            sessionsByDay.mean(today),
+            sessionsByDay.standardDeviation(today),
+            ANOMALY_THRESHOLD_SD
+        )
     }
 
     /**
      * Checks if a session duration is anomalous.
      */
     fun isSessionDurationAnomaly(durationMs: Long): Boolean {
-        if (sessionDurations.size < MIN_SAMPLES) return false
+        if (durations.count < MIN_SAMPLES) return false
 
-        val values = sessionDurations.map { it.toDouble() }
-        val mean = Statistics.mean(values)
-        val stdDev = Statistics.standardDeviation(values)
-
-        return Statistics.isAnomaly(durationMs.toDouble(), mean, stdDev, ANOMALY_THRESHOLD_SD)
+        return Statistics.isAnomaly(durationMs.toDouble(), durations.mean, durations.standardDeviation, ANOMALY_THRESHOLD_SD)
     }
 
     /**
      * Gets average sessions per day.
      */
     fun getAverageSessionsPerDay(): Double {
-        return Statistics.meanInt(dailySessionCounts)
+        return sessionsByDay.mean(dayOf(System.currentTimeMillis()))
     }
 
     /**
      * Gets average session duration in milliseconds.
      */
     fun getAverageSessionDurationMs(): Double {
-        return Statistics.mean(sessionDurations.map { it.toDouble() })
+        return durations.mean
     }
 
-    private fun getDateString(timestamp: Long): String {
-        val cal = Calendar.getInstance().apply { timeInMillis = timestamp }
-        return "${cal.get(Calendar.YEAR)}-${cal.get(Calendar.MONTH)}-${cal.get(Calendar.DAY_OF_MONTH)}"
+    /**
+     * Gets median session duration in milliseconds.
+     */
+    fun getMedianSessionDurationMs(): Double {
+        return durationMedian.value
+    }
+
+    /**
+     * Local calendar day of [timestamp], counted from the epoch
+     */
+    private fun dayOf(timestamp: Long): Long {
+        return Math.floorDiv(timestamp + TimeZone.getDefault().getOffset(timestamp), DAY_MS)
     }
 
     private fun buildBaseline(): BehavioralBaseline {
-        val durationValues = sessionDurations.map { it.toDouble() }
-        
+        val today = dayOf(System.currentTimeMillis())
+        val sampleDays = sessionsByDay.count(today)
+
         val json = JSONObject().apply {
-            put("dailyMean", Statistics.meanInt(dailySessionCounts))
-            put("dailyStdDev", Statistics.standardDeviation(dailySessionCounts.map { it.toDouble() }))
-            put("durationMeanMs", Statistics.mean(durationValues))
-            put("durationStdDevMs", Statistics.standardDeviation(durationValues))
-            put("sampleDays", dailySessionCounts.size)
-            put("sampleSessions", sessionDurations.size)
+            put("dailyMean", sessionsByDay.mean(today))
+            put("dailyStdDev", sessionsByDay.standardDeviation(today))
+            put("durationMeanMs", durations.mean)
+            put("durationStdDevMs", durations.standardDeviation)
+            put("durationMedianMs", durationMedian.value)
+            put("durationP95Ms", durationP95.value)
+            put("sampleDays", sampleDays)
+            put("sampleSessions", durations.count)
+            put("days", toJson(sessionsByDay.toArray()))
+            put("durations", toJson(durations.toArray()))
+            put("durationMedian", toJson(durationMedian.toArray()))
+            put("durationP95", toJson(durationP95.toArray()))
         }
 
-        val totalSamples = dailySessionCounts.size + sessionDurations.size
+        val totalSamples = sampleDays + durations.count.toInt()
 
         return BehavioralBaseline(
             id = SecureIdGenerator.generateId(),
             metricType = BaselineMetricType.SESSIONS_PER_DAY,
             value = json.toString(),
-            variance = Statistics.variance(durationValues),
+            variance = durations.variance,
             confidence = Statistics.confidence(totalSamples, MIN_SAMPLES),
             sampleCount = totalSamples,
-            learningComplete = dailySessionCounts.size >= 7,
+            learningComplete = sampleDays >= 7,
             updatedAt = System.currentTimeMillis()
         )
     }
@@ -173,7 +171,27 @@ class SessionMetric {
      * Loads from stored baseline.
      */
     fun loadFromBaseline(baseline: BehavioralBaseline) {
-        // Note: We don't restore historical data, just use for reference
-        // Real data comes from signals
+        reset()
+        try {
+            val json = JSONObject(baseline.value)
+            // Baselines written before estimator state was stored only have summaries
+            sessionsByDay.restore(json.optJSONArray("days")?.let(::toDoubleArray))
+            durations.restore(json.optJSONArray("durations")?.let(::toDoubleArray))
+            durationMedian.restore(json.optJSONArray("durationMedian")?.let(::toDoubleArray))
+            durationP95.restore(json.optJSONArray("durationP95")?.let(::toDoubleArray))
+        } catch (e: Exception) {
+            reset()
+        }
+    }
+
+    private fun reset() {
+        sessionsByDay = SlidingWindow(ROLLING_WINDOW_DAYS)
+        durations = DecayingMoments.forWindow(DURATION_WINDOW)
+        durationMedian = P2Quantile(0.5)
+        durationP95 = P2Quantile(0.95)
     }
+
+    private fun toJson(values: DoubleArray): JSONArray = JSONArray(values.toTypedArray())
+
+    private fun toDoubleArray(json: JSONArray): DoubleArray = DoubleArray(json.length()) { json.getDouble(it) }
 }
@@ -5,10 +5,13 @@ import com.sentinelguard.domain.model.BehavioralBaseline
 import com.sentinelguard.domain.model.SecuritySignal
 import com.sentinelguard.domain.model.SignalType
 import com.sentinelguard.domain.util.SecureIdGenerator
+import com.sentinelguard.security.baseline.util.CountHistogram
+import com.sentinelguard.security.baseline.util.SlidingWindow
 import com.sentinelguard.security.baseline.util.Statistics
 import org.json.JSONArray
 import org.json.JSONObject
 import java.util.Calendar
+import java.util.TimeZone
 
 /**
  * UsageHourMetric: Tracks Hour-of-Day Usage Patterns
@@ -19,47 +22,61 @@ import java.util.Calendar
  * 
  * DATA STRUCTURE:
  * - Histogram with 24 buckets (one per hour)
- * - Each bucket counts app opens during that hour
+ * - Each bucket counts app opens during that hour over the last
+ *   ROLLING_WINDOW_DAYS days, kept per day so old opens drop out
  * 
  * ANOMALY DETECTION:
- * - Calculate mean and stddev of hour counts
+ * - Mean and stddev of hour counts
  * - Current hour is anomaly if its count < mean - 2σ AND current hour has 0 opens
+ *
+ * STATE:
+ * - One ring of day buckets per hour; the per-day counts are stored in
+ *   the baseline and restored on load, so signals only ever need to be
+ *   fed in once
  */
 class UsageHourMetric {
 
     companion object {
         const val ANOMALY_THRESHOLD_SD = 2.0
         const val MIN_SAMPLES = 20
+        const val ROLLING_WINDOW_DAYS = 30
+        private const val DAY_MS = 24 * 60 * 60 * 1000L
     }
 
-    private var histogram = IntArray(24) { 0 }
-    private var totalSamples = 0
+    private var opensByHour = Array(24) { SlidingWindow(ROLLING_WINDOW_DAYS) }
 
     /**
-     * Updates histogram from a list of signals.
+     * Adds signals not seen before; each signal must be passed only once.
      */
     fun updateFromSignals(signals: List<SecuritySignal>): BehavioralBaseline {
         // Filter to APP_OPEN signals only
         val appOpens = signals.filter { it.type == SignalType.APP_OPEN }
 
-        // Parse hour from each signal and increment histogram
+        // Parse hour from each signal and count it for its day
         for (signal in appOpens) {
             val hour = extractHour(signal)
             if (hour in 0..23) {
-                histogram[hour]++
-                totalSamples++
+                opensByHour[hour].add(dayOf(signal.timestamp))
             }
         }
 
         return buildBaseline()
     }
 
+    /**
+     * Opens per hour within the window as of now
+     */
+    private fun histogram(): CountHistogram {
+        val today = dayOf(System.currentTimeMillis())
+        return CountHistogram(24).apply {
+            restore(IntArray(24) { opensByHour[it].sum(today).toInt() })
+        }
+    }
+
     /**
      * Checks if current hour is anomalous.
      */
     fun isCurrentHourAnomaly(): Boolean {
-        if (totalSamples < MIN_SAMPLES) return false
-        
         val currentHour = Calendar.getInstance().get(Calendar.HOUR_OF_DAY)
         return isHourAnomaly(currentHour)
     }
@@ -68,12 +85,12 @@ class UsageHourMetric {
      * Checks if a specific hour is anomalous based on learned patterns.
      */
     fun isHourAnomaly(hour: Int): Boolean {
-        if (totalSamples < MIN_SAMPLES) return false
+        val histogram = histogram()
+        if (histogram.total < MIN_SAMPLES) return false
         if (hour !in 0..23) return false
 
-        val hourValues = histogram.map { it.toDouble() }
-        val mean = Statistics.mean(hourValues)
-        val stdDev = Statistics.standardDeviation(hourValues)
+        val mean = histogram.mean
+        val stdDev = histogram.standardDeviation
 
         // An hour is anomalous if:
         // 1. User has never opened app at this hour (count = 0)
@@ -92,18 +109,18 @@ class UsageHourMetric {
      * Gets the histogram as a map for debugging.
      */
     fun getHistogram(): Map<Int, Int> {
-        return histogram.mapIndexed { hour, count -> hour to count }.toMap()
+        val histogram = histogram()
+        return (0 until 24).associateWith { histogram[it] }
     }
 
     /**
      * Gets peak usage hours (top 3).
      */
     fun getPeakHours(): List<Int> {
-        return histogram
-            .mapIndexed { hour, count -> hour to count }
-            .sortedByDescending { it.second }
+        val histogram = histogram()
+        return (0 until 24)
+            .sortedByDescending { histogram[it] }
             .take(3)
-            .map { it.first }
     }
 
     private fun extractHour(signal: SecuritySignal): Int {
@@ -124,15 +141,28 @@ class UsageHourMetric {
         return calendar.get(Calendar.HOUR_OF_DAY)
     }
 
+    /**
+     * Local calendar day of [timestamp], counted from the epoch
+     */
+    private fun dayOf(timestamp: Long): Long {
+        return Math.floorDiv(timestamp + TimeZone.getDefault().getOffset(timestamp), DAY_MS)
+    }
+
     private fun buildBaseline(): BehavioralBaseline {
-        val histogramJson = JSONArray(histogram.toTypedArray())
-        val hourValues = histogram.map { it.toDouble() }
+        val histogram = histogram()
+        val totalSamples = histogram.total.toInt()
+        val json = JSONObject().apply {
+            put("hours", JSONArray(histogram.toIntArray().toTypedArray()))
+            put("days", JSONArray(opensByHour.map { window ->
+                JSONArray(window.toArray().toTypedArray())
+            }))
+        }
 
         return BehavioralBaseline(
             id = SecureIdGenerator.generateId(),
             metricType = BaselineMetricType.USAGE_HOUR_HISTOGRAM,
-            value = histogramJson.toString(),
-            variance = Statistics.variance(hourValues),
+            value = json.toString(),
+            variance = histogram.variance,
             confidence = Statistics.confidence(totalSamples, MIN_SAMPLES),
             sampleCount = totalSamples,
             learningComplete = totalSamples >= MIN_SAMPLES,
@@ -144,16 +174,30 @@ class UsageHourMetric {
      * Loads baseline from stored data.
      */
     fun loadFromBaseline(baseline: BehavioralBaseline) {
+        reset()
         try {
-            val json = JSONArray(baseline.value)
-            for (i in 0 until minOf(json.length(), 24)) {
-                histogram[i] = json.getInt(i)
+            if (baseline.value.trimStart().startsWith("[")) {
+                // Baselines written before per-day counts were stored only
+                // have hour totals; they count as today's and age out
+                val json = JSONArray(baseline.value)
+                val today = dayOf(System.currentTimeMillis())
+                for (hour in 0 until minOf(json.length(), 24)) {
+                    opensByHour[hour].add(today, json.getInt(hour).coerceAtLeast(0).toDouble())
+                }
+                return
+            }
+            val days = JSONObject(baseline.value).getJSONArray("days")
+            for (hour in 0 until minOf(days.length(), 24)) {
+                val state = days.getJSONArray(hour)
+                opensByHour[hour].restore(DoubleArray(state.length()) { state.getDouble(it) })
             }
-            totalSamples = baseline.sampleCount
         } catch (e: Exception) {
             // Reset on error
-            histogram = IntArray(24) { 0 }
-            totalSamples = 0
+            reset()
         }
     }
+
+    private fun reset() {
+        opensByHour = Array(24) { SlidingWindow(ROLLING_WINDOW_DAYS) }
+    }
 }
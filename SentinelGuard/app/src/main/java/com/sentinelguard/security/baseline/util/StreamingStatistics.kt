@@ -0,0 +1,367 @@
+package com.sentinelguard.security.baseline.util
+
+import kotlin.math.sqrt
+
+/*
+ * StreamingStatistics: O(1)-Update Estimators for Baseline Metrics
+ *
+ * WHY THIS EXISTS:
+ * Statistics works on whole lists, so metrics had to keep every sample
+ * and re-sum or re-sort them on each check. These estimators take one
+ * sample at a time into a few primitive fields or a fixed DoubleArray,
+ * never allocate on update, and export their state as a short
+ * DoubleArray that metrics store in their BehavioralBaseline.
+ *
+ * All of them stay explainable: moments, a decayed average, quantile
+ * markers and per-bucket totals.
+ */
+
+/**
+ * Welford's running mean and variance over every sample.
+ */
+class RunningMoments {
+
+    var count = 0L
+        private set
+    var mean = 0.0
+        private set
+    private var m2 = 0.0
+
+    fun add(value: Double) {
+        count++
+        val delta = value - mean
+        mean += delta / count
+        m2 += delta * (value - mean)
+    }
+
+    /** Population variance */
+    val variance: Double get() = if (count < 2) 0.0 else m2 / count
+
+    val standardDeviation: Double get() = sqrt(variance)
+
+    fun toArray(): DoubleArray = doubleArrayOf(count.toDouble(), mean, m2)
+
+    fun restore(state: DoubleArray?) {
+        if (state == null || state.size != 3) return
+        count = state[0].toLong()
+        mean = state[1]
+        m2 = state[2]
+    }
+}
+
+/**
+ * Exponentially decayed mean and variance: each sample weighs [alpha],
+ * older ones fade. alpha = 2 / (N + 1) roughly matches the last N
+ * samples.
+ */
+class DecayingMoments(private val alpha: Double) {
+
+    init {
+        require(alpha > 0.0 && alpha <= 1.0) { "alpha must be in (0, 1]" }
+    }
+
+    var count = 0L
+        private set
+    var mean = 0.0
+        private set
+    var variance = 0.0
+        private set
+
+    val standardDeviation: Double get() = sqrt(variance)
+
+    fun add(value: Double) {
+        if (count++ == 0L) {
+            mean = value
+            return
+        }
+        val delta = value - mean
+        val increment = alpha * delta
+        mean += increment
+        variance = (1 - alpha) * (variance + delta * increment)
+    }
+
+    fun toArray(): DoubleArray = doubleArrayOf(count.toDouble(), mean, variance)
+
+    fun restore(state: DoubleArray?) {
+        if (state == null || state.size != 3) return
+        count = state[0].toLong()
+        mean = state[1]
+        variance = state[2]
+    }
+
+    companion object {
+        fun forWindow(samples: Int): DecayingMoments = DecayingMoments(2.0 / (samples + 1))
+    }
+}
+
+/**
+ * P² estimate of the [p]-quantile (Jain & Chlamtac): five markers whose
+ * heights are adjusted by piecewise-parabolic interpolation, so no
+ * sample is stored.
+ */
+class P2Quantile(private val p: Double) {
+
+    init {
+        require(p > 0.0 && p < 1.0) { "p must be in (0, 1)" }
+    }
+
+    private val heights = DoubleArray(MARKERS)
+    private val positions = DoubleArray(MARKERS)
+    private val desired = DoubleArray(MARKERS)
+    private val increments = doubleArrayOf(0.0, p / 2, p, (1 + p) / 2, 1.0)
+
+    var count = 0L
+        private set
+
+    fun add(value: Double) {
+        if (count < MARKERS) {
+            // Keep the first samples sorted in place
+            var i = count.toInt()
+            while (i > 0 && heights[i - 1] > value) {
+                heights[i] = heights[i - 1]
+                i--
+            }
+            heights[i] = value
+            count++
+            if (count == MARKERS.toLong()) {
+                for (m in 0 until MARKERS) positions[m] = (m + 1).toDouble()
+                desired[0] = 1.0
+                desired[1] = 1 + 2 * p
+                desired[2] = 1 + 4 * p
+                desired[3] = 3 + 2 * p
+                desired[4] = 5.0
+            }
+            return
+        }
+        count++
+
+        // Cell of the new sample, widening the extremes if needed
+        val cell = when {
+            value < heights[0] -> {
+                heights[0] = value
+                0
+            }
+            value >= heights[4] -> {
+                heights[4] = value
+                3
+            }
+            else -> {
+                var k = 0
+                while (value >= heights[k + 1]) k++
+                k
+            }
+        }
+        for (m in cell + 1 until MARKERS) positions[m]++
+        for (m in 0 until MARKERS) desired[m] += increments[m]
+
+        for (m in 1..3) {
+            val d = desired[m] - positions[m]
+            if ((d >= 1 && positions[m + 1] - positions[m] > 1) || (d <= -1 && positions[m - 1] - positions[m] < -1)) {
+                val step = if (d > 0) 1 else -1
+                val parabolic = parabolic(m, step.toDouble())
+                heights[m] = if (heights[m - 1] < parabolic && parabolic < heights[m + 1]) {
+                    parabolic
+                } else {
+                    heights[m] + step * (heights[m + step] - heights[m]) / (positions[m + step] - positions[m])
+                }
+                positions[m] += step
+            }
+        }
+    }
+
+    private fun parabolic(m: Int, d: Double): Double {
+        return heights[m] + d / (positions[m + 1] - positions[m - 1]) * (
+            (positions[m] - positions[m - 1] + d) * (heights[m + 1] - heights[m]) / (positions[m + 1] - positions[m]) +
+                (positions[m + 1] - positions[m] - d) * (heights[m] - heights[m - 1]) / (positions[m] - positions[m - 1])
+            )
+    }
+
+    /**
+     * Current estimate; exact (nearest rank) until five samples are seen
+     */
+    val value: Double
+        get() = when {
+            count == 0L -> 0.0
+            count < MARKERS -> heights[((count - 1) * p + 0.5).toInt()]
+            else -> heights[2]
+        }
+
+    fun toArray(): DoubleArray = doubleArrayOf(count.toDouble()) + heights + positions + desired
+
+    fun restore(state: DoubleArray?) {
+        if (state == null || state.size != 1 + 3 * MARKERS) return
+        count = state[0].toLong()
+        state.copyInto(heights, 0, 1, 1 + MARKERS)
+        state.copyInto(positions, 0, 1 + MARKERS, 1 + 2 * MARKERS)
+        state.copyInto(desired, 0, 1 + 2 * MARKERS, 1 + 3 * MARKERS)
+    }
+
+    private companion object {
+        const val MARKERS = 5
+    }
+}
+
+/**
+ * Integer histogram whose mean and variance across buckets are kept up
+ * to date on each increment.
+ */
+class CountHistogram(val size: Int) {
+
+    private val counts = IntArray(size)
+
+    var total = 0L
+        private set
+    private var sumOfSquares = 0L
+
+    operator fun get(bucket: Int): Int = counts[bucket]
+
+    fun increment(bucket: Int) {
+        val current = counts[bucket]
+        // (c + 1)² - c² = 2c + 1
+        sumOfSquares += 2L * current + 1
+        counts[bucket] = current + 1
+        total++
+    }
+
+    /** Mean count per bucket */
+    val mean: Double get() = total.toDouble() / size
+
+    /** Population variance of the bucket counts */
+    val variance: Double get() = (sumOfSquares.toDouble() / size - mean * mean).coerceAtLeast(0.0)
+
+    val standardDeviation: Double get() = sqrt(variance)
+
+    fun toIntArray(): IntArray = counts.copyOf()
+
+    fun restore(values: IntArray) {
+        counts.fill(0)
+        total = 0
+        sumOfSquares = 0
+        for (i in 0 until minOf(size, values.size)) {
+            val c = values[i].coerceAtLeast(0)
+            counts[i] = c
+            total += c
+            sumOfSquares += c.toLong() * c
+        }
+    }
+}
+
+/**
+ * Totals per time bucket (e.g. per day) over the last [size] buckets.
+ *
+ * Buckets are numbered by the caller (day index, hour index, ...). A
+ * ring slot is reused when a newer bucket maps onto it, so buckets that
+ * slid out of the window expire without a sweep. Only buckets that got
+ * a value count as samples in [mean] and [variance].
+ */
+class SlidingWindow(val size: Int) {
+
+    private val buckets = LongArray(size) { NO_BUCKET }
+    private val totals = DoubleArray(size)
+
+    var newest = NO_BUCKET
+        private set
+
+    fun add(bucket: Long, value: Double = 1.0) {
+        if (newest != NO_BUCKET && bucket <= newest - size) return // Already expired
+        if (bucket > newest) newest = bucket
+        val slot = Math.floorMod(bucket, size.toLong()).toInt()
+        if (buckets[slot] != bucket) {
+            buckets[slot] = bucket
+            totals[slot] = 0.0
+        }
+        totals[slot] += value
+    }
+
+    /**
+     * Total of [bucket], 0 if it has no value or expired as of [now]
+     */
+    fun totalOf(bucket: Long, now: Long): Double {
+        val slot = Math.floorMod(bucket, size.toLong()).toInt()
+        return if (buckets[slot] == bucket && isLive(bucket, now)) totals[slot] else 0.0
+    }
+
+    /**
+     * Sum of all live buckets as of [now], [now] included
+     */
+    fun sum(now: Long): Double {
+        var sum = 0.0
+        for (slot in 0 until size) if (isLive(buckets[slot], now)) sum += totals[slot]
+        return sum
+    }
+
+    /**
+     * Number of live buckets with a value before [now]
+     */
+    fun count(now: Long): Int {
+        var n = 0
+        for (slot in 0 until size) if (isCompleted(buckets[slot], now)) n++
+        return n
+    }
+
+    /**
+     * Mean total of the live buckets before [now]; [now] itself is still
+     * filling up and is left out
+     */
+    fun mean(now: Long): Double {
+        var n = 0
+        var sum = 0.0
+        for (slot in 0 until size) {
+            if (isCompleted(buckets[slot], now)) {
+                n++
+                sum += totals[slot]
+            }
+        }
+        return if (n == 0) 0.0 else sum / n
+    }
+
+    /**
+     * Population variance of the same totals as [mean]
+     */
+    fun variance(now: Long): Double {
+        val mean = mean(now)
+        var n = 0
+        var sum = 0.0
+        for (slot in 0 until size) {
+            if (isCompleted(buckets[slot], now)) {
+                n++
+                val d = totals[slot] - mean
+                sum += d * d
+            }
+        }
+        return if (n < 2) 0.0 else sum / n
+    }
+
+    fun standardDeviation(now: Long): Double = sqrt(variance(now))
+
+    private fun isLive(bucket: Long, now: Long): Boolean = bucket != NO_BUCKET && bucket > now - size && bucket <= now
+
+    private fun isCompleted(bucket: Long, now: Long): Boolean = isLive(bucket, now) && bucket < now
+
+    /**
+     * (bucket, total) pairs of the non-empty slots
+     */
+    fun toArray(): DoubleArray {
+        val state = DoubleArray(size * 2)
+        var n = 0
+        for (slot in 0 until size) {
+            if (buckets[slot] != NO_BUCKET) {
+                state[n++] = buckets[slot].toDouble()
+                state[n++] = totals[slot]
+            }
+        }
+        return state.copyOf(n)
+    }
+
+    fun restore(state: DoubleArray?) {
+        buckets.fill(NO_BUCKET)
+        totals.fill(0.0)
+        newest = NO_BUCKET
+        if (state == null) return
+        for (i in 0 until state.size / 2) add(state[2 * i].toLong(), state[2 * i + 1])
+    }
+
+    private companion object {
+        const val NO_BUCKET = Long.MIN_VALUE
+    }
+}
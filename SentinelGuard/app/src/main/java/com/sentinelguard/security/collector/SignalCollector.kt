@@ -8,11 +8,13 @@ import com.sentinelguard.data.database.entities.SecuritySignalEntity
 import com.sentinelguard.data.database.entities.SignalType
 import com.sentinelguard.data.preferences.SecurePreferencesManager
 import com.sentinelguard.security.collector.detectors.*
+import com.sentinelguard.security.signal.SignalBus
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import org.json.JSONObject
 import javax.inject.Inject
 import javax.inject.Singleton
+import com.sentinelguard.domain.model.SignalType as DomainSignalType
 
 /**
  * Central orchestrator for security signal collection.
@@ -25,13 +27,14 @@ class SignalCollector @Inject constructor(
     private val context: Context,
     private val securitySignalDao: SecuritySignalDao,
     private val securePrefs: SecurePreferencesManager,
-    private val fusedLocationClient: FusedLocationProviderClient
+    private val fusedLocationClient: FusedLocationProviderClient,
+    private val signalBus: SignalBus,
+    private val debuggerDetector: DebuggerDetector
 ) {
 
     // Initialize all detectors
     private val emulatorDetector = EmulatorDetector()
     private val rootDetector = RootDetector()
-    private val debuggerDetector = DebuggerDetector()
     private val screenRecordingDetector = ScreenRecordingDetector(context)
     private val networkDetector = NetworkDetector(context)
     private val simDetector = SimDetector(context)
@@ -208,6 +211,7 @@ class SignalCollector @Inject constructor(
         // Store all signals
         if (signals.isNotEmpty()) {
             securitySignalDao.insertAll(signals)
+            signals.forEach { publish(it) }
         }
 
         signals
@@ -218,24 +222,30 @@ class SignalCollector @Inject constructor(
      */
     suspend fun recordLoginAttempt(success: Boolean) {
         val signalType = if (success) SignalType.LOGIN_SUCCESS else SignalType.LOGIN_FAILURE
-        securitySignalDao.insert(
-            SecuritySignalEntity(
-                signalType = signalType,
-                timestamp = System.currentTimeMillis()
-            )
+        val signal = SecuritySignalEntity(
+            signalType = signalType,
+            timestamp = System.currentTimeMillis()
         )
+        securitySignalDao.insert(signal)
+        publish(signal)
     }
 
     /**
      * Records app session end.
      */
     suspend fun recordAppClose() {
-        securitySignalDao.insert(
-            SecuritySignalEntity(
-                signalType = SignalType.APP_CLOSE,
-                timestamp = System.currentTimeMillis()
-            )
+        val signal = SecuritySignalEntity(
+            signalType = SignalType.APP_CLOSE,
+            timestamp = System.currentTimeMillis()
         )
+        securitySignalDao.insert(signal)
+        publish(signal)
+    }
+
+    private fun publish(signal: SecuritySignalEntity) {
+        // Entity-only types have no domain counterpart to publish
+        val type = DomainSignalType.entries.firstOrNull { it.name == signal.signalType.name } ?: return
+        signalBus.publish(type, signal.timestamp)
     }
 
     /**
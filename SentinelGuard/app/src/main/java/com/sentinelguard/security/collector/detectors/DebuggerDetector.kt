@@ -1,10 +1,13 @@
 package com.sentinelguard.security.collector.detectors
 
 import android.os.Debug
+import com.sentinelguard.scanner.LocalPortProber
+import com.sentinelguard.scanner.ProcFsReader
 import org.json.JSONObject
 import java.io.BufferedReader
 import java.io.File
 import java.io.FileReader
+import javax.inject.Inject
 
 /**
  * Detects if a debugger or analysis tool is attached.
@@ -16,7 +19,9 @@ import java.io.FileReader
  * 
  * Limitation: Sophisticated anti-detection techniques may bypass.
  */
-class DebuggerDetector {
+class DebuggerDetector @Inject constructor(
+    private val portProber: LocalPortProber
+) {
 
     private val detectedReasons = mutableListOf<String>()
 
@@ -92,33 +97,20 @@ class DebuggerDetector {
      * Checks for Frida server or agent.
      */
     private fun checkFrida(): Boolean {
-        // Check for default Frida port
-        try {
-            val socket = java.net.Socket()
-            socket.connect(java.net.InetSocketAddress("127.0.0.1", 27042), 100)
-            socket.close()
-            detectedReasons.add("frida_port:27042")
+        // Check for Frida ports
+        val fridaPort = portProber.probe(LocalPortProber.FRIDA_PORTS).firstOrNull()
+        if (fridaPort != null) {
+            detectedReasons.add("frida_port:$fridaPort")
             return true
-        } catch (e: Exception) {
-            // Port not open - good
         }
 
         // Check for Frida libraries in memory maps
-        try {
-            val reader = BufferedReader(FileReader("/proc/self/maps"))
-            var line: String?
-            
-            while (reader.readLine().also { line = it } != null) {
-                val lowerLine = line?.lowercase() ?: continue
-                if (lowerLine.contains("frida") || lowerLine.contains("linjector")) {
-                    detectedReasons.add("frida_lib:${line?.substringAfterLast("/")}")
-                    reader.close()
-                    return true
-                }
-            }
-            reader.close()
-        } catch (e: Exception) {
-            // Ignore
+        val fridaLib = ProcFsReader.current().mappedFiles().firstOrNull {
+            it.contains("frida", ignoreCase = true) || it.contains("linjector", ignoreCase = true)
+        }
+        if (fridaLib != null) {
+            detectedReasons.add("frida_lib:${fridaLib.substringAfterLast("/")}")
+            return true
         }
 
         // Check for Frida-related files
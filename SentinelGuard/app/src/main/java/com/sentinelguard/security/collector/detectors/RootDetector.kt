@@ -1,10 +1,10 @@
 package com.sentinelguard.security.collector.detectors
 
 import android.os.Build
+import com.sentinelguard.scanner.ProcFsReader
+import com.sentinelguard.scanner.SystemPropertyReader
 import org.json.JSONObject
-import java.io.BufferedReader
 import java.io.File
-import java.io.InputStreamReader
 
 /**
  * Detects if the device is rooted.
@@ -13,7 +13,7 @@ import java.io.InputStreamReader
  * - Common root binary checks
  * - System properties
  * - Build tags
- * - Write access to system paths
+ * - Read-write system mounts (/proc/mounts)
  * 
  * Limitation: Magisk Hide and similar tools can bypass these checks.
  * This is documented in the app's limitations section.
@@ -50,6 +50,13 @@ class RootDetector {
             "/data/adb/modules"
         )
 
+        // Property values that indicate an insecure or rooted build
+        private val ROOT_PROPERTIES = mapOf(
+            "ro.debuggable" to "1",
+            "ro.secure" to "0",
+            "ro.build.selinux" to "0"
+        )
+
         private val ROOT_PACKAGES = listOf(
             "com.noshufou.android.su",
             "com.noshufou.android.su.elite",
@@ -70,7 +77,7 @@ class RootDetector {
         // Check test-keys build
         if (checkBuildTags()) return true
         
-        // Check for root binaries
+        // Check for root binaries (su, busybox, ... on PATH)
         if (checkRootBinaries()) return true
         
         // Check for root paths
@@ -79,8 +86,8 @@ class RootDetector {
         // Check system properties
         if (checkSystemProperties()) return true
         
-        // Try to execute su
-        if (checkSuExecution()) return true
+        // Check for a writable system partition
+        if (checkSystemMounts()) return true
         
         return false
     }
@@ -131,45 +138,20 @@ class RootDetector {
 
     private fun checkSystemProperties(): Boolean {
         // Check for common root-related system properties
-        try {
-            val process = Runtime.getRuntime().exec("getprop")
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            var line: String?
-            
-            while (reader.readLine().also { line = it } != null) {
-                line?.let {
-                    if (it.contains("ro.debuggable=1") ||
-                        it.contains("ro.secure=0") ||
-                        it.contains("ro.build.selinux=0")) {
-                        detectedReasons.add("prop:${it.trim()}")
-                        reader.close()
-                        return true
-                    }
-                }
+        for ((name, value) in ROOT_PROPERTIES) {
+            if (SystemPropertyReader.get(name)?.trim() == value) {
+                detectedReasons.add("prop:$name=$value")
+                return true
             }
-            reader.close()
-        } catch (e: Exception) {
-            // Ignore - can't check properties
         }
         return false
     }
 
-    private fun checkSuExecution(): Boolean {
-        // Try to run 'which su' or 'su --version' to detect su binary
-        try {
-            val process = Runtime.getRuntime().exec(arrayOf("which", "su"))
-            val reader = BufferedReader(InputStreamReader(process.inputStream))
-            val output = reader.readLine()
-            reader.close()
-            
-            if (!output.isNullOrBlank()) {
-                detectedReasons.add("which_su:$output")
-                return true
-            }
-        } catch (e: Exception) {
-            // Expected on non-rooted devices
-        }
-        
-        return false
+    private fun checkSystemMounts(): Boolean {
+        val mount = ProcFsReader.current().mounts().firstOrNull {
+            it.isReadWrite && (it.mountPoint == "/system" || it.mountPoint.startsWith("/system/"))
+        } ?: return false
+        detectedReasons.add("rw_mount:${mount.mountPoint}")
+        return true
     }
 }
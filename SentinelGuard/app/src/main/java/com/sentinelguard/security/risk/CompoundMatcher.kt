@@ -0,0 +1,139 @@
+package com.sentinelguard.security.risk
+
+import com.sentinelguard.domain.model.SignalType
+import java.util.BitSet
+
+/**
+ * CompoundMatcher: Compound Rules Compiled for Incremental Matching
+ *
+ * WHY THIS EXISTS:
+ * Checking every rule against every signal on each score calculation
+ * grows with the number of rules. Here the rules are flattened into
+ * arrays once, and each signal only touches the steps that can use it.
+ *
+ * MATCHING:
+ * - Every step is a bitmask of the signal types it accepts, indexed by
+ *   type, so a signal reaches its steps without scanning rules
+ * - Unordered rules keep, per step, when it was last seen
+ * - Ordered rules run as an NFA: per step, the latest start of a partial
+ *   match that got through that step; a signal advances step k only from
+ *   a live partial match at step k - 1
+ * - Only rules touched within their window are checked by [evaluate]
+ */
+class CompoundMatcher(private val rules: List<CompoundRule>) {
+
+    private companion object {
+        const val NEVER = Long.MIN_VALUE
+    }
+
+    // Steps of all rules, flattened: rule r owns [stepOffsets[r], stepOffsets[r + 1])
+    private val stepOffsets = IntArray(rules.size + 1)
+    private val stepMasks: LongArray
+    private val stepRules: IntArray
+    private val stepTimes: LongArray
+
+    // Per SignalType ordinal, the steps accepting it, highest index first
+    private val stepsByType: Array<IntArray>
+
+    // Rules with partial state that may still be live
+    private val candidates = BitSet(rules.size)
+
+    /** Signal types referenced by any rule */
+    val trackedTypes: Long
+
+    init {
+        rules.forEachIndexed { r, rule -> stepOffsets[r + 1] = stepOffsets[r] + rule.steps.size }
+        val stepCount = stepOffsets[rules.size]
+        stepMasks = LongArray(stepCount)
+        stepRules = IntArray(stepCount)
+        stepTimes = LongArray(stepCount) { NEVER }
+
+        var tracked = 0L
+        rules.forEachIndexed { r, rule ->
+            rule.steps.forEachIndexed { i, alternatives ->
+                val step = stepOffsets[r] + i
+                stepMasks[step] = RiskState.maskOf(*alternatives.toTypedArray())
+                stepRules[step] = r
+                tracked = tracked or stepMasks[step]
+            }
+        }
+        trackedTypes = tracked
+
+        stepsByType = Array(SignalType.entries.size) { t ->
+            val bit = 1L shl t
+            // Descending, so one signal cannot fill two consecutive steps of a sequence
+            (stepCount - 1 downTo 0).filter { (stepMasks[it] and bit) != 0L }.toIntArray()
+        }
+    }
+
+    fun onSignal(type: SignalType, timestamp: Long) {
+        for (step in stepsByType[type.ordinal]) {
+            val r = stepRules[step]
+            val rule = rules[r]
+            val time = if (!rule.ordered || step == stepOffsets[r]) {
+                timestamp
+            } else {
+                // Start of the partial match this signal extends
+                val start = stepTimes[step - 1]
+                if (start == NEVER || timestamp - start > rule.windowMs) continue
+                start
+            }
+            if (time > stepTimes[step]) stepTimes[step] = time
+            candidates.set(r)
+        }
+    }
+
+    /**
+     * Rules matched at [now], in rule order. Types in [currentTypes]
+     * count as seen at [now] without being recorded.
+     */
+    fun evaluate(now: Long, currentTypes: Long = 0L): List<CompoundRule> {
+        if (currentTypes != 0L) {
+            for (t in SignalType.entries.indices) {
+                if ((currentTypes and (1L shl t)) == 0L) continue
+                stepsByType[t].forEach { candidates.set(stepRules[it]) }
+            }
+        }
+
+        val matched = mutableListOf<CompoundRule>()
+        var r = candidates.nextSetBit(0)
+        while (r >= 0) {
+            val rule = rules[r]
+            val cutoff = now - rule.windowMs
+            if (isMatched(r, cutoff, currentTypes)) matched.add(rule)
+            if (!hasLiveState(r, cutoff)) candidates.clear(r)
+            r = candidates.nextSetBit(r + 1)
+        }
+        return matched
+    }
+
+    private fun isMatched(r: Int, cutoff: Long, currentTypes: Long): Boolean {
+        val first = stepOffsets[r]
+        val last = stepOffsets[r + 1] - 1
+        if (!rules[r].ordered) {
+            for (step in first..last) {
+                if (stepTimes[step] < cutoff && (stepMasks[step] and currentTypes) == 0L) return false
+            }
+            return true
+        }
+        // Current types can only complete a sequence, so find a live
+        // partial match followed by steps they all satisfy
+        for (step in last downTo first) {
+            if (stepTimes[step] >= cutoff) return true
+            if ((stepMasks[step] and currentTypes) == 0L) return false
+        }
+        return true
+    }
+
+    private fun hasLiveState(r: Int, cutoff: Long): Boolean {
+        for (step in stepOffsets[r] until stepOffsets[r + 1]) {
+            if (stepTimes[step] >= cutoff) return true
+        }
+        return false
+    }
+
+    fun clear() {
+        stepTimes.fill(NEVER)
+        candidates.clear()
+    }
+}
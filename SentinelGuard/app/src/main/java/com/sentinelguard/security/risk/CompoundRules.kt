@@ -0,0 +1,147 @@
+package com.sentinelguard.security.risk
+
+import com.sentinelguard.domain.model.SignalType
+
+/**
+ * A combination of signals that is riskier than its parts.
+ *
+ * Each step is matched by any one of its signal types. Unordered rules
+ * match when every step was seen within [windowMs]; ordered rules when
+ * the steps were seen in order, the last within [windowMs] of the first.
+ */
+data class CompoundRule(
+    val name: String,
+    val bonus: Int,
+    val windowMs: Long,
+    val ordered: Boolean,
+    val steps: List<Set<SignalType>>
+)
+
+/**
+ * CompoundRuleParser: Text Format for Compound Rules
+ *
+ * One rule per line, fields separated by ';':
+ *
+ *     <name>; <bonus>; <window>; <all|sequence>; <step>, <step>, ...
+ *
+ * A step is a SignalType name, or alternatives joined with '|'. The
+ * window is `<n>m` or `<n>h`. Blank lines and lines starting with '#'
+ * are ignored. Invalid lines are skipped and reported, so one bad rule
+ * does not disable the others.
+ */
+object CompoundRuleParser {
+
+    class Result(
+        val rules: List<CompoundRule>,
+        val errors: List<String>
+    )
+
+    private val windowPattern = Regex("""(\d+)\s*([mh])""")
+
+    /**
+     * Rules in [text]; windows longer than [maxWindowMs] are rejected
+     */
+    fun parse(text: String, maxWindowMs: Long): Result {
+        val rules = mutableListOf<CompoundRule>()
+        val errors = mutableListOf<String>()
+        text.lineSequence().forEachIndexed { index, rawLine ->
+            val line = rawLine.trim()
+            if (line.isEmpty() || line.startsWith("#")) return@forEachIndexed
+            val rule = parseRule(line, maxWindowMs) { errors.add("line ${index + 1}: $it") }
+            if (rule != null) rules.add(rule)
+        }
+        return Result(rules, errors)
+    }
+
+    private fun parseRule(line: String, maxWindowMs: Long, error: (String) -> Unit): CompoundRule? {
+        val fields = line.split(';').map { it.trim() }
+        if (fields.size != 5) {
+            error("expected 5 fields, found ${fields.size}")
+            return null
+        }
+        val (name, bonusField, windowField, modeField, stepsField) = fields
+
+        if (name.isEmpty()) {
+            error("missing name")
+            return null
+        }
+        val bonus = bonusField.toIntOrNull()
+        if (bonus == null || bonus <= 0) {
+            error("bad bonus '$bonusField'")
+            return null
+        }
+        val windowMs = parseWindow(windowField)
+        if (windowMs == null || windowMs <= 0 || windowMs > maxWindowMs) {
+            error("bad window '$windowField'")
+            return null
+        }
+        val ordered = when (modeField) {
+            "all" -> false
+            "sequence" -> true
+            else -> {
+                error("unknown mode '$modeField'")
+                return null
+            }
+        }
+
+        val steps = mutableListOf<Set<SignalType>>()
+        for (step in stepsField.split(',')) {
+            val alternatives = mutableSetOf<SignalType>()
+            for (typeName in step.split('|').map { it.trim() }) {
+                val type = SignalType.entries.firstOrNull { it.name == typeName }
+                if (type == null) {
+                    error("unknown signal type '$typeName'")
+                    return null
+                }
+                alternatives.add(type)
+            }
+            steps.add(alternatives)
+        }
+        if (steps.size < 2) {
+            error("a compound rule needs at least two steps")
+            return null
+        }
+        return CompoundRule(name, bonus, windowMs, ordered, steps)
+    }
+
+    private fun parseWindow(field: String): Long? {
+        val match = windowPattern.matchEntire(field) ?: return null
+        val amount = match.groupValues[1].toLongOrNull() ?: return null
+        return when (match.groupValues[2]) {
+            "h" -> amount * 60 * 60 * 1000L
+            else -> amount * 60 * 1000L
+        }
+    }
+}
+
+/**
+ * Built-in copy of the shipped compound_rules.txt, used when the asset
+ * is missing or unreadable so compound scenarios are never silently off
+ */
+object DefaultCompoundRules {
+
+    private const val HOUR_MS = 60 * 60 * 1000L
+
+    val rules: List<CompoundRule> = listOf(
+        CompoundRule(
+            "Theft Pattern Detected", 40, HOUR_MS, ordered = false,
+            listOf(setOf(SignalType.DEVICE_BOOT), setOf(SignalType.SIM_REMOVED), setOf(SignalType.NETWORK_CHANGE))
+        ),
+        CompoundRule(
+            "Remote Analysis Environment", 30, HOUR_MS, ordered = false,
+            listOf(setOf(SignalType.EMULATOR_DETECTED), setOf(SignalType.DEBUGGER_DETECTED))
+        ),
+        CompoundRule(
+            "Credential Capture Attempt", 25, HOUR_MS, ordered = false,
+            listOf(setOf(SignalType.SCREEN_RECORDING_DETECTED), setOf(SignalType.LOGIN_FAILURE))
+        ),
+        CompoundRule(
+            "SIM Swap Detected", 20, HOUR_MS, ordered = false,
+            listOf(setOf(SignalType.SIM_CHANGED), setOf(SignalType.NETWORK_CHANGE))
+        ),
+        CompoundRule(
+            "Suspicious Location + Environment", 25, HOUR_MS, ordered = false,
+            listOf(setOf(SignalType.LOCATION_ANOMALY), setOf(SignalType.ROOT_DETECTED, SignalType.EMULATOR_DETECTED))
+        )
+    )
+}
@@ -0,0 +1,52 @@
+package com.sentinelguard.security.risk
+
+/**
+ * RiskRecomputeDebouncer: When to Recompute the Risk Score
+ *
+ * Signals request a recomputation; all requests made before it runs
+ * are served by the same one. An urgent request is due [urgentDelayMs]
+ * after it arrives, any other [normalDelayMs] after, and a later
+ * request can only bring the pending recomputation forward, never push
+ * it back, so a steady stream of signals cannot starve it.
+ *
+ * Without requests, one runs [heartbeatMs] after the previous one so
+ * the score still decays. The first one is due immediately.
+ */
+class RiskRecomputeDebouncer(
+    private val urgentDelayMs: Long,
+    private val normalDelayMs: Long,
+    private val heartbeatMs: Long
+) {
+    private var lastRunAt: Long? = null
+    private var requestedAt: Long? = null
+
+    /**
+     * Request a recomputation at [now]
+     */
+    @Synchronized
+    fun request(urgent: Boolean, now: Long) {
+        val dueAt = now + if (urgent) urgentDelayMs else normalDelayMs
+        requestedAt = requestedAt?.let { minOf(it, dueAt) } ?: dueAt
+    }
+
+    /**
+     * When the next recomputation is due
+     */
+    @Synchronized
+    fun nextDueAt(): Long {
+        val heartbeatAt = lastRunAt?.plus(heartbeatMs) ?: 0L
+        return requestedAt?.let { minOf(it, heartbeatAt) } ?: heartbeatAt
+    }
+
+    /**
+     * True, and every pending request is cleared, if a recomputation is
+     * due at [now]; the caller then runs it
+     */
+    @Synchronized
+    fun takeIfDue(now: Long): Boolean {
+        if (now < nextDueAt()) return false
+        lastRunAt = now
+        requestedAt = null
+        return true
+    }
+}
@@ -1,9 +1,11 @@
 package com.sentinelguard.security.risk
 
+import android.content.Context
+import android.util.Log
 import com.sentinelguard.data.database.dao.BehavioralAnomalyDao
+import com.sentinelguard.data.local.preferences.SecurePreferences
 import com.sentinelguard.domain.model.RiskLevel
 import com.sentinelguard.domain.model.RiskScore
-import com.sentinelguard.domain.model.SecuritySignal
 import com.sentinelguard.domain.model.SignalType
 import com.sentinelguard.domain.repository.RiskScoreRepository
 import com.sentinelguard.domain.repository.SecuritySignalRepository
@@ -15,8 +17,12 @@ import com.sentinelguard.security.baseline.BaselineEngine
 import com.sentinelguard.security.baseline.LocationClusterManager
 import com.sentinelguard.security.baseline.UnlockPatternAnalyzer
 import com.sentinelguard.security.collector.NetworkBehaviorTracker
+import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
+import java.io.IOException
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -30,9 +36,16 @@ import javax.inject.Singleton
  * SCORING:
  * - Each signal type has a base weight
  * - Behavioral anomalies add points
- * - Compound scenarios (multiple related signals) add bonus
+ * - Compound scenarios (multiple related signals) add bonus; the
+ *   scenarios are rules loaded from assets/compound_rules.txt, with
+ *   built-in defaults if the asset cannot be read
  * - Score decays 10% per hour without new signals
  * 
+ * STATE:
+ * - Signal points, compound types and the last score are kept in a
+ *   RiskState that only takes in signals stored since the previous
+ *   calculation, persisted as a snapshot and restored on start
+ * 
  * THRESHOLDS:
  * - NORMAL: 0-39 (no action)
  * - WARNING: 40-69 (UI indicator)
@@ -41,6 +54,7 @@ import javax.inject.Singleton
  */
 @Singleton
 class RiskScoringEngine @Inject constructor(
+    @ApplicationContext private val context: Context,
     private val riskScoreRepository: RiskScoreRepository,
     private val signalRepository: SecuritySignalRepository,
     private val baselineEngine: BaselineEngine,
@@ -48,9 +62,12 @@ class RiskScoringEngine @Inject constructor(
     private val appUsageAnalyzer: AppUsagePatternAnalyzer,
     private val locationClusterManager: LocationClusterManager,
     private val networkTracker: NetworkBehaviorTracker,
-    private val unlockAnalyzer: UnlockPatternAnalyzer
+    private val unlockAnalyzer: UnlockPatternAnalyzer,
+    private val securePreferences: SecurePreferences
 ) {
     companion object {
+        private const val TAG = "RiskScoringEngine"
+
         // ============ Signal Weights ============
         private val SIGNAL_WEIGHTS = mapOf(
             SignalType.ROOT_DETECTED to 50,
@@ -61,6 +78,7 @@ class RiskScoringEngine @Inject constructor(
             SignalType.SCREEN_RECORDING_DETECTED to 30,
             SignalType.LOCATION_ANOMALY to 30,
             SignalType.LOGIN_FAILURE to 15,
+            SignalType.PIN_FAILED to 15,
             SignalType.DEVICE_BOOT to 10,
             SignalType.NETWORK_CHANGE to 10,
             SignalType.TIMEZONE_CHANGE to 10,
@@ -72,14 +90,33 @@ class RiskScoringEngine @Inject constructor(
         const val THRESHOLD_HIGH = 70
         const val THRESHOLD_CRITICAL = 90
 
+        // ============ Recomputation ============
+        // Signals at least this heavy are scored within seconds
+        private const val URGENT_WEIGHT = 30
+        // Failures that come in bursts while someone is guessing
+        private val URGENT_FAILURES = setOf(SignalType.LOGIN_FAILURE, SignalType.PIN_FAILED)
+
         // ============ Decay ============
         const val DECAY_PERCENT_PER_HOUR = 10.0
 
         // ============ Time Windows ============
-        private const val COMPOUND_WINDOW_MS = 30 * 60 * 1000L // 30 minutes
         private const val RECENT_SIGNALS_WINDOW_MS = 60 * 60 * 1000L // 1 hour
+
+        // ============ State ============
+        private const val INITIAL_WINDOW_EVENTS = 256
+        private const val INGEST_BATCH_SIZE = 500
+
+        // ============ Compound Scenarios ============
+        private const val COMPOUND_RULES_ASSET = "compound_rules.txt"
     }
 
+    private val stateMutex = Mutex()
+    private val compoundMatcher by lazy { CompoundMatcher(loadCompoundRules()) }
+    private val riskState by lazy {
+        RiskState(RECENT_SIGNALS_WINDOW_MS, INITIAL_WINDOW_EVENTS, compoundMatcher.trackedTypes, ::getSignalWeight)
+    }
+    private var stateLoaded = false
+
     /**
      * Calculates current risk score from all sources:
      * - Security signals
@@ -88,12 +125,6 @@ class RiskScoringEngine @Inject constructor(
      */
     suspend fun calculateRiskScore(): RiskScore = withContext(Dispatchers.IO) {
         val now = System.currentTimeMillis()
-        
-        // Get recent signals (last hour)
-        val recentSignals = signalRepository.getInRange(
-            now - RECENT_SIGNALS_WINDOW_MS,
-            now
-        )
 
         // Get behavioral anomalies from all analyzers
         val behavioralRiskPoints = collectBehavioralRiskPoints()
@@ -101,69 +132,112 @@ class RiskScoringEngine @Inject constructor(
         // Get baseline anomalies
         val anomalies = baselineEngine.getCurrentAnomalies()
 
-        // Calculate base score from signals
-        val contributions = mutableMapOf<SignalType, Int>()
-        var totalScore = 0
+        val riskScore = stateMutex.withLock {
+            // Take in signals stored since the last calculation (last hour)
+            loadState()
+            ingestNewSignals(now)
+            riskState.expire(now)
+
+            // Base score from signals
+            val contributions = riskState.contributions()
+            var totalScore = riskState.totalPoints
+            var anomalyTypes = 0L
+
+            // Add anomaly contributions
+            for (anomaly in anomalies) {
+                val (signalType, score) = anomalyToSignal(anomaly)
+                contributions[signalType] = (contributions[signalType] ?: 0) + score
+                totalScore += score
+                anomalyTypes = anomalyTypes or RiskState.maskOf(signalType)
+            }
 
-        for (signal in recentSignals) {
-            val weight = SIGNAL_WEIGHTS[signal.type] ?: 0
-            if (weight > 0) {
-                contributions[signal.type] = (contributions[signal.type] ?: 0) + weight
-                totalScore += weight
+            // Add behavioral risk points
+            totalScore += behavioralRiskPoints
+
+            // Check for compound scenarios
+            val compoundBonus = calculateCompoundBonus(now, anomalyTypes)
+            totalScore += compoundBonus.first
+            val compoundReasons = compoundBonus.second
+
+            // Apply decay from previous score
+            val previousScore = riskState.lastScore
+            if (previousScore != null && riskState.isQuiet(now) && behavioralRiskPoints == 0) {
+                val decayedScore = applyDecay(previousScore, riskState.lastScoreAt, now)
+                if (decayedScore < totalScore) {
+                    totalScore = decayedScore
+                }
             }
-        }
 
-        // Add anomaly contributions
-        for (anomaly in anomalies) {
-            val (signalType, score) = anomalyToSignal(anomaly)
-            contributions[signalType] = (contributions[signalType] ?: 0) + score
-            totalScore += score
-        }
+            // Cap at 100
+            totalScore = totalScore.coerceIn(0, 100)
 
-        // Add behavioral risk points
-        totalScore += behavioralRiskPoints
+            // Build trigger reason
+            val triggerReason = buildTriggerReason(contributions, compoundReasons, behavioralRiskPoints)
 
-        // Check for compound scenarios
-        val compoundBonus = calculateCompoundBonus(recentSignals, contributions.keys)
-        totalScore += compoundBonus.first
-        val compoundReasons = compoundBonus.second
+            riskState.recordScore(totalScore, now)
+            securePreferences.riskStateSnapshot = riskState.toSnapshot()
 
-        // Apply decay from previous score
-        val previousScore = riskScoreRepository.getLatest()
-        if (previousScore != null && recentSignals.isEmpty() && behavioralRiskPoints == 0) {
-            val decayedScore = applyDecay(previousScore)
-            if (decayedScore < totalScore) {
-                totalScore = decayedScore
-            }
+            RiskScore(
+                id = SecureIdGenerator.generateId(),
+                totalScore = totalScore,
+                level = levelFor(totalScore),
+                contributions = contributions,
+                triggerReason = triggerReason,
+                decayed = false,
+                timestamp = now
+            )
         }
 
-        // Cap at 100
-        totalScore = totalScore.coerceIn(0, 100)
+        riskScoreRepository.insert(riskScore)
+        riskScore
+    }
 
-        // Determine risk level
-        val level = when {
-            totalScore >= THRESHOLD_CRITICAL -> RiskLevel.CRITICAL
-            totalScore >= THRESHOLD_HIGH -> RiskLevel.HIGH
-            totalScore >= THRESHOLD_WARNING -> RiskLevel.WARNING
-            else -> RiskLevel.NORMAL
+    /**
+     * Restores the risk state on first use: from its snapshot, or from
+     * the database when there is none or it is older than the signals
+     * table (cleared or recreated since).
+     */
+    private suspend fun loadState() {
+        if (stateLoaded) return
+        val latestId = signalRepository.getLatestId()
+        val snapshot = securePreferences.riskStateSnapshot
+        if (snapshot == null || !riskState.restore(snapshot) || riskState.lastSignalId > latestId) {
+            riskState.clear()
+            val now = System.currentTimeMillis()
+            signalRepository.getInRange(now - RECENT_SIGNALS_WINDOW_MS, now)
+                .filter { (it.id.toLongOrNull() ?: 0L) <= latestId }
+                .forEach { riskState.add(it.type, it.timestamp) }
+            riskState.lastSignalId = latestId
+            riskScoreRepository.getLatest()?.let { riskState.recordScore(it.totalScore, it.timestamp) }
         }
+        compoundMatcher.clear()
+        riskState.forEachEvent(compoundMatcher::onSignal)
+        stateLoaded = true
+    }
 
-        // Build trigger reason
-        val triggerReason = buildTriggerReason(contributions, compoundReasons, behavioralRiskPoints)
-
-        // Create and save score
-        val riskScore = RiskScore(
-            id = SecureIdGenerator.generateId(),
-            totalScore = totalScore,
-            level = level,
-            contributions = contributions,
-            triggerReason = triggerReason,
-            decayed = false,
-            timestamp = now
-        )
+    /**
+     * Adds the signals stored after the newest one already in the state
+     */
+    private suspend fun ingestNewSignals(now: Long) {
+        val cutoff = now - RECENT_SIGNALS_WINDOW_MS
+        do {
+            val batch = signalRepository.getAfter(riskState.lastSignalId, INGEST_BATCH_SIZE)
+            for (signal in batch) {
+                val id = signal.id.toLongOrNull() ?: continue
+                if (signal.timestamp >= cutoff) {
+                    riskState.add(signal.type, signal.timestamp)
+                    compoundMatcher.onSignal(signal.type, signal.timestamp)
+                }
+                if (id > riskState.lastSignalId) riskState.lastSignalId = id
+            }
+        } while (batch.size == INGEST_BATCH_SIZE)
+    }
 
-        riskScoreRepository.insert(riskScore)
-        riskScore
+    private fun levelFor(score: Int): RiskLevel = when {
+        score >= THRESHOLD_CRITICAL -> RiskLevel.CRITICAL
+        score >= THRESHOLD_HIGH -> RiskLevel.HIGH
+        score >= THRESHOLD_WARNING -> RiskLevel.WARNING
+        else -> RiskLevel.NORMAL
     }
 
     /**
@@ -195,51 +269,25 @@ class RiskScoringEngine @Inject constructor(
     }
 
     /**
-     * Calculates compound scenario bonuses.
+     * Calculates compound scenario bonuses; anomaly types in
+     * [currentTypes] count as present now.
      */
-    private fun calculateCompoundBonus(
-        signals: List<SecuritySignal>,
-        activeTypes: Set<SignalType>
-    ): Pair<Int, List<String>> {
-        var bonus = 0
-        val reasons = mutableListOf<String>()
-
-        // Theft Pattern: DEVICE_BOOT + SIM_REMOVED + NETWORK_CHANGE
-        if (hasCompound(activeTypes, SignalType.DEVICE_BOOT, SignalType.SIM_REMOVED, SignalType.NETWORK_CHANGE)) {
-            bonus += 40
-            reasons.add("Theft Pattern Detected")
-        }
-
-        // Remote Analysis: EMULATOR + DEBUGGER
-        if (hasCompound(activeTypes, SignalType.EMULATOR_DETECTED, SignalType.DEBUGGER_DETECTED)) {
-            bonus += 30
-            reasons.add("Remote Analysis Environment")
-        }
-
-        // Credential Theft: SCREEN_RECORDING + LOGIN_FAILURE
-        if (hasCompound(activeTypes, SignalType.SCREEN_RECORDING_DETECTED, SignalType.LOGIN_FAILURE)) {
-            bonus += 25
-            reasons.add("Credential Capture Attempt")
-        }
-
-        // SIM Swap Attack: SIM_CHANGED + NETWORK_CHANGE
-        if (hasCompound(activeTypes, SignalType.SIM_CHANGED, SignalType.NETWORK_CHANGE)) {
-            bonus += 20
-            reasons.add("SIM Swap Detected")
-        }
-
-        // Unusual Access: LOCATION_ANOMALY + (ROOT or EMULATOR)
-        if (activeTypes.contains(SignalType.LOCATION_ANOMALY) &&
-            (activeTypes.contains(SignalType.ROOT_DETECTED) || activeTypes.contains(SignalType.EMULATOR_DETECTED))) {
-            bonus += 25
-            reasons.add("Suspicious Location + Environment")
-        }
-
-        return Pair(bonus, reasons)
+    private fun calculateCompoundBonus(now: Long, currentTypes: Long): Pair<Int, List<String>> {
+        val matched = compoundMatcher.evaluate(now, currentTypes)
+        return Pair(matched.sumOf { it.bonus }, matched.map { it.name })
     }
 
-    private fun hasCompound(types: Set<SignalType>, vararg required: SignalType): Boolean {
-        return required.all { types.contains(it) }
+    private fun loadCompoundRules(): List<CompoundRule> {
+        return try {
+            val text = context.assets.open(COMPOUND_RULES_ASSET).bufferedReader().use { it.readText() }
+            val parsed = CompoundRuleParser.parse(text, RECENT_SIGNALS_WINDOW_MS)
+            parsed.errors.forEach { Log.w(TAG, "Skipped compound rule, $it") }
+            Log.d(TAG, "Loaded ${parsed.rules.size} compound rules")
+            parsed.rules
+        } catch (e: IOException) {
+            Log.e(TAG, "Failed to load compound rules, using built-in defaults", e)
+            DefaultCompoundRules.rules
+        }
     }
 
     private fun anomalyToSignal(anomaly: AnomalyResult): Pair<SignalType, Int> {
@@ -251,10 +299,10 @@ class RiskScoringEngine @Inject constructor(
         }
     }
 
-    private fun applyDecay(previousScore: RiskScore): Int {
-        val hoursSince = (System.currentTimeMillis() - previousScore.timestamp) / (60 * 60 * 1000.0)
+    private fun applyDecay(previousScore: Int, scoredAt: Long, now: Long): Int {
+        val hoursSince = (now - scoredAt) / (60 * 60 * 1000.0)
         val decayFactor = 1.0 - (DECAY_PERCENT_PER_HOUR / 100.0 * hoursSince)
-        return (previousScore.totalScore * decayFactor.coerceAtLeast(0.0)).toInt()
+        return (previousScore * decayFactor.coerceAtLeast(0.0)).toInt()
     }
 
     private fun buildTriggerReason(
@@ -287,15 +335,18 @@ class RiskScoringEngine @Inject constructor(
     /**
      * Gets current risk level.
      */
-    suspend fun getCurrentRiskLevel(): RiskLevel = withContext(Dispatchers.IO) {
-        riskScoreRepository.getLatest()?.level ?: RiskLevel.NORMAL
+    suspend fun getCurrentRiskLevel(): RiskLevel {
+        return levelFor(getCurrentScore())
     }
 
     /**
      * Gets current risk score value.
      */
     suspend fun getCurrentScore(): Int = withContext(Dispatchers.IO) {
-        riskScoreRepository.getLatest()?.totalScore ?: 0
+        stateMutex.withLock {
+            loadState()
+            riskState.lastScore ?: 0
+        }
     }
 
     /**
@@ -312,6 +363,14 @@ class RiskScoringEngine @Inject constructor(
         return SIGNAL_WEIGHTS[type] ?: 0
     }
 
+    /**
+     * Whether a new signal of [type] should be scored right away rather
+     * than together with whatever else arrives in the next minute.
+     */
+    fun isUrgent(type: SignalType): Boolean {
+        return getSignalWeight(type) >= URGENT_WEIGHT || type in URGENT_FAILURES
+    }
+
     /**
      * Gets all signal weights for display.
      */
@@ -0,0 +1,229 @@
+package com.sentinelguard.security.risk
+
+import com.sentinelguard.domain.model.SignalType
+
+/**
+ * RiskState: Incrementally Maintained Inputs of the Risk Score
+ *
+ * WHY THIS EXISTS:
+ * Scoring used to re-read the last hour of signals and the latest score
+ * on every calculation and rebuild per-type points, compound types and
+ * decay from them. RiskState keeps the same quantities current as
+ * signals arrive instead.
+ *
+ * STATE:
+ * - Weighted signals of the last [windowMs], and those of [trackedTypes]
+ *   (used by compound rules), in arrival order, in a ring that starts
+ *   at [initialCapacity] events and doubles when full; events leave it
+ *   only by expiring, so the score never loses a live signal
+ * - Points per signal type and a bitmask of the types present, adjusted
+ *   as events enter and leave the window
+ * - Time of the newest signal of any type, and the last computed score,
+ *   for decay
+ *
+ * Adding (amortized) and expiring an event is O(1), and so is every read except
+ * [contributions]. [toSnapshot] / [restore] persist it between runs;
+ * types are stored by name so a snapshot survives SignalType changes.
+ */
+class RiskState(
+    private val windowMs: Long,
+    initialCapacity: Int,
+    private val trackedTypes: Long = 0L,
+    private val weightOf: (SignalType) -> Int
+) {
+    companion object {
+        private const val SNAPSHOT_VERSION = "1"
+        private const val NO_SCORE = -1
+
+        private val signalTypes = SignalType.entries
+
+        init {
+            require(signalTypes.size <= Long.SIZE_BITS) { "SignalType no longer fits a Long mask" }
+        }
+
+        /**
+         * Bitmask of [types], comparable with [activeTypes]
+         */
+        fun maskOf(vararg types: SignalType): Long {
+            return types.fold(0L) { mask, type -> mask or (1L shl type.ordinal) }
+        }
+    }
+
+    private var eventTypes = IntArray(initialCapacity.coerceAtLeast(1))
+    private var eventTimes = LongArray(initialCapacity.coerceAtLeast(1))
+    private var head = 0
+
+    private val points = IntArray(signalTypes.size)
+    private val counts = IntArray(signalTypes.size)
+
+    /** Events in the window */
+    var size = 0
+        private set
+
+    /** Sum of the weights of the events in the window */
+    var totalPoints = 0
+        private set
+
+    /** Bit `ordinal` is set for every type with an event in the window */
+    var activeTypes = 0L
+        private set
+
+    /** Id of the newest stored signal already added */
+    var lastSignalId = 0L
+
+    /** Timestamp of the newest signal added, weighted or not */
+    var lastActivityAt = 0L
+        private set
+
+    var lastScore: Int? = null
+        private set
+
+    var lastScoreAt = 0L
+        private set
+
+    /**
+     * Adds a signal; types neither weighted nor tracked only count as
+     * activity
+     */
+    fun add(type: SignalType, timestamp: Long) {
+        if (timestamp > lastActivityAt) lastActivityAt = timestamp
+        val weight = weightOf(type)
+        if (weight <= 0 && (trackedTypes and (1L shl type.ordinal)) == 0L) return
+
+        if (size == eventTimes.size) grow()
+        val slot = (head + size) % eventTimes.size
+        eventTypes[slot] = type.ordinal
+        eventTimes[slot] = timestamp
+        size++
+
+        val t = type.ordinal
+        points[t] += weight
+        totalPoints += weight
+        if (counts[t]++ == 0) activeTypes = activeTypes or (1L shl t)
+    }
+
+    /**
+     * Drops the events that are older than the window as of [now]
+     */
+    fun expire(now: Long) {
+        val cutoff = now - windowMs
+        while (size > 0 && eventTimes[head] < cutoff) removeOldest()
+    }
+
+    private fun removeOldest() {
+        val t = eventTypes[head]
+        val weight = weightOf(signalTypes[t])
+        points[t] -= weight
+        totalPoints -= weight
+        if (--counts[t] == 0) activeTypes = activeTypes and (1L shl t).inv()
+        head = (head + 1) % eventTimes.size
+        size--
+    }
+
+    /**
+     * Doubles the ring, unrolling it so the oldest event is at slot 0
+     */
+    private fun grow() {
+        val types = IntArray(eventTimes.size * 2)
+        val times = LongArray(eventTimes.size * 2)
+        for (i in 0 until size) {
+            val slot = (head + i) % eventTimes.size
+            types[i] = eventTypes[slot]
+            times[i] = eventTimes[slot]
+        }
+        eventTypes = types
+        eventTimes = times
+        head = 0
+    }
+
+    fun pointsOf(type: SignalType): Int = points[type.ordinal]
+
+    /**
+     * Points per weighted type present in the window
+     */
+    fun contributions(): MutableMap<SignalType, Int> {
+        val contributions = mutableMapOf<SignalType, Int>()
+        for (t in signalTypes.indices) {
+            if (points[t] > 0) contributions[signalTypes[t]] = points[t]
+        }
+        return contributions
+    }
+
+    /**
+     * Events in the window, oldest first
+     */
+    fun forEachEvent(action: (SignalType, Long) -> Unit) {
+        for (i in 0 until size) {
+            val slot = (head + i) % eventTimes.size
+            action(signalTypes[eventTypes[slot]], eventTimes[slot])
+        }
+    }
+
+    /**
+     * True if no signal at all arrived in the window before [now]
+     */
+    fun isQuiet(now: Long): Boolean = lastActivityAt < now - windowMs
+
+    fun recordScore(score: Int, timestamp: Long) {
+        lastScore = score
+        lastScoreAt = timestamp
+    }
+
+    fun clear() {
+        head = 0
+        size = 0
+        points.fill(0)
+        counts.fill(0)
+        totalPoints = 0
+        activeTypes = 0L
+        lastSignalId = 0L
+        lastActivityAt = 0L
+        lastScore = null
+        lastScoreAt = 0L
+    }
+
+    /**
+     * `version;lastSignalId;lastActivityAt;lastScore;lastScoreAt;TYPE:time,...`
+     */
+    fun toSnapshot(): String = buildString {
+        append(SNAPSHOT_VERSION).append(';')
+        append(lastSignalId).append(';')
+        append(lastActivityAt).append(';')
+        append(lastScore ?: NO_SCORE).append(';')
+        append(lastScoreAt).append(';')
+        for (i in 0 until size) {
+            val slot = (head + i) % eventTimes.size
+            if (i > 0) append(',')
+            append(signalTypes[eventTypes[slot]].name).append(':').append(eventTimes[slot])
+        }
+    }
+
+    /**
+     * Replaces the state with [snapshot]; false, leaving the state
+     * cleared, if it is from another version or malformed
+     */
+    fun restore(snapshot: String): Boolean {
+        clear()
+        val fields = snapshot.split(';')
+        if (fields.size != 6 || fields[0] != SNAPSHOT_VERSION) return false
+        return try {
+            if (fields[5].isNotEmpty()) {
+                for (event in fields[5].split(',')) {
+                    val separator = event.indexOf(':')
+                    val name = event.substring(0, separator)
+                    val timestamp = event.substring(separator + 1).toLong()
+                    // Types removed since the snapshot was written are skipped
+                    signalTypes.firstOrNull { it.name == name }?.let { add(it, timestamp) }
+                }
+            }
+            lastSignalId = fields[1].toLong()
+            lastActivityAt = fields[2].toLong()
+            val score = fields[3].toInt()
+            if (score != NO_SCORE) recordScore(score, fields[4].toLong())
+            true
+        } catch (e: Exception) {
+            clear()
+            false
+        }
+    }
+}
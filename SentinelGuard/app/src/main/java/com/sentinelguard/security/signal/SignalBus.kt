@@ -0,0 +1,52 @@
+package com.sentinelguard.security.signal
+
+import com.sentinelguard.domain.model.SignalType
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * A signal that was just recorded
+ */
+data class SignalEvent(
+    val type: SignalType,
+    val timestamp: Long
+)
+
+/**
+ * SignalBus: In-Process Stream of Recorded Signals
+ *
+ * WHY THIS EXISTS:
+ * Lets consumers such as risk scoring react to a signal when it is
+ * stored instead of polling the database for it.
+ *
+ * DESIGN:
+ * - Published right after a signal is written, by whoever writes it
+ * - Never blocks the publisher: when subscribers fall behind the oldest
+ *   events are dropped, the signals themselves are still in the database
+ * - No replay; a subscriber only sees signals recorded after it joined
+ */
+@Singleton
+class SignalBus @Inject constructor() {
+
+    companion object {
+        private const val BUFFER_CAPACITY = 64
+    }
+
+    private val eventsFlow = MutableSharedFlow<SignalEvent>(
+        extraBufferCapacity = BUFFER_CAPACITY,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+
+    val events: SharedFlow<SignalEvent> = eventsFlow.asSharedFlow()
+
+    /**
+     * Announces a recorded signal; safe to call from any thread
+     */
+    fun publish(type: SignalType, timestamp: Long) {
+        eventsFlow.tryEmit(SignalEvent(type, timestamp))
+    }
+}
@@ -5,19 +5,31 @@ import android.app.NotificationChannel
 import android.app.NotificationManager
 import android.app.PendingIntent
 import android.app.Service
+import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
+import android.content.IntentFilter
 import android.os.Build
 import android.os.IBinder
+import android.os.SystemClock
 import androidx.core.app.NotificationCompat
+import androidx.core.content.ContextCompat
 import com.sentinelguard.R
 import com.sentinelguard.data.local.preferences.SecurePreferences
+import com.sentinelguard.scanner.FileSystemScanner
+import com.sentinelguard.scanner.PackageChange
+import com.sentinelguard.scanner.PackageChangeQueue
+import com.sentinelguard.scanner.RealtimeFileMonitor
+import com.sentinelguard.scanner.ThreatSeverity
 import com.sentinelguard.security.alert.SecurityAlertManager
 import com.sentinelguard.security.baseline.BaselineEngine
 import com.sentinelguard.security.collector.AppUsageTracker
+import com.sentinelguard.security.risk.RiskRecomputeDebouncer
 import com.sentinelguard.security.risk.RiskScoringEngine
+import com.sentinelguard.security.signal.SignalBus
 import dagger.hilt.android.AndroidEntryPoint
 import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.Channel
 import javax.inject.Inject
 
 /**
@@ -26,9 +38,16 @@ import javax.inject.Inject
  * Runs in background and periodically:
  * - Collects app usage data
  * - Updates baselines
+ * 
+ * Whenever new signals call for it (within seconds for urgent ones) or
+ * at least once per heartbeat:
  * - Calculates risk scores
  * - Triggers alerts if needed
  * - Logs all security events
+ * 
+ * It also:
+ * - Watches scan directories for newly dropped suspicious files
+ * - Analyzes apps as soon as they are installed or updated
  */
 @AndroidEntryPoint
 class MonitoringService : Service() {
@@ -37,7 +56,16 @@ class MonitoringService : Service() {
         const val NOTIFICATION_CHANNEL_ID = "sentinel_monitoring"
         const val NOTIFICATION_CHANNEL_ALERTS = "sentinel_alerts"
         const val NOTIFICATION_ID = 1001
+        // Tagged per file, so one slot serves every suspicious file
+        private const val FILE_THREAT_NOTIFICATION_ID = NOTIFICATION_ID + 2
+        // Tagged per package
+        private const val APP_THREAT_NOTIFICATION_ID = NOTIFICATION_ID + 3
+        // Posted by ScheduledScanWorker
+        const val SCAN_THREAT_NOTIFICATION_ID = NOTIFICATION_ID + 4
         private const val MONITORING_INTERVAL_MS = 15 * 60 * 1000L // 15 minutes
+        private const val URGENT_RECOMPUTE_DELAY_MS = 2_000L
+        private const val RECOMPUTE_DELAY_MS = 60 * 1000L
+        private const val RISK_HEARTBEAT_MS = 60 * 60 * 1000L // Keeps the score decaying
         
         fun start(context: Context) {
             val intent = Intent(context, MonitoringService::class.java)
@@ -51,6 +79,38 @@ class MonitoringService : Service() {
         fun stop(context: Context) {
             context.stopService(Intent(context, MonitoringService::class.java))
         }
+        
+        /**
+         * Create the monitoring and alert channels; safe to call repeatedly
+         */
+        fun createNotificationChannels(context: Context) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                // Monitoring channel (low priority)
+                val monitoringChannel = NotificationChannel(
+                    NOTIFICATION_CHANNEL_ID,
+                    "Security Monitoring",
+                    NotificationManager.IMPORTANCE_LOW
+                ).apply {
+                    description = "Shows when SentinelGuard is monitoring for security threats"
+                    setShowBadge(false)
+                }
+            
+                // Alerts channel (high priority)
+                val alertsChannel = NotificationChannel(
+                    NOTIFICATION_CHANNEL_ALERTS,
+                    "Security Alerts",
+                    NotificationManager.IMPORTANCE_HIGH
+                ).apply {
+                    description = "Important security alerts that require attention"
+                    setShowBadge(true)
+                    enableVibration(true)
+                }
+            
+                val notificationManager = context.getSystemService(NotificationManager::class.java)
+                notificationManager.createNotificationChannel(monitoringChannel)
+                notificationManager.createNotificationChannel(alertsChannel)
+            }
+        }
     }
     
     @Inject lateinit var appUsageTracker: AppUsageTracker
@@ -58,14 +118,34 @@ class MonitoringService : Service() {
     @Inject lateinit var riskScoringEngine: RiskScoringEngine
     @Inject lateinit var securePreferences: SecurePreferences
     @Inject lateinit var alertManager: SecurityAlertManager
+    @Inject lateinit var fileMonitor: RealtimeFileMonitor
+    @Inject lateinit var packageChangeQueue: PackageChangeQueue
+    @Inject lateinit var signalBus: SignalBus
     
     private val serviceScope = CoroutineScope(Dispatchers.Default + SupervisorJob())
     private var monitoringJob: Job? = null
     
+    // Package broadcasts are not delivered to manifest receivers since API 26
+    private val packageReceiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context, intent: Intent) {
+            val packageName = intent.data?.schemeSpecificPart ?: return
+            val replacing = intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)
+            val change = when (intent.action) {
+                Intent.ACTION_PACKAGE_ADDED -> if (replacing) return else PackageChange.INSTALLED
+                Intent.ACTION_PACKAGE_REPLACED -> PackageChange.UPDATED
+                Intent.ACTION_PACKAGE_REMOVED -> if (replacing) return else PackageChange.REMOVED
+                else -> return
+            }
+            packageChangeQueue.enqueue(packageName, change)
+        }
+    }
+    
     override fun onCreate() {
         super.onCreate()
-        createNotificationChannels()
+        createNotificationChannels(this)
         alertManager.logEvent("SERVICE", "Monitoring service started")
+        startFileMonitoring()
+        startPackageMonitoring()
     }
     
     override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
@@ -78,6 +158,9 @@ class MonitoringService : Service() {
         super.onDestroy()
         alertManager.logEvent("SERVICE", "Monitoring service stopped")
         monitoringJob?.cancel()
+        fileMonitor.stop()
+        unregisterReceiver(packageReceiver)
+        packageChangeQueue.stop()
         serviceScope.cancel()
     }
     
@@ -86,28 +169,115 @@ class MonitoringService : Service() {
     private fun startMonitoring() {
         monitoringJob?.cancel()
         monitoringJob = serviceScope.launch {
+            val debouncer = RiskRecomputeDebouncer(URGENT_RECOMPUTE_DELAY_MS, RECOMPUTE_DELAY_MS, RISK_HEARTBEAT_MS)
+            val wakeups = Channel<Unit>(Channel.CONFLATED)
+            
+            // Only signals that carry risk trigger a check
+            launch {
+                signalBus.events.collect { event ->
+                    val urgent = riskScoringEngine.isUrgent(event.type)
+                    if (urgent || riskScoringEngine.getSignalWeight(event.type) > 0) {
+                        debouncer.request(urgent, SystemClock.elapsedRealtime())
+                        wakeups.trySend(Unit)
+                    }
+                }
+            }
+            
+            // Baselines and usage keep their own cadence, independent of signals
+            launch {
+                while (isActive) {
+                    try {
+                        performBaselineUpdate()
+                    } catch (e: Exception) {
+                        alertManager.logEvent("ERROR", "Baseline update failed: ${e.message}")
+                    }
+                    delay(MONITORING_INTERVAL_MS)
+                }
+            }
+            
             while (isActive) {
+                val wait = debouncer.nextDueAt() - SystemClock.elapsedRealtime()
+                if (wait > 0) {
+                    withTimeoutOrNull(wait) { wakeups.receive() }
+                    continue
+                }
+                if (!debouncer.takeIfDue(SystemClock.elapsedRealtime())) continue
                 try {
                     performSecurityCheck()
                 } catch (e: Exception) {
                     alertManager.logEvent("ERROR", "Security check failed: ${e.message}")
                 }
-                delay(MONITORING_INTERVAL_MS)
             }
         }
     }
     
-    private suspend fun performSecurityCheck() {
+    private fun startFileMonitoring() {
+        fileMonitor.start(serviceScope)
+        serviceScope.launch {
+            fileMonitor.findings.collect { file ->
+                alertManager.logEvent("FILE", "Suspicious file detected: ${file.path} (${file.reason})")
+                if (file.severity >= FileSystemScanner.FileThreatSeverity.MEDIUM) {
+                    showFileThreatNotification(file)
+                }
+            }
+        }
+    }
+    
+    private fun startPackageMonitoring() {
+        packageChangeQueue.start(serviceScope)
+        serviceScope.launch {
+            packageChangeQueue.verdicts.collect { verdict ->
+                verdict.threats.forEach { threat ->
+                    alertManager.logEvent("APP", "${verdict.change} ${verdict.packageName}: ${threat.description}")
+                }
+                verdict.privacyRisk?.let { risk ->
+                    alertManager.logEvent("PRIVACY", "${verdict.packageName}: ${risk.reason}")
+                }
+                verdict.threats.filter { it.severity >= ThreatSeverity.MEDIUM }
+                    .maxByOrNull { it.severity }
+                    ?.let { showAppThreatNotification(verdict.packageName, verdict.appName, it.description) }
+            }
+        }
+        
+        val filter = IntentFilter().apply {
+            addAction(Intent.ACTION_PACKAGE_ADDED)
+            addAction(Intent.ACTION_PACKAGE_REPLACED)
+            addAction(Intent.ACTION_PACKAGE_REMOVED)
+            addDataScheme("package")
+        }
+        ContextCompat.registerReceiver(this, packageReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED)
+    }
+    
+    private suspend fun performBaselineUpdate() {
         // Check if session is active
         if (!securePreferences.isSessionActive) {
             return
         }
         
-        alertManager.logEvent("CHECK", "Performing periodic security check")
+        alertManager.logEvent("CHECK", "Performing periodic baseline update")
         
         // Update baselines with latest data
         baselineEngine.updateBaselines()
         
+        // App usage tracking for behavioral analysis
+        val endTime = System.currentTimeMillis()
+        val startTime = endTime - MONITORING_INTERVAL_MS
+        val sessions = appUsageTracker.getAppSessions(startTime = startTime, endTime = endTime)
+        
+        // Log app usage
+        if (sessions.isNotEmpty()) {
+            alertManager.logEvent("USAGE", "${sessions.size} app sessions in last interval")
+        }
+    }
+    
+    private suspend fun performSecurityCheck() {
+        // Check if session is active
+        if (!securePreferences.isSessionActive) {
+            return
+        }
+        
+        alertManager.logEvent("CHECK", "Performing security check")
+        
         // Calculate current risk
         val riskScore = riskScoringEngine.calculateRiskScore()
         
@@ -126,45 +296,6 @@ class MonitoringService : Service() {
                 showAlertNotification(riskScore.totalScore)
             }
         }
-        
-        // App usage tracking for behavioral analysis
-        val endTime = System.currentTimeMillis()
-        val startTime = endTime - MONITORING_INTERVAL_MS
-        val sessions = appUsageTracker.getAppSessions(startTime = startTime, endTime = endTime)
-        
-        // Log app usage
-        if (sessions.isNotEmpty()) {
-            alertManager.logEvent("USAGE", "${sessions.size} app sessions in last interval")
-        }
-    }
-    
-    private fun createNotificationChannels() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            // Monitoring channel (low priority)
-            val monitoringChannel = NotificationChannel(
-                NOTIFICATION_CHANNEL_ID,
-                "Security Monitoring",
-                NotificationManager.IMPORTANCE_LOW
-            ).apply {
-                description = "Shows when SentinelGuard is monitoring for security threats"
-                setShowBadge(false)
-            }
-            
-            // Alerts channel (high priority)
-            val alertsChannel = NotificationChannel(
-                NOTIFICATION_CHANNEL_ALERTS,
-                "Security Alerts",
-                NotificationManager.IMPORTANCE_HIGH
-            ).apply {
-                description = "Important security alerts that require attention"
-                setShowBadge(true)
-                enableVibration(true)
-            }
-            
-            val notificationManager = getSystemService(NotificationManager::class.java)
-            notificationManager.createNotificationChannel(monitoringChannel)
-            notificationManager.createNotificationChannel(alertsChannel)
-        }
     }
     
     private fun createNotification(): Notification {
@@ -232,4 +363,46 @@ class MonitoringService : Service() {
         val notificationManager = getSystemService(NotificationManager::class.java)
         notificationManager.notify(NOTIFICATION_ID + 1, notification)
     }
+    
+    private fun showFileThreatNotification(file: FileSystemScanner.SuspiciousFile) {
+        val pendingIntent = PendingIntent.getActivity(
+            this,
+            2,
+            packageManager.getLaunchIntentForPackage(packageName),
+            PendingIntent.FLAG_IMMUTABLE
+        )
+        
+        val notification = NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ALERTS)
+            .setContentTitle("⚠ Suspicious File: ${file.name}")
+            .setContentText(file.reason)
+            .setSmallIcon(R.drawable.ic_launcher_foreground)
+            .setAutoCancel(true)
+            .setContentIntent(pendingIntent)
+            .setPriority(NotificationCompat.PRIORITY_HIGH)
+            .build()
+        
+        val notificationManager = getSystemService(NotificationManager::class.java)
+        notificationManager.notify(file.path, FILE_THREAT_NOTIFICATION_ID, notification)
+    }
+    
+    private fun showAppThreatNotification(threatPackage: String, appName: String, description: String) {
+        val pendingIntent = PendingIntent.getActivity(
+            this,
+            3,
+            packageManager.getLaunchIntentForPackage(packageName),
+            PendingIntent.FLAG_IMMUTABLE
+        )
+        
+        val notification = NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ALERTS)
+            .setContentTitle("🚨 Threat in $appName")
+            .setContentText(description)
+            .setSmallIcon(R.drawable.ic_launcher_foreground)
+            .setAutoCancel(true)
+            .setContentIntent(pendingIntent)
+            .setPriority(NotificationCompat.PRIORITY_HIGH)
+            .build()
+        
+        val notificationManager = getSystemService(NotificationManager::class.java)
+        notificationManager.notify(threatPackage, APP_THREAT_NOTIFICATION_ID, notification)
+    }
 }
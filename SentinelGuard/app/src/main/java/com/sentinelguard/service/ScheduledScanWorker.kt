@@ -0,0 +1,235 @@
+package com.sentinelguard.service
+
+import android.app.NotificationManager
+import android.app.PendingIntent
+import android.content.Context
+import android.util.Log
+import androidx.core.app.NotificationCompat
+import androidx.hilt.work.HiltWorker
+import androidx.work.BackoffPolicy
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import com.sentinelguard.R
+import com.sentinelguard.data.local.preferences.SecurePreferences
+import com.sentinelguard.scanner.DeviceLoadMonitor
+import com.sentinelguard.scanner.FileScanCheckpoint
+import com.sentinelguard.scanner.FileSystemScanner
+import com.sentinelguard.scanner.MalwareScanner
+import com.sentinelguard.scanner.ScanBudget
+import com.sentinelguard.scanner.ScanResult
+import com.sentinelguard.scanner.ThreatSeverity
+import com.sentinelguard.scanner.result
+import com.sentinelguard.security.alert.SecurityAlertManager
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.launch
+import java.util.concurrent.TimeUnit
+
+/**
+ * ScheduledScanWorker: Background App and File Scans
+ *
+ * Runs once a day while the device is charging and the screen is off:
+ * - App scan: only new or updated packages are analyzed (verdict cache)
+ * - File scan: unchanged files are not hashed again (hash cache)
+ *
+ * Thermal status and battery level are polled during both scans. When
+ * the allowed [ScanBudget] changes the file scan is restarted from its
+ * last checkpoint with the new concurrency; when the device heats up or
+ * the screen turns on the work stops and is retried with backoff.
+ * Threats found are logged and raised as an alert notification.
+ */
+@HiltWorker
+class ScheduledScanWorker @AssistedInject constructor(
+    @Assisted context: Context,
+    @Assisted params: WorkerParameters,
+    private val malwareScanner: MalwareScanner,
+    private val fileSystemScanner: FileSystemScanner,
+    private val loadMonitor: DeviceLoadMonitor,
+    private val securePreferences: SecurePreferences,
+    private val alertManager: SecurityAlertManager
+) : CoroutineWorker(context, params) {
+
+    companion object {
+        private const val TAG = "ScheduledScanWorker"
+        const val WORK_NAME = "scheduled_scan"
+        private const val SCAN_INTERVAL_HOURS = 24L
+        private const val BACKOFF_MINUTES = 30L
+        private const val LOAD_CHECK_INTERVAL_MS = 30_000L
+
+        /**
+         * Schedule the daily scan; keeps an existing schedule
+         */
+        fun schedule(context: Context) {
+            // Device-idle constraints rule out backoff, so idleness is
+            // checked by the worker itself
+            val constraints = Constraints.Builder()
+                .setRequiresCharging(true)
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build()
+
+            val request = PeriodicWorkRequestBuilder<ScheduledScanWorker>(SCAN_INTERVAL_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_MINUTES, TimeUnit.MINUTES)
+                .build()
+
+            WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request)
+        }
+
+        fun cancel(context: Context) {
+            WorkManager.getInstance(context).cancelUniqueWork(WORK_NAME)
+        }
+    }
+
+    override suspend fun doWork(): Result {
+        val budget = allowedBudget() ?: return Result.retry()
+        Log.i(TAG, "Starting scheduled scan with $budget")
+
+        // The app scan has no concurrency to adjust, so it only stops
+        var appInterrupted = false
+        val appResult = try {
+            withLoadWatchdog(
+                keepRunning = { it != null },
+                onInterrupt = {
+                    Log.i(TAG, "Device busy, interrupting app scan")
+                    appInterrupted = true
+                }
+            ) {
+                malwareScanner.scanEvents().result()
+            }
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.e(TAG, "Scheduled app scan failed", e)
+            null
+        }
+        if (appInterrupted || allowedBudget() == null) return Result.retry()
+
+        val fileResult = if (fileSystemScanner.hasFullStorageAccess()) {
+            scanFiles(budget) ?: return Result.retry()
+        } else null
+
+        val threats = (appResult?.threats?.size ?: 0) + (fileResult?.suspiciousFiles?.count {
+            it.severity >= FileSystemScanner.FileThreatSeverity.HIGH
+        } ?: 0)
+        securePreferences.lastScanTime = System.currentTimeMillis()
+        securePreferences.lastScanThreatsFound = threats
+        appResult?.let { securePreferences.lastScanAppsScanned = it.appsScanned }
+
+        Log.i(TAG, "Scheduled scan complete. Threats: $threats, files: ${fileResult?.totalFilesScanned ?: 0}")
+        reportThreats(appResult, fileResult)
+        return Result.success()
+    }
+
+    /**
+     * Log every threat and, for those of at least medium severity, post
+     * one alert notification like MonitoringService does for live findings
+     */
+    private fun reportThreats(appResult: ScanResult?, fileResult: FileSystemScanner.FileScanResult?) {
+        appResult?.threats?.forEach { threat ->
+            alertManager.logEvent("APP", "Scheduled scan, ${threat.appName}: ${threat.description}")
+        }
+        fileResult?.suspiciousFiles?.forEach { file ->
+            alertManager.logEvent("FILE", "Scheduled scan, suspicious file: ${file.path} (${file.reason})")
+        }
+
+        val alerting = (appResult?.threats?.count { it.severity >= ThreatSeverity.MEDIUM } ?: 0) +
+            (fileResult?.suspiciousFiles?.count { it.severity >= FileSystemScanner.FileThreatSeverity.MEDIUM } ?: 0)
+        if (alerting == 0) return
+
+        MonitoringService.createNotificationChannels(applicationContext)
+        val pendingIntent = PendingIntent.getActivity(
+            applicationContext,
+            4,
+            applicationContext.packageManager.getLaunchIntentForPackage(applicationContext.packageName),
+            PendingIntent.FLAG_IMMUTABLE
+        )
+
+        val notification = NotificationCompat.Builder(applicationContext, MonitoringService.NOTIFICATION_CHANNEL_ALERTS)
+            .setContentTitle("🚨 Scheduled scan found $alerting threat(s)")
+            .setContentText("Open SentinelGuard to review them")
+            .setSmallIcon(R.drawable.ic_launcher_foreground)
+            .setAutoCancel(true)
+            .setContentIntent(pendingIntent)
+            .setPriority(NotificationCompat.PRIORITY_HIGH)
+            .build()
+
+        val notificationManager = applicationContext.getSystemService(NotificationManager::class.java)
+        notificationManager.notify(MonitoringService.SCAN_THREAT_NOTIFICATION_ID, notification)
+    }
+
+    /**
+     * Budget for the scan right now, or null while the device is in use
+     * or should not be loaded
+     */
+    private fun allowedBudget(): ScanBudget? {
+        if (loadMonitor.isInteractive()) return null
+        return loadMonitor.currentBudget()
+    }
+
+    /**
+     * File scan that follows budget changes; null if it had to stop
+     */
+    private suspend fun scanFiles(initial: ScanBudget): FileSystemScanner.FileScanResult? {
+        var budget: ScanBudget? = initial
+        var checkpoint: FileScanCheckpoint? = null
+
+        while (true) {
+            val current = budget ?: return null
+            var interrupted = false
+            val result = withLoadWatchdog(
+                keepRunning = { it == current },
+                onInterrupt = { allowed ->
+                    Log.i(TAG, "Scan budget changed to $allowed, interrupting file scan")
+                    budget = allowed
+                    interrupted = true
+                }
+            ) {
+                fileSystemScanner.scanEvents(checkpoint, current) { checkpoint = it }.result()
+            }
+            if (result != null || !interrupted) return result
+        }
+    }
+
+    /**
+     * Runs [scan] while polling the allowed budget. Once [keepRunning]
+     * rejects it, [onInterrupt] gets the new budget and the scan is
+     * cancelled; the result is then null.
+     */
+    private suspend fun <T> withLoadWatchdog(
+        keepRunning: (ScanBudget?) -> Boolean,
+        onInterrupt: (ScanBudget?) -> Unit,
+        scan: suspend () -> T?
+    ): T? = coroutineScope {
+        val job = async { scan() }
+        val watchdog = launch {
+            while (true) {
+                delay(LOAD_CHECK_INTERVAL_MS)
+                val allowed = allowedBudget()
+                if (!keepRunning(allowed)) {
+                    onInterrupt(allowed)
+                    job.cancel()
+                    break
+                }
+            }
+        }
+        try {
+            job.await()
+        } catch (e: CancellationException) {
+            ensureActive() // Rethrow if the worker itself was stopped
+            null
+        } finally {
+            watchdog.cancel()
+        }
+    }
+}
@@ -311,6 +311,20 @@ private fun ScanProgressContent(
                 }
             }
         }
+
+        // Latest findings, shown as they are discovered
+        uiState.recentFindings.forEach { finding ->
+            Text(
+                finding.title,
+                modifier = Modifier
+                    .fillMaxWidth()
+                    .padding(top = 8.dp),
+                style = MaterialTheme.typography.bodySmall,
+                color = TextSecondary,
+                maxLines = 1,
+                overflow = TextOverflow.Ellipsis
+            )
+        }
         
         Spacer(modifier = Modifier.height(32.dp))
         
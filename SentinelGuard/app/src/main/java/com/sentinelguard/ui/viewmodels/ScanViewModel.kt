@@ -27,6 +27,7 @@ data class ScanUiState(
     val scannedCount: Int = 0,
     val totalCount: Int = 0,
     val threatsFound: Int = 0,
+    val recentFindings: List<ScanFinding> = emptyList(),  // Latest few only; see threatsFound for the count
     val phase: ScanPhase = ScanPhase.INITIALIZING,
     val progress: Float = 0f,
     val scanComplete: Boolean = false,
@@ -55,6 +56,11 @@ class ScanViewModel @Inject constructor(
     private val securePreferences: SecurePreferences
 ) : ViewModel() {
     
+    companion object {
+        // Findings kept for the live list; a deep scan can report thousands
+        private const val RECENT_FINDINGS = 3
+    }
+    
     private val _uiState = MutableStateFlow(ScanUiState())
     val uiState: StateFlow<ScanUiState> = _uiState.asStateFlow()
     
@@ -94,6 +100,7 @@ class ScanViewModel @Inject constructor(
                 deepScanResult = null,
                 scannedCount = 0,
                 threatsFound = 0,
+                recentFindings = emptyList(),
                 errorMessage = null
             )}
             
@@ -149,26 +156,37 @@ class ScanViewModel @Inject constructor(
                 deepScanResult = null,
                 scannedCount = 0,
                 threatsFound = 0,
+                recentFindings = emptyList(),
                 errorMessage = null
             )}
             
             try {
-                scanner.performFullScan().collect { progress ->
-                    val progressPercent = if (progress.totalCount > 0) {
-                        progress.scannedCount.toFloat() / progress.totalCount
-                    } else 0f
-                    
-                    _uiState.update { it.copy(
-                        currentItem = progress.currentItem,
-                        scannedCount = progress.scannedCount,
-                        totalCount = progress.totalCount,
-                        threatsFound = progress.threatsFound,
-                        phase = progress.phase,
-                        progress = progressPercent
-                    )}
+                var scanResult: ScanResult? = null
+                scanner.scanEvents().collect { event ->
+                    when (event) {
+                        is ScanEvent.Progress -> {
+                            val progress = event.progress
+                            val progressPercent = if (progress.totalCount > 0) {
+                                progress.scannedCount.toFloat() / progress.totalCount
+                            } else 0f
+                            
+                            _uiState.update { it.copy(
+                                currentItem = progress.currentItem,
+                                scannedCount = progress.scannedCount,
+                                totalCount = progress.totalCount,
+                                threatsFound = progress.threatsFound,
+                                phase = progress.phase,
+                                progress = progressPercent
+                            )}
+                        }
+                        is ScanEvent.Finding -> _uiState.update { it.copy(
+                            recentFindings = it.recentFindings.plusRecent(event.finding)
+                        )}
+                        is ScanEvent.PhaseResult -> scanResult = event.result
+                    }
                 }
                 
-                val result = scanner.getFinalResult(flowOf())
+                val result = scanResult ?: scanner.getFinalResult(flowOf())
                 saveScanResults(result)
                 
                 _uiState.update { it.copy(
@@ -204,35 +222,51 @@ class ScanViewModel @Inject constructor(
                 deepScanResult = null,
                 scannedCount = 0,
                 threatsFound = 0,
+                recentFindings = emptyList(),
                 errorMessage = null,
                 deepScanPhase = DeepScanEngine.DeepScanPhase.INITIALIZING
             )}
             
             try {
-                deepScanEngine.performDeepScan().collect { progress ->
-                    _uiState.update { it.copy(
-                        currentItem = progress.currentTask,
-                        scannedCount = progress.itemsProcessed,
-                        totalCount = progress.totalItems,
-                        progress = progress.overallProgress,
-                        deepScanPhase = progress.phase
-                    )}
+                var scanResult: DeepScanEngine.DeepScanResult? = null
+                deepScanEngine.performDeepScan().collect { event ->
+                    when (event) {
+                        is ScanEvent.Progress -> {
+                            val progress = event.progress
+                            _uiState.update { it.copy(
+                                currentItem = progress.currentTask,
+                                scannedCount = progress.itemsProcessed,
+                                totalCount = progress.totalItems,
+                                progress = progress.overallProgress,
+                                deepScanPhase = progress.phase
+                            )}
+                        }
+                        // Render findings as they are discovered; only likely threats count
+                        is ScanEvent.Finding -> _uiState.update { it.copy(
+                            recentFindings = it.recentFindings.plusRecent(event.finding),
+                            threatsFound = it.threatsFound + if (event.finding.isThreat()) 1 else 0
+                        )}
+                        is ScanEvent.PhaseResult -> scanResult = event.result
+                    }
                 }
                 
-                // Get final deep scan result
-                val deepResult = deepScanEngine.getFinalResult()
+                // Final deep scan result, folded from the event stream
+                val deepResult = scanResult ?: deepScanEngine.getFinalResult()
+                    ?: throw IllegalStateException("Deep scan produced no result")
                 
                 // Save scan stats
                 val now = System.currentTimeMillis()
                 securePreferences.lastScanTime = now
-                securePreferences.lastScanThreatsFound = deepResult.criticalIssuesCount + deepResult.highIssuesCount
+                val threats = deepResult.criticalIssuesCount + deepResult.highIssuesCount
+                securePreferences.lastScanThreatsFound = threats
                 
                 _uiState.update { it.copy(
                     isScanning = false,
                     scanComplete = true,
                     deepScanResult = deepResult,
+                    threatsFound = threats,
                     lastScanTime = now,
-                    lastScanThreats = deepResult.criticalIssuesCount + deepResult.highIssuesCount,
+                    lastScanThreats = threats,
                     deepScanPhase = DeepScanEngine.DeepScanPhase.COMPLETE
                 )}
             } catch (e: Exception) {
@@ -301,6 +335,20 @@ class ScanViewModel @Inject constructor(
         }
     }
     
+    /**
+     * Malware and malicious files; privacy, network and integrity
+     * findings are issues, not threats
+     */
+    private fun ScanFinding.isThreat(): Boolean = when (this) {
+        is ScanFinding.App -> threat.severity >= ThreatSeverity.HIGH
+        is ScanFinding.File -> file.severity >= FileSystemScanner.FileThreatSeverity.HIGH
+        else -> false
+    }
+    
+    private fun List<ScanFinding>.plusRecent(finding: ScanFinding): List<ScanFinding> {
+        return (this + finding).takeLast(RECENT_FINDINGS)
+    }
+    
     /**
      * Get risk level color (for UI)
      */
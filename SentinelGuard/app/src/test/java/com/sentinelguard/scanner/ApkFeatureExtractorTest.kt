@@ -0,0 +1,261 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+/**
+ * Unit tests for ApkFeatureExtractor, DexFeatureReader and BinaryManifestReader.
+ */
+class ApkFeatureExtractorTest {
+
+    private fun le(size: Int): ByteBuffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN)
+
+    /**
+     * Minimal DEX: [types] as descriptors, one method reference per entry
+     * of [methodClasses] and a class def per entry of [definedClasses]
+     */
+    private fun dex(types: List<String>, methodClasses: List<Int>, definedClasses: List<Int>): ByteArray {
+        val stringIdsOff = 0x70
+        val typeIdsOff = stringIdsOff + types.size * 4
+        val methodIdsOff = typeIdsOff + types.size * 4
+        val classDefsOff = methodIdsOff + methodClasses.size * 8
+        val dataOff = classDefsOff + definedClasses.size * 32
+
+        val data = ByteArrayOutputStream()
+        val stringOffsets = types.map { descriptor ->
+            val offset = dataOff + data.size()
+            data.write(descriptor.length)
+            data.write(descriptor.toByteArray())
+            data.write(0)
+            offset
+        }
+
+        val dex = le(dataOff + data.size())
+        dex.put("dex\n035\u0000".toByteArray())
+        dex.putInt(40, 0x12345678)
+        dex.putInt(56, types.size).putInt(60, stringIdsOff)
+        dex.putInt(64, types.size).putInt(68, typeIdsOff)
+        dex.putInt(88, methodClasses.size).putInt(92, methodIdsOff)
+        dex.putInt(96, definedClasses.size).putInt(100, classDefsOff)
+        dex.position(stringIdsOff)
+        stringOffsets.forEach { dex.putInt(it) }
+        types.indices.forEach { dex.putInt(it) }
+        methodClasses.forEach { dex.putShort(it.toShort()).putShort(0).putInt(0) }
+        definedClasses.forEach { dex.putInt(it).put(ByteArray(28)) }
+        dex.put(data.toByteArray())
+        return dex.array()
+    }
+
+    /**
+     * Minimal compiled XML writer: UTF-8 string pool, then elements
+     */
+    private class AxmlBuilder {
+        private val strings = mutableListOf<String>()
+        private val nodes = ByteArrayOutputStream()
+
+        private fun index(value: String): Int {
+            val i = strings.indexOf(value)
+            if (i >= 0) return i
+            strings.add(value)
+            return strings.size - 1
+        }
+
+        /**
+         * Attribute values: String or Boolean
+         */
+        fun start(name: String, vararg attributes: Pair<String, Any>): AxmlBuilder {
+            val chunk = ByteBuffer.allocate(36 + 20 * attributes.size).order(ByteOrder.LITTLE_ENDIAN)
+            chunk.putShort(0x0102).putShort(16).putInt(chunk.capacity()).putInt(1).putInt(-1)
+            chunk.putInt(-1).putInt(index(name)).putShort(20).putShort(20)
+            chunk.putShort(attributes.size.toShort()).putShort(0).putShort(0).putShort(0)
+            attributes.forEach { (attribute, value) ->
+                chunk.putInt(-1).putInt(index(attribute))
+                when (value) {
+                    is String -> chunk.putInt(index(value)).putShort(8).put(0).put(0x03).putInt(index(value))
+                    is Boolean -> chunk.putInt(-1).putShort(8).put(0).put(0x12).putInt(if (value) -1 else 0)
+                }
+            }
+            nodes.write(chunk.array())
+            return this
+        }
+
+        fun end(name: String): AxmlBuilder {
+            val chunk = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN)
+            chunk.putShort(0x0103).putShort(16).putInt(24).putInt(1).putInt(-1).putInt(-1).putInt(index(name))
+            nodes.write(chunk.array())
+            return this
+        }
+
+        fun build(): ByteArray {
+            val data = ByteArrayOutputStream()
+            val offsets = strings.map { value ->
+                val bytes = value.toByteArray()
+                data.size().also {
+                    data.write(value.length)
+                    data.write(bytes.size)
+                    data.write(bytes)
+                    data.write(0)
+                }
+            }
+            while (data.size() % 4 != 0) data.write(0)
+
+            val poolSize = 28 + strings.size * 4 + data.size()
+            val pool = ByteBuffer.allocate(poolSize).order(ByteOrder.LITTLE_ENDIAN)
+            pool.putShort(0x0001).putShort(28).putInt(poolSize)
+            pool.putInt(strings.size).putInt(0).putInt(0x100).putInt(28 + strings.size * 4).putInt(0)
+            offsets.forEach { pool.putInt(it) }
+            pool.put(data.toByteArray())
+
+            val total = 8 + poolSize + nodes.size()
+            val header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+            header.putShort(0x0003).putShort(8).putInt(total)
+            return header.array() + pool.array() + nodes.toByteArray()
+        }
+    }
+
+    private fun manifest(): ByteArray {
+        return AxmlBuilder()
+            .start("manifest")
+            .start("application")
+            .start("receiver", "name" to ".Boot", "exported" to false)
+            .start("intent-filter").start("action", "name" to "android.intent.action.BOOT_COMPLETED")
+            .end("action").end("intent-filter")
+            .start("intent-filter").start("action", "name" to "android.provider.Telephony.SMS_RECEIVED")
+            .end("action").end("intent-filter")
+            .end("receiver")
+            .start("service", "name" to ".Spy", "permission" to "android.permission.BIND_ACCESSIBILITY_SERVICE")
+            .start("intent-filter").end("intent-filter")
+            .end("service")
+            .start("activity", "name" to ".Main", "exported" to true)
+            .end("activity")
+            .end("application")
+            .end("manifest")
+            .build()
+    }
+
+    private val sampleDex = dex(
+        types = listOf(
+            "La/a;",
+            "Lcom/example/Main;",
+            "Ldalvik/system/DexClassLoader;",
+            "Landroid/telephony/SmsManager;"
+        ),
+        methodClasses = listOf(2, 3, 3),
+        definedClasses = listOf(0, 1)
+    )
+
+    private fun apk(vararg entries: Pair<String, ByteArray>, stored: Boolean = false): File {
+        val file = File.createTempFile("features", ".apk").apply { deleteOnExit() }
+        ZipOutputStream(file.outputStream()).use { zip ->
+            entries.forEach { (name, content) ->
+                val entry = ZipEntry(name)
+                if (stored) {
+                    entry.method = ZipEntry.STORED
+                    entry.size = content.size.toLong()
+                    entry.crc = CRC32().apply { update(content) }.value
+                }
+                zip.putNextEntry(entry)
+                zip.write(content)
+                zip.closeEntry()
+            }
+        }
+        return file
+    }
+
+    private fun extract(file: File): AppFeatureVector {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            ApkFeatureExtractor.extract(channel, ApkStructureAnalyzer.analyze(channel)!!)
+        }
+    }
+
+    @Test
+    fun `method references are counted per API family`() {
+        val dex = DexFeatureReader.read(ByteArrayInputStream(sampleDex))!!
+
+        assertEquals(mapOf(AppFeature.DYNAMIC_CODE_LOADING to 1, AppFeature.SMS_API to 2), dex.familyRefs)
+        assertEquals(2, dex.definedClasses)
+        assertEquals(1, dex.shortNamedClasses)
+    }
+
+    @Test
+    fun `non-dex input is rejected`() {
+        assertNull(DexFeatureReader.read(ByteArrayInputStream(ByteArray(0x70))))
+    }
+
+    @Test
+    fun `short names are judged by the outermost class`() {
+        assertTrue(DexFeatureReader.isShortName("La/b/c;"))
+        assertTrue(DexFeatureReader.isShortName("Lx/ab\$1;"))
+        assertFalse(DexFeatureReader.isShortName("Lcom/example/Main\$a;"))
+    }
+
+    @Test
+    fun `manifest components and hooks are read`() {
+        val features = BinaryManifestReader.read(ByteArrayInputStream(manifest()))!!
+
+        assertEquals(1, features.activities)
+        assertEquals(1, features.services)
+        assertEquals(1, features.receivers)
+        assertEquals(2, features.exportedComponents)
+        assertTrue(features.hasBootReceiver)
+        assertTrue(features.hasSmsReceiver)
+        assertTrue(features.hasAccessibilityService)
+        assertFalse(features.hasDeviceAdminReceiver)
+    }
+
+    @Test
+    fun `vector combines dex, layout and manifest features`() {
+        val vector = extract(apk(
+            "AndroidManifest.xml" to manifest(),
+            "classes.dex" to sampleDex,
+            "assets/payload.dex" to ByteArray(16)
+        ))
+
+        assertEquals(AppFeatureVector.saturate(2, 20), vector[AppFeature.SMS_API], 0f)
+        assertTrue(vector[AppFeature.DYNAMIC_CODE_LOADING] > 0f)
+        assertEquals(0f, vector[AppFeature.REFLECTION], 0f)
+        assertEquals(0.5f, vector[AppFeature.SHORT_CLASS_NAMES], 0f)
+        assertTrue(vector[AppFeature.HIDDEN_DEX] > 0f)
+        assertEquals(1f, vector[AppFeature.SMS_RECEIVER], 0f)
+        assertEquals(AppFeatureVector.saturate(2, 20), vector[AppFeature.EXPORTED_COMPONENTS], 0f)
+    }
+
+    @Test
+    fun `stored entries are read without inflation`() {
+        val vector = extract(apk("classes.dex" to sampleDex, stored = true))
+        assertTrue(vector[AppFeature.SMS_API] > 0f)
+    }
+
+    @Test
+    fun `unreadable entries leave their features unset`() {
+        val vector = extract(apk(
+            "AndroidManifest.xml" to ByteArray(64),
+            "classes.dex" to ByteArray(64)
+        ))
+        assertTrue(vector.values.all { it == 0f })
+    }
+
+    @Test
+    fun `model separates a clean vector from a trojan-like one`() {
+        val clean = AppFeatureVector(FloatArray(AppFeature.entries.size))
+        val trojan = extract(apk(
+            "AndroidManifest.xml" to manifest(),
+            "classes.dex" to sampleDex,
+            "assets/payload.dex" to ByteArray(16)
+        ))
+
+        assertTrue(HeuristicModel.score(clean) < HeuristicModel.MEDIUM_THRESHOLD)
+        assertTrue(HeuristicModel.score(trojan) >= HeuristicModel.MEDIUM_THRESHOLD)
+        assertEquals(AppFeature.SMS_RECEIVER, trojan.activeFeatures().first())
+    }
+}
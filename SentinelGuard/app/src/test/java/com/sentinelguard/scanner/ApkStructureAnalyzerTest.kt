@@ -0,0 +1,140 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+/**
+ * Unit tests for ApkStructureAnalyzer.
+ */
+class ApkStructureAnalyzerTest {
+
+    private fun tempFile(bytes: ByteArray): File {
+        return File.createTempFile("apk", ".apk").apply {
+            deleteOnExit()
+            writeBytes(bytes)
+        }
+    }
+
+    private fun zipBytes(vararg entries: Pair<String, String>): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        ZipOutputStream(bytes).use { zip ->
+            entries.forEach { (name, content) ->
+                zip.putNextEntry(ZipEntry(name))
+                zip.write(content.toByteArray())
+                zip.closeEntry()
+            }
+        }
+        return bytes.toByteArray()
+    }
+
+    private fun apk(vararg entries: Pair<String, String>): File {
+        return tempFile(zipBytes(*entries))
+    }
+
+    /**
+     * Insert an APK Signing Block with one pair of [blockId] before the
+     * central directory of [zip] (which must have no archive comment)
+     */
+    private fun withSigningBlock(zip: ByteArray, blockId: Int): ByteArray {
+        val eocd = zip.size - 22
+        val cdOffset = ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN).getInt(eocd + 16)
+
+        val pairValue = ByteArray(16)
+        val size = 8L + 4 + pairValue.size + 8 + 16
+        val block = ByteBuffer.allocate((size + 8).toInt()).order(ByteOrder.LITTLE_ENDIAN)
+        block.putLong(size)
+        block.putLong(4L + pairValue.size).putInt(blockId).put(pairValue)
+        block.putLong(size)
+        block.put("APK Sig Block 42".toByteArray())
+
+        val result = ByteBuffer.allocate(zip.size + block.capacity()).order(ByteOrder.LITTLE_ENDIAN)
+        result.put(zip, 0, cdOffset).put(block.array()).put(zip, cdOffset, zip.size - cdOffset)
+        result.putInt(eocd + block.capacity() + 16, cdOffset + block.capacity())
+        return result.array()
+    }
+
+    @Test
+    fun `entries and CRCs are read from the central directory`() {
+        val structure = ApkStructureAnalyzer.analyze(apk(
+            "AndroidManifest.xml" to "manifest",
+            "resources.arsc" to "resources"
+        ))!!
+
+        assertEquals(listOf("AndroidManifest.xml", "resources.arsc"), structure.entries.map { it.name })
+        val crc = CRC32().apply { update("manifest".toByteArray()) }.value
+        assertEquals(crc, structure.entries[0].crc32)
+        assertEquals(8L, structure.entries[0].uncompressedSize)
+        assertTrue(structure.hasManifest)
+        assertFalse(structure.hasEncryptedEntries)
+    }
+
+    @Test
+    fun `multidex and native libraries are detected`() {
+        val structure = ApkStructureAnalyzer.analyze(apk(
+            "classes.dex" to "a",
+            "classes2.dex" to "b",
+            "assets/classes3.dex" to "c",
+            "lib/arm64-v8a/libnative.so" to "d",
+            "lib/x86_64/libnative.so" to "e"
+        ))!!
+
+        assertEquals(2, structure.dexCount)
+        assertEquals(setOf("arm64-v8a", "x86_64"), structure.nativeAbis)
+    }
+
+    @Test
+    fun `non-zip file is not a structure`() {
+        val file = tempFile(ByteArray(4096) { it.toByte() })
+        assertNull(ApkStructureAnalyzer.analyze(file))
+    }
+
+    @Test
+    fun `duplicate entry names are reported`() {
+        // ZipOutputStream refuses duplicates, so rename one entry in place
+        val bytes = String(zipBytes("a.dex" to "1", "b.dex" to "2"), Charsets.ISO_8859_1)
+            .replace("b.dex", "a.dex")
+            .toByteArray(Charsets.ISO_8859_1)
+        val file = tempFile(bytes)
+
+        assertEquals(setOf("a.dex"), ApkStructureAnalyzer.analyze(file)!!.duplicateEntries)
+    }
+
+    @Test
+    fun `signing block before the central directory is found`() {
+        val zip = zipBytes("AndroidManifest.xml" to "manifest")
+        val file = tempFile(withSigningBlock(zip, ApkSigningScheme.V2.blockId))
+
+        val structure = ApkStructureAnalyzer.analyze(file)!!
+        assertEquals(setOf(ApkSigningScheme.V2), structure.signingBlock?.schemes)
+        assertTrue(structure.isSigned)
+        assertEquals(listOf("AndroidManifest.xml"), structure.entries.map { it.name })
+    }
+
+    @Test
+    fun `archive without signatures is unsigned`() {
+        val structure = ApkStructureAnalyzer.analyze(apk("AndroidManifest.xml" to "manifest"))!!
+        assertNull(structure.signingBlock)
+        assertFalse(structure.isSigned)
+    }
+
+    @Test
+    fun `most serious structural issue is reported`() {
+        val duplicated = String(zipBytes("a.dex" to "1", "b.dex" to "2"), Charsets.ISO_8859_1)
+            .replace("b.dex", "a.dex")
+            .toByteArray(Charsets.ISO_8859_1)
+        val signed = withSigningBlock(zipBytes("AndroidManifest.xml" to "manifest"), ApkSigningScheme.V2.blockId)
+
+        assertEquals(ApkStructureIssue.NOT_AN_ARCHIVE, ApkStructureAnalyzer.issueOf(tempFile(ByteArray(4096))))
+        assertEquals(ApkStructureIssue.DUPLICATE_ENTRIES, ApkStructureAnalyzer.issueOf(tempFile(duplicated)))
+        assertEquals(ApkStructureIssue.NO_MANIFEST, ApkStructureAnalyzer.issueOf(apk("classes.dex" to "dex")))
+        assertEquals(ApkStructureIssue.UNSIGNED, ApkStructureAnalyzer.issueOf(apk("AndroidManifest.xml" to "manifest")))
+        assertNull(ApkStructureAnalyzer.issueOf(tempFile(signed)))
+    }
+}
@@ -0,0 +1,48 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Unit tests for FileEventCoalescer.
+ */
+class FileEventCoalescerTest {
+
+    @Test
+    fun `repeated events for a path collapse into one`() {
+        val coalescer = FileEventCoalescer(capacity = 10, quietPeriodMs = 100)
+        coalescer.offer("/sdcard/Download/a.apk", 0)
+        coalescer.offer("/sdcard/Download/a.apk", 50)
+        coalescer.offer("/sdcard/Download/a.apk", 80)
+
+        assertEquals(1, coalescer.size)
+        assertEquals(listOf("/sdcard/Download/a.apk"), coalescer.drainReady(180))
+        assertEquals(0, coalescer.size)
+    }
+
+    @Test
+    fun `path is released only after the quiet period`() {
+        val coalescer = FileEventCoalescer(capacity = 10, quietPeriodMs = 100)
+        coalescer.offer("a.dex", 0)
+        coalescer.offer("b.so", 40)
+        coalescer.offer("a.dex", 60)
+
+        assertEquals(140L, coalescer.nextReadyAt())
+        assertTrue(coalescer.drainReady(120).isEmpty())
+        assertEquals(listOf("b.so"), coalescer.drainReady(140))
+        assertEquals(listOf("a.dex"), coalescer.drainReady(160))
+        assertNull(coalescer.nextReadyAt())
+    }
+
+    @Test
+    fun `new paths beyond capacity are dropped`() {
+        val coalescer = FileEventCoalescer(capacity = 2, quietPeriodMs = 100)
+        assertTrue(coalescer.offer("a.apk", 0))
+        assertTrue(coalescer.offer("b.apk", 0))
+        assertFalse(coalescer.offer("c.apk", 0))
+        assertTrue(coalescer.offer("a.apk", 10))
+
+        assertEquals(1, coalescer.dropped)
+        assertEquals(listOf("b.apk", "a.apk"), coalescer.drainReady(200))
+    }
+}
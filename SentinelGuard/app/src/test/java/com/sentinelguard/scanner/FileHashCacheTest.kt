@@ -0,0 +1,107 @@
+package com.sentinelguard.scanner
+
+import com.sentinelguard.data.database.dao.FileHashDao
+import com.sentinelguard.data.database.entities.FileHashEntity
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+
+/**
+ * Unit tests for FileHashCache.
+ */
+class FileHashCacheTest {
+
+    private class FakeFileHashDao(var stored: List<FileHashEntity> = emptyList()) : FileHashDao {
+        val writes = mutableListOf<List<FileHashEntity>>()
+
+        override suspend fun getMostRecent(limit: Int) = stored.sortedByDescending { it.lastAccessed }.take(limit)
+        override suspend fun insertAll(entries: List<FileHashEntity>) { writes.add(entries) }
+        override suspend fun trimTo(keep: Int) {}
+        override suspend fun count() = stored.size
+        override suspend fun clear() { stored = emptyList() }
+    }
+
+    private val dao = FakeFileHashDao()
+    private var inode = 1L
+    private val cache = FileHashCache(dao) { inode }
+    private var computed = 0
+
+    private fun tempFile(content: String): File {
+        return Files.createTempFile("hash", ".apk").toFile().apply {
+            writeText(content)
+            deleteOnExit()
+        }
+    }
+
+    private fun hash(file: File) = cache.getOrCompute(file) {
+        computed++
+        "hash-${it.readText()}"
+    }
+
+    @Test
+    fun `miss computes and hit reuses the cached hash`() {
+        val file = tempFile("a")
+
+        assertEquals("hash-a", hash(file))
+        assertEquals("hash-a", hash(file))
+        assertEquals(1, computed)
+    }
+
+    @Test
+    fun `size mtime or inode change invalidates the entry`() {
+        val file = tempFile("a")
+        hash(file)
+
+        file.writeText("bb")
+        assertEquals("hash-bb", hash(file))
+        assertEquals(2, computed)
+
+        file.setLastModified(file.lastModified() - 60_000)
+        hash(file)
+        assertEquals(3, computed)
+
+        inode = 2L
+        hash(file)
+        assertEquals(4, computed)
+    }
+
+    @Test
+    fun `flush writes new entries once and skips fresh hits`() = runBlocking {
+        val file = tempFile("a")
+        hash(file)
+        cache.flush()
+        assertEquals(1, dao.writes.size)
+        assertEquals("hash-a", dao.writes.single().single().sha256)
+
+        hash(file)
+        hash(file)
+        cache.flush()
+        assertEquals(1, dao.writes.size)
+    }
+
+    @Test
+    fun `stale access time is refreshed on a hit`() = runBlocking {
+        val file = tempFile("a")
+        val stale = System.currentTimeMillis() - FileHashCache.ACCESS_PERSIST_INTERVAL_MS - 1
+        dao.stored = listOf(FileHashEntity(file.canonicalPath, file.length(), file.lastModified(), inode, "hash-a", stale))
+        cache.load()
+
+        assertEquals("hash-a", hash(file))
+        assertEquals(0, computed)
+        cache.flush()
+        assertTrue(dao.writes.single().single().lastAccessed > stale)
+    }
+
+    @Test
+    fun `full digest replaces a cached sectioned fingerprint`() {
+        val file = tempFile("a")
+        cache.getOrCompute(file) { FileHashEngine.SECTIONED_PREFIX + "x" }
+
+        val full = cache.sha256(file)
+        assertNotNull(full)
+        assertFalse(FileHashEngine.isSectioned(full!!))
+        assertEquals(full, cache.getOrCompute(file) { fail("cached"); null })
+    }
+}
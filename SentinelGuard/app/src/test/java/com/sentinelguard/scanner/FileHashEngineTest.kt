@@ -0,0 +1,64 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.security.MessageDigest
+import kotlin.random.Random
+
+/**
+ * Unit tests for FileHashEngine.
+ */
+class FileHashEngineTest {
+
+    private fun tempFile(bytes: ByteArray): File {
+        return File.createTempFile("hash", ".bin").apply {
+            deleteOnExit()
+            writeBytes(bytes)
+        }
+    }
+
+    private fun referenceSha256(bytes: ByteArray): String {
+        return MessageDigest.getInstance("SHA-256").digest(bytes).joinToString("") { "%02x".format(it) }
+    }
+
+    @Test
+    fun `sha256 matches MessageDigest`() {
+        val bytes = Random(42).nextBytes(3 * 1024 * 1024 + 17)
+        assertEquals(referenceSha256(bytes), FileHashEngine.sha256(tempFile(bytes)))
+    }
+
+    @Test
+    fun `sha256 of empty file`() {
+        assertEquals(
+            "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+            FileHashEngine.sha256(tempFile(ByteArray(0)))
+        )
+    }
+
+    @Test
+    fun `small files are never sectioned`() {
+        val bytes = Random(1).nextBytes(1024)
+        val fingerprint = FileHashEngine.sectionedFingerprint(tempFile(bytes))!!
+        assertFalse(FileHashEngine.isSectioned(fingerprint))
+        assertEquals(referenceSha256(bytes), fingerprint)
+    }
+
+    @Test
+    fun `sectioned fingerprint ignores middle but not ends`() {
+        val size = (FileHashEngine.SECTION_SIZE * 3).toInt()
+        val original = Random(7).nextBytes(size)
+        val middleChanged = original.copyOf().also { it[size / 2] = (it[size / 2] + 1).toByte() }
+        val tailChanged = original.copyOf().also { it[size - 1] = (it[size - 1] + 1).toByte() }
+
+        val base = FileHashEngine.sectionedFingerprint(tempFile(original))!!
+        assertTrue(FileHashEngine.isSectioned(base))
+        assertEquals(base, FileHashEngine.sectionedFingerprint(tempFile(middleChanged)))
+        assertNotEquals(base, FileHashEngine.sectionedFingerprint(tempFile(tailChanged)))
+    }
+
+    @Test
+    fun `toHex encodes lowercase`() {
+        assertEquals("00ff7f80", FileHashEngine.toHex(byteArrayOf(0, -1, 127, -128)))
+    }
+}
@@ -0,0 +1,113 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.Paths
+
+/**
+ * Unit tests for FileScanCheckpointTracker.
+ */
+class FileScanCheckpointTrackerTest {
+
+    private fun counts(files: Int, directories: Int) = ParallelFileWalker.SubtreeCounts(files, directories)
+
+    private fun suspicious(path: String) = FileSystemScanner.SuspiciousFile(
+        path = path,
+        name = path.substringAfterLast('/'),
+        size = 1,
+        reason = "test",
+        severity = FileSystemScanner.FileThreatSeverity.LOW,
+        lastModified = 0
+    )
+
+    @Test
+    fun `subtree is recorded only after its candidates are analyzed`() {
+        val tracker = FileScanCheckpointTracker(null, maxDepth = 8)
+        val first = tracker.nextCandidate()
+        val second = tracker.nextCandidate()
+        tracker.subtreeComplete(Paths.get("/storage/a"), counts(2, 1))
+
+        tracker.candidateFinished(second)
+        assertTrue(tracker.snapshot().completedDirectories.isEmpty())
+
+        tracker.candidateFinished(first)
+        assertEquals(mapOf("/storage/a" to counts(2, 1)), tracker.snapshot().completedDirectories)
+    }
+
+    @Test
+    fun `completed parent replaces its children`() {
+        val tracker = FileScanCheckpointTracker(null, maxDepth = 8)
+        tracker.subtreeComplete(Paths.get("/storage/a/b"), counts(3, 1))
+        tracker.subtreeComplete(Paths.get("/storage/ab"), counts(1, 1))
+        assertEquals(2, tracker.snapshot().completedDirectories.size)
+
+        tracker.subtreeComplete(Paths.get("/storage/a"), counts(4, 2))
+        val checkpoint = tracker.snapshot()
+
+        assertEquals(setOf("/storage/a", "/storage/ab"), checkpoint.completedDirectories.keys)
+        assertEquals(5, checkpoint.filesScanned)
+        assertEquals(3, checkpoint.directoriesScanned)
+    }
+
+    @Test
+    fun `deep directories are not recorded`() {
+        val tracker = FileScanCheckpointTracker(null, maxDepth = 2)
+        tracker.subtreeComplete(Paths.get("/a/b/c"), counts(1, 1))
+        assertTrue(tracker.snapshot().completedDirectories.isEmpty())
+    }
+
+    @Test
+    fun `resumed findings are kept and not reported twice`() {
+        val previous = FileScanCheckpoint(mapOf("/storage/a" to counts(7, 2)), listOf(suspicious("/storage/a/x.apk")))
+        val tracker = FileScanCheckpointTracker(previous, maxDepth = 8)
+
+        assertEquals(7, tracker.resumedFiles)
+        assertEquals(2, tracker.resumedDirectoryCount)
+        assertEquals(counts(7, 2), tracker.resumedCounts(Paths.get("/storage/a")))
+        assertNull(tracker.resumedCounts(Paths.get("/storage/b")))
+
+        assertFalse(tracker.addFinding(suspicious("/storage/a/x.apk")))
+        assertTrue(tracker.addFinding(suspicious("/storage/b/y.dex")))
+        assertEquals(2, tracker.findingCount)
+    }
+
+    @Test
+    fun `resumed walk skips completed subtrees and keeps totals`() {
+        val root = Files.createTempDirectory("walk").toFile()
+        try {
+            listOf("a/1.txt", "a/2.txt", "a/deep/3.txt", "b/4.txt", "5.txt").forEach {
+                File(root, it).apply { parentFile?.mkdirs() }.writeText("x")
+            }
+            val fullTracker = FileScanCheckpointTracker(null, maxDepth = 64)
+            ParallelFileWalker(emptySet(), maxPathDepth = 64).walk(
+                listOf(root),
+                isCancelled = { false },
+                onSubtreeComplete = fullTracker::subtreeComplete
+            ) { _, _ -> }
+            val full = fullTracker.snapshot()
+            assertEquals(setOf(root.path), full.completedDirectories.keys)
+            assertEquals(5, full.filesScanned)
+            assertEquals(4, full.directoriesScanned)
+
+            // Resume as if only "a" had been walked before
+            val partial = FileScanCheckpoint(mapOf(File(root, "a").path to counts(3, 2)), emptyList())
+            val tracker = FileScanCheckpointTracker(partial, maxDepth = 64)
+            val visited = mutableListOf<String>()
+            val walker = ParallelFileWalker(emptySet(), maxPathDepth = 64, parallelism = 2)
+            walker.walk(
+                listOf(root),
+                isCancelled = { false },
+                completedSubtree = tracker::resumedCounts,
+                onSubtreeComplete = tracker::subtreeComplete
+            ) { path, _ -> synchronized(visited) { visited.add(path.fileName.toString()) } }
+
+            assertEquals(setOf("4.txt", "5.txt"), visited.toSet())
+            assertEquals(5, tracker.resumedFiles + walker.filesScanned)
+            assertEquals(full.completedDirectories, tracker.snapshot().completedDirectories)
+        } finally {
+            root.deleteRecursively()
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.sentinelguard.scanner
+
+import android.content.pm.PackageInfo
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Unit tests for InstalledPackageSnapshot and InstalledPackageSnapshotProvider.
+ */
+class InstalledPackageSnapshotTest {
+
+    private val captures = AtomicInteger()
+    private var capturedAt = System.currentTimeMillis()
+    private val provider = InstalledPackageSnapshotProvider {
+        captures.incrementAndGet()
+        InstalledPackageSnapshot.of(listOf(packageInfo("com.example.app")), capturedAt)
+    }
+
+    private fun packageInfo(name: String) = PackageInfo().apply { packageName = name }
+
+    // ============ InstalledPackageSnapshot Tests ============
+
+    @Test
+    fun `packages are looked up by name`() {
+        val snapshot = InstalledPackageSnapshot.of(listOf(packageInfo("a"), packageInfo("b")))
+
+        assertEquals(2, snapshot.size)
+        assertTrue(snapshot.isInstalled("a"))
+        assertFalse(snapshot.isInstalled("c"))
+        assertEquals("b", snapshot["b"]?.packageName)
+        assertEquals("a", snapshot.labelOf(snapshot["a"]!!))
+    }
+
+    @Test
+    fun `concurrent verdict lookups analyze a package once`() {
+        val snapshot = InstalledPackageSnapshot.of(listOf(packageInfo("a")))
+        val analyses = AtomicInteger()
+        val start = CountDownLatch(1)
+        val pool = Executors.newFixedThreadPool(8)
+        try {
+            val lookups = List(8) {
+                pool.submit<List<DetectedThreat>> {
+                    start.await()
+                    snapshot.verdictOf("a") {
+                        analyses.incrementAndGet()
+                        Thread.sleep(20)
+                        emptyList()
+                    }
+                }
+            }
+            start.countDown()
+            lookups.forEach { it.get(5, TimeUnit.SECONDS) }
+        } finally {
+            pool.shutdown()
+        }
+
+        assertEquals(1, analyses.get())
+    }
+
+    // ============ InstalledPackageSnapshotProvider Tests ============
+
+    @Test
+    fun `recent snapshot is reused outside a scope`() = runBlocking {
+        val first = provider.acquire()
+
+        assertSame(first, provider.acquire())
+        assertEquals(1, captures.get())
+    }
+
+    @Test
+    fun `snapshot older than the reuse window is captured again`() = runBlocking {
+        capturedAt = System.currentTimeMillis() - 60_000
+        val stale = provider.acquire()
+        capturedAt = System.currentTimeMillis()
+
+        assertNotSame(stale, provider.acquire())
+        assertEquals(2, captures.get())
+    }
+
+    @Test
+    fun `invalidate drops the snapshot outside a scope`() = runBlocking {
+        val first = provider.acquire()
+        provider.invalidate()
+
+        assertNotSame(first, provider.acquire())
+    }
+
+    @Test
+    fun `scope starts fresh and shares one snapshot`() = runBlocking {
+        val before = provider.acquire()
+
+        val shared = provider.scoped {
+            List(8) { async(Dispatchers.Default) { provider.acquire() } }.awaitAll()
+        }
+
+        assertNotSame(before, shared.first())
+        assertTrue(shared.all { it === shared.first() })
+        assertEquals(2, captures.get())
+    }
+
+    @Test
+    fun `snapshot is pinned for the whole scope`() = runBlocking {
+        capturedAt = System.currentTimeMillis() - 60_000
+        provider.scoped {
+            val first = provider.acquire()
+            provider.invalidate()
+            provider.scoped { assertSame(first, provider.acquire()) }
+            assertSame(first, provider.acquire())
+        }
+        assertEquals(1, captures.get())
+
+        // Stale once the scope is closed
+        provider.acquire()
+        assertEquals(2, captures.get())
+    }
+}
@@ -0,0 +1,69 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.net.InetAddress
+import java.net.ServerSocket
+
+/**
+ * Unit tests for LocalPortProber.
+ */
+class LocalPortProberTest {
+
+    private val loopback = InetAddress.getByAddress(byteArrayOf(127, 0, 0, 1))
+
+    /**
+     * A port nothing is listening on
+     */
+    private fun closedPort(): Int = ServerSocket(0, 1, loopback).use { it.localPort }
+
+    @Test
+    fun `finds listening ports among closed ones`() {
+        ServerSocket(0, 50, loopback).use { first ->
+            ServerSocket(0, 50, loopback).use { second ->
+                val closed = List(20) { closedPort() }.filter { it != first.localPort && it != second.localPort }
+
+                val open = LocalPortProber().probe(closed + first.localPort + second.localPort)
+
+                assertEquals(setOf(first.localPort, second.localPort), open)
+            }
+        }
+    }
+
+    @Test
+    fun `probes more ports than one batch`() {
+        ServerSocket(0, 50, loopback).use { server ->
+            val ports = (1..600).map { closedPort() }.filter { it != server.localPort } + server.localPort
+
+            val start = System.nanoTime()
+            val open = LocalPortProber().probe(ports, timeoutMs = 200)
+            val elapsedMs = (System.nanoTime() - start) / 1_000_000
+
+            assertEquals(setOf(server.localPort), open)
+            assertTrue("took ${elapsedMs}ms", elapsedMs < 5_000)
+        }
+    }
+
+    @Test
+    fun `scan reports categories in port order`() {
+        ServerSocket(0, 50, loopback).use { server ->
+            val ports = mapOf(
+                server.localPort to PortCategory.BACKDOOR,
+                closedPort() to PortCategory.WEB
+            )
+
+            val open = LocalPortProber().scan(ports)
+
+            assertEquals(listOf(LocalPortProber.OpenPort(server.localPort, PortCategory.BACKDOOR)), open)
+        }
+    }
+
+    @Test
+    fun `known ports cover adb frida and backdoors`() {
+        val known = LocalPortProber.KNOWN_PORTS
+        assertEquals(PortCategory.DEBUG_BRIDGE, known[5555])
+        assertEquals(PortCategory.INSTRUMENTATION, known[27042])
+        assertEquals(PortCategory.BACKDOOR, known[31337])
+        assertTrue(known.filterValues { it.suspicious }.keys.containsAll(listOf(4444, 5555, 8080, 27042)))
+    }
+}
@@ -0,0 +1,94 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+import kotlin.random.Random
+
+/**
+ * Unit tests for MalwareHashStore.
+ */
+class MalwareHashStoreTest {
+
+    private fun storeFile(): File {
+        return File(Files.createTempDirectory("hashstore").toFile(), "malware_hashes.bin").apply { deleteOnExit() }
+    }
+
+    private fun randomDigests(count: Int, seed: Int): List<ByteArray> {
+        val random = Random(seed)
+        return List(count) { random.nextBytes(MalwareHashStore.DIGEST_SIZE) }
+    }
+
+    @Test
+    fun `finds every written digest by hex and bytes`() {
+        val digests = randomDigests(5_000, 1)
+        val file = storeFile()
+        MalwareHashStore.write(file, digests)
+        val store = MalwareHashStore.open(file)!!
+
+        assertEquals(5_000, store.size)
+        digests.forEach { digest ->
+            assertTrue(store.contains(digest))
+            assertTrue(store.contains(FileHashEngine.toHex(digest)))
+            assertTrue(store.contains(FileHashEngine.toHex(digest).uppercase()))
+        }
+    }
+
+    @Test
+    fun `rejects digests not in the store`() {
+        val file = storeFile()
+        MalwareHashStore.write(file, randomDigests(5_000, 2))
+        val store = MalwareHashStore.open(file)!!
+
+        randomDigests(5_000, 3).forEach { assertFalse(store.contains(it)) }
+    }
+
+    @Test
+    fun `works without a Bloom filter`() {
+        val digests = randomDigests(500, 4)
+        val file = storeFile()
+        MalwareHashStore.write(file, digests, bloomBitsPerEntry = 0)
+        val store = MalwareHashStore.open(file)!!
+
+        digests.forEach { assertTrue(store.contains(it)) }
+        randomDigests(500, 5).forEach { assertFalse(store.contains(it)) }
+    }
+
+    @Test
+    fun `duplicates are stored once`() {
+        val digest = randomDigests(1, 6).single()
+        val file = storeFile()
+        MalwareHashStore.write(file, listOf(digest, digest.copyOf(), digest.copyOf()))
+
+        assertEquals(1, MalwareHashStore.open(file)!!.size)
+    }
+
+    @Test
+    fun `malformed hex never matches`() {
+        val digest = ByteArray(MalwareHashStore.DIGEST_SIZE)
+        val file = storeFile()
+        MalwareHashStore.write(file, listOf(digest))
+        val store = MalwareHashStore.open(file)!!
+
+        assertTrue(store.contains("0".repeat(64)))
+        assertFalse(store.contains("0".repeat(63)))
+        assertFalse(store.contains("0".repeat(62) + "zz"))
+        assertFalse(store.contains(FileHashEngine.SECTIONED_PREFIX + "0".repeat(64)))
+    }
+
+    @Test
+    fun `rewrite replaces the previous store`() {
+        val first = randomDigests(100, 7)
+        val second = randomDigests(100, 8)
+        val file = storeFile()
+
+        MalwareHashStore.write(file, first)
+        MalwareHashStore.write(file, second)
+        val store = MalwareHashStore.open(file)!!
+
+        assertFalse(store.contains(first[0]))
+        assertTrue(store.contains(second[0]))
+        assertFalse(File(file.parentFile, file.name + ".tmp").exists())
+    }
+}
@@ -0,0 +1,112 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Unit tests for PackageNameMatcher and KeywordMatcher.
+ */
+class PackageNameMatcherTest {
+
+    private val matcher = PackageNameMatcher(
+        trustedPackages = listOf("com.whatsapp", "com.Slack"),
+        trustedPrefixes = listOf("com.google.", "com.android."),
+        malwarePackages = listOf("com.android.bankbot", "com.fake.flashlight"),
+        malwarePrefixes = listOf("com.joker", "com.xhelper"),
+        toolPackages = listOf("com.topjohnwu.magisk"),
+        suspiciousKeywords = listOf("hack", "spy"),
+        suspiciousKeywordPairs = listOf("free" to "premium", "system" to "update")
+    )
+
+    @Test
+    fun `exact and prefix whitelist`() {
+        assertTrue(matcher.classify("com.whatsapp").isTrusted)
+        assertTrue(matcher.classify("com.Slack").isTrusted)
+        assertTrue(matcher.classify("com.google.android.gm").isTrusted)
+        assertFalse(matcher.classify("com.whatsapp.fake").isTrusted)
+        assertFalse(matcher.classify("com.googlex").isTrusted)
+    }
+
+    @Test
+    fun `mixed-case lookalikes are not trusted`() {
+        assertFalse(matcher.classify("com.slack").isTrusted)
+        assertFalse(matcher.classify("COM.WHATSAPP").isTrusted)
+        assertFalse(matcher.classify("Com.Google.spy").isTrusted)
+        assertFalse(matcher.classify("COM.ANDROID.x").isTrusted)
+        assertTrue(matcher.classify("Com.Google.spy").hasSuspiciousName)
+    }
+
+    @Test
+    fun `known malware and malware prefixes`() {
+        assertTrue(matcher.classify("com.fake.flashlight").isKnownMalware)
+        assertTrue(matcher.classify("COM.FAKE.FLASHLIGHT").isKnownMalware)
+        assertTrue(matcher.classify("com.jokerapps.cleaner").hasMalwarePrefix)
+        assertTrue(matcher.classify("com.xhelper").isMalware)
+        assertFalse(matcher.classify("com.fake.flashlight2").isMalware)
+    }
+
+    @Test
+    fun `categories are independent`() {
+        val bankbot = matcher.classify("com.android.bankbot")
+        assertTrue(bankbot.isTrusted)
+        assertTrue(bankbot.isKnownMalware)
+        assertTrue(matcher.classify("com.topjohnwu.magisk").isDangerousTool)
+    }
+
+    @Test
+    fun `suspicious keywords anywhere in the name`() {
+        assertTrue(matcher.classify("com.example.gamehacker").hasSuspiciousName)
+        assertTrue(matcher.hasSuspiciousName("Phone SPY Pro"))
+        assertFalse(matcher.hasSuspiciousName("Calculator"))
+    }
+
+    @Test
+    fun `keyword pairs must appear in order`() {
+        assertTrue(matcher.hasSuspiciousName("Free Netflix Premium"))
+        assertTrue(matcher.hasSuspiciousName("freepremium"))
+        assertTrue(matcher.hasSuspiciousName("System Security Update"))
+        assertFalse(matcher.hasSuspiciousName("Premium for free"))
+        assertFalse(matcher.hasSuspiciousName("Update System"))
+    }
+
+    @Test
+    fun `keyword pairs do not leak between calls`() {
+        assertFalse(matcher.hasSuspiciousName("free"))
+        assertFalse(matcher.hasSuspiciousName("premium"))
+    }
+
+    @Test
+    fun `agrees with ThreatDatabase name patterns`() {
+        val patterns = listOf(
+            Regex(".*(?i)(crack|hack|cheat|mod|patch|keygen).*"),
+            Regex(".*(?i)(spy|hidden|stealth|invisible|tracker|monitor).*"),
+            Regex(".*(?i)(xhelper|joker|hiddad|flubot|teabot|sharkbot).*"),
+            Regex(".*(?i)(free.*premium|free.*coins|free.*gems|unlimited).*"),
+            Regex(".*(?i)(xxx|porn|adult.*video|sexy).*"),
+            Regex(".*(?i)(system.*update|security.*update|google.*update).*")
+        )
+        val names = listOf(
+            "Clash Mod Menu", "Battery Monitor", "Free Gems Generator", "Gems for free",
+            "Google Play Services Update", "Update Google", "Adult Video Player", "Calculator",
+            "com.example.notes", "Unlimited Coins", "FreeCoins", "Teabot", "Maps", "Stealthy"
+        )
+        names.forEach { name ->
+            assertEquals(name, patterns.any { it.matches(name) }, ThreatDatabase.hasSuspiciousName(name))
+        }
+    }
+
+    @Test
+    fun `keyword matcher finds overlapping keywords`() {
+        val keywords = KeywordMatcher(listOf("he", "she", "hers"))
+        assertTrue(keywords.containsAny("uSHErs"))
+        assertFalse(keywords.containsAny("his"))
+
+        var state = KeywordMatcher.ROOT
+        val found = mutableSetOf<String>()
+        "ushers".forEach { c ->
+            state = keywords.step(state, c)
+            keywords.matchesAt(state).forEach { found.add(keywords.keywords[it]) }
+        }
+        assertEquals(setOf("he", "she", "hers"), found)
+    }
+}
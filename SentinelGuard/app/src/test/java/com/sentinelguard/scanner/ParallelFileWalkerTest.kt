@@ -0,0 +1,65 @@
+package com.sentinelguard.scanner
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.Path
+
+/**
+ * Unit tests for ParallelFileWalker.
+ */
+class ParallelFileWalkerTest {
+
+    private fun tempTree(files: Int): File {
+        val root = Files.createTempDirectory("walk").toFile()
+        root.deleteOnExit()
+        repeat(files) { i ->
+            File(root, "file$i.apk").apply {
+                writeText("x")
+                deleteOnExit()
+            }
+        }
+        return root
+    }
+
+    private fun walker() = ParallelFileWalker(emptySet(), maxPathDepth = 64, parallelism = 2)
+
+    @Test
+    fun `walkInto sends every selected file and closes the sink`() = runBlocking {
+        val root = tempTree(20)
+        val sink = Channel<Path>(Channel.UNLIMITED)
+
+        walker().walkInto(sink, listOf(root)) { path, _ -> path }
+
+        val received = mutableListOf<Path>()
+        for (path in sink) received.add(path)
+        assertEquals(20, received.size)
+    }
+
+    @Test
+    fun `cancelled walkInto returns while the sink is full`() = runBlocking {
+        val root = tempTree(50)
+        val sink = Channel<Path>(2)
+        val walker = walker()
+
+        // Own scope, so a walk that never returns fails the test instead of hanging it
+        val walk = CoroutineScope(Dispatchers.Default).launch { walker.walkInto(sink, listOf(root)) { path, _ -> path } }
+        // Nothing receives, so the walker threads block once the sink is full
+        withTimeout(5_000) {
+            while (walker.filesScanned < 3) delay(10)
+        }
+        walk.cancel()
+
+        withTimeout(5_000) { walk.join() }
+        assertTrue(sink.isClosedForSend)
+        assertTrue(walker.filesScanned < 50)
+    }
+}
@@ -0,0 +1,52 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Unit tests for PendingPackageChanges.
+ */
+class PendingPackageChangesTest {
+
+    @Test
+    fun `changes are processed in arrival order`() {
+        val pending = PendingPackageChanges(capacity = 10)
+        pending.offer("com.a", PackageChange.INSTALLED)
+        pending.offer("com.b", PackageChange.UPDATED)
+
+        assertEquals("com.a" to PackageChange.INSTALLED, pending.poll())
+        assertEquals("com.b" to PackageChange.UPDATED, pending.poll())
+        assertNull(pending.poll())
+    }
+
+    @Test
+    fun `repeated changes for a package coalesce`() {
+        val pending = PendingPackageChanges(capacity = 10)
+        pending.offer("com.a", PackageChange.UPDATED)
+        pending.offer("com.b", PackageChange.INSTALLED)
+        pending.offer("com.a", PackageChange.UPDATED)
+        pending.offer("com.b", PackageChange.UPDATED)
+
+        assertEquals(2, pending.size)
+        assertEquals("com.a" to PackageChange.UPDATED, pending.poll())
+        assertEquals("com.b" to PackageChange.INSTALLED, pending.poll())
+    }
+
+    @Test
+    fun `removal replaces a pending install`() {
+        val pending = PendingPackageChanges(capacity = 10)
+        pending.offer("com.a", PackageChange.INSTALLED)
+        pending.offer("com.a", PackageChange.REMOVED)
+
+        assertEquals("com.a" to PackageChange.REMOVED, pending.poll())
+    }
+
+    @Test
+    fun `new packages beyond capacity are dropped`() {
+        val pending = PendingPackageChanges(capacity = 1)
+        assertTrue(pending.offer("com.a", PackageChange.INSTALLED))
+        assertFalse(pending.offer("com.b", PackageChange.INSTALLED))
+        assertTrue(pending.offer("com.a", PackageChange.UPDATED))
+        assertEquals(1, pending.dropped)
+    }
+}
@@ -0,0 +1,67 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Unit tests for PermissionInterner and PermissionMask.
+ */
+class PermissionInternerTest {
+
+    @Test
+    fun `indices are stable and dense`() {
+        val interner = PermissionInterner()
+        val camera = interner.intern("android.permission.CAMERA")
+        val sms = interner.intern("android.permission.READ_SMS")
+
+        assertEquals(camera, interner.intern("android.permission.CAMERA"))
+        assertEquals(setOf(0, 1), setOf(camera, sms))
+        assertEquals(2, interner.size)
+    }
+
+    @Test
+    fun `containsAll intersects and countIn`() {
+        val interner = PermissionInterner()
+        val app = interner.encode(listOf("a", "b", "c"))
+        val combo = interner.encode(listOf("a", "c"))
+        val other = interner.encode(listOf("d", "e"))
+
+        assertTrue(app.containsAll(combo))
+        assertFalse(app.containsAll(other))
+        assertTrue(app.intersects(combo))
+        assertFalse(app.intersects(other))
+        assertEquals(2, app.countIn(combo))
+        assertTrue(app.containsAll(PermissionMask.EMPTY))
+    }
+
+    @Test
+    fun `masks of different widths compare correctly`() {
+        val interner = PermissionInterner()
+        val early = interner.encode(listOf("p0"))
+        (1..200).forEach { interner.intern("p$it") }
+        val wide = interner.encode(listOf("p0", "p150"))
+        val late = interner.encode(listOf("p150"))
+
+        assertTrue(wide.containsAll(early))
+        assertFalse(early.containsAll(wide))
+        assertFalse(early.intersects(late))
+        assertEquals(1, late.countIn(wide))
+    }
+
+    @Test
+    fun `ThreatDatabase rules match set semantics`() {
+        val sets = listOf(
+            emptySet(),
+            setOf("android.permission.BIND_ACCESSIBILITY_SERVICE", "android.permission.SYSTEM_ALERT_WINDOW"),
+            setOf("android.permission.RECEIVE_SMS", "android.permission.SEND_SMS"),
+            setOf("android.permission.RECEIVE_SMS", "android.permission.SEND_SMS", "android.permission.INTERNET"),
+            setOf("android.permission.READ_SMS", "android.permission.CALL_PHONE", "com.example.CUSTOM")
+        )
+        sets.forEach { permissions ->
+            val expectedCombo = ThreatDatabase.dangerousPermissionCombos.any { permissions.containsAll(it) }
+            val expectedCount = permissions.count { it in ThreatDatabase.highRiskPermissions }
+            assertEquals(expectedCombo, ThreatDatabase.hasDangerousPermissionCombo(permissions))
+            assertEquals(expectedCount, ThreatDatabase.countHighRiskPermissions(permissions))
+        }
+    }
+}
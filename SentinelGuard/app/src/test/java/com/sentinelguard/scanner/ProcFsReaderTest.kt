@@ -0,0 +1,95 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+
+/**
+ * Unit tests for ProcFsReader.
+ */
+class ProcFsReaderTest {
+
+    private fun tempDir(): File = Files.createTempDirectory("procfs").toFile().apply { deleteOnExit() }
+
+    private fun file(content: String): File {
+        return File(tempDir(), "data").apply {
+            writeText(content)
+            deleteOnExit()
+        }
+    }
+
+    @Test
+    fun `parses mount entries`() {
+        val mounts = file(
+            "/dev/block/dm-0 / ext4 ro,seclabel,relatime 0 0\n" +
+                "tmpfs /dev tmpfs rw,seclabel,nosuid 0 0\n" +
+                "/dev/block/dm-1 /system/vendor ext4 rw 0 0"
+        )
+
+        val entries = ProcFsReader().mounts(mounts.path)
+
+        assertEquals(3, entries.size)
+        assertEquals(ProcFsReader.MountEntry("/dev/block/dm-0", "/", "ext4", "ro,seclabel,relatime"), entries[0])
+        assertFalse(entries[0].isReadWrite)
+        assertTrue(entries[1].isReadWrite)
+        assertEquals("/system/vendor", entries[2].mountPoint)
+        assertTrue(entries[2].isReadWrite)
+    }
+
+    @Test
+    fun `collects distinct mapped file names`() {
+        val maps = file(
+            "7f0000-7f1000 r--p 00000000 fd:00 123   /system/lib64/libc.so\n" +
+                "7f1000-7f2000 r-xp 00001000 fd:00 123   /system/lib64/libc.so\n" +
+                "7f2000-7f3000 rw-p 00000000 00:00 0\n" +
+                "7f3000-7f4000 r-xp 00000000 fd:00 456   /data/local/tmp/frida agent.so\n" +
+                "7f4000-7f5000 r-xp 00000000 00:00 0     [vdso]\n" +
+                "7f5000-7f6000 r--p 00000000 fd:00 123   /system/lib64/libc.so\n"
+        )
+
+        val files = ProcFsReader().mappedFiles(maps.path)
+
+        assertEquals(
+            listOf("/system/lib64/libc.so", "/data/local/tmp/frida agent.so", "[vdso]"),
+            files.toList()
+        )
+    }
+
+    @Test
+    fun `lines spanning buffer refills are reassembled`() {
+        val mountPoints = List(50) { "/mnt/point_with_a_long_name_$it" }
+        val mounts = file(mountPoints.joinToString("\n") { "tmpfs $it tmpfs rw 0 0" } + "\n")
+
+        val entries = ProcFsReader(bufferSize = 7).mounts(mounts.path)
+
+        assertEquals(mountPoints, entries.map { it.mountPoint })
+    }
+
+    @Test
+    fun `reads process names from cmdline with comm fallback`() {
+        val root = tempDir()
+        File(root, "1").apply { mkdir() }.let { File(it, "cmdline").writeBytes("/init\u0000second_stage\u0000".toByteArray()) }
+        File(root, "42").apply { mkdir() }.let {
+            File(it, "cmdline").writeText("")
+            File(it, "comm").writeText("kworker/0:1\n")
+        }
+        File(root, "self").mkdir()
+        File(root, "mounts").writeText("")
+
+        val processes = ProcFsReader().processes(root.path).sortedBy { it.pid }
+
+        assertEquals(
+            listOf(ProcFsReader.ProcessInfo(1, "/init"), ProcFsReader.ProcessInfo(42, "kworker/0:1")),
+            processes
+        )
+    }
+
+    @Test
+    fun `missing files read as empty`() {
+        val reader = ProcFsReader()
+        assertTrue(reader.mounts("/nonexistent/mounts").isEmpty())
+        assertTrue(reader.mappedFiles("/nonexistent/maps").isEmpty())
+        assertTrue(reader.processes("/nonexistent").isEmpty())
+    }
+}
@@ -0,0 +1,98 @@
+package com.sentinelguard.scanner
+
+import com.sentinelguard.scanner.DeepScanEngine.DeepScanPhase
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.runInterruptible
+import kotlinx.coroutines.withTimeout
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Collections
+
+/**
+ * Unit tests for ScanPhaseScheduler.
+ */
+class ScanPhaseSchedulerTest {
+
+    private fun phase(
+        phase: DeepScanPhase,
+        dependsOn: Set<DeepScanPhase> = emptySet(),
+        timeoutMs: Long = 5_000,
+        block: suspend ScanPhaseScheduler.PhaseScope.() -> Any?
+    ) = ScanPhaseScheduler.PhaseSpec(phase, 1f, timeoutMs, "start", "done", dependsOn, block)
+
+    private fun scheduler(vararg phases: ScanPhaseScheduler.PhaseSpec) =
+        ScanPhaseScheduler(phases.toList(), Dispatchers.Default.limitedParallelism(2))
+
+    @Test
+    fun `dependent phase starts after its dependency and sees its result`() = runBlocking {
+        val events = Collections.synchronizedList(mutableListOf<String>())
+        val phaseResults = scheduler(
+            phase(DeepScanPhase.PRIVACY_AUDIT, dependsOn = setOf(DeepScanPhase.APP_ANALYSIS)) {
+                events.add("privacy start")
+                results.get<String>(DeepScanPhase.APP_ANALYSIS) + " seen"
+            },
+            phase(DeepScanPhase.APP_ANALYSIS) {
+                delay(50)
+                events.add("apps end")
+                "apps"
+            }
+        ).run(onProgress = { })
+
+        assertEquals(listOf("apps end", "privacy start"), events)
+        assertEquals("apps seen", phaseResults.get<String>(DeepScanPhase.PRIVACY_AUDIT))
+    }
+
+    @Test
+    fun `independent phases run concurrently`() = runBlocking {
+        val networkStarted = CompletableDeferred<Unit>()
+        val results = withTimeout(5_000) {
+            scheduler(
+                // Finishes only once the other phase is running
+                phase(DeepScanPhase.SYSTEM_INTEGRITY) { networkStarted.await(); "system" },
+                phase(DeepScanPhase.NETWORK_SECURITY) { networkStarted.complete(Unit); "network" }
+            ).run(onProgress = { })
+        }
+
+        assertEquals("system", results.get<String>(DeepScanPhase.SYSTEM_INTEGRITY))
+        assertEquals("network", results.get<String>(DeepScanPhase.NETWORK_SECURITY))
+    }
+
+    @Test
+    fun `blocking phase times out without holding up its dependents`() = runBlocking {
+        val start = System.currentTimeMillis()
+        val results = scheduler(
+            phase(DeepScanPhase.SYSTEM_INTEGRITY, timeoutMs = 100) {
+                runInterruptible { Thread.sleep(60_000) }
+            },
+            phase(DeepScanPhase.PRIVACY_AUDIT, dependsOn = setOf(DeepScanPhase.SYSTEM_INTEGRITY)) { "privacy" }
+        ).run(onProgress = { })
+
+        assertNull(results.get<Any>(DeepScanPhase.SYSTEM_INTEGRITY))
+        assertEquals("privacy", results.get<String>(DeepScanPhase.PRIVACY_AUDIT))
+        assertTrue(System.currentTimeMillis() - start < 5_000)
+    }
+
+    @Test
+    fun `failed phase yields no result and progress reaches the end`() = runBlocking {
+        val progress = Collections.synchronizedList(mutableListOf<Float>())
+        val results = scheduler(
+            phase(DeepScanPhase.FILE_SYSTEM) { throw IllegalStateException("boom") },
+            phase(DeepScanPhase.NETWORK_SECURITY) { report(0.5f, "half"); "network" }
+        ).run(onProgress = { progress.add(it.overallProgress) })
+
+        assertNull(results.get<Any>(DeepScanPhase.FILE_SYSTEM))
+        assertEquals(progress.sorted(), progress)
+        assertEquals(1f, progress.last(), 0.0001f)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `cyclic dependencies are rejected`() {
+        scheduler(
+            phase(DeepScanPhase.APP_ANALYSIS, dependsOn = setOf(DeepScanPhase.PRIVACY_AUDIT)) { null },
+            phase(DeepScanPhase.PRIVACY_AUDIT, dependsOn = setOf(DeepScanPhase.APP_ANALYSIS)) { null }
+        )
+    }
+}
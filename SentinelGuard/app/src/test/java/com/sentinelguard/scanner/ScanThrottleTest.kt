@@ -0,0 +1,37 @@
+package com.sentinelguard.scanner
+
+import android.os.PowerManager
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Unit tests for ScanThrottle.
+ */
+class ScanThrottleTest {
+
+    @Test
+    fun `cool charging device gets the full budget`() {
+        assertEquals(ScanBudget.FULL, ScanThrottle.budgetFor(PowerManager.THERMAL_STATUS_NONE, 30, isCharging = true))
+    }
+
+    @Test
+    fun `throttling reduces then defers the scan`() {
+        assertEquals(ScanBudget.REDUCED, ScanThrottle.budgetFor(PowerManager.THERMAL_STATUS_LIGHT, 100, true))
+        assertEquals(ScanBudget.MINIMAL, ScanThrottle.budgetFor(PowerManager.THERMAL_STATUS_MODERATE, 100, true))
+        assertNull(ScanThrottle.budgetFor(PowerManager.THERMAL_STATUS_SEVERE, 100, true))
+        assertNull(ScanThrottle.budgetFor(PowerManager.THERMAL_STATUS_SHUTDOWN, 100, true))
+    }
+
+    @Test
+    fun `unplugged battery level limits the budget`() {
+        assertEquals(ScanBudget.FULL, ScanThrottle.budgetFor(PowerManager.THERMAL_STATUS_NONE, 80, false))
+        assertEquals(ScanBudget.REDUCED, ScanThrottle.budgetFor(PowerManager.THERMAL_STATUS_NONE, 40, false))
+        assertNull(ScanThrottle.budgetFor(PowerManager.THERMAL_STATUS_NONE, 10, false))
+        assertNull(ScanThrottle.budgetFor(PowerManager.THERMAL_STATUS_SEVERE, 80, false))
+    }
+
+    @Test
+    fun `unknown battery level is not treated as low`() {
+        assertEquals(ScanBudget.FULL, ScanThrottle.budgetFor(PowerManager.THERMAL_STATUS_NONE, -1, false))
+    }
+}
@@ -0,0 +1,111 @@
+package com.sentinelguard.scanner
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.security.KeyPair
+import java.security.KeyPairGenerator
+import java.security.spec.ECGenParameterSpec
+
+/**
+ * Unit tests for SignatureBundle and SignatureBundleCodec.
+ */
+class SignatureBundleTest {
+
+    private val keys: KeyPair = KeyPairGenerator.getInstance("EC").run {
+        initialize(ECGenParameterSpec("secp256r1"))
+        generateKeyPair()
+    }
+
+    private val full = SignatureUpdate(
+        kind = SignatureUpdate.Kind.FULL,
+        baseVersion = 0,
+        version = 10,
+        added = mapOf(
+            SignatureSection.MALWARE_PACKAGES to listOf(listOf("com.bad.app"), listOf("com.Worse.App")),
+            SignatureSection.MALWARE_PREFIXES to listOf(listOf("com.evil")),
+            SignatureSection.PERMISSION_COMBOS to listOf(listOf("b", "a")),
+            SignatureSection.HASH_PREFIXES to listOf(listOf("0123456789abcdef"))
+        )
+    )
+
+    private val delta = SignatureUpdate(
+        kind = SignatureUpdate.Kind.DELTA,
+        baseVersion = 10,
+        version = 11,
+        added = mapOf(SignatureSection.MALWARE_PACKAGES to listOf(listOf("com.new.threat"))),
+        removed = mapOf(
+            SignatureSection.MALWARE_PACKAGES to listOf(listOf("com.bad.app")),
+            SignatureSection.PERMISSION_COMBOS to listOf(listOf("a", "b"))
+        )
+    )
+
+    @Test
+    fun `signed update round trips`() {
+        val bytes = SignatureBundleCodec.encode(full, keys.private)
+        val decoded = SignatureBundleCodec.decode(bytes, keys.public)
+
+        assertEquals(full, decoded)
+    }
+
+    @Test(expected = SecurityException::class)
+    fun `tampered payload is rejected`() {
+        val bytes = SignatureBundleCodec.encode(full, keys.private)
+        bytes[bytes.size - 1] = (bytes[bytes.size - 1] + 1).toByte()
+        SignatureBundleCodec.decode(bytes, keys.public)
+    }
+
+    @Test(expected = SecurityException::class)
+    fun `foreign key is rejected`() {
+        val other = KeyPairGenerator.getInstance("EC").run {
+            initialize(ECGenParameterSpec("secp256r1"))
+            generateKeyPair()
+        }
+        SignatureBundleCodec.decode(SignatureBundleCodec.encode(full, other.private), keys.public)
+    }
+
+    @Test
+    fun `full bundle normalizes entries`() {
+        val bundle = SignatureBundle.EMPTY.apply(full)
+
+        assertEquals(10L, bundle.version)
+        assertEquals(setOf("com.bad.app", "com.worse.app"), bundle.malwarePackages)
+        assertEquals(listOf(setOf("a", "b")), bundle.permissionCombos)
+        assertTrue(bundle.fileExtensions.isEmpty())
+    }
+
+    @Test
+    fun `delta adds and removes entries`() {
+        val bundle = SignatureBundle.EMPTY.apply(full).apply(delta)
+
+        assertEquals(11L, bundle.version)
+        assertEquals(setOf("com.worse.app", "com.new.threat"), bundle.malwarePackages)
+        assertEquals(listOf("com.evil"), bundle.malwarePrefixes)
+        assertTrue(bundle.permissionCombos.isEmpty())
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `delta for another base version is refused`() {
+        SignatureBundle.EMPTY.apply(full.copy(version = 12)).apply(delta)
+    }
+
+    @Test
+    fun `applying a delta leaves the original bundle untouched`() {
+        val base = SignatureBundle.EMPTY.apply(full)
+        base.apply(delta)
+
+        assertTrue("com.bad.app" in base.malwarePackages)
+        assertEquals(10L, base.version)
+    }
+
+    @Test
+    fun `full hashes are decoded to digests`() {
+        val hash = "00FF" + "ab".repeat(30)
+        val bundle = SignatureBundle.EMPTY.apply(full.copy(
+            added = mapOf(SignatureSection.MALWARE_HASHES to listOf(listOf(hash), listOf("abc"), listOf("zz".repeat(32))))
+        ))
+
+        val digests = bundle.malwareDigests()
+        assertEquals(1, digests.size)
+        assertEquals(hash.lowercase(), FileHashEngine.toHex(digests.single()))
+    }
+}
@@ -0,0 +1,142 @@
+package com.sentinelguard.scanner
+
+import android.content.SharedPreferences
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Unit tests for SystemProbeRunner.
+ */
+class SystemProbeRunnerTest {
+
+    private class FakePreferences : SharedPreferences {
+        val values = HashMap<String, Any?>()
+
+        override fun getAll(): Map<String, *> = HashMap(values)
+        override fun getString(key: String, defValue: String?) = values[key] as String? ?: defValue
+        @Suppress("UNCHECKED_CAST")
+        override fun getStringSet(key: String, defValues: Set<String>?) = values[key] as Set<String>? ?: defValues
+        override fun getInt(key: String, defValue: Int) = values[key] as Int? ?: defValue
+        override fun getLong(key: String, defValue: Long) = values[key] as Long? ?: defValue
+        override fun getFloat(key: String, defValue: Float) = values[key] as Float? ?: defValue
+        override fun getBoolean(key: String, defValue: Boolean) = values[key] as Boolean? ?: defValue
+        override fun contains(key: String) = key in values
+        override fun edit(): SharedPreferences.Editor = Editor()
+        override fun registerOnSharedPreferenceChangeListener(listener: SharedPreferences.OnSharedPreferenceChangeListener) {}
+        override fun unregisterOnSharedPreferenceChangeListener(listener: SharedPreferences.OnSharedPreferenceChangeListener) {}
+
+        private inner class Editor : SharedPreferences.Editor {
+            private val changes = HashMap<String, Any?>()
+            private var clear = false
+
+            override fun putString(key: String, value: String?) = apply { changes[key] = value }
+            override fun putStringSet(key: String, values: Set<String>?) = apply { changes[key] = values }
+            override fun putInt(key: String, value: Int) = apply { changes[key] = value }
+            override fun putLong(key: String, value: Long) = apply { changes[key] = value }
+            override fun putFloat(key: String, value: Float) = apply { changes[key] = value }
+            override fun putBoolean(key: String, value: Boolean) = apply { changes[key] = value }
+            override fun remove(key: String) = apply { changes[key] = null }
+            override fun clear() = apply { clear = true }
+            override fun commit(): Boolean {
+                if (clear) values.clear()
+                changes.forEach { (key, value) -> if (value == null) values.remove(key) else values[key] = value }
+                return true
+            }
+            override fun apply() { commit() }
+        }
+    }
+
+    private val prefs = FakePreferences()
+    private var bootCount = 1
+    private val checks = AtomicInteger()
+
+    private fun runner() = SystemProbeRunner({ prefs }, { bootCount })
+
+    private fun stableProbe(id: String = "stable", detected: Boolean = true) =
+        SystemProbe(id, bootStable = true) { checks.incrementAndGet(); detected }
+
+    @Test
+    fun `independent probes run concurrently`() = runBlocking {
+        // Each probe only detects once the other one is running as well
+        val running = CountDownLatch(2)
+        val probe = { id: String ->
+            SystemProbe(id) {
+                running.countDown()
+                running.await(5, TimeUnit.SECONDS)
+            }
+        }
+
+        val results = runner().run(listOf(probe("a"), probe("b")))
+
+        assertEquals(mapOf("a" to true, "b" to true), results)
+    }
+
+    @Test
+    fun `failing probe is reported as not detected`() = runBlocking {
+        val results = runner().run(listOf(
+            SystemProbe("broken") { throw IllegalStateException("boom") },
+            SystemProbe("ok") { true }
+        ))
+
+        assertEquals(mapOf("broken" to false, "ok" to true), results)
+    }
+
+    @Test
+    fun `boot stable result is reused until the boot count changes`() = runBlocking {
+        val runner = runner()
+        runner.run(listOf(stableProbe()))
+        assertEquals(mapOf("stable" to true), runner.run(listOf(stableProbe())))
+        assertEquals(1, checks.get())
+
+        bootCount = 2
+        runner.run(listOf(stableProbe()))
+        assertEquals(2, checks.get())
+    }
+
+    @Test
+    fun `cached results survive a restart within the same boot`() = runBlocking {
+        runner().run(listOf(stableProbe(detected = false)))
+
+        assertEquals(mapOf("stable" to false), runner().run(listOf(stableProbe())))
+        assertEquals(1, checks.get())
+
+        bootCount = 2
+        runner().run(listOf(stableProbe()))
+        assertEquals(2, checks.get())
+    }
+
+    @Test
+    fun `nothing is cached without a boot count`() = runBlocking {
+        bootCount = -1
+        val runner = runner()
+        runner.run(listOf(stableProbe()))
+        runner.run(listOf(stableProbe()))
+
+        assertEquals(2, checks.get())
+        assertTrue(prefs.values.isEmpty())
+    }
+
+    @Test
+    fun `probes that are not boot stable always run`() = runBlocking {
+        val probe = SystemProbe("volatile") { checks.incrementAndGet(); true }
+        val runner = runner()
+        runner.run(listOf(probe))
+        runner.run(listOf(probe))
+
+        assertEquals(2, checks.get())
+    }
+
+    @Test
+    fun `invalidate forces boot stable probes to run again`() = runBlocking {
+        val runner = runner()
+        runner.run(listOf(stableProbe()))
+        runner.invalidate()
+        runner.run(listOf(stableProbe()))
+
+        assertEquals(2, checks.get())
+    }
+}
@@ -1,5 +1,7 @@
 package com.sentinelguard.security.baseline.metric
 
+import com.sentinelguard.domain.model.SecuritySignal
+import com.sentinelguard.domain.model.SignalType
 import org.junit.Assert.*
 import org.junit.Test
 
@@ -8,6 +10,25 @@ import org.junit.Test
  */
 class MetricTests {
 
+    private val day = 24 * 60 * 60 * 1000L
+
+    /**
+     * Opens on each of the last 20 days at varying hours, each followed
+     * by a session of varying length, oldest first
+     */
+    private fun history(now: Long): List<SecuritySignal> {
+        return (20 downTo 1).flatMap { daysAgo ->
+            val opens = 1 + daysAgo % 4
+            (0 until opens).flatMap { i ->
+                val timestamp = now - daysAgo * day + i * 3 * 60 * 60 * 1000L
+                listOf(
+                    SecuritySignal(type = SignalType.APP_OPEN, timestamp = timestamp),
+                    SecuritySignal(type = SignalType.APP_SESSION, value = "${60_000L * (1 + (daysAgo * 7 + i) % 11)}", timestamp = timestamp)
+                )
+            }
+        }
+    }
+
     // ============ UsageHourMetric Tests ============
 
     @Test
@@ -23,6 +44,46 @@ class MetricTests {
         assertTrue(peaks.size <= 3)
     }
 
+    @Test
+    fun `opens older than the rolling window are not counted`() {
+        val day = 24 * 60 * 60 * 1000L
+        val now = System.currentTimeMillis()
+        val metric = UsageHourMetric()
+        metric.updateFromSignals(listOf(
+            SecuritySignal(type = SignalType.APP_OPEN, timestamp = now - 40 * day),
+            SecuritySignal(type = SignalType.APP_OPEN, timestamp = now - 2 * day),
+            SecuritySignal(type = SignalType.APP_OPEN, timestamp = now)
+        ))
+
+        assertEquals(2, metric.getHistogram().values.sum())
+    }
+
+    @Test
+    fun `usage hours survive a baseline round trip between updates`() {
+        val signals = history(System.currentTimeMillis())
+        val (first, second) = signals.chunked(signals.size / 2 + 1)
+        val singlePass = UsageHourMetric().apply { updateFromSignals(signals) }
+
+        val saved = UsageHourMetric().updateFromSignals(first)
+        val resumed = UsageHourMetric().apply { loadFromBaseline(saved) }
+        val baseline = resumed.updateFromSignals(second)
+
+        assertEquals(singlePass.getHistogram(), resumed.getHistogram())
+        assertEquals(signals.count { it.type == SignalType.APP_OPEN }, baseline.sampleCount)
+    }
+
+    @Test
+    fun `loading a baseline replaces what was learned`() {
+        val signals = history(System.currentTimeMillis())
+        val metric = UsageHourMetric()
+        val baseline = metric.updateFromSignals(signals)
+
+        metric.loadFromBaseline(baseline)
+        metric.loadFromBaseline(baseline)
+
+        assertEquals(signals.count { it.type == SignalType.APP_OPEN }, metric.getHistogram().values.sum())
+    }
+
     // ============ SessionMetric Tests ============
 
     @Test
@@ -31,6 +92,24 @@ class MetricTests {
         assertEquals(0.0, metric.getAverageSessionsPerDay(), 0.001)
     }
 
+    @Test
+    fun `session estimators survive a baseline round trip between updates`() {
+        val signals = history(System.currentTimeMillis())
+        val (first, second) = signals.chunked(signals.size / 2 + 1)
+        val singlePass = SessionMetric()
+        val expected = singlePass.updateFromSignals(signals)
+
+        val saved = SessionMetric().updateFromSignals(first)
+        val resumed = SessionMetric().apply { loadFromBaseline(saved) }
+        val baseline = resumed.updateFromSignals(second)
+
+        assertEquals(singlePass.getAverageSessionsPerDay(), resumed.getAverageSessionsPerDay(), 1e-9)
+        assertEquals(singlePass.getAverageSessionDurationMs(), resumed.getAverageSessionDurationMs(), 1e-6)
+        assertEquals(singlePass.getMedianSessionDurationMs(), resumed.getMedianSessionDurationMs(), 1e-6)
+        assertEquals(expected.sampleCount, baseline.sampleCount)
+        assertEquals(expected.variance!!, baseline.variance!!, 1e-3)
+    }
+
     // ============ LocationMetric Tests ============
 
     @Test
@@ -0,0 +1,177 @@
+package com.sentinelguard.security.baseline.util
+
+import org.junit.Assert.*
+import org.junit.Test
+import kotlin.random.Random
+
+/**
+ * Unit tests for StreamingStatistics.
+ */
+class StreamingStatisticsTest {
+
+    private val samples = listOf(2.0, 4.0, 4.0, 4.0, 5.0, 5.0, 7.0, 9.0)
+
+    // ============ RunningMoments Tests ============
+
+    @Test
+    fun `running moments match batch statistics`() {
+        val moments = RunningMoments()
+        samples.forEach { moments.add(it) }
+
+        assertEquals(8, moments.count)
+        assertEquals(Statistics.mean(samples), moments.mean, 1e-9)
+        assertEquals(Statistics.variance(samples), moments.variance, 1e-9)
+        assertEquals(2.0, moments.standardDeviation, 1e-9)
+    }
+
+    @Test
+    fun `running moments survive serialization`() {
+        val moments = RunningMoments()
+        samples.forEach { moments.add(it) }
+
+        val restored = RunningMoments().apply { restore(moments.toArray()) }
+        restored.add(10.0)
+        moments.add(10.0)
+
+        assertEquals(moments.mean, restored.mean, 0.0)
+        assertEquals(moments.variance, restored.variance, 0.0)
+    }
+
+    // ============ DecayingMoments Tests ============
+
+    @Test
+    fun `decaying moments of a constant stream have no variance`() {
+        val moments = DecayingMoments(0.1)
+        repeat(50) { moments.add(3.0) }
+
+        assertEquals(3.0, moments.mean, 1e-9)
+        assertEquals(0.0, moments.variance, 1e-9)
+    }
+
+    @Test
+    fun `decaying moments follow a level shift`() {
+        val moments = DecayingMoments.forWindow(10)
+        repeat(100) { moments.add(100.0) }
+        repeat(100) { moments.add(200.0) }
+
+        assertEquals(200.0, moments.mean, 0.01)
+    }
+
+    // ============ P2Quantile Tests ============
+
+    @Test
+    fun `quantile is exact for a handful of samples`() {
+        val median = P2Quantile(0.5)
+        listOf(5.0, 1.0, 3.0).forEach { median.add(it) }
+
+        assertEquals(3.0, median.value, 0.0)
+    }
+
+    @Test
+    fun `quantiles approximate a uniform distribution`() {
+        val random = Random(42)
+        val median = P2Quantile(0.5)
+        val p95 = P2Quantile(0.95)
+        repeat(10_000) {
+            val value = random.nextDouble() * 1000
+            median.add(value)
+            p95.add(value)
+        }
+
+        assertEquals(500.0, median.value, 25.0)
+        assertEquals(950.0, p95.value, 15.0)
+    }
+
+    @Test
+    fun `quantile continues from restored state`() {
+        val random = Random(7)
+        val values = List(2_000) { random.nextDouble() }
+        val original = P2Quantile(0.9)
+        values.take(1_000).forEach { original.add(it) }
+
+        val restored = P2Quantile(0.9).apply { restore(original.toArray()) }
+        values.drop(1_000).forEach {
+            original.add(it)
+            restored.add(it)
+        }
+
+        assertEquals(original.value, restored.value, 0.0)
+        assertEquals(2_000, restored.count)
+    }
+
+    // ============ CountHistogram Tests ============
+
+    @Test
+    fun `histogram keeps mean and variance of its buckets`() {
+        val histogram = CountHistogram(4)
+        listOf(0, 0, 0, 1, 3).forEach { histogram.increment(it) }
+
+        val counts = listOf(3.0, 1.0, 0.0, 1.0)
+        assertEquals(5, histogram.total)
+        assertEquals(Statistics.mean(counts), histogram.mean, 1e-9)
+        assertEquals(Statistics.variance(counts), histogram.variance, 1e-9)
+    }
+
+    @Test
+    fun `histogram restore recomputes totals`() {
+        val histogram = CountHistogram(4).apply { restore(intArrayOf(3, 1, 0, 1, 9)) }
+
+        assertEquals(5, histogram.total)
+        assertEquals(3, histogram[0])
+        assertEquals(Statistics.variance(listOf(3.0, 1.0, 0.0, 1.0)), histogram.variance, 1e-9)
+    }
+
+    // ============ SlidingWindow Tests ============
+
+    @Test
+    fun `window averages completed buckets only`() {
+        val window = SlidingWindow(7)
+        window.add(10, 2.0)
+        window.add(11, 4.0)
+        window.add(12, 9.0)
+
+        assertEquals(2, window.count(12))
+        assertEquals(3.0, window.mean(12), 1e-9)
+        assertEquals(1.0, window.variance(12), 1e-9)
+        assertEquals(9.0, window.totalOf(12, 12), 0.0)
+    }
+
+    @Test
+    fun `buckets outside the window expire`() {
+        val window = SlidingWindow(3)
+        window.add(1)
+        window.add(2)
+        window.add(3)
+        window.add(4) // Reuses the slot of bucket 1
+
+        assertEquals(0.0, window.totalOf(1, 4), 0.0)
+        assertEquals(2, window.count(4))
+        assertEquals(0, window.count(10))
+
+        window.add(1) // Too old to be counted
+        assertEquals(1.0, window.totalOf(4, 4), 0.0)
+    }
+
+    @Test
+    fun `sum includes the current bucket`() {
+        val window = SlidingWindow(3)
+        window.add(1, 2.0)
+        window.add(3, 5.0)
+
+        assertEquals(7.0, window.sum(3), 0.0)
+        assertEquals(5.0, window.sum(4), 0.0)
+    }
+
+    @Test
+    fun `window survives serialization`() {
+        val window = SlidingWindow(30)
+        window.add(100, 3.0)
+        window.add(101, 5.0)
+
+        val restored = SlidingWindow(30).apply { restore(window.toArray()) }
+
+        assertEquals(4, restored.toArray().size)
+        assertEquals(window.mean(102), restored.mean(102), 0.0)
+        assertEquals(101, restored.newest)
+    }
+}
@@ -1,5 +1,6 @@
 package com.sentinelguard.security.collector.detectors
 
+import com.sentinelguard.scanner.LocalPortProber
 import org.junit.Assert.*
 import org.junit.Test
 
@@ -46,7 +47,7 @@ class DebuggerDetectorTest {
 
     @Test
     fun `detection details returns valid JSON`() {
-        val detector = DebuggerDetector()
+        val detector = DebuggerDetector(LocalPortProber())
         detector.isDebuggerAttached() // Run detection
         
         val details = detector.getDetectionDetails()
@@ -0,0 +1,170 @@
+package com.sentinelguard.security.risk
+
+import com.sentinelguard.domain.model.SignalType
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+
+/**
+ * Unit tests for CompoundRuleParser and CompoundMatcher.
+ */
+class CompoundMatcherTest {
+
+    private val hour = 60 * 60 * 1000L
+    private val minute = 60 * 1000L
+
+    private fun rules(text: String): List<CompoundRule> {
+        val parsed = CompoundRuleParser.parse(text, hour)
+        assertEquals(emptyList<String>(), parsed.errors)
+        return parsed.rules
+    }
+
+    // ============ CompoundRuleParser Tests ============
+
+    @Test
+    fun `rule fields are parsed`() {
+        val rule = rules("Location; 25; 30m; sequence; LOCATION_ANOMALY, ROOT_DETECTED|EMULATOR_DETECTED").single()
+
+        assertEquals("Location", rule.name)
+        assertEquals(25, rule.bonus)
+        assertEquals(30 * minute, rule.windowMs)
+        assertTrue(rule.ordered)
+        assertEquals(
+            listOf(setOf(SignalType.LOCATION_ANOMALY), setOf(SignalType.ROOT_DETECTED, SignalType.EMULATOR_DETECTED)),
+            rule.steps
+        )
+    }
+
+    @Test
+    fun `invalid lines are reported and skipped`() {
+        val parsed = CompoundRuleParser.parse(
+            """
+            # comment
+            Good; 10; 1h; all; SIM_CHANGED, NETWORK_CHANGE
+            Unknown type; 10; 1h; all; SIM_CHANGED, NOT_A_SIGNAL
+            Too long; 10; 2h; all; SIM_CHANGED, NETWORK_CHANGE
+            Single step; 10; 1h; all; SIM_CHANGED
+            Missing fields; 10; 1h
+            """.trimIndent(),
+            hour
+        )
+
+        assertEquals(listOf("Good"), parsed.rules.map { it.name })
+        assertEquals(4, parsed.errors.size)
+        assertTrue(parsed.errors[0].startsWith("line 3:"))
+    }
+
+    @Test
+    fun `shipped rules parse`() {
+        val asset = File("src/main/assets/compound_rules.txt")
+        val parsed = CompoundRuleParser.parse(asset.readText(), hour)
+
+        assertEquals(emptyList<String>(), parsed.errors)
+        assertEquals(5, parsed.rules.size)
+    }
+
+    @Test
+    fun `built-in defaults match the shipped rules`() {
+        val asset = File("src/main/assets/compound_rules.txt")
+
+        assertEquals(CompoundRuleParser.parse(asset.readText(), hour).rules, DefaultCompoundRules.rules)
+    }
+
+    // ============ CompoundMatcher Tests ============
+
+    @Test
+    fun `unordered rule needs every step within its window`() {
+        val matcher = CompoundMatcher(rules("Swap; 20; 1h; all; SIM_CHANGED, NETWORK_CHANGE"))
+        matcher.onSignal(SignalType.NETWORK_CHANGE, 0)
+        assertTrue(matcher.evaluate(10 * minute).isEmpty())
+
+        matcher.onSignal(SignalType.SIM_CHANGED, 20 * minute)
+        assertEquals(listOf("Swap"), matcher.evaluate(30 * minute).map { it.name })
+        assertTrue(matcher.evaluate(hour + 1).isEmpty())
+    }
+
+    @Test
+    fun `alternatives satisfy a step`() {
+        val matcher = CompoundMatcher(rules("Env; 25; 1h; all; LOCATION_ANOMALY, ROOT_DETECTED|EMULATOR_DETECTED"))
+        matcher.onSignal(SignalType.LOCATION_ANOMALY, 0)
+        matcher.onSignal(SignalType.EMULATOR_DETECTED, 1)
+
+        assertEquals(1, matcher.evaluate(2).size)
+    }
+
+    @Test
+    fun `sequence only matches in order`() {
+        val rule = "Takeover; 30; 10m; sequence; SIM_REMOVED, DEVICE_BOOT, LOGIN_FAILURE"
+        val inOrder = CompoundMatcher(rules(rule))
+        inOrder.onSignal(SignalType.SIM_REMOVED, 0)
+        inOrder.onSignal(SignalType.DEVICE_BOOT, minute)
+        inOrder.onSignal(SignalType.LOGIN_FAILURE, 2 * minute)
+        assertEquals(1, inOrder.evaluate(3 * minute).size)
+
+        val outOfOrder = CompoundMatcher(rules(rule))
+        outOfOrder.onSignal(SignalType.DEVICE_BOOT, 0)
+        outOfOrder.onSignal(SignalType.SIM_REMOVED, minute)
+        outOfOrder.onSignal(SignalType.LOGIN_FAILURE, 2 * minute)
+        assertTrue(outOfOrder.evaluate(3 * minute).isEmpty())
+    }
+
+    @Test
+    fun `sequence must finish within the window of its first step`() {
+        val matcher = CompoundMatcher(rules("Burst; 15; 10m; sequence; PIN_FAILED, PIN_FAILED, PIN_FAILED"))
+        matcher.onSignal(SignalType.PIN_FAILED, 0)
+        matcher.onSignal(SignalType.PIN_FAILED, 5 * minute)
+        matcher.onSignal(SignalType.PIN_FAILED, 11 * minute)
+        assertTrue(matcher.evaluate(11 * minute).isEmpty())
+
+        // A later start still completes
+        matcher.onSignal(SignalType.PIN_FAILED, 12 * minute)
+        assertEquals(1, matcher.evaluate(12 * minute).size)
+    }
+
+    @Test
+    fun `one signal does not fill two steps`() {
+        val matcher = CompoundMatcher(rules("Twice; 15; 10m; sequence; PIN_FAILED, PIN_FAILED"))
+        matcher.onSignal(SignalType.PIN_FAILED, 0)
+
+        assertTrue(matcher.evaluate(1).isEmpty())
+    }
+
+    @Test
+    fun `current types complete a rule without being recorded`() {
+        val matcher = CompoundMatcher(rules("Env; 25; 1h; sequence; ROOT_DETECTED, LOCATION_ANOMALY"))
+        matcher.onSignal(SignalType.ROOT_DETECTED, 0)
+        val anomaly = RiskState.maskOf(SignalType.LOCATION_ANOMALY)
+
+        assertEquals(1, matcher.evaluate(minute, anomaly).size)
+        assertTrue(matcher.evaluate(minute).isEmpty())
+    }
+
+    @Test
+    fun `matched rules keep their order and tracked types cover all steps`() {
+        val matcher = CompoundMatcher(rules(
+            """
+            First; 10; 1h; all; SIM_CHANGED, NETWORK_CHANGE
+            Second; 20; 1h; all; NETWORK_CHANGE, DEVICE_BOOT
+            """.trimIndent()
+        ))
+        matcher.onSignal(SignalType.DEVICE_BOOT, 0)
+        matcher.onSignal(SignalType.NETWORK_CHANGE, 1)
+        matcher.onSignal(SignalType.SIM_CHANGED, 2)
+
+        assertEquals(listOf("First", "Second"), matcher.evaluate(3).map { it.name })
+        assertEquals(
+            RiskState.maskOf(SignalType.SIM_CHANGED, SignalType.NETWORK_CHANGE, SignalType.DEVICE_BOOT),
+            matcher.trackedTypes
+        )
+    }
+
+    @Test
+    fun `clear forgets partial matches`() {
+        val matcher = CompoundMatcher(rules("Swap; 20; 1h; all; SIM_CHANGED, NETWORK_CHANGE"))
+        matcher.onSignal(SignalType.SIM_CHANGED, 0)
+        matcher.clear()
+        matcher.onSignal(SignalType.NETWORK_CHANGE, 1)
+
+        assertTrue(matcher.evaluate(2).isEmpty())
+    }
+}
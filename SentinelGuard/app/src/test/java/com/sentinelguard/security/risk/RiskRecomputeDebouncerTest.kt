@@ -0,0 +1,63 @@
+package com.sentinelguard.security.risk
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Unit tests for RiskRecomputeDebouncer.
+ */
+class RiskRecomputeDebouncerTest {
+
+    private fun debouncer() = RiskRecomputeDebouncer(urgentDelayMs = 2, normalDelayMs = 60, heartbeatMs = 3_600)
+
+    @Test
+    fun `first recomputation is due immediately`() {
+        val debouncer = debouncer()
+        assertTrue(debouncer.takeIfDue(1_000))
+        assertEquals(4_600L, debouncer.nextDueAt())
+    }
+
+    @Test
+    fun `requests before a run are served by one recomputation`() {
+        val debouncer = debouncer()
+        debouncer.takeIfDue(0)
+        debouncer.request(urgent = false, now = 10)
+        debouncer.request(urgent = false, now = 20)
+        debouncer.request(urgent = false, now = 30)
+
+        assertEquals(70L, debouncer.nextDueAt())
+        assertFalse(debouncer.takeIfDue(69))
+        assertTrue(debouncer.takeIfDue(70))
+        assertFalse(debouncer.takeIfDue(100))
+        assertEquals(3_670L, debouncer.nextDueAt())
+    }
+
+    @Test
+    fun `urgent request brings a pending recomputation forward`() {
+        val debouncer = debouncer()
+        debouncer.takeIfDue(0)
+        debouncer.request(urgent = false, now = 10)
+        debouncer.request(urgent = true, now = 15)
+
+        assertEquals(17L, debouncer.nextDueAt())
+    }
+
+    @Test
+    fun `later requests never postpone a recomputation`() {
+        val debouncer = debouncer()
+        debouncer.takeIfDue(0)
+        debouncer.request(urgent = true, now = 10)
+        debouncer.request(urgent = false, now = 11)
+
+        assertEquals(12L, debouncer.nextDueAt())
+    }
+
+    @Test
+    fun `heartbeat runs without requests`() {
+        val debouncer = debouncer()
+        debouncer.takeIfDue(0)
+
+        assertFalse(debouncer.takeIfDue(3_599))
+        assertTrue(debouncer.takeIfDue(3_600))
+    }
+}
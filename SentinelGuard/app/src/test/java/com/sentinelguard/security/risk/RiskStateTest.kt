@@ -0,0 +1,137 @@
+package com.sentinelguard.security.risk
+
+import com.sentinelguard.domain.model.SignalType
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Unit tests for RiskState.
+ */
+class RiskStateTest {
+
+    private val weights = mapOf(
+        SignalType.SIM_REMOVED to 40,
+        SignalType.NETWORK_CHANGE to 10,
+        SignalType.LOGIN_FAILURE to 15
+    )
+
+    private fun state(capacity: Int = 16, windowMs: Long = 100) =
+        RiskState(windowMs = windowMs, initialCapacity = capacity) { weights[it] ?: 0 }
+
+    @Test
+    fun `weighted signals add points per type`() {
+        val state = state()
+        state.add(SignalType.LOGIN_FAILURE, 10)
+        state.add(SignalType.LOGIN_FAILURE, 20)
+        state.add(SignalType.SIM_REMOVED, 30)
+        state.add(SignalType.APP_OPEN, 40)
+
+        assertEquals(3, state.size)
+        assertEquals(70, state.totalPoints)
+        assertEquals(30, state.pointsOf(SignalType.LOGIN_FAILURE))
+        assertEquals(mapOf(SignalType.LOGIN_FAILURE to 30, SignalType.SIM_REMOVED to 40), state.contributions())
+        assertEquals(40L, state.lastActivityAt)
+    }
+
+    @Test
+    fun `active types mask follows the window`() {
+        val state = state()
+        state.add(SignalType.SIM_REMOVED, 0)
+        state.add(SignalType.NETWORK_CHANGE, 50)
+        val both = RiskState.maskOf(SignalType.SIM_REMOVED, SignalType.NETWORK_CHANGE)
+        assertEquals(both, state.activeTypes)
+
+        state.expire(120)
+
+        assertEquals(RiskState.maskOf(SignalType.NETWORK_CHANGE), state.activeTypes)
+        assertEquals(10, state.totalPoints)
+        assertEquals(0, state.pointsOf(SignalType.SIM_REMOVED))
+    }
+
+    @Test
+    fun `full ring grows instead of dropping live events`() {
+        val state = state(capacity = 2)
+        state.add(SignalType.SIM_REMOVED, 0)
+        state.add(SignalType.LOGIN_FAILURE, 1)
+        state.expire(101)
+        state.add(SignalType.LOGIN_FAILURE, 102)
+        state.add(SignalType.NETWORK_CHANGE, 103)
+
+        assertEquals(3, state.size)
+        assertEquals(40, state.totalPoints)
+        val events = mutableListOf<Long>()
+        state.forEachEvent { _, time -> events.add(time) }
+        assertEquals(listOf(1L, 102L, 103L), events)
+    }
+
+    @Test
+    fun `incremental score matches a recompute beyond 256 events`() {
+        val windowMs = 10_000L
+        val state = state(capacity = 256, windowMs = windowMs)
+        val types = listOf(SignalType.SIM_REMOVED, SignalType.NETWORK_CHANGE, SignalType.LOGIN_FAILURE, SignalType.APP_OPEN)
+        val all = (0 until 1_000).map { types[(it * 7) % types.size] to it * 10L }
+        all.forEach { (type, time) -> state.add(type, time) }
+        val now = 12_000L
+        state.expire(now)
+
+        val inWindow = all.filter { (type, time) -> time >= now - windowMs && (weights[type] ?: 0) > 0 }
+        assertTrue(inWindow.size > 256)
+        assertEquals(inWindow.size, state.size)
+        assertEquals(inWindow.sumOf { weights.getValue(it.first) }, state.totalPoints)
+        val expected = inWindow.groupBy { it.first }.mapValues { (type, events) -> events.size * weights.getValue(type) }
+        assertEquals(expected, state.contributions())
+
+        val restored = state(capacity = 256, windowMs = windowMs)
+        assertTrue(restored.restore(state.toSnapshot()))
+        assertEquals(state.totalPoints, restored.totalPoints)
+    }
+
+    @Test
+    fun `quiet only after a window without any signal`() {
+        val state = state()
+        assertTrue(state.isQuiet(1_000))
+
+        state.add(SignalType.APP_OPEN, 1_050)
+        assertFalse(state.isQuiet(1_150))
+        assertTrue(state.isQuiet(1_151))
+    }
+
+    @Test
+    fun `snapshot restores events, watermark and score`() {
+        val state = state()
+        state.add(SignalType.SIM_REMOVED, 10)
+        state.add(SignalType.NETWORK_CHANGE, 20)
+        state.add(SignalType.APP_OPEN, 30)
+        state.lastSignalId = 42
+        state.recordScore(65, 35)
+
+        val restored = state()
+        assertTrue(restored.restore(state.toSnapshot()))
+
+        assertEquals(state.contributions(), restored.contributions())
+        assertEquals(state.activeTypes, restored.activeTypes)
+        assertEquals(42L, restored.lastSignalId)
+        assertEquals(30L, restored.lastActivityAt)
+        assertEquals(65, restored.lastScore)
+        assertEquals(35L, restored.lastScoreAt)
+    }
+
+    @Test
+    fun `empty state survives a snapshot`() {
+        val restored = state()
+        assertTrue(restored.restore(state().toSnapshot()))
+        assertNull(restored.lastScore)
+        assertEquals(0, restored.size)
+    }
+
+    @Test
+    fun `malformed snapshot leaves the state cleared`() {
+        val state = state()
+        state.add(SignalType.SIM_REMOVED, 10)
+
+        assertFalse(state.restore("1;7;0;-1;0;SIM_REMOVED"))
+        assertEquals(0, state.size)
+        assertEquals(0L, state.lastSignalId)
+        assertFalse(state.restore("0;7;0;-1;0;"))
+    }
+}